@@ -10,6 +10,7 @@ import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 
 import org.apache.maven.artifact.Artifact;
@@ -239,6 +240,20 @@ public class ArtifactClient implements Closeable
         return resource.request(MediaType.TEXT_PLAIN).get();
     }
 
+    public Response getResourceWithResponse(String path, MultivaluedMap<String, Object> headers)
+            throws ArtifactTransportException,
+                   IOException
+    {
+        String url = getContextBaseUrl() + (!path.startsWith("/") ? "/" : "") + path;
+
+        logger.debug("Getting " + url + "...");
+
+        WebTarget resource = getClientInstance().target(url);
+        setupAuthentication(resource);
+
+        return resource.request().headers(headers).get();
+    }
+
     public void deleteArtifact(Artifact artifact,
                                String storageId,
                                String repositoryId)
@@ -12,6 +12,18 @@ public class ByteRange
 
     private long totalLength = 0L;
 
+    /**
+     * Whether the range has no last byte position (for example: bytes=500-), as opposed to a limit of 0,
+     * which denotes the first byte only (bytes=0-0).
+     */
+    private boolean openEnded = true;
+
+    /**
+     * Whether this is a suffix range (for example: bytes=-500), in which case the limit is the negated
+     * number of bytes at the end of the resource.
+     */
+    private boolean suffixRange;
+
 
     public ByteRange()
     {
@@ -26,6 +38,20 @@ public class ByteRange
     {
         this.offset = offset;
         this.limit = limit;
+        this.openEnded = false;
+        this.suffixRange = offset == 0 && limit < 0;
+    }
+
+    /**
+     * Creates a range of the last bytes of a resource. Unlike new ByteRange(0, -suffixLength),
+     * this also works for a suffix length of 0 (bytes=-0), which can never be satisfied.
+     */
+    public static ByteRange suffix(long suffixLength)
+    {
+        ByteRange byteRange = new ByteRange(0, -suffixLength);
+        byteRange.suffixRange = true;
+
+        return byteRange;
     }
 
     public long getOffset()
@@ -46,6 +72,7 @@ public class ByteRange
     public void setLimit(long limit)
     {
         this.limit = limit;
+        this.openEnded = false;
     }
 
     public long getTotalLength()
@@ -58,29 +85,88 @@ public class ByteRange
         this.totalLength = totalLength;
     }
 
+    /**
+     * Returns true, if this range has no last byte position (for example: bytes=500-).
+     */
+    public boolean isOpenEnded()
+    {
+        return openEnded;
+    }
+
+    /**
+     * Returns true, if this is a suffix range (for example: bytes=-500).
+     */
+    public boolean isSuffixRange()
+    {
+        return suffixRange;
+    }
+
+    /**
+     * Returns the position of the first byte of this range in a resource of the given length.
+     */
+    public long getFirstBytePosition(long length)
+    {
+        return isSuffixRange() ? Math.max(0, length + limit) : offset;
+    }
+
+    /**
+     * Returns the position of the last byte (inclusive) of this range in a resource of the given length.
+     */
+    public long getLastBytePosition(long length)
+    {
+        return isSuffixRange() || isOpenEnded() ? length - 1 : Math.min(limit, length - 1);
+    }
+
+    /**
+     * Returns the number of bytes covered by this range in a resource of the given length.
+     */
+    public long getLength(long length)
+    {
+        return getLastBytePosition(length) - getFirstBytePosition(length) + 1;
+    }
+
+    /**
+     * Returns true, if this range overlaps with a resource of the given length.
+     * If it doesn't, the server should respond with a 416 (Requested Range Not Satisfiable).
+     */
+    public boolean isSatisfiable(long length)
+    {
+        return length > 0 &&
+               getFirstBytePosition(length) < length &&
+               getFirstBytePosition(length) <= getLastBytePosition(length);
+    }
+
+    /**
+     * Returns the value of the "Content-Range" header for this range in a resource of the given length.
+     */
+    public String getContentRange(long length)
+    {
+        return "bytes " + getFirstBytePosition(length) + "-" + getLastBytePosition(length) + "/" + length;
+    }
+
     @Override
     public String toString()
     {
         final String prefix = "bytes=";
 
-        if (offset == 0 && limit < 0)
+        if (isSuffixRange())
         {
             if (totalLength == 0)
             {
-                return prefix + (limit > 0 ? limit + "-" : "foo");
+                return prefix + (limit < 0 ? String.valueOf(limit) : "-" + limit);
             }
             else
             {
                 return prefix + (totalLength + limit - 1) + "-" + (totalLength - 1) + "/" + totalLength;
             }
         }
-        else if (offset > 0 && limit == 0)
+        else if (offset > 0 && isOpenEnded())
         {
             return prefix + (totalLength > 0 ? "-" + totalLength : offset + "-");
         }
         else
         {
-            return prefix + offset + (limit > 0 ? "-" + limit : "") + (totalLength > 0 ? "/" + totalLength : "");
+            return prefix + offset + (!isOpenEnded() ? "-" + limit : "") + (totalLength > 0 ? "/" + totalLength : "");
         }
     }
 }
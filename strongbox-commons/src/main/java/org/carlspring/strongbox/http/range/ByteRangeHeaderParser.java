@@ -21,6 +21,8 @@ public class ByteRangeHeaderParser
      * Returns the list of ranges denoted by the "Range:" header.
      *
      * @return
+     * @throws IllegalArgumentException If any of the ranges is malformed (for example: bytes=abc-),
+     *                                  in which case the header should be ignored.
      */
     public List<ByteRange> getRanges()
     {
@@ -31,54 +33,71 @@ public class ByteRangeHeaderParser
 
         for (String range : ranges)
         {
-            long length = range.contains("/") && !range.endsWith("/*") ?
-                          Long.parseLong(range.substring(range.lastIndexOf("/") + 1, range.length())) :  0;
+            // Multiple ranges are usually separated by ", "
+            range = range.trim();
 
-            ByteRange byteRange = null;
-
-            range = range.contains("/") ? range.substring(0, range.indexOf("/")) : range;
-
-            if (range.endsWith("-"))
+            try
             {
-                // Example: 1000- ; Read all bytes after 1000
-                byteRange = new ByteRange(Long.parseLong(range.substring(0, range.length() - 1)));
+                byteRanges.add(parseRange(range));
             }
-            else if (range.contains("-") && !range.startsWith("-") && !range.endsWith("-"))
+            catch (NumberFormatException e)
             {
-                // Example: 1000-2000 ; Read bytes 1000-2000 (incl.)
-                String[] rangeElements = range.split("-");
-
-                byteRange = new ByteRange(Long.parseLong(rangeElements[0]), Long.parseLong(rangeElements[1]));
+                throw new IllegalArgumentException("Invalid byte range '" + range + "'!", e);
             }
-            else if (range.startsWith("-") && range.lastIndexOf("-") == 0)
-            {
-                // Example: -2000 ; Read the last 2000 bytes.
-                byteRange = new ByteRange(0, Long.parseLong(range));
-            }
-            else if (range.endsWith("-") && range.split("-").length == 1)
-            {
-                // Example: 2000- ; Read after the first 2000 bytes.
-                byteRange = new ByteRange(Long.parseLong(range.substring(0, range.length() - 1)));
-            }
-            else if (!range.contains("-") || (range.startsWith("-") && range.split("-").length == 1))
-            {
-                long l = Long.parseLong(range);
+        }
 
-                // Example: 2000 ; Read after the first 2000 bytes.
-                byteRange = l > 0 ? new ByteRange(l) : new ByteRange(0, l);
-            }
+        return byteRanges;
+    }
 
-            if (byteRange != null)
-            {
-                byteRange.setTotalLength(length);
+    private ByteRange parseRange(String range)
+    {
+        long length = range.contains("/") && !range.endsWith("/*") ?
+                      Long.parseLong(range.substring(range.lastIndexOf("/") + 1, range.length())) :  0;
+
+        ByteRange byteRange = null;
+
+        range = range.contains("/") ? range.substring(0, range.indexOf("/")) : range;
 
-                byteRanges.add(byteRange);
+        if (range.endsWith("-"))
+        {
+            // Example: 1000- ; Read all bytes after 1000
+            byteRange = new ByteRange(Long.parseLong(range.substring(0, range.length() - 1)));
+        }
+        else if (range.contains("-") && !range.startsWith("-") && !range.endsWith("-"))
+        {
+            // Example: 1000-2000 ; Read bytes 1000-2000 (incl.)
+            String[] rangeElements = range.split("-");
+            if (rangeElements.length == 2)
+            {
+                byteRange = new ByteRange(Long.parseLong(rangeElements[0]), Long.parseLong(rangeElements[1]));
             }
-            // TODO: The byteRange should never really be null.
-            // TODO: Might want to consider throwing an exception here.
         }
+        else if (range.startsWith("-") && range.lastIndexOf("-") == 0)
+        {
+            // Example: -2000 ; Read the last 2000 bytes.
+            byteRange = ByteRange.suffix(Long.parseLong(range.substring(1)));
+        }
+        else if (range.endsWith("-") && range.split("-").length == 1)
+        {
+            // Example: 2000- ; Read after the first 2000 bytes.
+            byteRange = new ByteRange(Long.parseLong(range.substring(0, range.length() - 1)));
+        }
+        else if (!range.contains("-") || (range.startsWith("-") && range.split("-").length == 1))
+        {
+            long l = Long.parseLong(range);
 
-        return byteRanges;
+            // Example: 2000 ; Read after the first 2000 bytes.
+            byteRange = l >= 0 ? new ByteRange(l) : ByteRange.suffix(-l);
+        }
+
+        if (byteRange == null)
+        {
+            throw new IllegalArgumentException("Invalid byte range '" + range + "'!");
+        }
+
+        byteRange.setTotalLength(length);
+
+        return byteRange;
     }
 
 }
@@ -0,0 +1,127 @@
+package org.carlspring.strongbox.http.range;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A byte range which has been resolved against the length of a resource,
+ * as described by the "Content-Range" header (for example: bytes 100-199/1000).
+ *
+ * @author mtodorov
+ */
+public class ContentRange
+{
+
+    private long firstBytePosition;
+
+    private long lastBytePosition;
+
+    private long totalLength;
+
+
+    public ContentRange(long firstBytePosition, long lastBytePosition, long totalLength)
+    {
+        this.firstBytePosition = firstBytePosition;
+        this.lastBytePosition = lastBytePosition;
+        this.totalLength = totalLength;
+    }
+
+    public ContentRange(ByteRange byteRange, long totalLength)
+    {
+        this(byteRange.getFirstBytePosition(totalLength), byteRange.getLastBytePosition(totalLength), totalLength);
+    }
+
+    /**
+     * Resolves the requested byte ranges against the length of the resource, drops the unsatisfiable ones,
+     * sorts the remaining ones by position and merges the ones which overlap, or are adjacent.
+     *
+     * @param byteRanges    The byte ranges as parsed from the "Range" header.
+     * @param totalLength   The length of the resource.
+     * @return  The list of ranges to serve; if it's empty, the request is not satisfiable.
+     */
+    public static List<ContentRange> merge(List<ByteRange> byteRanges, long totalLength)
+    {
+        List<ContentRange> contentRanges = new ArrayList<>();
+        for (ByteRange byteRange : byteRanges)
+        {
+            if (byteRange.isSatisfiable(totalLength))
+            {
+                contentRanges.add(new ContentRange(byteRange, totalLength));
+            }
+        }
+
+        Collections.sort(contentRanges, new Comparator<ContentRange>()
+        {
+            @Override
+            public int compare(ContentRange range1, ContentRange range2)
+            {
+                return Long.compare(range1.getFirstBytePosition(), range2.getFirstBytePosition());
+            }
+        });
+
+        List<ContentRange> mergedRanges = new ArrayList<>();
+        ContentRange current = null;
+        for (ContentRange contentRange : contentRanges)
+        {
+            if (current != null && contentRange.getFirstBytePosition() <= current.getLastBytePosition() + 1)
+            {
+                current.setLastBytePosition(Math.max(current.getLastBytePosition(),
+                                                     contentRange.getLastBytePosition()));
+            }
+            else
+            {
+                current = contentRange;
+                mergedRanges.add(current);
+            }
+        }
+
+        return mergedRanges;
+    }
+
+    public long getFirstBytePosition()
+    {
+        return firstBytePosition;
+    }
+
+    public void setFirstBytePosition(long firstBytePosition)
+    {
+        this.firstBytePosition = firstBytePosition;
+    }
+
+    public long getLastBytePosition()
+    {
+        return lastBytePosition;
+    }
+
+    public void setLastBytePosition(long lastBytePosition)
+    {
+        this.lastBytePosition = lastBytePosition;
+    }
+
+    public long getTotalLength()
+    {
+        return totalLength;
+    }
+
+    public void setTotalLength(long totalLength)
+    {
+        this.totalLength = totalLength;
+    }
+
+    /**
+     * Returns the number of bytes in this range.
+     */
+    public long getLength()
+    {
+        return lastBytePosition - firstBytePosition + 1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "bytes " + firstBytePosition + "-" + lastBytePosition + "/" + totalLength;
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.carlspring.strongbox.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the files of an archive one after another, straight from the stream, without extracting
+ * (or buffering) the archive first.
+ *
+ * Once {@link #getNextEntry()} has returned the path of a file, reading from this stream returns
+ * the contents of that file, until the end of the file has been reached.
+ *
+ * @author mtodorov
+ */
+public abstract class ArchiveEntryInputStream
+        extends InputStream
+{
+
+    /**
+     * Advances to the next file of the archive. Directories (and any other kinds of entries) are skipped.
+     *
+     * @return The path of the file, relative to the root of the archive, or null, if there are no more files.
+     */
+    public abstract String getNextEntry()
+            throws IOException;
+
+    @Override
+    public int read()
+            throws IOException
+    {
+        byte[] b = new byte[1];
+
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    /**
+     * Removes the leading "./" and "/" from the path of an entry.
+     */
+    protected static String normalize(String path)
+    {
+        String normalizedPath = path.replace('\\', '/');
+        while (normalizedPath.startsWith("./") || normalizedPath.startsWith("/"))
+        {
+            normalizedPath = normalizedPath.substring(normalizedPath.indexOf('/') + 1);
+        }
+
+        return normalizedPath;
+    }
+
+}
@@ -7,6 +7,7 @@ import org.carlspring.strongbox.io.reloading.ReloadableInputStreamHandler;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
 
@@ -20,6 +21,12 @@ public class ArtifactInputStream extends MultipleDigestInputStream
 
     private long length = 0L;
 
+    /**
+     * The channel of the underlying file, if this stream was resolved from a plain file.
+     * This allows the bytes to be transferred directly to the client, without copying them through the heap.
+     */
+    private FileChannel fileChannel;
+
 
     public ArtifactInputStream(ReloadableInputStreamHandler handler, List<ByteRange> byteRanges)
             throws IOException, NoSuchAlgorithmException
@@ -79,4 +86,14 @@ public class ArtifactInputStream extends MultipleDigestInputStream
         this.length = length;
     }
 
+    public FileChannel getFileChannel()
+    {
+        return fileChannel;
+    }
+
+    public void setFileChannel(FileChannel fileChannel)
+    {
+        this.fileChannel = fileChannel;
+    }
+
 }
@@ -0,0 +1,196 @@
+package org.carlspring.strongbox.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of large direct buffers, which are used for copying the uploaded artifacts to their files.
+ *
+ * Each buffer is filled up completely, before it's written to the channel, so that a file is written
+ * in as few (large) writes as possible, instead of a write (and a flush) for every few kilobytes
+ * which were received.
+ *
+ * Allocating direct buffers is expensive, so they are returned to the pool, once the copying is done.
+ * The buffers which were allocated while the pool was empty are dropped, if the pool is already full.
+ *
+ * The size of the buffers and the number of pooled buffers can be set via the strongbox.upload.buffer.size
+ * and strongbox.upload.buffer.pool.size system properties.
+ *
+ * @author mtodorov
+ */
+public class ByteBufferPool
+{
+
+    private int bufferSize = Integer.getInteger("strongbox.upload.buffer.size", 256 * 1024);
+
+    private int maxPooledBuffers = Integer.getInteger("strongbox.upload.buffer.pool.size", 32);
+
+    private Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    private AtomicInteger pooledBuffers = new AtomicInteger();
+
+
+    public ByteBufferPool()
+    {
+    }
+
+    public ByteBufferPool(int bufferSize, int maxPooledBuffers)
+    {
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    /**
+     * Takes a buffer from the pool, or allocates a new one, if the pool is empty.
+     * The buffer has to be returned via {@link #release(ByteBuffer)}.
+     */
+    public ByteBuffer acquire()
+    {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer != null)
+        {
+            pooledBuffers.decrementAndGet();
+
+            if (buffer.capacity() == bufferSize)
+            {
+                buffer.clear();
+
+                return buffer;
+            }
+
+            // The buffer size has been changed, since this buffer was allocated
+        }
+
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer == null || buffer.capacity() != bufferSize)
+        {
+            return;
+        }
+
+        if (pooledBuffers.incrementAndGet() <= maxPooledBuffers)
+        {
+            buffers.add(buffer);
+        }
+        else
+        {
+            pooledBuffers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Copies the stream to the channel. The channel is not closed.
+     *
+     * @return The number of bytes which were copied.
+     */
+    public long transfer(InputStream is, WritableByteChannel channel)
+            throws IOException
+    {
+        return transfer(is, channel, null);
+    }
+
+    /**
+     * Copies the stream to the channel, while calculating the digests of the copied bytes.
+     * The channel is not closed.
+     *
+     * Two buffers are used, so that the next buffer is filled, while the digests of the previous one
+     * are still being calculated.
+     *
+     * @param digestEngine  The digests to update with the copied bytes, or null.
+     * @return The number of bytes which were copied.
+     */
+    public long transfer(InputStream is, WritableByteChannel channel, DigestEngine digestEngine)
+            throws IOException
+    {
+        final ReadableByteChannel source = Channels.newChannel(is);
+        final ByteBuffer[] buffers = new ByteBuffer[]{ acquire(), digestEngine != null ? acquire() : null };
+
+        long total = 0L;
+        try
+        {
+            int current = 0;
+            boolean endOfStream = false;
+            while (!endOfStream)
+            {
+                final ByteBuffer buffer = buffers[current];
+
+                // Fill up the buffer, before writing it
+                buffer.clear();
+                while (buffer.hasRemaining())
+                {
+                    if (source.read(buffer) == -1)
+                    {
+                        endOfStream = true;
+                        break;
+                    }
+                }
+
+                buffer.flip();
+
+                if (digestEngine != null)
+                {
+                    // This waits for the digests of the other buffer, so that it can be filled next
+                    digestEngine.update(buffer);
+                    current = 1 - current;
+                }
+
+                while (buffer.hasRemaining())
+                {
+                    total += channel.write(buffer);
+                }
+            }
+        }
+        finally
+        {
+            if (digestEngine != null)
+            {
+                // The buffers can't be reused, while their digests are being calculated
+                digestEngine.await();
+            }
+
+            release(buffers[0]);
+            release(buffers[1]);
+        }
+
+        return total;
+    }
+
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize)
+    {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getMaxPooledBuffers()
+    {
+        return maxPooledBuffers;
+    }
+
+    public void setMaxPooledBuffers(int maxPooledBuffers)
+    {
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    /**
+     * Returns the number of buffers which are currently available in the pool.
+     */
+    public int getPooledBuffers()
+    {
+        return pooledBuffers.get();
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.carlspring.strongbox.io;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate at which bytes are read (or written) by any number of threads to a number of bytes per second.
+ *
+ * Each caller reserves the time it takes to transfer its bytes at the limited rate and waits for the reservations
+ * made before it to pass, so the rate is kept over any period longer than a single transfer.
+ *
+ * @author mtodorov
+ */
+public class ByteRateLimiter
+{
+
+    /**
+     * The number of bytes per second; 0, or less, for unlimited.
+     */
+    private volatile long bytesPerSecond;
+
+    /**
+     * The time (in nanoseconds) at which the next bytes can be transferred.
+     */
+    private long nextFreeTime = System.nanoTime();
+
+
+    public ByteRateLimiter(long bytesPerSecond)
+    {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Waits until the bytes can be transferred without exceeding the rate.
+     */
+    public void acquire(long bytes)
+            throws InterruptedException
+    {
+        final long rate = bytesPerSecond;
+        if (rate <= 0 || bytes <= 0)
+        {
+            return;
+        }
+
+        final long waitTime;
+        synchronized (this)
+        {
+            final long now = System.nanoTime();
+
+            // Unused time isn't saved up for bursts
+            if (nextFreeTime < now)
+            {
+                nextFreeTime = now;
+            }
+
+            waitTime = nextFreeTime - now;
+            nextFreeTime += bytes * TimeUnit.SECONDS.toNanos(1) / rate;
+        }
+
+        if (waitTime > 0)
+        {
+            TimeUnit.NANOSECONDS.sleep(waitTime);
+        }
+    }
+
+    public long getBytesPerSecond()
+    {
+        return bytesPerSecond;
+    }
+
+    public void setBytesPerSecond(long bytesPerSecond)
+    {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+}
@@ -0,0 +1,387 @@
+package org.carlspring.strongbox.io;
+
+import org.carlspring.strongbox.util.MessageDigestUtils;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calculates several digests of the same data at once.
+ *
+ * Large chunks of data are digested in parallel, with one task per algorithm, each of which reads the chunk
+ * via its own read-only view of it, so the data is never copied by the engine. The tasks of a buffer run while
+ * the caller is writing the chunk and reading the next one, so calculating more digests doesn't slow down
+ * the copying, as long as there are enough cores. As the caller may reuse a byte array as soon as the update
+ * returns, the digests of an array are calculated in parallel with each other, but waited for.
+ *
+ * Each update waits for the digests of the previous chunk to complete, before submitting the next one.
+ * This keeps the chunks in order for every digest and holds back the caller, if digesting is slower than
+ * the I/O, instead of queuing up the data.
+ *
+ * The digests are calculated by a shared pool of daemon threads, the size of which can be set via the
+ * strongbox.digest.threads system property (default: the number of available processors).
+ *
+ * Instances are not thread-safe; they are meant to be used by the thread copying the data.
+ *
+ * @author mtodorov
+ */
+public class DigestEngine
+{
+
+    /**
+     * Chunks smaller than this are digested on the caller's thread, as it's cheaper than handing them over.
+     */
+    public static final int PARALLEL_THRESHOLD = 16 * 1024;
+
+    private static volatile ExecutorService defaultExecutor;
+
+    private final ExecutorService executor;
+
+    private String[] algorithms = new String[0];
+
+    private MessageDigest[] digests = new MessageDigest[0];
+
+    private Future<?>[] pending = new Future<?>[0];
+
+    private Map<String, String> hexDigests = new LinkedHashMap<>();
+
+
+    public DigestEngine(String[] algorithms)
+            throws NoSuchAlgorithmException
+    {
+        this(algorithms, getDefaultExecutor());
+    }
+
+    /**
+     * @param executor  The executor to calculate the digests of large chunks with, or null,
+     *                  if they should always be calculated on the caller's thread.
+     */
+    public DigestEngine(String[] algorithms, ExecutorService executor)
+            throws NoSuchAlgorithmException
+    {
+        this.executor = executor;
+
+        for (String algorithm : algorithms)
+        {
+            addAlgorithm(algorithm);
+        }
+    }
+
+    public DigestEngine(Map<String, MessageDigest> digests)
+    {
+        this.executor = getDefaultExecutor();
+
+        for (Map.Entry<String, MessageDigest> entry : digests.entrySet())
+        {
+            addDigest(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public static ExecutorService getDefaultExecutor()
+    {
+        if (defaultExecutor == null)
+        {
+            synchronized (DigestEngine.class)
+            {
+                if (defaultExecutor == null)
+                {
+                    final int threads = Integer.getInteger("strongbox.digest.threads",
+                                                           Runtime.getRuntime().availableProcessors());
+
+                    defaultExecutor = Executors.newFixedThreadPool(threads, new DigestThreadFactory());
+                }
+            }
+        }
+
+        return defaultExecutor;
+    }
+
+    public void addAlgorithm(String algorithm)
+            throws NoSuchAlgorithmException
+    {
+        addDigest(algorithm, MessageDigest.getInstance(algorithm));
+    }
+
+    private void addDigest(String algorithm, MessageDigest digest)
+    {
+        await();
+
+        final int index = Arrays.asList(algorithms).indexOf(algorithm);
+        if (index != -1)
+        {
+            digests[index] = digest;
+            hexDigests.remove(algorithm);
+
+            return;
+        }
+
+        algorithms = Arrays.copyOf(algorithms, algorithms.length + 1);
+        algorithms[algorithms.length - 1] = algorithm;
+
+        digests = Arrays.copyOf(digests, digests.length + 1);
+        digests[digests.length - 1] = digest;
+
+        pending = new Future<?>[digests.length];
+    }
+
+    public boolean isDigesting()
+    {
+        return digests.length > 0;
+    }
+
+    public void update(byte b)
+    {
+        if (digests.length == 0)
+        {
+            return;
+        }
+
+        await();
+
+        for (MessageDigest digest : digests)
+        {
+            digest.update(b);
+        }
+    }
+
+    /**
+     * Digests the bytes. The bytes can be modified by the caller, as soon as this method returns.
+     */
+    public void update(byte[] bytes, int off, int len)
+    {
+        if (digests.length == 0 || len <= 0)
+        {
+            return;
+        }
+
+        // The previous chunk has to be digested first
+        await();
+
+        if (!isParallel(len))
+        {
+            for (MessageDigest digest : digests)
+            {
+                digest.update(bytes, off, len);
+            }
+
+            return;
+        }
+
+        // Instead of copying the bytes, so that the caller could modify them right away, digest them
+        // in place and wait for the digests; the first one is calculated on the caller's thread
+        submit(ByteBuffer.wrap(bytes, off, len), 1);
+
+        digests[0].update(bytes, off, len);
+
+        await();
+    }
+
+    /**
+     * Digests the remaining bytes of the buffer, without changing its position.
+     *
+     * The contents of the buffer must not be modified, until the next update,
+     * or until {@link #await()} has been invoked.
+     */
+    public void update(ByteBuffer buffer)
+    {
+        if (digests.length == 0 || !buffer.hasRemaining())
+        {
+            return;
+        }
+
+        // The previous chunk has to be digested first
+        await();
+
+        if (!isParallel(buffer.remaining()))
+        {
+            for (MessageDigest digest : digests)
+            {
+                digest.update(buffer.duplicate());
+            }
+
+            return;
+        }
+
+        submit(buffer, 0);
+    }
+
+    private boolean isParallel(int length)
+    {
+        return executor != null && digests.length > 1 && length >= PARALLEL_THRESHOLD;
+    }
+
+    /**
+     * Submits the digests, starting from the specified one, of the remaining bytes of the buffer.
+     */
+    private void submit(ByteBuffer buffer, int first)
+    {
+        for (int i = first; i < digests.length; i++)
+        {
+            // Each digest reads the chunk via its own view of it, which can't be used to modify it
+            final ByteBuffer view = buffer.asReadOnlyBuffer().slice();
+            final MessageDigest digest = digests[i];
+
+            try
+            {
+                pending[i] = executor.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        digest.update(view);
+                    }
+                });
+            }
+            catch (RejectedExecutionException e)
+            {
+                // The executor has been shut down
+                digest.update(view);
+            }
+        }
+    }
+
+    /**
+     * Waits for the digests of the last chunk to be calculated.
+     */
+    public void await()
+    {
+        boolean interrupted = false;
+
+        for (int i = 0; i < pending.length; i++)
+        {
+            final Future<?> future = pending[i];
+            if (future == null)
+            {
+                continue;
+            }
+
+            // The digests would be incomplete, if the waiting was interrupted, so keep waiting
+            while (true)
+            {
+                try
+                {
+                    future.get();
+                    break;
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    throw new IllegalStateException("Failed to calculate the " + algorithms[i] + " digest!",
+                                                    e.getCause());
+                }
+            }
+
+            pending[i] = null;
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String[] getAlgorithms()
+    {
+        return algorithms.clone();
+    }
+
+    public MessageDigest getMessageDigest(String algorithm)
+    {
+        final int index = Arrays.asList(algorithms).indexOf(algorithm);
+        if (index == -1)
+        {
+            return null;
+        }
+
+        await();
+
+        return digests[index];
+    }
+
+    public Map<String, MessageDigest> getDigests()
+    {
+        await();
+
+        Map<String, MessageDigest> map = new LinkedHashMap<>();
+        for (int i = 0; i < algorithms.length; i++)
+        {
+            map.put(algorithms[i], digests[i]);
+        }
+
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Returns the digest as a hexadecimal string, or null, if it's not being calculated.
+     *
+     * Calculating the digest resets it, so it's only calculated once and the data must not be updated afterwards.
+     */
+    public String getMessageDigestAsHexadecimalString(String algorithm)
+    {
+        String hexDigest = hexDigests.get(algorithm);
+        if (hexDigest == null)
+        {
+            final MessageDigest digest = getMessageDigest(algorithm);
+            if (digest == null)
+            {
+                return null;
+            }
+
+            hexDigest = MessageDigestUtils.convertToHexadecimalString(digest);
+            hexDigests.put(algorithm, hexDigest);
+        }
+
+        return hexDigest;
+    }
+
+    /**
+     * Returns the hexadecimal strings of all the digests.
+     *
+     * Key:     algorithm
+     * Value:   digest
+     */
+    public Map<String, String> getHexDigests()
+    {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (String algorithm : algorithms)
+        {
+            map.put(algorithm, getMessageDigestAsHexadecimalString(algorithm));
+        }
+
+        return map;
+    }
+
+    private static class DigestThreadFactory
+            implements ThreadFactory
+    {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "strongbox-digest-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+
+    }
+
+}
@@ -0,0 +1,337 @@
+package org.carlspring.strongbox.io;
+
+import org.carlspring.strongbox.resource.ResourceCloser;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes an artifact to the response from its FileChannel.
+ *
+ * The stream which Jersey hands to the StreamingOutput wraps the container's stream, so the file can't be
+ * transferred to it without copying it through a heap buffer. If the {@link ContainerOutput} of the response
+ * has been set, the file is therefore sent to the container's own stream instead, once the status and
+ * the headers have been committed:
+ *
+ * - via FileChannel.transferTo() (sendfile), if the container's stream is a WritableByteChannel;
+ * - via memory mapped regions of the file, if the container's stream can write ByteBuffers
+ *   (such as Jetty's HttpOutput.write(ByteBuffer)), which are written to the socket without passing
+ *   through the heap.
+ *
+ * Otherwise, the file is copied through a heap buffer, using positional reads, so that a part of the artifact
+ * can be written without reading and discarding the bytes before it. If the artifact has no file channel,
+ * the bytes are copied from the stream instead.
+ *
+ * A position and a count can be specified in order to only write a part of the artifact
+ * (as required for byte range requests).
+ *
+ * @author mtodorov
+ */
+public class FileChannelStreamingOutput
+        implements StreamingOutput
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(FileChannelStreamingOutput.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The maximum size of the regions of the file which are mapped at once.
+     */
+    private static final long MAPPED_REGION_SIZE = 16L * 1024L * 1024L;
+
+    private ArtifactInputStream artifactInputStream;
+
+    /**
+     * The position of the first byte to write.
+     */
+    private long position = 0L;
+
+    /**
+     * The number of bytes to write. A negative value means up until the end of the artifact.
+     */
+    private long count = -1L;
+
+    private ContainerOutput containerOutput;
+
+
+    public FileChannelStreamingOutput(ArtifactInputStream artifactInputStream)
+    {
+        this.artifactInputStream = artifactInputStream;
+    }
+
+    public FileChannelStreamingOutput(ArtifactInputStream artifactInputStream,
+                                      long position,
+                                      long count)
+    {
+        this.artifactInputStream = artifactInputStream;
+        this.position = position;
+        this.count = count;
+    }
+
+    @Override
+    public void write(OutputStream os)
+            throws IOException, WebApplicationException
+    {
+        try
+        {
+            final FileChannel fileChannel = artifactInputStream.getFileChannel();
+            if (fileChannel != null)
+            {
+                transfer(fileChannel, position, count >= 0 ? count : fileChannel.size() - position, os);
+            }
+            else
+            {
+                skip(artifactInputStream, position);
+                copy(artifactInputStream, count, os);
+            }
+
+            os.flush();
+        }
+        finally
+        {
+            ResourceCloser.close(artifactInputStream, logger);
+        }
+    }
+
+    protected void transfer(FileChannel fileChannel,
+                            long position,
+                            long count,
+                            OutputStream os)
+            throws IOException
+    {
+        long transferred = 0L;
+        if (containerOutput != null && count > 2 * DEFAULT_BUFFER_SIZE)
+        {
+            if (!containerOutput.isCommitted())
+            {
+                // The status and the headers are only sent to the container, once Jersey's buffer overflows
+                transferred = copy(fileChannel, position, DEFAULT_BUFFER_SIZE, os);
+            }
+
+            // The bytes written to Jersey's stream so far have to precede the ones written to the container
+            os.flush();
+
+            if (containerOutput.isCommitted() &&
+                sendToContainer(fileChannel, position + transferred, count - transferred))
+            {
+                return;
+            }
+        }
+
+        copy(fileChannel, position + transferred, count - transferred, os);
+    }
+
+    /**
+     * Sends the bytes straight to the container's stream, if it exposes a way to do so without copying them
+     * through the heap.
+     *
+     * @return False, if the container's stream doesn't, in which case nothing has been sent.
+     */
+    private boolean sendToContainer(FileChannel fileChannel,
+                                    long position,
+                                    long count)
+            throws IOException
+    {
+        final OutputStream containerStream = containerOutput.getOutputStream();
+        if (containerStream instanceof WritableByteChannel)
+        {
+            final WritableByteChannel target = (WritableByteChannel) containerStream;
+
+            long transferred = 0L;
+            while (transferred < count)
+            {
+                // transferTo() may transfer fewer bytes than requested, hence the loop.
+                final long n = fileChannel.transferTo(position + transferred, count - transferred, target);
+                if (n <= 0)
+                {
+                    // The file has been truncated underneath us.
+                    break;
+                }
+
+                transferred += n;
+            }
+
+            return true;
+        }
+
+        final Method writeMethod = getByteBufferWriteMethod(containerStream);
+        if (writeMethod == null)
+        {
+            return false;
+        }
+
+        final long size = Math.min(position + count, fileChannel.size());
+        for (long offset = position; offset < size; offset += MAPPED_REGION_SIZE)
+        {
+            final ByteBuffer region = fileChannel.map(FileChannel.MapMode.READ_ONLY,
+                                                      offset,
+                                                      Math.min(MAPPED_REGION_SIZE, size - offset));
+            try
+            {
+                writeMethod.invoke(containerStream, region);
+            }
+            catch (InvocationTargetException e)
+            {
+                if (e.getCause() instanceof IOException)
+                {
+                    throw (IOException) e.getCause();
+                }
+
+                throw new IOException(e.getCause());
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new IOException(e);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the public write(ByteBuffer) method of the container's stream (which Jetty's HttpOutput has),
+     * or null, if there is none. The method is looked up reflectively, so as not to depend on the container.
+     */
+    private static Method getByteBufferWriteMethod(OutputStream containerStream)
+    {
+        try
+        {
+            return containerStream.getClass().getMethod("write", ByteBuffer.class);
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Copies the bytes through a heap buffer.
+     *
+     * @return The number of bytes which were copied.
+     */
+    private long copy(FileChannel fileChannel,
+                      long position,
+                      long count,
+                      OutputStream os)
+            throws IOException
+    {
+        final byte[] bytes = new byte[(int) Math.min(DEFAULT_BUFFER_SIZE, Math.max(count, 1L))];
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        long transferred = 0L;
+        while (transferred < count)
+        {
+            buffer.clear();
+            buffer.limit((int) Math.min(bytes.length, count - transferred));
+
+            // Positional reads don't move the channel's position, nor do they require skipping.
+            final int n = fileChannel.read(buffer, position + transferred);
+            if (n <= 0)
+            {
+                // The file has been truncated underneath us.
+                break;
+            }
+
+            os.write(bytes, 0, n);
+            transferred += n;
+        }
+
+        return transferred;
+    }
+
+    protected void skip(InputStream is, long bytesToSkip)
+            throws IOException
+    {
+        long skipped = 0L;
+        while (skipped < bytesToSkip)
+        {
+            final long n = is.skip(bytesToSkip - skipped);
+            if (n <= 0)
+            {
+                // InputStream.skip() may legitimately skip nothing, so check whether the stream has ended.
+                if (is.read() == -1)
+                {
+                    break;
+                }
+
+                skipped++;
+            }
+            else
+            {
+                skipped += n;
+            }
+        }
+    }
+
+    protected void copy(InputStream is, long count, OutputStream os)
+            throws IOException
+    {
+        byte[] bytes = new byte[DEFAULT_BUFFER_SIZE];
+        long remaining = count >= 0 ? count : Long.MAX_VALUE;
+        int len;
+
+        while (remaining > 0 && (len = is.read(bytes, 0, (int) Math.min(bytes.length, remaining))) != -1)
+        {
+            os.write(bytes, 0, len);
+            remaining -= len;
+        }
+    }
+
+    public ContainerOutput getContainerOutput()
+    {
+        return containerOutput;
+    }
+
+    /**
+     * Sets the output of the container, which the file is sent to directly, where possible.
+     */
+    public void setContainerOutput(ContainerOutput containerOutput)
+    {
+        this.containerOutput = containerOutput;
+    }
+
+    public ArtifactInputStream getArtifactInputStream()
+    {
+        return artifactInputStream;
+    }
+
+    public long getPosition()
+    {
+        return position;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * The response of the container, the stream of which is wrapped by the stream which is passed
+     * to {@link #write(OutputStream)}.
+     */
+    public interface ContainerOutput
+    {
+
+        /**
+         * Returns true, if the status and the headers of the response have been sent to the container.
+         */
+        boolean isCommitted();
+
+        OutputStream getOutputStream()
+                throws IOException;
+
+    }
+
+}
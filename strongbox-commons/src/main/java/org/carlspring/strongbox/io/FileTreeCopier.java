@@ -0,0 +1,424 @@
+package org.carlspring.strongbox.io;
+
+import org.carlspring.strongbox.resource.ResourceCloser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies and moves files and directory trees between repositories.
+ *
+ * The directories are walked in parallel, with a task per directory. When the source and the destination
+ * are on the same file store, the files are hard linked, instead of being copied, which only takes a metadata
+ * update, regardless of the size of the files. This is safe, as files are always replaced by renaming
+ * a new file over them, and never rewritten in place. Otherwise, the files are copied via
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, which lets the operating
+ * system copy the data without passing it through the heap.
+ *
+ * Each file is linked, or copied under a temporary name first, and then renamed to its final name, so that
+ * a partially copied file is never visible. The files and directories whose names start with a dot
+ * (such as the .index, .temp and .trash directories of the repositories) are skipped.
+ *
+ * The number of threads can be set via the strongbox.copy.parallelism system property
+ * (default: the number of processors).
+ *
+ * @author mtodorov
+ */
+public class FileTreeCopier
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(FileTreeCopier.class);
+
+    private int parallelism = Integer.getInteger("strongbox.copy.parallelism",
+                                                 Runtime.getRuntime().availableProcessors());
+
+    private ForkJoinPool pool;
+
+
+    public FileTreeCopier()
+    {
+    }
+
+    public FileTreeCopier(int parallelism)
+    {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Copies the file, or directory at the specified path of the source directory to the same path
+     * of the destination directory.
+     *
+     * @return The paths (relative to the base directories) of the copied files.
+     */
+    public List<String> copy(File srcBasedir,
+                             File destBasedir,
+                             String path)
+            throws IOException
+    {
+        return transfer(srcBasedir, destBasedir, path, false);
+    }
+
+    /**
+     * Moves the file, or directory at the specified path of the source directory to the same path
+     * of the destination directory. The emptied source directories are removed.
+     *
+     * @return The paths (relative to the base directories) of the moved files.
+     */
+    public List<String> move(File srcBasedir,
+                             File destBasedir,
+                             String path)
+            throws IOException
+    {
+        return transfer(srcBasedir, destBasedir, path, true);
+    }
+
+    private List<String> transfer(File srcBasedir,
+                                  File destBasedir,
+                                  String path,
+                                  boolean move)
+            throws IOException
+    {
+        final Path src = new File(srcBasedir, path).toPath();
+        final Path dest = new File(destBasedir, path).toPath();
+
+        if (!Files.exists(src))
+        {
+            throw new IOException("Path " + src + " does not exist.");
+        }
+
+        if (src.toAbsolutePath().normalize().equals(dest.toAbsolutePath().normalize()))
+        {
+            throw new IOException("Cannot copy " + src + " to itself.");
+        }
+
+        final TransferContext context = new TransferContext(move, isSameFileStore(src, dest));
+
+        final String normalizedPath = path.replace('\\', '/');
+        final String prefix = normalizedPath.isEmpty() || normalizedPath.endsWith("/") ?
+                              normalizedPath : normalizedPath + "/";
+
+        if (!Files.isDirectory(src))
+        {
+            Files.createDirectories(dest.getParent());
+
+            transferFile(src, dest, context);
+
+            return Collections.singletonList(normalizedPath);
+        }
+
+        try
+        {
+            return getPool().invoke(new DirectoryTransferTask(src, dest, prefix, context));
+        }
+        catch (UncheckedIOException e)
+        {
+            // Keep the failures of the other directories
+            for (Throwable suppressed : e.getSuppressed())
+            {
+                e.getCause().addSuppressed(suppressed);
+            }
+
+            throw e.getCause();
+        }
+    }
+
+    private synchronized ForkJoinPool getPool()
+    {
+        if (pool == null)
+        {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        return pool;
+    }
+
+    public synchronized void shutdown()
+    {
+        if (pool != null)
+        {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    private static boolean isSameFileStore(Path src,
+                                           Path dest)
+            throws IOException
+    {
+        Path existing = dest.toAbsolutePath();
+        while (existing != null && !Files.exists(existing))
+        {
+            existing = existing.getParent();
+        }
+
+        if (existing == null)
+        {
+            return false;
+        }
+
+        final FileStore srcStore = Files.getFileStore(src);
+        final FileStore destStore = Files.getFileStore(existing);
+
+        return srcStore.equals(destStore);
+    }
+
+    private static void transferFile(Path src,
+                                     Path dest,
+                                     TransferContext context)
+            throws IOException
+    {
+        if (context.move && context.sameFileStore)
+        {
+            Files.move(src, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            return;
+        }
+
+        final Path temporaryFile = dest.resolveSibling("." + dest.getFileName() + "." + System.nanoTime() + ".tmp");
+        try
+        {
+            if (!context.link.get() || !link(src, temporaryFile, context))
+            {
+                transferContents(src, temporaryFile);
+            }
+
+            Files.move(temporaryFile, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            // Renaming a link to a file it's already linked to does nothing
+            Files.deleteIfExists(temporaryFile);
+        }
+
+        if (context.move)
+        {
+            Files.delete(src);
+        }
+    }
+
+    private static boolean link(Path src,
+                                Path link,
+                                TransferContext context)
+    {
+        try
+        {
+            Files.createLink(link, src);
+
+            return true;
+        }
+        catch (IOException | UnsupportedOperationException e)
+        {
+            // Don't try again for the rest of the files
+            if (context.link.compareAndSet(true, false))
+            {
+                logger.warn("Failed to link " + link + " to " + src + " (" + e.getMessage() + ");" +
+                            " copying the files instead.");
+            }
+
+            return false;
+        }
+    }
+
+    private static void transferContents(Path src,
+                                         Path dest)
+            throws IOException
+    {
+        FileChannel in = null;
+        FileChannel out = null;
+        try
+        {
+            in = FileChannel.open(src, StandardOpenOption.READ);
+            out = FileChannel.open(dest, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+            final long size = in.size();
+
+            long position = 0;
+            while (position < size)
+            {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+        finally
+        {
+            ResourceCloser.close(in, logger);
+            ResourceCloser.close(out, logger);
+        }
+
+        Files.setLastModifiedTime(dest, Files.getLastModifiedTime(src));
+    }
+
+    private static class TransferContext
+    {
+
+        private final boolean move;
+
+        private final boolean sameFileStore;
+
+        private final AtomicBoolean link;
+
+
+        TransferContext(boolean move, boolean sameFileStore)
+        {
+            this.move = move;
+            this.sameFileStore = sameFileStore;
+            this.link = new AtomicBoolean(sameFileStore);
+        }
+
+    }
+
+    private static class DirectoryTransferTask
+            extends RecursiveTask<List<String>>
+    {
+
+        private final Path src;
+
+        private final Path dest;
+
+        private final String prefix;
+
+        private final TransferContext context;
+
+
+        DirectoryTransferTask(Path src,
+                              Path dest,
+                              String prefix,
+                              TransferContext context)
+        {
+            this.src = src;
+            this.dest = dest;
+            this.prefix = prefix;
+            this.context = context;
+        }
+
+        @Override
+        protected List<String> compute()
+        {
+            final List<String> paths = new ArrayList<>();
+            final List<DirectoryTransferTask> subtasks = new ArrayList<>();
+
+            RuntimeException failure = null;
+            try
+            {
+                Files.createDirectories(dest);
+
+                final List<Path> files = new ArrayList<>();
+
+                DirectoryStream<Path> entries = null;
+                try
+                {
+                    entries = Files.newDirectoryStream(src);
+                    for (Path entry : entries)
+                    {
+                        final String name = entry.getFileName().toString();
+                        if (name.startsWith("."))
+                        {
+                            continue;
+                        }
+
+                        if (Files.isDirectory(entry))
+                        {
+                            DirectoryTransferTask subtask = new DirectoryTransferTask(entry,
+                                                                                      dest.resolve(name),
+                                                                                      prefix + name + "/",
+                                                                                      context);
+                            subtask.fork();
+                            subtasks.add(subtask);
+                        }
+                        else
+                        {
+                            files.add(entry);
+                        }
+                    }
+                }
+                finally
+                {
+                    ResourceCloser.close(entries, logger);
+                }
+
+                for (Path file : files)
+                {
+                    final String name = file.getFileName().toString();
+
+                    transferFile(file, dest.resolve(name), context);
+                    paths.add(prefix + name);
+                }
+            }
+            catch (IOException e)
+            {
+                failure = new UncheckedIOException(e);
+            }
+            catch (RuntimeException e)
+            {
+                failure = e;
+            }
+
+            // Let all the subdirectories finish, even if this one, or some of them have failed,
+            // and report the first failure with the rest of them suppressed
+            for (DirectoryTransferTask subtask : subtasks)
+            {
+                try
+                {
+                    paths.addAll(subtask.join());
+                }
+                catch (RuntimeException e)
+                {
+                    if (failure == null)
+                    {
+                        failure = e;
+                    }
+                    else if (failure != e)
+                    {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+
+            if (failure != null)
+            {
+                throw failure;
+            }
+
+            if (context.move)
+            {
+                deleteIfEmpty(src);
+            }
+
+            return paths;
+        }
+
+        private static void deleteIfEmpty(Path directory)
+        {
+            final String[] names = directory.toFile().list();
+            if (names != null && names.length == 0)
+            {
+                try
+                {
+                    Files.deleteIfExists(directory);
+                }
+                catch (IOException e)
+                {
+                    logger.warn("Failed to delete directory " + directory + ": " + e.getMessage());
+                }
+            }
+        }
+
+    }
+
+}
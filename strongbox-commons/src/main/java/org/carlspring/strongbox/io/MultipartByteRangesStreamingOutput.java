@@ -0,0 +1,140 @@
+package org.carlspring.strongbox.io;
+
+import org.carlspring.strongbox.http.range.ContentRange;
+import org.carlspring.strongbox.resource.ResourceCloser;
+
+import javax.ws.rs.WebApplicationException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a multipart/byteranges response body for a request with multiple byte ranges.
+ *
+ * The ranges are expected to be sorted and not to overlap (see {@link ContentRange#merge}).
+ * Each part is written with positional transfers from the artifact's file channel, right after
+ * its headers, so that no part is ever buffered. If the artifact has no file channel, the stream
+ * is read forward, skipping the bytes between the parts.
+ *
+ * @author mtodorov
+ */
+public class MultipartByteRangesStreamingOutput
+        extends FileChannelStreamingOutput
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(MultipartByteRangesStreamingOutput.class);
+
+    private static final String CRLF = "\r\n";
+
+    private List<ContentRange> contentRanges;
+
+    private String contentType;
+
+    private String boundary;
+
+
+    public MultipartByteRangesStreamingOutput(ArtifactInputStream artifactInputStream,
+                                              List<ContentRange> contentRanges,
+                                              String contentType)
+    {
+        super(artifactInputStream);
+        this.contentRanges = contentRanges;
+        this.contentType = contentType;
+        this.boundary = UUID.randomUUID().toString().replace("-", "");
+    }
+
+    @Override
+    public void write(OutputStream os)
+            throws IOException, WebApplicationException
+    {
+        ArtifactInputStream ais = getArtifactInputStream();
+        try
+        {
+            final FileChannel fileChannel = ais.getFileChannel();
+
+            // The position of the stream, if we're not using the file channel
+            long position = 0L;
+
+            for (ContentRange contentRange : contentRanges)
+            {
+                os.write(getPartHeader(contentRange).getBytes(StandardCharsets.US_ASCII));
+
+                if (fileChannel != null)
+                {
+                    transfer(fileChannel, contentRange.getFirstBytePosition(), contentRange.getLength(), os);
+                }
+                else
+                {
+                    skip(ais, contentRange.getFirstBytePosition() - position);
+                    copy(ais, contentRange.getLength(), os);
+
+                    position = contentRange.getLastBytePosition() + 1;
+                }
+            }
+
+            os.write(getClosingDelimiter().getBytes(StandardCharsets.US_ASCII));
+            os.flush();
+        }
+        finally
+        {
+            ResourceCloser.close(ais, logger);
+        }
+    }
+
+    /**
+     * Returns the exact length of the response body, so that it can be sent as the Content-Length.
+     */
+    public long getContentLength()
+    {
+        long length = getClosingDelimiter().length();
+        for (ContentRange contentRange : contentRanges)
+        {
+            length += getPartHeader(contentRange).length() + contentRange.getLength();
+        }
+
+        return length;
+    }
+
+    private String getPartHeader(ContentRange contentRange)
+    {
+        return CRLF + "--" + boundary + CRLF +
+               "Content-Type: " + contentType + CRLF +
+               "Content-Range: " + contentRange + CRLF +
+               CRLF;
+    }
+
+    private String getClosingDelimiter()
+    {
+        return CRLF + "--" + boundary + "--" + CRLF;
+    }
+
+    /**
+     * Returns the value of the Content-Type header of the response.
+     */
+    public String getMediaType()
+    {
+        return "multipart/byteranges; boundary=" + boundary;
+    }
+
+    public List<ContentRange> getContentRanges()
+    {
+        return contentRanges;
+    }
+
+    public String getContentType()
+    {
+        return contentType;
+    }
+
+    public String getBoundary()
+    {
+        return boundary;
+    }
+
+}
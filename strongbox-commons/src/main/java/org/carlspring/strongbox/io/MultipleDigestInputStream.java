@@ -5,7 +5,6 @@ import org.carlspring.strongbox.io.reloading.ReloadableInputStreamHandler;
 import org.carlspring.strongbox.io.reloading.Reloading;
 import org.carlspring.strongbox.io.reloading.Repositioning;
 import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
-import org.carlspring.strongbox.util.MessageDigestUtils;
 
 import java.io.FilterInputStream;
 import java.io.IOException;
@@ -28,9 +27,13 @@ public class MultipleDigestInputStream
     public static final String[] DEFAULT_ALGORITHMS = { EncryptionAlgorithmsEnum.MD5.getAlgorithm(),
                                                         EncryptionAlgorithmsEnum.SHA1.getAlgorithm() };
 
-    private Map<String, MessageDigest> digests = new LinkedHashMap<>();
+    /**
+     * Use this to create a stream which doesn't calculate any digests (for example, when serving downloads).
+     * Digesting can still be switched on for specific algorithms via {@link #addAlgorithm(String)}.
+     */
+    public static final String[] NO_ALGORITHMS = new String[0];
 
-    private Map<String, String> hexDigests = new LinkedHashMap<>();
+    private DigestEngine digestEngine;
 
     private boolean rangedMode = false;
 
@@ -58,6 +61,8 @@ public class MultipleDigestInputStream
     {
         super(handler.getInputStream());
 
+        this.digestEngine = new DigestEngine(NO_ALGORITHMS);
+
         List<ByteRange> byteRanges = new ArrayList<>();
         byteRanges.add(byteRange);
 
@@ -71,6 +76,7 @@ public class MultipleDigestInputStream
             throws IOException, NoSuchAlgorithmException
     {
         super(handler.getInputStream());
+        this.digestEngine = new DigestEngine(NO_ALGORITHMS);
         this.reloadableInputStreamHandler = handler;
         this.byteRanges = byteRanges;
         this.currentByteRange = byteRanges.get(0);
@@ -89,55 +95,49 @@ public class MultipleDigestInputStream
     {
         super(is);
 
-        for (String algorithm : algorithms)
-        {
-            addAlgorithm(algorithm);
-        }
+        this.digestEngine = new DigestEngine(algorithms);
     }
 
     public void addAlgorithm(String algorithm)
             throws NoSuchAlgorithmException
     {
-        MessageDigest digest = MessageDigest.getInstance(algorithm);
-
-        digests.put(algorithm, digest);
+        digestEngine.addAlgorithm(algorithm);
     }
 
     public MessageDigest getMessageDigest(String algorithm)
     {
-        return digests.get(algorithm);
+        return digestEngine.getMessageDigest(algorithm);
     }
 
     public Map<String, MessageDigest> getDigests()
     {
-        return digests;
+        return digestEngine.getDigests();
     }
 
     public Map<String, String> getHexDigests()
     {
-        return hexDigests;
+        return digestEngine.getHexDigests();
     }
 
     public String getMessageDigestAsHexadecimalString(String algorithm)
     {
-        if (hexDigests.containsKey(algorithm))
-        {
-            return hexDigests.get(algorithm);
-        }
-        else
-        {
-            // This method will invoke MessageDigest.digest() which will reset the bytes when it's done
-            // and thus this data will no longer be available, so we'll need to cache the calculated digest
-            String hexDigest = MessageDigestUtils.convertToHexadecimalString(getMessageDigest(algorithm));
-            hexDigests.put(algorithm, hexDigest);
-
-            return hexDigest;
-        }
+        // MessageDigest.digest() resets the digest, so the engine only calculates it once
+        return digestEngine.getMessageDigestAsHexadecimalString(algorithm);
     }
 
     public void setDigests(Map<String, MessageDigest> digests)
     {
-        this.digests = digests;
+        this.digestEngine = new DigestEngine(digests);
+    }
+
+    public DigestEngine getDigestEngine()
+    {
+        return digestEngine;
+    }
+
+    public boolean isDigesting()
+    {
+        return digestEngine.isDigesting();
     }
 
     @Override
@@ -152,14 +152,10 @@ public class MultipleDigestInputStream
         int ch = in.read();
         if (ch != -1)
         {
-            for (Map.Entry entry : digests.entrySet())
-            {
-                MessageDigest digest = (MessageDigest) entry.getValue();
-                digest.update((byte) ch);
-            }
-        }
+            digestEngine.update((byte) ch);
 
-        bytesRead++;
+            bytesRead++;
+        }
 
         return ch;
     }
@@ -175,18 +171,14 @@ public class MultipleDigestInputStream
             return -1;
         }
 
-        int numberOfBytesRead = in.read(bytes, off, len);
+        // Don't read past the limit
+        final int length = limit > 0 ? (int) Math.min(len, limit - bytesRead) : len;
+
+        int numberOfBytesRead = in.read(bytes, off, length);
         if (numberOfBytesRead != -1)
         {
-            for (Map.Entry entry : digests.entrySet())
-            {
-                MessageDigest digest = (MessageDigest) entry.getValue();
-                digest.update(bytes, off, numberOfBytesRead);
-            }
-        }
+            digestEngine.update(bytes, off, numberOfBytesRead);
 
-        if (limit > 0 && bytesRead < limit)
-        {
             bytesRead += numberOfBytesRead;
         }
 
@@ -197,27 +189,7 @@ public class MultipleDigestInputStream
     public int read(byte[] bytes)
             throws IOException
     {
-        if (hasReachedLimit())
-        {
-            return -1;
-        }
-
-        int len = in.read(bytes);
-
-        for (Map.Entry entry : digests.entrySet())
-        {
-            MessageDigest digest = (MessageDigest) entry.getValue();
-            digest.update(bytes);
-        }
-
-        bytesRead += len;
-
-        if (limit > 0 && bytesRead < limit)
-        {
-            bytesRead += len;
-        }
-
-        return len;
+        return read(bytes, 0, bytes.length);
     }
 
     @Override
@@ -1,6 +1,5 @@
 package org.carlspring.strongbox.io;
 
-import org.carlspring.strongbox.resource.ResourceCloser;
 import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
 import org.carlspring.strongbox.util.MessageDigestUtils;
 import org.slf4j.Logger;
@@ -11,7 +10,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -25,9 +23,7 @@ public class MultipleDigestOutputStream extends FilterOutputStream
     public static final String[] DEFAULT_ALGORITHMS = { EncryptionAlgorithmsEnum.MD5.getAlgorithm(),
                                                         EncryptionAlgorithmsEnum.SHA1.getAlgorithm() };
 
-    private Map<String, MessageDigest> digests = new LinkedHashMap<>();
-
-    private Map<String, String> hexDigests = new LinkedHashMap<>();
+    private DigestEngine digestEngine;
 
     private Path path;
 
@@ -37,9 +33,7 @@ public class MultipleDigestOutputStream extends FilterOutputStream
     public MultipleDigestOutputStream(OutputStream os)
             throws NoSuchAlgorithmException
     {
-        super(os);
-
-        addAlgorithms(DEFAULT_ALGORITHMS);
+        this(os, DEFAULT_ALGORITHMS);
     }
 
     public MultipleDigestOutputStream(OutputStream os, String[] algorithms)
@@ -47,7 +41,7 @@ public class MultipleDigestOutputStream extends FilterOutputStream
     {
         super(os);
 
-        addAlgorithms(algorithms);
+        this.digestEngine = new DigestEngine(algorithms);
     }
 
     public MultipleDigestOutputStream(File file, OutputStream os)
@@ -73,57 +67,39 @@ public class MultipleDigestOutputStream extends FilterOutputStream
 
         this.path = path;
         this.generateChecksumFiles = generateChecksumFiles;
-
-        addAlgorithms(algorithms);
-    }
-
-    private void addAlgorithms(String[] algorithms)
-            throws NoSuchAlgorithmException
-    {
-        for (String algorithm : algorithms)
-        {
-            addAlgorithm(algorithm);
-        }
+        this.digestEngine = new DigestEngine(algorithms);
     }
 
     public void addAlgorithm(String algorithm)
             throws NoSuchAlgorithmException
     {
-        MessageDigest digest = MessageDigest.getInstance(algorithm);
-
-        digests.put(algorithm, digest);
+        digestEngine.addAlgorithm(algorithm);
     }
 
     public MessageDigest getMessageDigest(String algorithm)
     {
-        return digests.get(algorithm);
+        return digestEngine.getMessageDigest(algorithm);
     }
 
     public Map<String, MessageDigest> getDigests()
     {
-        return digests;
+        return digestEngine.getDigests();
     }
 
     public String getMessageDigestAsHexadecimalString(String algorithm)
     {
-        if (hexDigests.containsKey(algorithm))
-        {
-            return hexDigests.get(algorithm);
-        }
-        else
-        {
-            // This method will invoke MessageDigest.digest() which will reset the bytes when it's done
-            // and thus this data will no longer be available, so we'll need to cache the calculated digest
-            String hexDigest = MessageDigestUtils.convertToHexadecimalString(getMessageDigest(algorithm));
-            hexDigests.put(algorithm, hexDigest);
-
-            return hexDigest;
-        }
+        // MessageDigest.digest() resets the digest, so the engine only calculates it once
+        return digestEngine.getMessageDigestAsHexadecimalString(algorithm);
     }
 
     public void setDigests(Map<String, MessageDigest> digests)
     {
-        this.digests = digests;
+        this.digestEngine = new DigestEngine(digests);
+    }
+
+    public DigestEngine getDigestEngine()
+    {
+        return digestEngine;
     }
 
     @Override
@@ -132,11 +108,7 @@ public class MultipleDigestOutputStream extends FilterOutputStream
     {
         out.write(b);
 
-        for (Map.Entry entry : digests.entrySet())
-        {
-            MessageDigest digest = (MessageDigest) entry.getValue();
-            digest.update((byte) b);
-        }
+        digestEngine.update((byte) b);
     }
 
     @Override
@@ -145,11 +117,7 @@ public class MultipleDigestOutputStream extends FilterOutputStream
     {
         out.write(b);
 
-        for (Map.Entry entry : digests.entrySet())
-        {
-            MessageDigest digest = (MessageDigest) entry.getValue();
-            digest.update(b);
-        }
+        digestEngine.update(b, 0, b.length);
     }
 
     @Override
@@ -158,11 +126,7 @@ public class MultipleDigestOutputStream extends FilterOutputStream
     {
         out.write(b, off, len);
 
-        for (Map.Entry entry : digests.entrySet())
-        {
-            MessageDigest digest = (MessageDigest) entry.getValue();
-            digest.update(b, off, len);
-        }
+        digestEngine.update(b, off, len);
     }
 
     @Override
@@ -180,32 +144,18 @@ public class MultipleDigestOutputStream extends FilterOutputStream
     public void writeChecksums()
             throws IOException
     {
-        for (Map.Entry entry : digests.entrySet())
+        for (Map.Entry<String, String> entry : digestEngine.getHexDigests().entrySet())
         {
-            MessageDigest digest = (MessageDigest) entry.getValue();
-
-            String hexDigest = getMessageDigestAsHexadecimalString(digest.getAlgorithm());
-
-            writeChecksum(path, digest.getAlgorithm(), hexDigest);
+            writeChecksum(path, entry.getKey(), entry.getValue());
         }
     }
 
     private void writeChecksum(Path path, String algorithm, String hexDigest)
             throws IOException
     {
-        FileWriter fw = null;
-
-        try
-        {
-            fw = new FileWriter(path.toAbsolutePath().toString() + EncryptionAlgorithmsEnum.fromAlgorithm(algorithm).getExtension());
-            fw.write(hexDigest + "\n");
-            fw.flush();
-            fw.close();
-        }
-        finally
-        {
-            ResourceCloser.close(fw, logger);
-        }
+        MessageDigestUtils.writeChecksum(path.toFile(),
+                                         EncryptionAlgorithmsEnum.fromAlgorithm(algorithm).getExtension(),
+                                         hexDigest);
     }
 
     public Path getPath()
@@ -0,0 +1,363 @@
+package org.carlspring.strongbox.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the files of a tar archive (POSIX ustar, including the GNU long names and the PAX paths,
+ * which are used for the paths longer than 100 characters).
+ *
+ * Links and special files are skipped, just like the directories.
+ *
+ * @author mtodorov
+ */
+public class TarEntryInputStream
+        extends ArchiveEntryInputStream
+{
+
+    private static final int BLOCK_SIZE = 512;
+
+    private static final int NAME_OFFSET = 0;
+
+    private static final int NAME_LENGTH = 100;
+
+    private static final int SIZE_OFFSET = 124;
+
+    private static final int SIZE_LENGTH = 12;
+
+    private static final int CHECKSUM_OFFSET = 148;
+
+    private static final int CHECKSUM_LENGTH = 8;
+
+    private static final int TYPE_OFFSET = 156;
+
+    private static final int MAGIC_OFFSET = 257;
+
+    private static final int PREFIX_OFFSET = 345;
+
+    private static final int PREFIX_LENGTH = 155;
+
+    private InputStream is;
+
+    /**
+     * The number of bytes of the current file, which haven't been read yet.
+     */
+    private long remaining;
+
+    /**
+     * The number of bytes padding the current file to the end of its last block.
+     */
+    private long padding;
+
+    private boolean finished;
+
+
+    public TarEntryInputStream(InputStream is)
+    {
+        this.is = is;
+    }
+
+    @Override
+    public String getNextEntry()
+            throws IOException
+    {
+        skipBytes(remaining + padding);
+        remaining = 0;
+        padding = 0;
+
+        String longName = null;
+        while (!finished)
+        {
+            final byte[] header = new byte[BLOCK_SIZE];
+            if (!readFully(header, true) || isEmpty(header))
+            {
+                // The archive ends with (at least) one empty block
+                finished = true;
+                break;
+            }
+
+            verifyChecksum(header);
+
+            final char type = (char) header[TYPE_OFFSET];
+            final long size = parseSize(header);
+
+            final String name = longName != null ? longName : parseName(header);
+            longName = null;
+
+            switch (type)
+            {
+                case 'L':
+                    // GNU: the name of the next entry
+                    longName = trim(new String(readData(size), StandardCharsets.UTF_8));
+                    break;
+                case 'x':
+                    // PAX: the extended attributes (possibly including the path) of the next entry
+                    longName = parsePaxPath(readData(size));
+                    break;
+                case '0':
+                case '7':
+                case '\0':
+                    remaining = size;
+                    padding = getPadding(size);
+
+                    return normalize(name);
+                default:
+                    // Directories, links, special files and global PAX headers
+                    skipBytes(size + getPadding(size));
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+            throws IOException
+    {
+        if (remaining <= 0)
+        {
+            return -1;
+        }
+
+        final int read = is.read(b, off, (int) Math.min(len, remaining));
+        if (read == -1)
+        {
+            throw new EOFException("Unexpected end of the tar archive!");
+        }
+
+        remaining -= read;
+
+        return read;
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        is.close();
+    }
+
+    private byte[] readData(long size)
+            throws IOException
+    {
+        if (size > Integer.MAX_VALUE)
+        {
+            throw new IOException("Invalid tar header!");
+        }
+
+        final byte[] data = new byte[(int) size];
+        readFully(data, false);
+        skipBytes(getPadding(size));
+
+        return data;
+    }
+
+    private String parsePaxPath(byte[] data)
+            throws IOException
+    {
+        // Each record is "<length> <key>=<value>\n", where the length includes the whole record
+        String path = null;
+
+        int position = 0;
+        while (position < data.length)
+        {
+            int space = position;
+            while (space < data.length && data[space] != ' ')
+            {
+                space++;
+            }
+
+            final int length;
+            try
+            {
+                length = Integer.parseInt(new String(data, position, space - position, StandardCharsets.UTF_8));
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IOException("Invalid PAX header!", e);
+            }
+
+            if (length <= 0 || position + length > data.length)
+            {
+                throw new IOException("Invalid PAX header!");
+            }
+
+            final String record = new String(data, space + 1, position + length - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith("path="))
+            {
+                path = record.substring("path=".length());
+            }
+
+            position += length;
+        }
+
+        return path;
+    }
+
+    private String parseName(byte[] header)
+    {
+        final String name = parseString(header, NAME_OFFSET, NAME_LENGTH);
+
+        // Only the POSIX archives have a prefix; the GNU archives use this part of the header for other things
+        final String magic = new String(header, MAGIC_OFFSET, 6, StandardCharsets.US_ASCII);
+        if ("ustar\0".equals(magic))
+        {
+            final String prefix = parseString(header, PREFIX_OFFSET, PREFIX_LENGTH);
+            if (!prefix.isEmpty())
+            {
+                return prefix + "/" + name;
+            }
+        }
+
+        return name;
+    }
+
+    private long parseSize(byte[] header)
+            throws IOException
+    {
+        if ((header[SIZE_OFFSET] & 0x80) != 0)
+        {
+            // GNU: base-256, for the files larger than 8 GB
+            long size = 0;
+            for (int i = SIZE_OFFSET + 1; i < SIZE_OFFSET + SIZE_LENGTH; i++)
+            {
+                size = (size << 8) | (header[i] & 0xff);
+            }
+
+            return size;
+        }
+
+        return parseOctal(header, SIZE_OFFSET, SIZE_LENGTH);
+    }
+
+    private void verifyChecksum(byte[] header)
+            throws IOException
+    {
+        long checksum = 0;
+        for (int i = 0; i < header.length; i++)
+        {
+            // The checksum field itself is counted as spaces
+            checksum += i >= CHECKSUM_OFFSET && i < CHECKSUM_OFFSET + CHECKSUM_LENGTH ? ' ' : header[i] & 0xff;
+        }
+
+        if (checksum != parseOctal(header, CHECKSUM_OFFSET, CHECKSUM_LENGTH))
+        {
+            throw new IOException("Invalid tar header checksum!");
+        }
+    }
+
+    private static long parseOctal(byte[] header, int offset, int length)
+            throws IOException
+    {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++)
+        {
+            final byte b = header[i];
+            if (b == 0 || (b == ' ' && value != 0))
+            {
+                break;
+            }
+
+            if (b == ' ')
+            {
+                continue;
+            }
+
+            if (b < '0' || b > '7')
+            {
+                throw new IOException("Invalid tar header!");
+            }
+
+            value = (value << 3) + (b - '0');
+        }
+
+        return value;
+    }
+
+    private static String parseString(byte[] header, int offset, int length)
+    {
+        int end = offset;
+        while (end < offset + length && header[end] != 0)
+        {
+            end++;
+        }
+
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String trim(String name)
+    {
+        int end = name.length();
+        while (end > 0 && name.charAt(end - 1) == '\0')
+        {
+            end--;
+        }
+
+        return name.substring(0, end);
+    }
+
+    private static long getPadding(long size)
+    {
+        return (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+    }
+
+    private static boolean isEmpty(byte[] block)
+    {
+        for (byte b : block)
+        {
+            if (b != 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return False, if the stream ended before the first byte was read and that is allowed.
+     */
+    private boolean readFully(byte[] b, boolean allowEndOfStream)
+            throws IOException
+    {
+        int position = 0;
+        while (position < b.length)
+        {
+            final int read = is.read(b, position, b.length - position);
+            if (read == -1)
+            {
+                if (position == 0 && allowEndOfStream)
+                {
+                    return false;
+                }
+
+                throw new EOFException("Unexpected end of the tar archive!");
+            }
+
+            position += read;
+        }
+
+        return true;
+    }
+
+    private void skipBytes(long bytes)
+            throws IOException
+    {
+        final byte[] buffer = new byte[BLOCK_SIZE * 8];
+
+        long left = bytes;
+        while (left > 0)
+        {
+            final int read = is.read(buffer, 0, (int) Math.min(buffer.length, left));
+            if (read == -1)
+            {
+                throw new EOFException("Unexpected end of the tar archive!");
+            }
+
+            left -= read;
+        }
+    }
+
+}
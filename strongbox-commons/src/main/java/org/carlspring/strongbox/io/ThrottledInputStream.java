@@ -0,0 +1,79 @@
+package org.carlspring.strongbox.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Reads no faster than its {@link ByteRateLimiter} allows (which may be shared by several streams).
+ *
+ * @author mtodorov
+ */
+public class ThrottledInputStream
+        extends FilterInputStream
+{
+
+    private final ByteRateLimiter rateLimiter;
+
+
+    public ThrottledInputStream(InputStream is,
+                                ByteRateLimiter rateLimiter)
+    {
+        super(is);
+
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public int read()
+            throws IOException
+    {
+        final int ch = in.read();
+        if (ch != -1)
+        {
+            throttle(1);
+        }
+
+        return ch;
+    }
+
+    @Override
+    public int read(byte[] bytes,
+                    int off,
+                    int len)
+            throws IOException
+    {
+        final int numberOfBytesRead = in.read(bytes, off, len);
+        if (numberOfBytesRead > 0)
+        {
+            throttle(numberOfBytesRead);
+        }
+
+        return numberOfBytesRead;
+    }
+
+    @Override
+    public long skip(long n)
+            throws IOException
+    {
+        // Skipped bytes aren't read, so they're not throttled
+        return in.skip(n);
+    }
+
+    private void throttle(long bytes)
+            throws InterruptedIOException
+    {
+        try
+        {
+            rateLimiter.acquire(bytes);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.carlspring.strongbox.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads the files of a zip archive.
+ *
+ * @author mtodorov
+ */
+public class ZipEntryInputStream
+        extends ArchiveEntryInputStream
+{
+
+    private ZipInputStream zis;
+
+
+    public ZipEntryInputStream(InputStream is)
+    {
+        this.zis = new ZipInputStream(is);
+    }
+
+    @Override
+    public String getNextEntry()
+            throws IOException
+    {
+        ZipEntry entry;
+        while ((entry = zis.getNextEntry()) != null)
+        {
+            if (!entry.isDirectory())
+            {
+                return normalize(entry.getName());
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+            throws IOException
+    {
+        return zis.read(b, off, len);
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        zis.close();
+    }
+
+}
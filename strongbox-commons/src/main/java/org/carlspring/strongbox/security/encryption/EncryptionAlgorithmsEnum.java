@@ -10,7 +10,11 @@ public enum EncryptionAlgorithmsEnum
 
     MD5("MD5", ".md5"),
 
-    SHA1("SHA-1", ".sha1");
+    SHA1("SHA-1", ".sha1"),
+
+    SHA256("SHA-256", ".sha256"),
+
+    SHA512("SHA-512", ".sha512");
 
 
     private String extension;
@@ -47,13 +51,12 @@ public enum EncryptionAlgorithmsEnum
     public static EncryptionAlgorithmsEnum fromAlgorithm(String algorithm)
             throws IOException
     {
-        if (algorithm.equals(MD5.getAlgorithm()))
-        {
-            return MD5;
-        }
-        if (algorithm.equals(SHA1.getAlgorithm()))
+        for (EncryptionAlgorithmsEnum value : values())
         {
-            return SHA1;
+            if (value.getAlgorithm().equals(algorithm))
+            {
+                return value;
+            }
         }
 
         throw new IOException("Unsupported digest algorithm!");
@@ -1,11 +1,21 @@
 package org.carlspring.strongbox.util;
 
+import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
+
+import java.io.File;
+
 /**
  * @author mtodorov
  */
 public class ArtifactFileUtils
 {
 
+    /**
+     * The extension of the temporary files, into which the files of the storage are written,
+     * before replacing them.
+     */
+    public static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+
 
     public static boolean isArtifactFile(String path)
     {
@@ -19,7 +29,41 @@ public class ArtifactFileUtils
 
     public static boolean isChecksum(String path)
     {
-        return path.endsWith(".md5") || path.endsWith(".sha1");
+        for (EncryptionAlgorithmsEnum algorithm : EncryptionAlgorithmsEnum.values())
+        {
+            if (path.endsWith(algorithm.getExtension()))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns true, if the file (or directory) has been deployed to the repository, rather than being one
+     * of the files which the storage keeps next to the deployed ones for its own use: the hidden files
+     * (such as the trash, the blobs and the index), the temporary files of writes which are in progress
+     * and the compressed siblings of the compressible files (see {@link GzipFileUtils}).
+     */
+    public static boolean isStorageArtifact(File file)
+    {
+        final String name = file.getName();
+        if (name.startsWith(".") || name.endsWith(TEMPORARY_FILE_EXTENSION))
+        {
+            return false;
+        }
+
+        if (name.endsWith(GzipFileUtils.GZIP_EXTENSION))
+        {
+            // Compressed files can also be deployed, so it's only a sibling, if the file it was compressed from exists
+            final String uncompressedName = name.substring(0, name.length() - GzipFileUtils.GZIP_EXTENSION.length());
+
+            return !GzipFileUtils.isCompressible(uncompressedName) ||
+                   !new File(file.getParentFile(), uncompressedName).isFile();
+        }
+
+        return true;
     }
 
 }
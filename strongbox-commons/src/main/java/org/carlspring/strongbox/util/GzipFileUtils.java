@@ -0,0 +1,163 @@
+package org.carlspring.strongbox.util;
+
+import org.carlspring.strongbox.resource.ResourceCloser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Utilities for the precompressed (gzip) siblings of the small, frequently requested text files
+ * (metadata, POM-s and checksums), which are served to the clients accepting the gzip encoding.
+ *
+ * Binary archives are already compressed and never have a compressed sibling.
+ *
+ * @author mtodorov
+ */
+public class GzipFileUtils
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(GzipFileUtils.class);
+
+    public static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * Files smaller than this don't get any smaller, once the gzip header and trailer have been added.
+     */
+    public static final long MINIMUM_COMPRESSIBLE_LENGTH = 256L;
+
+    private static final String[] COMPRESSIBLE_EXTENSIONS = { ".pom", ".xml" };
+
+
+    /**
+     * Returns true, if the file at the specified path can have a compressed sibling.
+     */
+    public static boolean isCompressible(String path)
+    {
+        if (ArtifactFileUtils.isChecksum(path))
+        {
+            return true;
+        }
+
+        for (String extension : COMPRESSIBLE_EXTENSIONS)
+        {
+            if (path.endsWith(extension))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public static File getCompressedFile(File file)
+    {
+        return new File(file.getParentFile(), file.getName() + GZIP_EXTENSION);
+    }
+
+    /**
+     * Returns true, if the compressed sibling of the file doesn't exist, or is not of the current version of the file.
+     */
+    public static boolean isStale(File file)
+    {
+        final File compressedFile = getCompressedFile(file);
+
+        // The compressed file is always given the modification time of the file it was compressed from
+        return !compressedFile.isFile() || compressedFile.lastModified() != file.lastModified();
+    }
+
+    /**
+     * Creates the compressed sibling of the file.
+     *
+     * The file is compressed into a temporary file, which then replaces the sibling, so that the clients
+     * never see a partially written sibling, even if it's being (re)generated by more than one thread.
+     *
+     * @return The compressed file, or null, if the file is not worth compressing.
+     */
+    public static File compress(File file)
+            throws IOException
+    {
+        final long lastModified = file.lastModified();
+        if (file.length() < MINIMUM_COMPRESSIBLE_LENGTH || !isCompressible(file.getName()))
+        {
+            // The file may have shrunk since its sibling was created
+            deleteCompressedFile(file);
+
+            return null;
+        }
+
+        final File compressedFile = getCompressedFile(file);
+        final File tempFile = File.createTempFile("." + compressedFile.getName() + ".", ".tmp", file.getParentFile());
+
+        InputStream is = null;
+        OutputStream os = null;
+        try
+        {
+            is = new FileInputStream(file);
+            os = new GZIPOutputStream(new FileOutputStream(tempFile));
+
+            byte[] bytes = new byte[4096];
+            int len;
+            while ((len = is.read(bytes)) != -1)
+            {
+                os.write(bytes, 0, len);
+            }
+
+            os.close();
+            os = null;
+
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.setLastModified(lastModified);
+
+            Files.move(tempFile.toPath(), compressedFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            ResourceCloser.close(is, logger);
+            ResourceCloser.close(os, logger);
+
+            Files.deleteIfExists(tempFile.toPath());
+        }
+
+        logger.debug("Compressed " + file.getAbsolutePath() + " (" + file.length() + " -> " +
+                     compressedFile.length() + " bytes).");
+
+        return compressedFile;
+    }
+
+    /**
+     * Returns the compressed sibling of the file, (re)generating it, if it's stale.
+     *
+     * @return The compressed file, or null, if the file is not worth compressing.
+     */
+    public static File getUpToDateCompressedFile(File file)
+            throws IOException
+    {
+        if (!isStale(file))
+        {
+            return getCompressedFile(file);
+        }
+
+        return compress(file);
+    }
+
+    /**
+     * Removes the compressed sibling of the file, if there is one.
+     */
+    public static void deleteCompressedFile(File file)
+            throws IOException
+    {
+        Files.deleteIfExists(getCompressedFile(file).toPath());
+    }
+
+}
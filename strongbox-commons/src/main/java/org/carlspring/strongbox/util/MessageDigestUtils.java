@@ -5,6 +5,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 
 /**
@@ -38,24 +40,34 @@ public class MessageDigestUtils
         writeChecksum(artifactFile, checksumFileExtension, checksum);
     }
 
+    /**
+     * Writes the checksum file of the artifact. The checksum is written to a temporary file, which then
+     * replaces the checksum file, so that the clients never see a partially written (or empty) checksum.
+     */
     public static void writeChecksum(File artifactFile, String checksumFileExtension, String checksum)
             throws IOException
     {
         final File checksumFile = new File(artifactFile.getAbsolutePath() + checksumFileExtension);
+        final File tempFile = File.createTempFile("." + checksumFile.getName() + ".", ".tmp", checksumFile.getParentFile());
 
         FileOutputStream fos = null;
 
         try
         {
-            fos = new FileOutputStream(checksumFile);
+            fos = new FileOutputStream(tempFile);
 
             fos.write((checksum + "\n").getBytes());
             fos.flush();
             fos.close();
+
+            Files.move(tempFile.toPath(), checksumFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
         }
         finally
         {
             ResourceCloser.close(fos, logger);
+
+            Files.deleteIfExists(tempFile.toPath());
         }
     }
 
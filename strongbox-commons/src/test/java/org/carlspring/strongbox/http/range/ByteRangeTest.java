@@ -0,0 +1,135 @@
+package org.carlspring.strongbox.http.range;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mtodorov
+ */
+public class ByteRangeTest
+{
+
+    private static final long LENGTH = 1000L;
+
+
+    @Test
+    public void testRangeWithOffsetOnly()
+    {
+        ByteRange range = new ByteRangeHeaderParser("bytes=100-").getRanges().get(0);
+
+        assertTrue("Failed to satisfy range!", range.isSatisfiable(LENGTH));
+        assertEquals("Incorrect first byte position!", 100, range.getFirstBytePosition(LENGTH));
+        assertEquals("Incorrect last byte position!", 999, range.getLastBytePosition(LENGTH));
+        assertEquals("Incorrect range length!", 900, range.getLength(LENGTH));
+        assertEquals("Incorrect content range!", "bytes 100-999/1000", range.getContentRange(LENGTH));
+    }
+
+    @Test
+    public void testRangeWithOffsetAndLimit()
+    {
+        ByteRange range = new ByteRangeHeaderParser("bytes=100-199").getRanges().get(0);
+
+        assertTrue("Failed to satisfy range!", range.isSatisfiable(LENGTH));
+        assertEquals("Incorrect range length!", 100, range.getLength(LENGTH));
+        assertEquals("Incorrect content range!", "bytes 100-199/1000", range.getContentRange(LENGTH));
+    }
+
+    @Test
+    public void testRangeWithLimitBeyondLength()
+    {
+        ByteRange range = new ByteRangeHeaderParser("bytes=900-5000").getRanges().get(0);
+
+        assertTrue("Failed to satisfy range!", range.isSatisfiable(LENGTH));
+        assertEquals("Incorrect range length!", 100, range.getLength(LENGTH));
+        assertEquals("Incorrect content range!", "bytes 900-999/1000", range.getContentRange(LENGTH));
+    }
+
+    @Test
+    public void testSuffixRange()
+    {
+        ByteRange range = new ByteRangeHeaderParser("bytes=-300").getRanges().get(0);
+
+        assertTrue("Failed to detect suffix range!", range.isSuffixRange());
+        assertTrue("Failed to satisfy range!", range.isSatisfiable(LENGTH));
+        assertEquals("Incorrect range length!", 300, range.getLength(LENGTH));
+        assertEquals("Incorrect content range!", "bytes 700-999/1000", range.getContentRange(LENGTH));
+    }
+
+    @Test
+    public void testSuffixRangeLongerThanLength()
+    {
+        ByteRange range = new ByteRangeHeaderParser("bytes=-5000").getRanges().get(0);
+
+        assertTrue("Failed to satisfy range!", range.isSatisfiable(LENGTH));
+        assertEquals("Incorrect range length!", LENGTH, range.getLength(LENGTH));
+        assertEquals("Incorrect content range!", "bytes 0-999/1000", range.getContentRange(LENGTH));
+    }
+
+    @Test
+    public void testUnsatisfiableRanges()
+    {
+        assertFalse("Failed to detect an unsatisfiable range!",
+                    new ByteRangeHeaderParser("bytes=1000-").getRanges().get(0).isSatisfiable(LENGTH));
+        assertFalse("Failed to detect an unsatisfiable range!",
+                    new ByteRangeHeaderParser("bytes=2000-3000").getRanges().get(0).isSatisfiable(LENGTH));
+        assertFalse("Failed to detect an unsatisfiable range!",
+                    new ByteRangeHeaderParser("bytes=500-100").getRanges().get(0).isSatisfiable(LENGTH));
+        assertFalse("Failed to detect an unsatisfiable range!",
+                    new ByteRangeHeaderParser("bytes=-100").getRanges().get(0).isSatisfiable(0));
+    }
+
+    @Test
+    public void testSingleByteRange()
+    {
+        ByteRange range = new ByteRangeHeaderParser("bytes=0-0").getRanges().get(0);
+
+        assertFalse("Treated the range as open-ended!", range.isOpenEnded());
+        assertTrue("Failed to satisfy range!", range.isSatisfiable(LENGTH));
+        assertEquals("Incorrect range length!", 1, range.getLength(LENGTH));
+        assertEquals("Incorrect content range!", "bytes 0-0/1000", range.getContentRange(LENGTH));
+
+        range = new ByteRangeHeaderParser("bytes=999-999").getRanges().get(0);
+
+        assertEquals("Incorrect range length!", 1, range.getLength(LENGTH));
+        assertEquals("Incorrect content range!", "bytes 999-999/1000", range.getContentRange(LENGTH));
+    }
+
+    @Test
+    public void testEmptySuffixRange()
+    {
+        ByteRange range = new ByteRangeHeaderParser("bytes=-0").getRanges().get(0);
+
+        assertTrue("Failed to detect suffix range!", range.isSuffixRange());
+        assertFalse("Failed to detect an unsatisfiable range!", range.isSatisfiable(LENGTH));
+        assertTrue("Failed to detect an unsatisfiable range!",
+                   ContentRange.merge(new ByteRangeHeaderParser("bytes=-0").getRanges(), LENGTH).isEmpty());
+    }
+
+    @Test
+    public void testMalformedRanges()
+    {
+        for (String headerContents : new String[]{ "bytes=abc-",
+                                                   "bytes=-abc",
+                                                   "bytes=1-abc",
+                                                   "bytes=-",
+                                                   "bytes=1-2-3",
+                                                   "bytes=0-10, abc-" })
+        {
+            try
+            {
+                new ByteRangeHeaderParser(headerContents).getRanges();
+
+                fail("Failed to reject the malformed range " + headerContents + "!");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // This is the expected behaviour
+            }
+        }
+    }
+
+}
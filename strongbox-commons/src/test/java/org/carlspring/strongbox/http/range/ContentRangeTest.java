@@ -0,0 +1,57 @@
+package org.carlspring.strongbox.http.range;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mtodorov
+ */
+public class ContentRangeTest
+{
+
+    private static final long LENGTH = 1000L;
+
+
+    @Test
+    public void testMergeSortsRanges()
+    {
+        List<ContentRange> ranges = merge("bytes=500-599, 0-99, -100");
+
+        assertEquals("Incorrect number of ranges!", 3, ranges.size());
+        assertEquals("Failed to sort ranges!", "bytes 0-99/1000", ranges.get(0).toString());
+        assertEquals("Failed to sort ranges!", "bytes 500-599/1000", ranges.get(1).toString());
+        assertEquals("Failed to sort ranges!", "bytes 900-999/1000", ranges.get(2).toString());
+    }
+
+    @Test
+    public void testMergeOverlappingAndAdjacentRanges()
+    {
+        List<ContentRange> ranges = merge("bytes=0-99,50-199,200-299,500-,-600");
+
+        assertEquals("Incorrect number of ranges!", 2, ranges.size());
+        assertEquals("Failed to merge ranges!", "bytes 0-299/1000", ranges.get(0).toString());
+        assertEquals("Failed to merge ranges!", "bytes 400-999/1000", ranges.get(1).toString());
+        assertEquals("Incorrect range length!", 600, ranges.get(1).getLength());
+    }
+
+    @Test
+    public void testMergeDropsUnsatisfiableRanges()
+    {
+        List<ContentRange> ranges = merge("bytes=2000-3000,100-199");
+
+        assertEquals("Incorrect number of ranges!", 1, ranges.size());
+        assertEquals("Failed to drop unsatisfiable range!", "bytes 100-199/1000", ranges.get(0).toString());
+
+        assertTrue("Failed to drop unsatisfiable ranges!", merge("bytes=1000-,2000-3000").isEmpty());
+    }
+
+    private List<ContentRange> merge(String headerContents)
+    {
+        return ContentRange.merge(new ByteRangeHeaderParser(headerContents).getRanges(), LENGTH);
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.carlspring.strongbox.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author mtodorov
+ */
+public class ByteBufferPoolTest
+{
+
+
+    @Test
+    public void testTransfer()
+            throws IOException
+    {
+        final ByteBufferPool pool = new ByteBufferPool(4096, 2);
+
+        // Not a multiple of the buffer size, so that the last buffer is only partially filled
+        final byte[] contents = new byte[4096 * 10 + 123];
+        new Random().nextBytes(contents);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        CountingChannel channel = new CountingChannel(Channels.newChannel(baos));
+
+        final long total = pool.transfer(new ByteArrayInputStream(contents), channel);
+
+        assertEquals("Incorrect number of bytes transferred!", contents.length, total);
+        assertArrayEquals("Incorrect contents transferred!", contents, baos.toByteArray());
+        assertEquals("The buffers were not filled up, before being written!", 11, channel.getWrites());
+        assertEquals("Failed to return the buffer to the pool!", 1, pool.getPooledBuffers());
+    }
+
+    @Test
+    public void testReuse()
+    {
+        final ByteBufferPool pool = new ByteBufferPool(1024, 1);
+
+        final ByteBuffer buffer1 = pool.acquire();
+        final ByteBuffer buffer2 = pool.acquire();
+
+        assertNotSame("Acquired the same buffer twice!", buffer1, buffer2);
+
+        pool.release(buffer1);
+        pool.release(buffer2);
+
+        assertEquals("Pooled more buffers than allowed!", 1, pool.getPooledBuffers());
+        assertSame("Failed to reuse the buffer!", buffer1, pool.acquire());
+    }
+
+    static class CountingChannel
+            implements WritableByteChannel
+    {
+
+        private final WritableByteChannel channel;
+
+        private int writes;
+
+
+        CountingChannel(WritableByteChannel channel)
+        {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src)
+                throws IOException
+        {
+            writes++;
+
+            return channel.write(src);
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            channel.close();
+        }
+
+        public int getWrites()
+        {
+            return writes;
+        }
+
+    }
+
+}
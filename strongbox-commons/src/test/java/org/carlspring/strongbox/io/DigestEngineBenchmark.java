@@ -0,0 +1,152 @@
+package org.carlspring.strongbox.io;
+
+import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the ways of handing the chunks of a byte array to the {@link DigestEngine}:
+ *
+ * - DigestEngine.update(byte[], int, int), which digests read-only views of the caller's array
+ *   and waits for the digests, before the array can be reused;
+ * - copying each chunk into a second array, which is digested while the caller reuses its own array
+ *   (as DigestEngine.update(byte[], int, int) used to);
+ * - DigestEngine.update(ByteBuffer) with two arrays, which the caller alternates between, so that
+ *   it doesn't have to wait for the digests of the previous chunk.
+ *
+ * The engine digests read-only views of the chunks. A read-only heap buffer doesn't expose its array,
+ * so MessageDigest.update(ByteBuffer) copies it into a temporary array of its own, once per digest.
+ *
+ * The benchmark is only executed, if the strongbox.benchmark system property is set:
+ *
+ *     mvn test -Dtest=DigestEngineBenchmark -Dstrongbox.benchmark=true [-Dstrongbox.benchmark.size=1073741824]
+ *
+ * @author mtodorov
+ */
+public class DigestEngineBenchmark
+{
+
+    private static final long SIZE = Long.getLong("strongbox.benchmark.size", 256L * 1024L * 1024L);
+
+    private static final int ITERATIONS = 3;
+
+    private static final String[] ALGORITHMS = { EncryptionAlgorithmsEnum.MD5.getAlgorithm(),
+                                                 EncryptionAlgorithmsEnum.SHA1.getAlgorithm() };
+
+
+    @Before
+    public void setUp()
+    {
+        Assume.assumeTrue(Boolean.getBoolean("strongbox.benchmark"));
+    }
+
+    @Test
+    public void testDigestThroughput()
+            throws Exception
+    {
+        // Warm up
+        final Map<String, String> expected = digestArrays(SIZE / 16).getHexDigests();
+
+        assertEquals("Incorrect digests!", expected, digestCopies(SIZE / 16).getHexDigests());
+        assertEquals("Incorrect digests!", expected, digestAlternatingArrays(SIZE / 16).getHexDigests());
+
+        long arrays = 0L;
+        long copies = 0L;
+        long alternatingArrays = 0L;
+
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            long start = System.nanoTime();
+            digestArrays(SIZE).getHexDigests();
+            arrays += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            digestCopies(SIZE).getHexDigests();
+            copies += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            digestAlternatingArrays(SIZE).getHexDigests();
+            alternatingArrays += System.nanoTime() - start;
+        }
+
+        report("update(byte[], int, int)", arrays);
+        report("Copies", copies);
+        report("Read-only views, 2 arrays", alternatingArrays);
+    }
+
+    private DigestEngine digestArrays(long size)
+            throws IOException, NoSuchAlgorithmException
+    {
+        final DigestEngine engine = new DigestEngine(ALGORITHMS);
+        final InputStream is = new UploadBenchmark.GeneratedInputStream(size);
+
+        byte[] bytes = new byte[FileChannelStreamingOutput.DEFAULT_BUFFER_SIZE];
+        int len;
+        while ((len = is.read(bytes, 0, bytes.length)) != -1)
+        {
+            engine.update(bytes, 0, len);
+        }
+
+        return engine;
+    }
+
+    private DigestEngine digestCopies(long size)
+            throws IOException, NoSuchAlgorithmException
+    {
+        final DigestEngine engine = new DigestEngine(ALGORITHMS);
+        final InputStream is = new UploadBenchmark.GeneratedInputStream(size);
+
+        byte[] bytes = new byte[FileChannelStreamingOutput.DEFAULT_BUFFER_SIZE];
+        byte[] copy = new byte[FileChannelStreamingOutput.DEFAULT_BUFFER_SIZE];
+        int len;
+        while ((len = is.read(bytes, 0, bytes.length)) != -1)
+        {
+            // The copy can only be reused, once the previous chunk has been digested
+            engine.await();
+
+            System.arraycopy(bytes, 0, copy, 0, len);
+
+            engine.update(ByteBuffer.wrap(copy, 0, len));
+        }
+
+        return engine;
+    }
+
+    private DigestEngine digestAlternatingArrays(long size)
+            throws IOException, NoSuchAlgorithmException
+    {
+        final DigestEngine engine = new DigestEngine(ALGORITHMS);
+        final InputStream is = new UploadBenchmark.GeneratedInputStream(size);
+
+        byte[][] arrays = new byte[][]{ new byte[FileChannelStreamingOutput.DEFAULT_BUFFER_SIZE],
+                                        new byte[FileChannelStreamingOutput.DEFAULT_BUFFER_SIZE] };
+        int current = 0;
+        int len;
+        while ((len = is.read(arrays[current], 0, arrays[current].length)) != -1)
+        {
+            // The other array can be reused, once this update has waited for its digests
+            engine.update(ByteBuffer.wrap(arrays[current], 0, len));
+
+            current = 1 - current;
+        }
+
+        return engine;
+    }
+
+    private void report(String name, long nanos)
+    {
+        final double bytesPerSecond = SIZE * ITERATIONS / (nanos / 1000000000d);
+
+        System.out.println(String.format("%-32s %10.1f MB/s", name, bytesPerSecond / (1024 * 1024)));
+    }
+
+}
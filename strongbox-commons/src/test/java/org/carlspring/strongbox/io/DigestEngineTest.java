@@ -0,0 +1,129 @@
+package org.carlspring.strongbox.io;
+
+import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
+import org.carlspring.strongbox.util.MessageDigestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author mtodorov
+ */
+public class DigestEngineTest
+{
+
+    private static final String[] ALGORITHMS = { EncryptionAlgorithmsEnum.MD5.getAlgorithm(),
+                                                 EncryptionAlgorithmsEnum.SHA1.getAlgorithm(),
+                                                 EncryptionAlgorithmsEnum.SHA256.getAlgorithm(),
+                                                 EncryptionAlgorithmsEnum.SHA512.getAlgorithm() };
+
+    private byte[] contents;
+
+
+    @Before
+    public void setUp()
+    {
+        // Large enough to be digested in parallel, not a multiple of any of the chunk sizes
+        contents = new byte[3 * 1024 * 1024 + 17];
+        new Random().nextBytes(contents);
+    }
+
+    @Test
+    public void testUpdateWithByteArrays()
+            throws NoSuchAlgorithmException
+    {
+        DigestEngine digestEngine = new DigestEngine(ALGORITHMS);
+
+        // Reuse the same buffer, like the streams do, mixing small (serial) and large (parallel) chunks
+        byte[] buffer = new byte[256 * 1024];
+        int position = 0;
+        int chunk = 0;
+        while (position < contents.length)
+        {
+            final int length = Math.min(chunk++ % 2 == 0 ? buffer.length : 1000, contents.length - position);
+
+            System.arraycopy(contents, position, buffer, 0, length);
+            digestEngine.update(buffer, 0, length);
+
+            position += length;
+        }
+
+        assertDigests(digestEngine.getHexDigests());
+    }
+
+    @Test
+    public void testUpdateWithByteBuffers()
+            throws NoSuchAlgorithmException
+    {
+        DigestEngine digestEngine = new DigestEngine(ALGORITHMS);
+
+        final int chunkSize = 256 * 1024;
+        for (int position = 0; position < contents.length; position += chunkSize)
+        {
+            final int length = Math.min(chunkSize, contents.length - position);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+            buffer.put(contents, position, length);
+            buffer.flip();
+
+            digestEngine.update(buffer);
+
+            assertEquals("The position of the buffer was changed!", 0, buffer.position());
+        }
+
+        assertDigests(digestEngine.getHexDigests());
+    }
+
+    @Test
+    public void testTransfer()
+            throws NoSuchAlgorithmException, IOException
+    {
+        DigestEngine digestEngine = new DigestEngine(ALGORITHMS);
+        ByteBufferPool pool = new ByteBufferPool(64 * 1024, 2);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        pool.transfer(new ByteArrayInputStream(contents), Channels.newChannel(baos), digestEngine);
+
+        assertArrayEquals("Incorrect contents transferred!", contents, baos.toByteArray());
+        assertDigests(digestEngine.getHexDigests());
+    }
+
+    @Test
+    public void testSerialDigests()
+            throws NoSuchAlgorithmException
+    {
+        DigestEngine digestEngine = new DigestEngine(ALGORITHMS, null);
+        digestEngine.update(contents, 0, contents.length);
+
+        assertDigests(digestEngine.getHexDigests());
+    }
+
+    private void assertDigests(Map<String, String> hexDigests)
+            throws NoSuchAlgorithmException
+    {
+        assertEquals("Incorrect number of digests!", ALGORITHMS.length, hexDigests.size());
+
+        for (String algorithm : ALGORITHMS)
+        {
+            MessageDigest digest = MessageDigest.getInstance(algorithm);
+            digest.update(contents);
+
+            assertEquals("Incorrect " + algorithm + " digest!",
+                         MessageDigestUtils.convertToHexadecimalString(digest),
+                         hexDigests.get(algorithm));
+        }
+    }
+
+}
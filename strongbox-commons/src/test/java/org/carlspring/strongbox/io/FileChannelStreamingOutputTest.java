@@ -0,0 +1,299 @@
+package org.carlspring.strongbox.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mtodorov
+ */
+public class FileChannelStreamingOutputTest
+{
+
+    private static final File TEST_FILE = new File("target/test-resources/test-file-channel-streaming-output.txt");
+
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        if (!TEST_FILE.getParentFile().exists())
+        {
+            //noinspection ResultOfMethodCallIgnored
+            TEST_FILE.getParentFile().mkdirs();
+        }
+    }
+
+    @Test
+    public void testWriteWithFileChannel()
+            throws IOException, NoSuchAlgorithmException
+    {
+        byte[] bytes = createTestFile();
+
+        FileInputStream fis = new FileInputStream(TEST_FILE);
+
+        ArtifactInputStream ais = new ArtifactInputStream(fis);
+        ais.setLength(TEST_FILE.length());
+        ais.setFileChannel(fis.getChannel());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        new FileChannelStreamingOutput(ais).write(baos);
+
+        assertArrayEquals("Failed to transfer the file!", bytes, baos.toByteArray());
+    }
+
+    @Test
+    public void testWriteWithoutFileChannel()
+            throws IOException, NoSuchAlgorithmException
+    {
+        byte[] bytes = "This is a test.\n".getBytes();
+
+        ArtifactInputStream ais = new ArtifactInputStream(new ByteArrayInputStream(bytes));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        new FileChannelStreamingOutput(ais).write(baos);
+
+        assertArrayEquals("Failed to copy the stream!", bytes, baos.toByteArray());
+    }
+
+    @Test
+    public void testWriteRangeWithFileChannel()
+            throws IOException, NoSuchAlgorithmException
+    {
+        byte[] bytes = createTestFile();
+
+        FileInputStream fis = new FileInputStream(TEST_FILE);
+
+        ArtifactInputStream ais = new ArtifactInputStream(fis);
+        ais.setLength(TEST_FILE.length());
+        ais.setFileChannel(fis.getChannel());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        new FileChannelStreamingOutput(ais, 1000, 100000).write(baos);
+
+        assertArrayEquals("Failed to transfer the range!",
+                          Arrays.copyOfRange(bytes, 1000, 101000),
+                          baos.toByteArray());
+    }
+
+    @Test
+    public void testWriteRangeWithoutFileChannel()
+            throws IOException, NoSuchAlgorithmException
+    {
+        byte[] bytes = "This is a test.\n".getBytes();
+
+        ArtifactInputStream ais = new ArtifactInputStream(new ByteArrayInputStream(bytes));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        new FileChannelStreamingOutput(ais, 5, 2).write(baos);
+
+        assertArrayEquals("Failed to copy the range!", "is".getBytes(), baos.toByteArray());
+    }
+
+    @Test
+    public void testWriteToContainerChannel()
+            throws IOException, NoSuchAlgorithmException
+    {
+        byte[] bytes = createTestFile();
+
+        ChannelOutputStream containerStream = new ChannelOutputStream();
+
+        write(new FileChannelStreamingOutput(createArtifactInputStream()), containerStream);
+
+        assertArrayEquals("Failed to transfer the file!", bytes, containerStream.toByteArray());
+        assertTrue("Failed to transfer the file to the container's channel!",
+                   containerStream.getBufferedBytes() > bytes.length / 2);
+    }
+
+    @Test
+    public void testWriteRangeToContainerByteBufferStream()
+            throws IOException, NoSuchAlgorithmException
+    {
+        byte[] bytes = createTestFile();
+
+        ByteBufferOutputStream containerStream = new ByteBufferOutputStream();
+
+        write(new FileChannelStreamingOutput(createArtifactInputStream(), 1000, bytes.length - 2000), containerStream);
+
+        assertArrayEquals("Failed to transfer the range!",
+                          Arrays.copyOfRange(bytes, 1000, bytes.length - 1000),
+                          containerStream.toByteArray());
+        assertTrue("Failed to transfer the range to the container's stream!",
+                   containerStream.getBufferedBytes() > bytes.length / 2);
+    }
+
+    @Test
+    public void testWriteToContainerStream()
+            throws IOException, NoSuchAlgorithmException
+    {
+        byte[] bytes = createTestFile();
+
+        ByteArrayOutputStream containerStream = new ByteArrayOutputStream();
+
+        write(new FileChannelStreamingOutput(createArtifactInputStream()), containerStream);
+
+        assertArrayEquals("Failed to copy the file!", bytes, containerStream.toByteArray());
+    }
+
+    /**
+     * Writes the output as Jersey would: to a stream wrapping the container's stream, which commits
+     * the response, once it's flushed.
+     */
+    private void write(FileChannelStreamingOutput output,
+                       final OutputStream containerStream)
+            throws IOException
+    {
+        final AtomicBoolean committed = new AtomicBoolean();
+
+        output.setContainerOutput(new FileChannelStreamingOutput.ContainerOutput()
+        {
+            @Override
+            public boolean isCommitted()
+            {
+                return committed.get();
+            }
+
+            @Override
+            public OutputStream getOutputStream()
+            {
+                return containerStream;
+            }
+        });
+
+        output.write(new FilterOutputStream(containerStream)
+        {
+            @Override
+            public void write(byte[] b, int off, int len)
+                    throws IOException
+            {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush()
+                    throws IOException
+            {
+                committed.set(true);
+
+                super.flush();
+            }
+        });
+    }
+
+    private ArtifactInputStream createArtifactInputStream()
+            throws IOException, NoSuchAlgorithmException
+    {
+        FileInputStream fis = new FileInputStream(TEST_FILE);
+
+        ArtifactInputStream ais = new ArtifactInputStream(fis);
+        ais.setLength(TEST_FILE.length());
+        ais.setFileChannel(fis.getChannel());
+
+        return ais;
+    }
+
+    private byte[] createTestFile()
+            throws IOException
+    {
+        // Make it larger than a single buffer, so that more than one transfer may be needed.
+        byte[] bytes = new byte[FileChannelStreamingOutput.DEFAULT_BUFFER_SIZE * 3 + 17];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = (byte) (i % 251);
+        }
+
+        FileOutputStream fos = new FileOutputStream(TEST_FILE);
+        fos.write(bytes);
+        fos.flush();
+        fos.close();
+
+        return bytes;
+    }
+
+    /**
+     * A container stream, which can write ByteBuffers, as Jetty's HttpOutput does.
+     */
+    public static class ByteBufferOutputStream
+            extends ByteArrayOutputStream
+    {
+
+        private long bufferedBytes;
+
+
+        public synchronized void write(ByteBuffer buffer)
+        {
+            bufferedBytes += buffer.remaining();
+
+            while (buffer.hasRemaining())
+            {
+                write(buffer.get());
+            }
+        }
+
+        public long getBufferedBytes()
+        {
+            return bufferedBytes;
+        }
+
+    }
+
+    /**
+     * A container stream, which is a channel as well.
+     */
+    private static class ChannelOutputStream
+            extends ByteArrayOutputStream
+            implements WritableByteChannel
+    {
+
+        private long bufferedBytes;
+
+
+        @Override
+        public synchronized int write(ByteBuffer buffer)
+        {
+            final int length = buffer.remaining();
+
+            bufferedBytes += length;
+
+            while (buffer.hasRemaining())
+            {
+                write(buffer.get());
+            }
+
+            return length;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        public long getBufferedBytes()
+        {
+            return bufferedBytes;
+        }
+
+    }
+
+}
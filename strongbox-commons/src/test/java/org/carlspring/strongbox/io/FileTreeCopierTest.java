@@ -0,0 +1,170 @@
+package org.carlspring.strongbox.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mtodorov
+ */
+public class FileTreeCopierTest
+{
+
+    private static final File BASEDIR = new File("target/strongbox-file-tree-copier");
+
+    private static final File SRC_BASEDIR = new File(BASEDIR, "releases");
+
+    private static final File DEST_BASEDIR = new File(BASEDIR, "snapshots");
+
+    private static final String[] PATHS = new String[]{ "org/carlspring/strongbox/copy/1.0/copy-1.0.jar",
+                                                         "org/carlspring/strongbox/copy/1.0/copy-1.0.pom",
+                                                         "org/carlspring/strongbox/copy/1.1/copy-1.1.jar",
+                                                         "org/carlspring/strongbox/copy/maven-metadata.xml" };
+
+    private FileTreeCopier copier;
+
+
+    @Before
+    public void setUp()
+            throws IOException
+    {
+        FileUtils.deleteDirectory(BASEDIR);
+
+        for (String path : PATHS)
+        {
+            File file = new File(SRC_BASEDIR, path);
+            //noinspection ResultOfMethodCallIgnored
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), path.getBytes());
+        }
+
+        File hiddenFile = new File(SRC_BASEDIR, "org/carlspring/strongbox/copy/.index/index.gz");
+        //noinspection ResultOfMethodCallIgnored
+        hiddenFile.getParentFile().mkdirs();
+        Files.write(hiddenFile.toPath(), "index".getBytes());
+
+        copier = new FileTreeCopier(4);
+    }
+
+    @After
+    public void tearDown()
+    {
+        copier.shutdown();
+    }
+
+    @Test
+    public void testCopyDirectory()
+            throws IOException
+    {
+        List<String> paths = copier.copy(SRC_BASEDIR, DEST_BASEDIR, "org/carlspring/strongbox/copy");
+        Collections.sort(paths);
+
+        assertEquals("Incorrect copied paths!", Arrays.asList(PATHS), paths);
+
+        for (String path : PATHS)
+        {
+            File srcFile = new File(SRC_BASEDIR, path);
+            File destFile = new File(DEST_BASEDIR, path);
+
+            assertTrue("Failed to keep the source file!", srcFile.exists());
+            assertArrayEquals("Incorrect contents copied!",
+                              Files.readAllBytes(srcFile.toPath()),
+                              Files.readAllBytes(destFile.toPath()));
+            assertEquals("Incorrect modification time!", srcFile.lastModified(), destFile.lastModified());
+        }
+
+        assertFalse("Failed to skip the hidden directory!",
+                    new File(DEST_BASEDIR, "org/carlspring/strongbox/copy/.index").exists());
+        assertEquals("Failed to remove the temporary files!",
+                     2, new File(DEST_BASEDIR, "org/carlspring/strongbox/copy/1.0").list().length);
+    }
+
+    @Test
+    public void testCopyFileOverExistingFile()
+            throws IOException
+    {
+        File destFile = new File(DEST_BASEDIR, PATHS[0]);
+        //noinspection ResultOfMethodCallIgnored
+        destFile.getParentFile().mkdirs();
+        Files.write(destFile.toPath(), "This is an older version".getBytes());
+
+        List<String> paths = copier.copy(SRC_BASEDIR, DEST_BASEDIR, PATHS[0]);
+
+        assertEquals("Incorrect copied paths!", Collections.singletonList(PATHS[0]), paths);
+        assertEquals("Failed to replace the existing file!", PATHS[0], new String(Files.readAllBytes(destFile.toPath())));
+
+        // Files are never rewritten in place, so overwriting the source doesn't affect the copy
+        Files.write(new File(SRC_BASEDIR, "release.tmp").toPath(), "This is a newer version".getBytes());
+        Files.move(new File(SRC_BASEDIR, "release.tmp").toPath(),
+                   new File(SRC_BASEDIR, PATHS[0]).toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals("Incorrect contents after replacing the source!",
+                     PATHS[0], new String(Files.readAllBytes(destFile.toPath())));
+    }
+
+    @Test
+    public void testFailingSubdirectories()
+            throws IOException
+    {
+        // Files in place of the destination directories of two of the versions
+        for (String version : new String[]{ "1.0", "1.1" })
+        {
+            File file = new File(DEST_BASEDIR, "org/carlspring/strongbox/copy/" + version);
+            //noinspection ResultOfMethodCallIgnored
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), "file".getBytes());
+        }
+
+        File file = new File(SRC_BASEDIR, "org/carlspring/strongbox/copy/1.2/copy-1.2.jar");
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), "jar".getBytes());
+
+        try
+        {
+            copier.copy(SRC_BASEDIR, DEST_BASEDIR, "org/carlspring/strongbox/copy");
+
+            fail("Failed to report the failed subdirectories!");
+        }
+        catch (IOException e)
+        {
+            // This is expected
+            assertEquals("Failed to report the failure of the other subdirectory!", 1, e.getSuppressed().length);
+        }
+
+        assertTrue("Failed to copy the rest of the subdirectories!",
+                   new File(DEST_BASEDIR, "org/carlspring/strongbox/copy/1.2/copy-1.2.jar").exists());
+        assertTrue("Failed to copy the rest of the directory!",
+                   new File(DEST_BASEDIR, "org/carlspring/strongbox/copy/maven-metadata.xml").exists());
+    }
+
+    @Test
+    public void testMoveDirectory()
+            throws IOException
+    {
+        List<String> paths = copier.move(SRC_BASEDIR, DEST_BASEDIR, "org/carlspring/strongbox/copy/1.0");
+
+        assertEquals("Incorrect number of moved paths!", 2, paths.size());
+        assertFalse("Failed to remove the moved directory!",
+                    new File(SRC_BASEDIR, "org/carlspring/strongbox/copy/1.0").exists());
+        assertTrue("Failed to move the file!", new File(DEST_BASEDIR, PATHS[0]).exists());
+        assertTrue("Failed to move the file!", new File(DEST_BASEDIR, PATHS[1]).exists());
+        assertTrue("Removed a file which wasn't moved!", new File(SRC_BASEDIR, PATHS[2]).exists());
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.carlspring.strongbox.io;
+
+import org.carlspring.strongbox.http.range.ByteRangeHeaderParser;
+import org.carlspring.strongbox.http.range.ContentRange;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author mtodorov
+ */
+public class MultipartByteRangesStreamingOutputTest
+{
+
+    private static final File TEST_FILE = new File("target/test-resources/test-multipart-byteranges.txt");
+
+    private static final String CONTENTS = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        if (!TEST_FILE.getParentFile().exists())
+        {
+            //noinspection ResultOfMethodCallIgnored
+            TEST_FILE.getParentFile().mkdirs();
+        }
+
+        FileOutputStream fos = new FileOutputStream(TEST_FILE);
+        fos.write(CONTENTS.getBytes());
+        fos.flush();
+        fos.close();
+    }
+
+    @Test
+    public void testWriteWithFileChannel()
+            throws IOException, NoSuchAlgorithmException
+    {
+        FileInputStream fis = new FileInputStream(TEST_FILE);
+
+        ArtifactInputStream ais = new ArtifactInputStream(fis);
+        ais.setLength(TEST_FILE.length());
+        ais.setFileChannel(fis.getChannel());
+
+        assertMultipartBody(ais);
+    }
+
+    @Test
+    public void testWriteWithoutFileChannel()
+            throws IOException, NoSuchAlgorithmException
+    {
+        ArtifactInputStream ais = new ArtifactInputStream(new ByteArrayInputStream(CONTENTS.getBytes()));
+        ais.setLength(CONTENTS.length());
+
+        assertMultipartBody(ais);
+    }
+
+    private void assertMultipartBody(ArtifactInputStream ais)
+            throws IOException
+    {
+        List<ContentRange> ranges = ContentRange.merge(new ByteRangeHeaderParser("bytes=-3, 0-4, 2-9").getRanges(),
+                                                       ais.getLength());
+
+        MultipartByteRangesStreamingOutput output = new MultipartByteRangesStreamingOutput(ais,
+                                                                                           ranges,
+                                                                                           "application/octet-stream");
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        output.write(baos);
+
+        String boundary = output.getBoundary();
+        String expected = "\r\n--" + boundary + "\r\n" +
+                          "Content-Type: application/octet-stream\r\n" +
+                          "Content-Range: bytes 0-9/36\r\n" +
+                          "\r\n" +
+                          "0123456789" +
+                          "\r\n--" + boundary + "\r\n" +
+                          "Content-Type: application/octet-stream\r\n" +
+                          "Content-Range: bytes 33-35/36\r\n" +
+                          "\r\n" +
+                          "xyz" +
+                          "\r\n--" + boundary + "--\r\n";
+
+        assertEquals("Failed to write the multipart body!", expected, new String(baos.toByteArray()));
+        assertEquals("Incorrect content length!", baos.size(), output.getContentLength());
+    }
+
+}
@@ -0,0 +1,103 @@
+package org.carlspring.strongbox.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the throughput of reading an artifact through a MultipleDigestInputStream which calculates
+ * the default (MD5 and SHA-1) digests, as the resolved download streams used to, against one which
+ * doesn't calculate any digests (MultipleDigestInputStream.NO_ALGORITHMS) and against the plain stream.
+ *
+ * The benchmark is only executed, if the strongbox.benchmark system property is set:
+ *
+ *     mvn test -Dtest=MultipleDigestInputStreamBenchmark -Dstrongbox.benchmark=true [-Dstrongbox.benchmark.size=1073741824]
+ *
+ * @author mtodorov
+ */
+public class MultipleDigestInputStreamBenchmark
+{
+
+    private static final long SIZE = Long.getLong("strongbox.benchmark.size", 256L * 1024L * 1024L);
+
+    private static final int ITERATIONS = 5;
+
+
+    @Before
+    public void setUp()
+    {
+        Assume.assumeTrue(Boolean.getBoolean("strongbox.benchmark"));
+    }
+
+    @Test
+    public void testReadThroughput()
+            throws Exception
+    {
+        // Warm up
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            read(new UploadBenchmark.GeneratedInputStream(SIZE / 16));
+            read(new MultipleDigestInputStream(new UploadBenchmark.GeneratedInputStream(SIZE / 16),
+                                               MultipleDigestInputStream.NO_ALGORITHMS));
+            read(new MultipleDigestInputStream(new UploadBenchmark.GeneratedInputStream(SIZE / 16)));
+        }
+
+        long plain = 0L;
+        long noDigests = 0L;
+        long defaultDigests = 0L;
+
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            plain += read(new UploadBenchmark.GeneratedInputStream(SIZE));
+            noDigests += read(new MultipleDigestInputStream(new UploadBenchmark.GeneratedInputStream(SIZE),
+                                                            MultipleDigestInputStream.NO_ALGORITHMS));
+            defaultDigests += read(new MultipleDigestInputStream(new UploadBenchmark.GeneratedInputStream(SIZE)));
+        }
+
+        report("Plain stream", plain);
+        report("No digests", noDigests);
+        report("MD5 and SHA-1 digests", defaultDigests);
+    }
+
+    /**
+     * Reads the whole stream in buffers of the size used for the downloads.
+     *
+     * @return The time it took (in nanoseconds).
+     */
+    private long read(InputStream is)
+            throws IOException
+    {
+        final long start = System.nanoTime();
+
+        byte[] bytes = new byte[FileChannelStreamingOutput.DEFAULT_BUFFER_SIZE];
+        long total = 0L;
+        int len;
+        while ((len = is.read(bytes)) != -1)
+        {
+            total += len;
+        }
+
+        final long nanos = System.nanoTime() - start;
+
+        is.close();
+
+        if (is instanceof MultipleDigestInputStream)
+        {
+            assertEquals("Incorrect number of bytes read!", total, ((MultipleDigestInputStream) is).getBytesRead());
+        }
+
+        return nanos;
+    }
+
+    private void report(String name, long nanos)
+    {
+        final double bytesPerSecond = SIZE * ITERATIONS / (nanos / 1000000000d);
+
+        System.out.println(String.format("%-32s %10.1f MB/s", name, bytesPerSecond / (1024 * 1024)));
+    }
+
+}
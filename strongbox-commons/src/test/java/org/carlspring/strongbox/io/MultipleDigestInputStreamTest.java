@@ -14,6 +14,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author mtodorov
@@ -69,6 +72,70 @@ public class MultipleDigestInputStreamTest
         System.out.println("SHA1: " + sha1);
     }
 
+    @Test
+    public void testReadWithoutDigests()
+            throws IOException,
+                   NoSuchAlgorithmException
+    {
+        String s = "This is a big fat super long text which has no meaning, but is good for the test.";
+
+        ByteArrayInputStream bais = new ByteArrayInputStream(s.getBytes());
+        MultipleDigestInputStream mdis = new MultipleDigestInputStream(bais, MultipleDigestInputStream.NO_ALGORITHMS);
+
+        assertFalse("Failed to create a non-digesting stream!", mdis.isDigesting());
+
+        mdis.addAlgorithm(EncryptionAlgorithmsEnum.MD5.getAlgorithm());
+
+        assertTrue("Failed to switch on digesting!", mdis.isDigesting());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        byte[] bytes = new byte[16];
+        int len;
+
+        while ((len = mdis.read(bytes)) != -1)
+        {
+            baos.write(bytes, 0, len);
+        }
+
+        assertEquals("Failed to read the stream!", s, new String(baos.toByteArray()));
+        assertEquals("Incorrect MD5 sum!",
+                     "693188a2fb009bf2a87afcbca95cfcd6",
+                     mdis.getMessageDigestAsHexadecimalString(EncryptionAlgorithmsEnum.MD5.getAlgorithm()));
+        assertNull("Failed to skip the SHA-1 digest!",
+                   mdis.getMessageDigest(EncryptionAlgorithmsEnum.SHA1.getAlgorithm()));
+    }
+
+    @Test
+    public void testBytesRead()
+            throws IOException, NoSuchAlgorithmException
+    {
+        byte[] bytes = "This is a test.\n".getBytes();
+
+        MultipleDigestInputStream mdis = new MultipleDigestInputStream(new ByteArrayInputStream(bytes));
+        mdis.setLimit(10);
+
+        byte[] buffer = new byte[4];
+        int len;
+        long total = 0L;
+        while ((len = mdis.read(buffer)) != -1)
+        {
+            total += len;
+
+            assertEquals("Incorrect number of bytes read!", total, mdis.getBytesRead());
+        }
+
+        assertEquals("Read past the limit!", 10L, total);
+
+        mdis = new MultipleDigestInputStream(new ByteArrayInputStream(bytes));
+        while (mdis.read(buffer) != -1)
+        {
+            // Read until the end of the stream
+        }
+
+        assertEquals("Counted the end of the stream!", bytes.length, mdis.getBytesRead());
+    }
+
     @Test
     public void testReloading()
             throws IOException, NoSuchAlgorithmException
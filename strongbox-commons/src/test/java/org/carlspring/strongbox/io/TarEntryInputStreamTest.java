@@ -0,0 +1,135 @@
+package org.carlspring.strongbox.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mtodorov
+ */
+public class TarEntryInputStreamTest
+{
+
+    private static final String LONG_PATH = "org/carlspring/strongbox/with/a/very/long/group/id/strongbox-with-a-long-name/" +
+                                            "1.0/strongbox-with-a-long-name-1.0-sources.jar";
+
+
+    @Test
+    public void testReadEntries()
+            throws IOException
+    {
+        byte[] jar = new byte[1500];
+        Arrays.fill(jar, (byte) 7);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writeEntry(baos, "./org/carlspring/", '5', new byte[0]);
+        writeEntry(baos, "./org/carlspring/foo-1.0.jar", '0', jar);
+        writeEntry(baos, "org/carlspring/foo-1.0.jar.sha1", '0', "1234\n".getBytes());
+        writeEntry(baos, "org/carlspring/link.jar", '2', new byte[0]);
+        writeEntry(baos, "././@LongLink", 'L', (LONG_PATH + "\0").getBytes(StandardCharsets.UTF_8));
+        writeEntry(baos, LONG_PATH.substring(0, 99), '0', "gnu".getBytes());
+        writeEntry(baos, "PaxHeaders/foo", 'x', paxRecord("path", LONG_PATH + ".md5"));
+        writeEntry(baos, LONG_PATH.substring(0, 99), '0', "pax".getBytes());
+        baos.write(new byte[1024]);
+
+        TarEntryInputStream tis = new TarEntryInputStream(new ByteArrayInputStream(baos.toByteArray()));
+
+        assertEquals("Incorrect entry!", "org/carlspring/foo-1.0.jar", tis.getNextEntry());
+        assertArrayEquals("Incorrect contents!", jar, read(tis));
+
+        // Skip the contents of the checksum
+        assertEquals("Incorrect entry!", "org/carlspring/foo-1.0.jar.sha1", tis.getNextEntry());
+
+        assertEquals("Incorrect GNU long name!", LONG_PATH, tis.getNextEntry());
+        assertEquals("Incorrect contents!", "gnu", new String(read(tis)));
+
+        assertEquals("Incorrect PAX path!", LONG_PATH + ".md5", tis.getNextEntry());
+        assertEquals("Incorrect contents!", "pax", new String(read(tis)));
+
+        assertNull("Failed to detect the end of the archive!", tis.getNextEntry());
+    }
+
+    @Test
+    public void testInvalidArchive()
+    {
+        byte[] bytes = new byte[1024];
+        Arrays.fill(bytes, (byte) 'x');
+
+        try
+        {
+            new TarEntryInputStream(new ByteArrayInputStream(bytes)).getNextEntry();
+
+            fail("Failed to reject an invalid tar archive.");
+        }
+        catch (IOException e)
+        {
+            // This is the expected correct behavior
+        }
+    }
+
+    private byte[] read(TarEntryInputStream tis)
+            throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        byte[] bytes = new byte[100];
+        int len;
+        while ((len = tis.read(bytes, 0, bytes.length)) != -1)
+        {
+            baos.write(bytes, 0, len);
+        }
+
+        return baos.toByteArray();
+    }
+
+    private byte[] paxRecord(String key, String value)
+    {
+        String record = " " + key + "=" + value + "\n";
+
+        int length = record.length();
+        length += String.valueOf(length + String.valueOf(length).length()).length();
+
+        return (length + record).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void writeEntry(ByteArrayOutputStream baos, String name, char type, byte[] contents)
+            throws IOException
+    {
+        byte[] header = new byte[512];
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, 100));
+
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 124, 12, contents.length);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\00000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header)
+        {
+            checksum += b & 0xff;
+        }
+        putOctal(header, 148, 7, checksum);
+
+        baos.write(header);
+        baos.write(contents);
+        baos.write(new byte[(512 - contents.length % 512) % 512]);
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value)
+    {
+        String octal = String.format("%0" + (length - 1) + "o", value);
+        System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+    }
+
+}
@@ -0,0 +1,206 @@
+package org.carlspring.strongbox.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the throughput of storing a large upload in 4 KB chunks with a flush after each chunk
+ * (as ArtifactManagementServiceImpl.store() used to) against writing it from pooled direct buffers.
+ *
+ * The benchmark is only executed, if the strongbox.benchmark system property is set:
+ *
+ *     mvn test -Dtest=UploadBenchmark -Dstrongbox.benchmark=true [-Dstrongbox.benchmark.size=1073741824]
+ *
+ * The number of writes is counted at the stream/channel level, each of which is a write() system call
+ * for a file; to count the actual system calls, run the benchmark under: strace -f -c -e trace=write
+ *
+ * @author mtodorov
+ */
+public class UploadBenchmark
+{
+
+    private static final File BASEDIR = new File("target/test-resources/upload-benchmark");
+
+    private static final long SIZE = Long.getLong("strongbox.benchmark.size", 1024L * 1024L * 1024L);
+
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        Assume.assumeTrue(Boolean.getBoolean("strongbox.benchmark"));
+
+        if (!BASEDIR.exists())
+        {
+            //noinspection ResultOfMethodCallIgnored
+            BASEDIR.mkdirs();
+        }
+    }
+
+    @Test
+    public void testUploadThroughput()
+            throws Exception
+    {
+        // Warm up
+        storeWithSmallChunks(new File(BASEDIR, "warm-up-small.jar"), SIZE / 16);
+        storeWithPooledBuffers(new File(BASEDIR, "warm-up-pooled.jar"), SIZE / 16, new ByteBufferPool());
+
+        report("4 KB chunks, flush per chunk", storeWithSmallChunks(new File(BASEDIR, "small.jar"), SIZE));
+
+        for (int bufferSize : new int[]{ 256 * 1024, 1024 * 1024 })
+        {
+            report((bufferSize / 1024) + " KB pooled direct buffers",
+                   storeWithPooledBuffers(new File(BASEDIR, "pooled-" + bufferSize + ".jar"),
+                                          SIZE,
+                                          new ByteBufferPool(bufferSize, 1)));
+        }
+    }
+
+    private Result storeWithSmallChunks(File file, long size)
+            throws Exception
+    {
+        final long start = System.nanoTime();
+
+        int writes = 0;
+        try (InputStream is = new MultipleDigestInputStream(new GeneratedInputStream(size));
+             OutputStream os = new FileOutputStream(file))
+        {
+            byte[] bytes = new byte[4096];
+            int len;
+            while ((len = is.read(bytes, 0, bytes.length)) != -1)
+            {
+                os.write(bytes, 0, len);
+                os.flush();
+
+                writes++;
+            }
+        }
+
+        final Result result = new Result(file.length(), System.nanoTime() - start, writes);
+
+        assertEquals("Incorrect file size!", size, file.length());
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+
+        return result;
+    }
+
+    private Result storeWithPooledBuffers(File file, long size, ByteBufferPool pool)
+            throws Exception
+    {
+        final long start = System.nanoTime();
+
+        ByteBufferPoolTest.CountingChannel channel;
+        try (InputStream is = new MultipleDigestInputStream(new GeneratedInputStream(size));
+             FileOutputStream os = new FileOutputStream(file))
+        {
+            channel = new ByteBufferPoolTest.CountingChannel(os.getChannel());
+
+            pool.transfer(is, channel);
+        }
+
+        final Result result = new Result(file.length(), System.nanoTime() - start, channel.getWrites());
+
+        assertEquals("Incorrect file size!", size, file.length());
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+
+        return result;
+    }
+
+    private void report(String name, Result result)
+    {
+        System.out.println(String.format("%-32s %10.1f MB/s %10d writes",
+                                         name,
+                                         result.getBytesPerSecond() / (1024 * 1024),
+                                         result.getWrites()));
+    }
+
+    private static class Result
+    {
+
+        private final long bytes;
+
+        private final long nanos;
+
+        private final long writes;
+
+
+        Result(long bytes, long nanos, long writes)
+        {
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.writes = writes;
+        }
+
+        double getBytesPerSecond()
+        {
+            return bytes / (nanos / 1000000000d);
+        }
+
+        long getWrites()
+        {
+            return writes;
+        }
+
+    }
+
+    /**
+     * Generates the contents of the upload, without keeping it all in memory.
+     */
+    static class GeneratedInputStream
+            extends InputStream
+    {
+
+        private static final byte[] BYTES = new byte[1024 * 1024];
+
+        static
+        {
+            new Random(0).nextBytes(BYTES);
+        }
+
+        private final long size;
+
+        private long position;
+
+
+        GeneratedInputStream(long size)
+        {
+            this.size = size;
+        }
+
+        @Override
+        public int read()
+        {
+            return position < size ? BYTES[(int) (position++ % BYTES.length)] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (position >= size)
+            {
+                return -1;
+            }
+
+            final int offset = (int) (position % BYTES.length);
+            final int length = (int) Math.min(Math.min(len, BYTES.length - offset), size - position);
+
+            System.arraycopy(BYTES, offset, b, off, length);
+            position += length;
+
+            return length;
+        }
+
+    }
+
+}
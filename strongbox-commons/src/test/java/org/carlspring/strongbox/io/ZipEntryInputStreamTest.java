@@ -0,0 +1,59 @@
+package org.carlspring.strongbox.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author mtodorov
+ */
+public class ZipEntryInputStreamTest
+{
+
+    @Test
+    public void testReadEntries()
+            throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(baos);
+
+        zos.putNextEntry(new ZipEntry("org/carlspring/"));
+        zos.closeEntry();
+        zos.putNextEntry(new ZipEntry("/org/carlspring/foo-1.0.jar"));
+        zos.write("jar".getBytes());
+        zos.closeEntry();
+        zos.putNextEntry(new ZipEntry("org/carlspring/foo-1.0.pom"));
+        zos.write("pom".getBytes());
+        zos.closeEntry();
+        zos.close();
+
+        ZipEntryInputStream zis = new ZipEntryInputStream(new ByteArrayInputStream(baos.toByteArray()));
+
+        assertEquals("Incorrect entry!", "org/carlspring/foo-1.0.jar", zis.getNextEntry());
+        assertEquals("Incorrect contents!", "jar", read(zis));
+        assertEquals("Incorrect entry!", "org/carlspring/foo-1.0.pom", zis.getNextEntry());
+        assertEquals("Incorrect contents!", "pom", read(zis));
+        assertNull("Failed to detect the end of the archive!", zis.getNextEntry());
+    }
+
+    private String read(ZipEntryInputStream zis)
+            throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        int b;
+        while ((b = zis.read()) != -1)
+        {
+            baos.write(b);
+        }
+
+        return baos.toString();
+    }
+
+}
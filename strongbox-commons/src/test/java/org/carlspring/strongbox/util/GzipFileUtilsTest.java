@@ -0,0 +1,144 @@
+package org.carlspring.strongbox.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mtodorov
+ */
+public class GzipFileUtilsTest
+{
+
+    private static final File BASEDIR = new File("target/test-resources/gzip");
+
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        if (!BASEDIR.exists())
+        {
+            //noinspection ResultOfMethodCallIgnored
+            BASEDIR.mkdirs();
+        }
+    }
+
+    @Test
+    public void testIsCompressible()
+    {
+        assertTrue("Failed to detect metadata!", GzipFileUtils.isCompressible("org/foo/bar/maven-metadata.xml"));
+        assertTrue("Failed to detect POM!", GzipFileUtils.isCompressible("org/foo/bar/1.0/bar-1.0.pom"));
+        assertTrue("Failed to detect checksum!", GzipFileUtils.isCompressible("org/foo/bar/1.0/bar-1.0.pom.sha1"));
+        assertFalse("Binary archives must not be compressed!",
+                    GzipFileUtils.isCompressible("org/foo/bar/1.0/bar-1.0.jar"));
+        assertFalse("Binary archives must not be compressed!",
+                    GzipFileUtils.isCompressible("org/foo/bar/1.0/bar-1.0.zip"));
+    }
+
+    @Test
+    public void testCompress()
+            throws IOException
+    {
+        final byte[] contents = getMetadata(50);
+        final File file = createFile("maven-metadata.xml", contents);
+
+        assertTrue("Failed to detect missing compressed file!", GzipFileUtils.isStale(file));
+
+        final File compressedFile = GzipFileUtils.compress(file);
+
+        assertNotNull("Failed to compress file!", compressedFile);
+        assertEquals("Incorrect compressed file!", GzipFileUtils.getCompressedFile(file), compressedFile);
+        assertTrue("Compressed file is not smaller than the file!", compressedFile.length() < file.length());
+        assertFalse("Compressed file is stale!", GzipFileUtils.isStale(file));
+        assertArrayEquals("Incorrect compressed contents!", contents, decompress(compressedFile));
+    }
+
+    @Test
+    public void testRegenerateStaleCompressedFile()
+            throws IOException
+    {
+        final File file = createFile("bar-1.0.pom", getMetadata(50));
+        GzipFileUtils.compress(file);
+
+        final byte[] contents = getMetadata(100);
+        createFile("bar-1.0.pom", contents);
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(file.lastModified() + 2000L);
+
+        assertTrue("Failed to detect stale compressed file!", GzipFileUtils.isStale(file));
+
+        final File compressedFile = GzipFileUtils.getUpToDateCompressedFile(file);
+
+        assertNotNull("Failed to regenerate compressed file!", compressedFile);
+        assertArrayEquals("Incorrect regenerated contents!", contents, decompress(compressedFile));
+    }
+
+    @Test
+    public void testDoNotCompressSmallFiles()
+            throws IOException
+    {
+        final File file = createFile("bar-1.0.jar.sha1", "afa6c8b3a2fae95785dc7d9685a57835d703ac88".getBytes());
+
+        assertNull("Compressed a file which is too small!", GzipFileUtils.compress(file));
+        assertFalse("Created a compressed file for a file which is too small!",
+                    GzipFileUtils.getCompressedFile(file).exists());
+    }
+
+    private File createFile(String name, byte[] contents)
+            throws IOException
+    {
+        final File file = new File(BASEDIR, name);
+
+        try (FileOutputStream fos = new FileOutputStream(file))
+        {
+            fos.write(contents);
+        }
+
+        return file;
+    }
+
+    private byte[] getMetadata(int versions)
+    {
+        StringBuilder sb = new StringBuilder("<metadata><versioning><versions>");
+        for (int i = 0; i < versions; i++)
+        {
+            sb.append("<version>1.").append(i).append("</version>");
+        }
+        sb.append("</versions></versioning></metadata>");
+
+        return sb.toString().getBytes();
+    }
+
+    private byte[] decompress(File file)
+            throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try (InputStream is = new GZIPInputStream(new FileInputStream(file)))
+        {
+            byte[] bytes = new byte[4096];
+            int len;
+            while ((len = is.read(bytes)) != -1)
+            {
+                baos.write(bytes, 0, len);
+            }
+        }
+
+        return baos.toByteArray();
+    }
+
+}
@@ -18,6 +18,7 @@ import javax.xml.bind.JAXBException;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 
@@ -400,6 +401,39 @@ public class RestClient extends ArtifactClient
         return response.getStatus();
     }
 
+    /**
+     * Deploys the files of a zip, or a tar archive, which is laid out like the repository.
+     *
+     * @param mediaType The type of the archive (application/zip, application/x-tar, or application/gzip).
+     */
+    public int deployArchive(InputStream is, String storageId, String repositoryId, String mediaType)
+            throws IOException
+    {
+        String url = getContextBaseUrl() + "/storages/deploy/" + storageId + "/" + repositoryId;
+
+        WebTarget resource = getClientInstance().target(url);
+        setupAuthentication(resource);
+
+        Response response = resource.request(MediaType.TEXT_PLAIN).post(Entity.entity(is, mediaType));
+
+        return response.getStatus();
+    }
+
+    /**
+     * Indexes all the artifacts which are waiting in the indexing queue.
+     */
+    public int drainIndexingQueue()
+    {
+        String url = getContextBaseUrl() + "/indexing/queue/drain";
+
+        WebTarget resource = getClientInstance().target(url);
+        setupAuthentication(resource);
+
+        Response response = resource.request(MediaType.TEXT_PLAIN).post(Entity.entity("Drain", MediaType.TEXT_PLAIN));
+
+        return response.getStatus();
+    }
+
     public int removeVersionFromMetadata(String storageId,
                                          String repositoryId,
                                          String artifactPath,
@@ -441,4 +475,23 @@ public class RestClient extends ArtifactClient
         resource.request(MediaType.TEXT_PLAIN).post(Entity.entity("Copy", MediaType.TEXT_PLAIN));
     }
 
+    public void move(String path,
+                     String srcStorageId,
+                     String srcRepositoryId,
+                     String destStorageId,
+                     String destRepositoryId)
+    {
+        @SuppressWarnings("ConstantConditions")
+        String url = getContextBaseUrl() + "/storages/move/" + path +
+                     "?srcStorageId=" + srcStorageId +
+                     "&srcRepositoryId=" + srcRepositoryId +
+                     "&destStorageId=" + destStorageId +
+                     "&destRepositoryId=" + destRepositoryId;
+
+        WebTarget resource = getClientInstance().target(url);
+        setupAuthentication(resource);
+
+        resource.request(MediaType.TEXT_PLAIN).post(Entity.entity("Move", MediaType.TEXT_PLAIN));
+    }
+
 }
@@ -1,23 +1,48 @@
 package org.carlspring.strongbox.io;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.maven.artifact.Artifact;
 import org.carlspring.maven.commons.util.ArtifactUtils;
+import org.carlspring.strongbox.resource.ResourceCloser;
 import org.carlspring.strongbox.storage.repository.Repository;
+import org.carlspring.strongbox.storage.repository.RepositoryDurabilityEnum;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * A file in a repository, which can be written to a temporary file under the .temp directory
+ * of the repository first. The temporary file is then atomically moved to the location of the file,
+ * so that the clients never see a partially written file.
+ *
+ * The durability of the repository defines what is forced to the disk along the way.
+ *
  * @author mtodorov
  */
 public class ArtifactFile extends File
 {
 
+    private static final Logger logger = LoggerFactory.getLogger(ArtifactFile.class);
+
+    private static final AtomicLong lastTemporaryTimestamp = new AtomicLong();
+
     private Repository repository;
 
     private Artifact artifact;
 
+    /**
+     * The path of the file, relative to the base directory of the repository.
+     */
+    private String relativePath;
+
     private long temporaryTimestamp;
 
     private boolean temporaryMode = false;
@@ -30,12 +55,22 @@ public class ArtifactFile extends File
 
     public ArtifactFile(Repository repository, Artifact artifact, boolean temporaryMode)
     {
-        super(repository.getBasedir(), ArtifactUtils.convertArtifactToPath(artifact));
+        this(repository, ArtifactUtils.convertArtifactToPath(artifact), temporaryMode);
 
-        this.repository = repository;
         this.artifact = artifact;
+    }
+
+    /**
+     * Creates a file, which is not an artifact (such as metadata, or a checksum), in the repository.
+     */
+    public ArtifactFile(Repository repository, String relativePath, boolean temporaryMode)
+    {
+        super(repository.getBasedir(), relativePath);
+
+        this.repository = repository;
+        this.relativePath = relativePath;
         this.temporaryMode = temporaryMode;
-        this.temporaryTimestamp = System.currentTimeMillis();
+        this.temporaryTimestamp = nextTemporaryTimestamp();
     }
 
     public ArtifactFile(File file)
@@ -43,11 +78,28 @@ public class ArtifactFile extends File
         super(file.getAbsolutePath());
     }
 
+    /**
+     * Returns the current time in milliseconds, unless it has already been used for another temporary file,
+     * so that concurrent uploads of the same file never write to the same temporary file.
+     */
+    private static long nextTemporaryTimestamp()
+    {
+        while (true)
+        {
+            final long last = lastTemporaryTimestamp.get();
+            final long next = Math.max(System.currentTimeMillis(), last + 1);
+            if (lastTemporaryTimestamp.compareAndSet(last, next))
+            {
+                return next;
+            }
+        }
+    }
+
     public ArtifactFile getTemporaryFile()
     {
         return new ArtifactFile(new File(repository.getBasedir() +
                                          "/.temp/" +
-                                         ArtifactUtils.convertArtifactToPath(artifact) +
+                                         relativePath +
                                          "." + temporaryTimestamp));
     }
 
@@ -71,6 +123,10 @@ public class ArtifactFile extends File
         }
     }
 
+    /**
+     * Replaces the file with the temporary file. The temporary file is on the same file system,
+     * so this is an atomic rename and the clients either see the previous file, or the new one.
+     */
     public void moveTempFileToOriginalDestination()
             throws IOException
     {
@@ -80,7 +136,61 @@ public class ArtifactFile extends File
             getParentFile().mkdirs();
         }
 
-        FileUtils.moveFile(getTemporaryFile(), this);
+        try
+        {
+            Files.move(getTemporaryFile().toPath(), toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            logger.warn("Failed to atomically move " + getTemporaryFile().getAbsolutePath() + " to " +
+                        getAbsolutePath() + ", the .temp directory is not on the same file system!");
+
+            Files.move(getTemporaryFile().toPath(), toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if (getDurability() == RepositoryDurabilityEnum.FULL)
+        {
+            forceDirectory(getParentFile());
+        }
+    }
+
+    /**
+     * Removes the temporary file, without moving it to the location of the file.
+     */
+    public void deleteTemporaryFile()
+            throws IOException
+    {
+        Files.deleteIfExists(getTemporaryFile().toPath());
+    }
+
+    /**
+     * Forces the directory entries (such as a file which has just been moved into it) to the disk.
+     */
+    public static void forceDirectory(File directory)
+            throws IOException
+    {
+        FileChannel channel = null;
+        try
+        {
+            channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+            channel.force(true);
+        }
+        catch (IOException e)
+        {
+            // Some platforms (such as Windows) don't allow directories to be opened
+            logger.debug("Failed to force directory " + directory.getAbsolutePath() + " to the disk.", e);
+        }
+        finally
+        {
+            ResourceCloser.close(channel, logger);
+        }
+    }
+
+    public RepositoryDurabilityEnum getDurability()
+    {
+        return repository != null ? RepositoryDurabilityEnum.fromDurability(repository.getDurability()) :
+               RepositoryDurabilityEnum.NONE;
     }
 
     public Repository getRepository()
@@ -103,6 +213,16 @@ public class ArtifactFile extends File
         this.artifact = artifact;
     }
 
+    public String getRelativePath()
+    {
+        return relativePath;
+    }
+
+    public void setRelativePath(String relativePath)
+    {
+        this.relativePath = relativePath;
+    }
+
     public long getTemporaryTimestamp()
     {
         return temporaryTimestamp;
@@ -1,10 +1,15 @@
 package org.carlspring.strongbox.io;
 
+import org.carlspring.strongbox.storage.repository.RepositoryDurabilityEnum;
+
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
 /**
+ * Writes an artifact file. In temporary mode, the file is only moved to its location, once the stream
+ * has been closed, having (depending on the durability of the repository) been forced to the disk.
+ *
  * @author mtodorov
  */
 public class ArtifactFileOutputStream
@@ -15,6 +20,8 @@ public class ArtifactFileOutputStream
 
     private boolean moveOnClose;
 
+    private boolean closed;
+
 
     public ArtifactFileOutputStream(ArtifactFile artifactFile)
             throws FileNotFoundException
@@ -35,7 +42,25 @@ public class ArtifactFileOutputStream
     public void close()
             throws IOException
     {
-        super.close();
+        if (closed)
+        {
+            return;
+        }
+
+        closed = true;
+
+        try
+        {
+            if (artifactFile.getDurability() != RepositoryDurabilityEnum.NONE)
+            {
+                // Only the contents need to be on the disk, the metadata is updated by the move
+                getChannel().force(false);
+            }
+        }
+        finally
+        {
+            super.close();
+        }
 
         if (artifactFile.isTemporaryMode() && moveOnClose)
         {
@@ -43,6 +68,28 @@ public class ArtifactFileOutputStream
         }
     }
 
+    /**
+     * Closes the stream and discards what has been written, if the file is being written in temporary mode.
+     * This is used, when the file couldn't be written completely, so that it never replaces the existing file.
+     */
+    public void abort()
+            throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+
+        closed = true;
+
+        super.close();
+
+        if (artifactFile.isTemporaryMode())
+        {
+            artifactFile.deleteTemporaryFile();
+        }
+    }
+
     public ArtifactFile getArtifactFile()
     {
         return artifactFile;
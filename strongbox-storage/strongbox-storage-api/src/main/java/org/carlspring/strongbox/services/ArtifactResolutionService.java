@@ -2,6 +2,7 @@ package org.carlspring.strongbox.services;
 
 import org.carlspring.strongbox.storage.resolvers.LocationResolver;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -19,6 +20,11 @@ public interface ArtifactResolutionService
                                String artifactPath)
             throws IOException, NoSuchAlgorithmException;
 
+    File getFile(String storageId,
+                 String repositoryId,
+                 String artifactPath)
+            throws IOException;
+
     OutputStream getOutputStream(String storageId,
                                  String repositoryId,
                                  String artifactPath)
@@ -15,6 +15,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.security.NoSuchAlgorithmException;
@@ -72,6 +73,27 @@ public class ArtifactResolutionServiceImpl
         return is;
     }
 
+    @Override
+    public File getFile(String storageId,
+                        String repositoryId,
+                        String artifactPath)
+            throws IOException
+    {
+        artifactOperationsValidator.validate(storageId, repositoryId, artifactPath);
+
+        final Repository repository = getStorage(storageId).getRepository(repositoryId);
+
+        LocationResolver resolver = getResolvers().get(repository.getImplementation());
+        File artifactFile = resolver.getFile(storageId, repositoryId, artifactPath);
+
+        if (artifactFile == null)
+        {
+            throw new ArtifactResolutionException("Artifact " + artifactPath + " not found.");
+        }
+
+        return artifactFile;
+    }
+
     @Override
     public OutputStream getOutputStream(String storageId,
                                         String repositoryId,
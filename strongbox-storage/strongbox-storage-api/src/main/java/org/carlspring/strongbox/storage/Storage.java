@@ -26,6 +26,27 @@ public class Storage
     @XmlAttribute
     private String basedir;
 
+    /**
+     * Whether the contents of the artifacts are stored only once, under the .blobs directory of the storage,
+     * with the artifact files of the repositories being hard links to them.
+     */
+    @XmlAttribute(name = "deduplication-enabled")
+    private boolean deduplicationEnabled = false;
+
+    /**
+     * The maximum number of uploads to the repositories of the storage (altogether) which are written at the same time
+     * (0: the server's default, -1: unlimited).
+     */
+    @XmlAttribute(name = "max-concurrent-uploads")
+    private int maxConcurrentUploads = 0;
+
+    /**
+     * The maximum number of uploads to the repositories of the storage (altogether) which wait for one of the others to complete, before further uploads
+     * are rejected (0: the server's default).
+     */
+    @XmlAttribute(name = "max-queued-uploads")
+    private int maxQueuedUploads = 0;
+
     @XmlElement(name = "repositories")
     @XmlJavaTypeAdapter(RepositoryMapAdapter.class)
     private Map<String, Repository> repositories = new LinkedHashMap<String, Repository>();
@@ -90,6 +111,36 @@ public class Storage
         this.basedir = basedir;
     }
 
+    public boolean isDeduplicationEnabled()
+    {
+        return deduplicationEnabled;
+    }
+
+    public void setDeduplicationEnabled(boolean deduplicationEnabled)
+    {
+        this.deduplicationEnabled = deduplicationEnabled;
+    }
+
+    public int getMaxConcurrentUploads()
+    {
+        return maxConcurrentUploads;
+    }
+
+    public void setMaxConcurrentUploads(int maxConcurrentUploads)
+    {
+        this.maxConcurrentUploads = maxConcurrentUploads;
+    }
+
+    public int getMaxQueuedUploads()
+    {
+        return maxQueuedUploads;
+    }
+
+    public void setMaxQueuedUploads(int maxQueuedUploads)
+    {
+        this.maxQueuedUploads = maxQueuedUploads;
+    }
+
     public Map<String, Repository> getRepositories()
     {
         return repositories;
@@ -0,0 +1,527 @@
+package org.carlspring.strongbox.storage.blob;
+
+import org.carlspring.strongbox.io.ArtifactFile;
+import org.carlspring.strongbox.resource.ResourceCloser;
+import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.repository.RepositoryDurabilityEnum;
+import org.carlspring.strongbox.util.ArtifactFileUtils;
+import org.carlspring.strongbox.util.MessageDigestUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the contents of the artifacts of a storage only once, as blobs named after their SHA-1 checksum
+ * under the .blobs directory of the storage. The artifact files in the repositories are hard links to the blobs,
+ * so copying an artifact to another repository of the storage only creates another link.
+ *
+ * An uploaded artifact, the SHA-1 checksum of which has been calculated while it was being received, is stored
+ * as a link to the existing blob straight away (see {@link #store(Storage, ArtifactFile, String)}): its temporary
+ * file is discarded, instead of being moved into place and read again. Any other file is only linked to a blob
+ * after their contents have been compared, so that files with colliding SHA-1 checksums are never mixed up.
+ *
+ * The number of references to a blob is the number of its links minus one, which is maintained by the file system.
+ * The blobs without references are removed, when the last artifact file referencing them is deleted,
+ * or replaced. For whole directories (and the trash), the blobs referenced by their files are looked up
+ * beforehand (see {@link #getReferencedBlobs(Storage, File)}) and the ones which are no longer referenced
+ * are removed afterwards. {@link #removeUnreferencedBlobs(Storage)} looks at all the blobs of the storage.
+ *
+ * Hard links can only be created within a file system, which supports them. Where they can't be created,
+ * the artifact files are kept as they are.
+ *
+ * @author mtodorov
+ */
+public class BlobStore
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobStore.class);
+
+    public static final String BLOBS_DIRECTORY = ".blobs";
+
+
+    public BlobStore()
+    {
+    }
+
+    public File getBlobsDirectory(Storage storage)
+    {
+        return new File(storage.getBasedir(), BLOBS_DIRECTORY);
+    }
+
+    /**
+     * Returns the blob with the specified SHA-1 checksum (which may not exist).
+     */
+    public File getBlob(Storage storage, String sha1)
+    {
+        final String checksum = sha1.toLowerCase();
+
+        return new File(getBlobsDirectory(storage),
+                        checksum.substring(0, 2) + "/" + checksum.substring(2, 4) + "/" + checksum);
+    }
+
+    /**
+     * Replaces the file, which has just been stored, with a link to the blob with the same contents.
+     * If there is no such blob yet, the file becomes the blob.
+     */
+    public void link(Storage storage, File file, String sha1)
+    {
+        if (!storage.isDeduplicationEnabled() || sha1 == null || sha1.length() < 4)
+        {
+            return;
+        }
+
+        final File blob = getBlob(storage, sha1);
+
+        try
+        {
+            if (!blob.exists())
+            {
+                createParents(blob);
+
+                try
+                {
+                    Files.createLink(blob.toPath(), file.toPath());
+
+                    return;
+                }
+                catch (FileAlreadyExistsException e)
+                {
+                    // The same contents have just been stored by someone else
+                }
+            }
+
+            if (Files.isSameFile(blob.toPath(), file.toPath()))
+            {
+                return;
+            }
+
+            if (Files.size(blob.toPath()) != Files.size(file.toPath()))
+            {
+                logger.warn("The size of blob " + blob.getAbsolutePath() + " doesn't match the size of " +
+                            file.getAbsolutePath() + "; keeping the file as it is.");
+
+                return;
+            }
+
+            // The checksum could collide, so the contents have to match as well
+            if (!FileUtils.contentEquals(blob, file))
+            {
+                logger.warn("The contents of blob " + blob.getAbsolutePath() + " don't match the contents of " +
+                            file.getAbsolutePath() + "; keeping the file as it is.");
+
+                return;
+            }
+
+            replaceWithLink(blob, file);
+        }
+        catch (IOException | UnsupportedOperationException e)
+        {
+            logger.warn("Failed to link " + file.getAbsolutePath() + " to blob " + blob.getAbsolutePath() + ": " +
+                        e.getMessage());
+        }
+    }
+
+    /**
+     * Stores the artifact, which has been written to its temporary file. If there already is a blob with
+     * the same SHA-1 checksum (and size), the artifact is replaced with a link to it and the temporary file
+     * is discarded. The checksum has been calculated from the bytes which were written to the temporary file,
+     * so the contents are not compared again. Otherwise, the temporary file is moved to the location
+     * of the artifact and becomes the blob.
+     */
+    public void store(Storage storage, ArtifactFile artifactFile, String sha1)
+            throws IOException
+    {
+        if (!storage.isDeduplicationEnabled() || sha1 == null || sha1.length() < 4)
+        {
+            artifactFile.moveTempFileToOriginalDestination();
+
+            return;
+        }
+
+        final File blob = getBlob(storage, sha1);
+        final File temporaryFile = artifactFile.getTemporaryFile();
+
+        try
+        {
+            if (blob.exists() && Files.size(blob.toPath()) == Files.size(temporaryFile.toPath()))
+            {
+                createParents(artifactFile);
+                replaceWithLink(blob, artifactFile);
+
+                artifactFile.deleteTemporaryFile();
+
+                if (artifactFile.getDurability() == RepositoryDurabilityEnum.FULL)
+                {
+                    ArtifactFile.forceDirectory(artifactFile.getParentFile());
+                }
+
+                return;
+            }
+        }
+        catch (IOException | UnsupportedOperationException e)
+        {
+            logger.warn("Failed to link " + artifactFile.getAbsolutePath() + " to blob " + blob.getAbsolutePath() +
+                        ": " + e.getMessage());
+        }
+
+        artifactFile.moveTempFileToOriginalDestination();
+
+        link(storage, artifactFile, sha1);
+    }
+
+    /**
+     * Copies the file within the storage by creating another link to its contents.
+     *
+     * @return False, if the link couldn't be created and the file has to be copied instead.
+     */
+    public boolean copy(Storage storage, File srcFile, File destFile)
+    {
+        if (!storage.isDeduplicationEnabled())
+        {
+            return false;
+        }
+
+        try
+        {
+            createParents(destFile);
+            replaceWithLink(srcFile, destFile);
+
+            return true;
+        }
+        catch (IOException | UnsupportedOperationException e)
+        {
+            logger.warn("Failed to link " + destFile.getAbsolutePath() + " to " + srcFile.getAbsolutePath() + ": " +
+                        e.getMessage());
+
+            return false;
+        }
+    }
+
+    /**
+     * Returns the blob which the file refers to, if the file is its last reference, so that the blob can be
+     * removed along with the file, or when the file is replaced. The file is only read in that case.
+     *
+     * @return The blob, or null, if it's still referenced by other files, or the file isn't a link to a blob.
+     */
+    public File getLastReferencedBlob(Storage storage, File file)
+            throws IOException
+    {
+        if (!storage.isDeduplicationEnabled() || !file.isFile() || getLinkCount(file) != 2)
+        {
+            return null;
+        }
+
+        final File blob = getBlob(storage, calculateChecksum(file));
+
+        return blob.exists() && Files.isSameFile(blob.toPath(), file.toPath()) ? blob : null;
+    }
+
+    /**
+     * Returns the blob which the file refers to, if the file is its last reference, looking it up via
+     * the recorded SHA-1 checksum of the file (or its SHA-1 checksum file), instead of reading the file.
+     *
+     * @param sha1  The recorded SHA-1 checksum of the file, or null, if there is none.
+     * @return The blob, or null, if it's still referenced by other files, or the file isn't a link to a blob,
+     *         or the blob can't be found without reading the file (it's then left
+     *         to {@link #removeUnreferencedBlobs(Storage)}).
+     */
+    public File getLastReferencedBlob(Storage storage, File file, String sha1)
+            throws IOException
+    {
+        if (!storage.isDeduplicationEnabled() || !file.isFile() || getLinkCount(file) != 2)
+        {
+            return null;
+        }
+
+        if (sha1 != null && sha1.matches("[0-9a-fA-F]{40}"))
+        {
+            final File blob = getBlob(storage, sha1);
+            if (blob.exists() && Files.isSameFile(blob.toPath(), file.toPath()))
+            {
+                return blob;
+            }
+        }
+
+        return getBlobFromChecksumFile(storage, file);
+    }
+
+    /**
+     * Removes the blob, if it's no longer referenced by any files.
+     */
+    public boolean removeIfUnreferenced(File blob)
+            throws IOException
+    {
+        if (blob == null || !blob.exists() || getLinkCount(blob) > 1)
+        {
+            return false;
+        }
+
+        logger.debug("Removing unreferenced blob " + blob.getAbsolutePath() + ".");
+
+        return Files.deleteIfExists(blob.toPath());
+    }
+
+    /**
+     * Returns the blobs which the files under the directory refer to, so that the ones which are no longer
+     * referenced can be removed (see {@link #removeIfUnreferenced(Collection)}), once the directory
+     * has been deleted, or its files have been replaced. Only the files under the directory are looked at.
+     * The blob of a file is looked up via its SHA-1 checksum file, if it has one, and by reading the file otherwise.
+     */
+    public Set<File> getReferencedBlobs(final Storage storage, File directory)
+            throws IOException
+    {
+        final Set<File> blobs = new LinkedHashSet<>();
+        if (!storage.isDeduplicationEnabled() || !directory.isDirectory())
+        {
+            return blobs;
+        }
+
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+                    throws IOException
+            {
+                // The checksum files are never linked to blobs
+                if (attributes.isRegularFile() &&
+                    !ArtifactFileUtils.isChecksum(file.getFileName().toString()) &&
+                    getLinkCount(file.toFile()) > 1)
+                {
+                    final File blob = getReferencedBlob(storage, file.toFile());
+                    if (blob != null)
+                    {
+                        blobs.add(blob);
+                    }
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return blobs;
+    }
+
+    /**
+     * Removes the blobs which are no longer referenced by any files.
+     *
+     * @return The number of removed blobs.
+     */
+    public int removeIfUnreferenced(Collection<File> blobs)
+            throws IOException
+    {
+        int removed = 0;
+        for (File blob : blobs)
+        {
+            if (removeIfUnreferenced(blob))
+            {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Removes all the blobs of the storage, which are no longer referenced by any files.
+     *
+     * @return The number of removed blobs.
+     */
+    public int removeUnreferencedBlobs(Storage storage)
+            throws IOException
+    {
+        final DeduplicationReport report = new DeduplicationReport(storage.getId());
+
+        walkBlobs(storage, report, true);
+
+        return report.getUnreferencedBlobs();
+    }
+
+    /**
+     * Returns how much space the deduplication saves in the storage.
+     */
+    public DeduplicationReport getReport(Storage storage)
+            throws IOException
+    {
+        final DeduplicationReport report = new DeduplicationReport(storage.getId());
+
+        walkBlobs(storage, report, false);
+
+        return report;
+    }
+
+    private void walkBlobs(Storage storage,
+                           final DeduplicationReport report,
+                           final boolean removeUnreferenced)
+            throws IOException
+    {
+        final File blobsDirectory = getBlobsDirectory(storage);
+        if (!blobsDirectory.isDirectory())
+        {
+            return;
+        }
+
+        Files.walkFileTree(blobsDirectory.toPath(), new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path blob, BasicFileAttributes attributes)
+                    throws IOException
+            {
+                if (!attributes.isRegularFile())
+                {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                final int references = getLinkCount(blob.toFile()) - 1;
+                if (references > 0)
+                {
+                    report.addBlob(attributes.size(), references);
+                }
+                else if (!removeUnreferenced || removeIfUnreferenced(blob.toFile()))
+                {
+                    report.addUnreferencedBlob(attributes.size());
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Returns the blob which the file is a link to, or null, if it isn't a link to a blob.
+     */
+    private File getReferencedBlob(Storage storage, File file)
+            throws IOException
+    {
+        // The checksum file saves reading the whole file, as long as it's correct
+        final File blobFromChecksumFile = getBlobFromChecksumFile(storage, file);
+        if (blobFromChecksumFile != null)
+        {
+            return blobFromChecksumFile;
+        }
+
+        final File blob = getBlob(storage, calculateChecksum(file));
+
+        return blob.exists() && Files.isSameFile(blob.toPath(), file.toPath()) ? blob : null;
+    }
+
+    /**
+     * Returns the blob which the file is a link to, according to its SHA-1 checksum file, or null,
+     * if it has no such checksum file, or the checksum file doesn't match the file.
+     */
+    private File getBlobFromChecksumFile(Storage storage, File file)
+            throws IOException
+    {
+        final File checksumFile = new File(file.getPath() + EncryptionAlgorithmsEnum.SHA1.getExtension());
+        if (!checksumFile.isFile())
+        {
+            return null;
+        }
+
+        final String line = MessageDigestUtils.readChecksumFile(checksumFile.getPath());
+
+        // The checksum file may also contain the name of the file after the checksum
+        final String checksum = line != null ? line.trim().split("\\s+")[0] : "";
+        if (!checksum.matches("[0-9a-fA-F]{40}"))
+        {
+            return null;
+        }
+
+        final File blob = getBlob(storage, checksum);
+
+        return blob.exists() && Files.isSameFile(blob.toPath(), file.toPath()) ? blob : null;
+    }
+
+    /**
+     * Atomically replaces the file (if it exists) with a link to the target.
+     */
+    private void replaceWithLink(File target, File file)
+            throws IOException
+    {
+        final Path link = new File(file.getParentFile(), "." + file.getName() + "." + System.nanoTime() + ".link").toPath();
+
+        Files.createLink(link, target.toPath());
+        try
+        {
+            Files.move(link, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            // Renaming a link to a file it's already linked to does nothing
+            Files.deleteIfExists(link);
+        }
+    }
+
+    private static void createParents(File file)
+    {
+        if (!file.getParentFile().exists())
+        {
+            //noinspection ResultOfMethodCallIgnored
+            file.getParentFile().mkdirs();
+        }
+    }
+
+    /**
+     * Returns the number of hard links to the file, or 1, if the file system doesn't support hard links.
+     */
+    public static int getLinkCount(File file)
+            throws IOException
+    {
+        try
+        {
+            return ((Number) Files.getAttribute(file.toPath(), "unix:nlink")).intValue();
+        }
+        catch (UnsupportedOperationException | IllegalArgumentException e)
+        {
+            return 1;
+        }
+    }
+
+    private static String calculateChecksum(File file)
+            throws IOException
+    {
+        InputStream is = null;
+        try
+        {
+            final MessageDigest digest = MessageDigest.getInstance(EncryptionAlgorithmsEnum.SHA1.getAlgorithm());
+
+            is = new FileInputStream(file);
+
+            final byte[] bytes = new byte[64 * 1024];
+            int len;
+            while ((len = is.read(bytes)) != -1)
+            {
+                digest.update(bytes, 0, len);
+            }
+
+            return MessageDigestUtils.convertToHexadecimalString(digest);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IOException(e.getMessage(), e);
+        }
+        finally
+        {
+            ResourceCloser.close(is, logger);
+        }
+    }
+
+}
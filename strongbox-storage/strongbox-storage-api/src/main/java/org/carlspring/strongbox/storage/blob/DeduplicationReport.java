@@ -0,0 +1,108 @@
+package org.carlspring.strongbox.storage.blob;
+
+/**
+ * @author mtodorov
+ */
+public class DeduplicationReport
+{
+
+    private String storageId;
+
+    /**
+     * The number of distinct contents stored.
+     */
+    private int blobs;
+
+    private long blobBytes;
+
+    /**
+     * The number of artifact files referring to the blobs.
+     */
+    private long references;
+
+    /**
+     * The number of bytes the artifact files would take without deduplication.
+     */
+    private long referencedBytes;
+
+    private int unreferencedBlobs;
+
+    private long unreferencedBytes;
+
+
+    public DeduplicationReport(String storageId)
+    {
+        this.storageId = storageId;
+    }
+
+    void addBlob(long size, int references)
+    {
+        this.blobs++;
+        this.blobBytes += size;
+        this.references += references;
+        this.referencedBytes += size * references;
+    }
+
+    void addUnreferencedBlob(long size)
+    {
+        this.unreferencedBlobs++;
+        this.unreferencedBytes += size;
+    }
+
+    public String getStorageId()
+    {
+        return storageId;
+    }
+
+    public int getBlobs()
+    {
+        return blobs;
+    }
+
+    public long getBlobBytes()
+    {
+        return blobBytes;
+    }
+
+    public long getReferences()
+    {
+        return references;
+    }
+
+    public long getReferencedBytes()
+    {
+        return referencedBytes;
+    }
+
+    public int getUnreferencedBlobs()
+    {
+        return unreferencedBlobs;
+    }
+
+    public long getUnreferencedBytes()
+    {
+        return unreferencedBytes;
+    }
+
+    /**
+     * Returns the number of bytes which the deduplication saves.
+     */
+    public long getSavedBytes()
+    {
+        return referencedBytes - blobBytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "storage=" + storageId + '\n' +
+               "blobs=" + blobs + '\n' +
+               "blobBytes=" + blobBytes + '\n' +
+               "references=" + references + '\n' +
+               "referencedBytes=" + referencedBytes + '\n' +
+               "savedBytes=" + getSavedBytes() + '\n' +
+               "unreferencedBlobs=" + unreferencedBlobs + '\n' +
+               "unreferencedBytes=" + unreferencedBytes + '\n';
+    }
+
+}
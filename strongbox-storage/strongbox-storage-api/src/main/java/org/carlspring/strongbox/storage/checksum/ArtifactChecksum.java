@@ -1,10 +1,16 @@
 package org.carlspring.strongbox.storage.checksum;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * The checksums of an artifact, which are waiting for the checksum files to be uploaded.
+ *
+ * The checksums can be read at any time; they are only changed by the {@link ChecksumCacheManager},
+ * atomically with the artifact's entry in the cache.
+ *
  * @author mtodorov
  */
 public class ArtifactChecksum
@@ -14,13 +20,18 @@ public class ArtifactChecksum
      * Key:   Algorithm
      * Value: Checksum
      */
-    private Map<String, String> checksums = new LinkedHashMap<String, String>();
+    private volatile Map<String, String> checksums = new ConcurrentHashMap<String, String>();
 
     /**
-     * The last time this checksum object was accessed in any way.
-     * Used to determine when to remove entries from the cache manager.
+     * The tick of the cache manager's timer wheel, at which this checksum expires,
+     * unless it has been accessed again in the meantime.
      */
-    private long lastAccessed;
+    private volatile long expiryTick;
+
+    /**
+     * Whether this checksum is in one of the slots of the timer wheel.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
 
     private AtomicInteger numberOfChecksums = new AtomicInteger(0);
 
@@ -29,43 +40,49 @@ public class ArtifactChecksum
 
     public ArtifactChecksum()
     {
-        updateLastAccessedTime();
     }
 
-    public synchronized void addChecksum(String algorithm, String checksum)
+    public void addChecksum(String algorithm, String checksum)
     {
         checksums.put(algorithm, checksum);
         incrementNumberOfChecksums();
-        updateLastAccessedTime();
-    }
-
-    private void updateLastAccessedTime()
-    {
-        lastAccessed = System.currentTimeMillis();
     }
 
-    public synchronized void removeChecksum(String algorithm)
+    public void removeChecksum(String algorithm)
     {
         checksums.remove(algorithm);
-        updateLastAccessedTime();
     }
 
     public String getChecksum(String algorithm)
     {
-        updateLastAccessedTime();
         return checksums.get(algorithm);
     }
 
-    public synchronized void incrementNumberOfChecksums()
+    public boolean isEmpty()
+    {
+        return checksums.isEmpty();
+    }
+
+    public void incrementNumberOfChecksums()
     {
         numberOfChecksums.incrementAndGet();
     }
 
-    public synchronized void incrementNumberOfValidatedChecksums()
+    public void incrementNumberOfValidatedChecksums()
     {
         numberOfValidatedChecksums.incrementAndGet();
     }
 
+    public int getNumberOfChecksums()
+    {
+        return numberOfChecksums.get();
+    }
+
+    public int getNumberOfValidatedChecksums()
+    {
+        return numberOfValidatedChecksums.get();
+    }
+
     public Map<String, String> getChecksums()
     {
         return checksums;
@@ -73,17 +90,25 @@ public class ArtifactChecksum
 
     public void setChecksums(Map<String, String> checksums)
     {
-        this.checksums = checksums;
+        this.checksums = new ConcurrentHashMap<String, String>(checksums);
     }
 
-    public long getLastAccessed()
+    public long getExpiryTick()
     {
-        return lastAccessed;
+        return expiryTick;
     }
 
-    public void setLastAccessed(long lastAccessed)
+    public void setExpiryTick(long expiryTick)
+    {
+        this.expiryTick = expiryTick;
+    }
+
+    /**
+     * @return True, if the checksum hadn't been scheduled for expiry yet.
+     */
+    boolean markScheduled()
     {
-        this.lastAccessed = lastAccessed;
+        return scheduled.compareAndSet(false, true);
     }
 
 }
@@ -0,0 +1,472 @@
+package org.carlspring.strongbox.storage.checksum;
+
+import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
+import org.carlspring.strongbox.util.ArtifactFileUtils;
+import org.carlspring.strongbox.util.MessageDigestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded cache of the checksums of the stored artifacts, which is used to serve
+ * the checksum headers and the ETags of downloads without reading the checksum files.
+ *
+ * Unlike the {@link ChecksumCacheManager}, which only holds the checksums of freshly uploaded
+ * artifacts until their checksum files arrive, this cache holds the checksums of the artifacts
+ * which are being served. The entries are keyed by storageId/repositoryId/path and are:
+ * - added at upload time, from the digests which were calculated while storing the artifact;
+ * - loaded lazily from the checksum files, for artifacts which aren't in the cache yet;
+ * - invalidated when an artifact, or one of its checksum files, is stored, deleted, or copied over,
+ *   and when the metadata is written.
+ *
+ * The entries also record the modification time and length of the artifact and are reloaded,
+ * if the artifact has changed in the meantime (for example, in a member of a group repository,
+ * or when the metadata is rebuilt).
+ *
+ * When the cache is full, the oldest entries are evicted first.
+ *
+ * If there is a {@link ChecksumStore}, the checksums are written through to it and the artifacts which are
+ * not cached are looked up in it, before reading their checksum files.
+ *
+ * @author mtodorov
+ */
+public class ChecksumCache
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(ChecksumCache.class);
+
+    /**
+     * The maximum number of artifacts to keep the checksums of.
+     */
+    private int maxSize = 10000;
+
+    /**
+     * Key:     storageId/repositoryId/path
+     * Value:   The checksums of the artifact.
+     *
+     * The keys are sorted, so that the entries below a directory can be invalidated without scanning all of them.
+     */
+    private ConcurrentNavigableMap<String, CachedChecksums> cachedChecksums = new ConcurrentSkipListMap<>();
+
+    /**
+     * The number of entries (the size of a ConcurrentSkipListMap isn't a constant-time operation).
+     */
+    private AtomicInteger size = new AtomicInteger();
+
+    /**
+     * The keys, in the order in which they were added; used for eviction.
+     */
+    private Queue<String> keys = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of keys in the queue (nor is the size of a ConcurrentLinkedQueue).
+     */
+    private AtomicInteger keyCount = new AtomicInteger();
+
+    private ChecksumStore checksumStore;
+
+    private AtomicLong hits = new AtomicLong();
+
+    private AtomicLong misses = new AtomicLong();
+
+
+    public ChecksumCache()
+    {
+    }
+
+    /**
+     * Returns the checksums of the artifact (Key: algorithm, Value: checksum), loading them from
+     * the checksum files next to the artifact file, if they're not cached yet. If there are no
+     * checksum files, an empty map is returned (and cached).
+     */
+    public Map<String, String> getChecksums(String storageId,
+                                            String repositoryId,
+                                            String path,
+                                            File artifactFile)
+            throws IOException
+    {
+        final String key = getKey(storageId, repositoryId, path);
+
+        CachedChecksums checksums = cachedChecksums.get(key);
+        if (checksums != null && checksums.isValidFor(artifactFile))
+        {
+            hits.incrementAndGet();
+
+            return checksums.getChecksums();
+        }
+
+        misses.incrementAndGet();
+
+        final long lastModified = artifactFile.lastModified();
+        final long length = artifactFile.length();
+
+        checksums = new CachedChecksums(loadChecksums(storageId, repositoryId, path, artifactFile, length, lastModified),
+                                        lastModified,
+                                        length);
+        put(key, checksums);
+
+        return checksums.getChecksums();
+    }
+
+    private Map<String, String> loadChecksums(String storageId,
+                                              String repositoryId,
+                                              String path,
+                                              File artifactFile,
+                                              long length,
+                                              long lastModified)
+            throws IOException
+    {
+        if (checksumStore == null)
+        {
+            return readChecksumFiles(artifactFile);
+        }
+
+        final ChecksumRecord record = checksumStore.get(storageId, repositoryId, path);
+        if (record != null && record.isValidFor(length, lastModified))
+        {
+            return record.getChecksums();
+        }
+
+        final Map<String, String> checksums = readChecksumFiles(artifactFile);
+        if (!checksums.isEmpty())
+        {
+            checksumStore.put(storageId, repositoryId, path, checksums, artifactFile);
+        }
+
+        return checksums;
+    }
+
+    /**
+     * Returns the cached checksum of the artifact for the specified algorithm (loading it, if necessary),
+     * or null, if there is no such checksum.
+     */
+    public String getChecksum(String storageId,
+                              String repositoryId,
+                              String path,
+                              File artifactFile,
+                              String algorithm)
+            throws IOException
+    {
+        return getChecksums(storageId, repositoryId, path, artifactFile).get(algorithm);
+    }
+
+    /**
+     * Adds the checksums which were calculated while storing the artifact file and records them in the store.
+     */
+    public void addChecksums(String storageId,
+                             String repositoryId,
+                             String path,
+                             Map<String, String> checksums,
+                             File artifactFile)
+    {
+        logger.debug("Caching the checksums of " + storageId + ":" + repositoryId + ":" + path + ".");
+
+        // The checksums are only valid for the file as it was stored
+        put(getKey(storageId, repositoryId, path), new CachedChecksums(checksums,
+                                                                         artifactFile.lastModified(),
+                                                                         artifactFile.length()));
+
+        if (checksumStore != null)
+        {
+            checksumStore.put(storageId, repositoryId, path, checksums, artifactFile);
+        }
+    }
+
+    /**
+     * Records the checksums of the artifact, which has been copied (or moved) from another repository,
+     * for its new file.
+     */
+    public void copyChecksums(String srcStorageId,
+                              String srcRepositoryId,
+                              String destStorageId,
+                              String destRepositoryId,
+                              String path,
+                              File destArtifactFile)
+    {
+        if (checksumStore != null)
+        {
+            checksumStore.copy(srcStorageId, srcRepositoryId, destStorageId, destRepositoryId, path, destArtifactFile);
+        }
+    }
+
+    /**
+     * Replaces the checksum of a cached artifact for the specified algorithm, when its checksum file is stored.
+     * If the artifact isn't cached, nothing is done, as the checksum file will be read, when it's needed.
+     */
+    public void updateChecksum(String storageId,
+                               String repositoryId,
+                               String path,
+                               String algorithm,
+                               String checksum)
+    {
+        if (checksumStore != null)
+        {
+            checksumStore.updateChecksum(storageId, repositoryId, path, algorithm, checksum);
+        }
+
+        final String key = getKey(storageId, repositoryId, path);
+
+        CachedChecksums checksums = cachedChecksums.get(key);
+        if (checksums != null)
+        {
+            Map<String, String> updatedChecksums = new LinkedHashMap<>(checksums.getChecksums());
+            updatedChecksums.put(algorithm, checksum);
+
+            // If the entry was removed, or replaced in the meantime, leave it to the next lookup
+            cachedChecksums.replace(key, checksums, new CachedChecksums(updatedChecksums,
+                                                                        checksums.getLastModified(),
+                                                                        checksums.getLength()));
+        }
+    }
+
+    /**
+     * Removes the checksums of the path and, if the path is a directory, all the paths below it
+     * (the records of the paths below it are only removed from the store by {@link #invalidateDirectory}).
+     */
+    public void invalidate(String storageId,
+                           String repositoryId,
+                           String path)
+    {
+        if (checksumStore != null)
+        {
+            checksumStore.remove(storageId, repositoryId, path);
+        }
+
+        final String key = getKey(storageId, repositoryId, path);
+
+        if (remove(key))
+        {
+            logger.debug("Invalidated the cached checksums of " + key + ".");
+        }
+
+        // The keys below the directory are the ones between "prefix/" and "prefix0" ('0' follows '/')
+        final String prefix = key.endsWith("/") ? key.substring(0, key.length() - 1) : key;
+        for (String k : cachedChecksums.subMap(prefix + "/", prefix + "0").keySet())
+        {
+            remove(k);
+        }
+    }
+
+    /**
+     * Removes the records of the files from the store, without invalidating the cached checksums (which are
+     * invalidated for the directory they have been written to at once). The record of the artifact
+     * of a checksum file is removed along with it.
+     */
+    public void removeRecords(String storageId,
+                              String repositoryId,
+                              Collection<String> paths)
+    {
+        if (checksumStore == null)
+        {
+            return;
+        }
+
+        for (String path : paths)
+        {
+            checksumStore.remove(storageId, repositoryId, path);
+
+            if (ArtifactFileUtils.isChecksum(path))
+            {
+                checksumStore.remove(storageId, repositoryId, path.substring(0, path.lastIndexOf('.')));
+            }
+        }
+    }
+
+    /**
+     * Removes the checksums of all the paths below the directory, including the ones in the store.
+     */
+    public void invalidateDirectory(String storageId,
+                                    String repositoryId,
+                                    String path)
+    {
+        invalidate(storageId, repositoryId, path);
+
+        if (checksumStore != null)
+        {
+            checksumStore.removeDirectory(storageId, repositoryId, path);
+        }
+    }
+
+    public void clear()
+    {
+        for (String key : cachedChecksums.keySet())
+        {
+            remove(key);
+        }
+
+        keys.clear();
+        keyCount.set(0);
+    }
+
+    private void put(String key, CachedChecksums checksums)
+    {
+        if (cachedChecksums.put(key, checksums) == null)
+        {
+            size.incrementAndGet();
+
+            keys.add(key);
+            keyCount.incrementAndGet();
+        }
+
+        // Evict the oldest entries. A key may have been removed and added again in the meantime,
+        // in which case the entry will be evicted somewhat earlier than its turn; that's acceptable.
+        while (size.get() > maxSize)
+        {
+            final String eldestKey = keys.poll();
+            if (eldestKey == null)
+            {
+                break;
+            }
+
+            keyCount.decrementAndGet();
+
+            remove(eldestKey);
+        }
+
+        if (keyCount.get() > maxSize * 2)
+        {
+            // Drop the keys of invalidated entries, so that the queue doesn't grow forever.
+            // This walks the whole queue, but only once every maxSize invalidations or so.
+            synchronized (keys)
+            {
+                if (keyCount.get() > maxSize * 2)
+                {
+                    keys.retainAll(cachedChecksums.keySet());
+                    keyCount.set(keys.size());
+                }
+            }
+        }
+    }
+
+    private boolean remove(String key)
+    {
+        if (cachedChecksums.remove(key) != null)
+        {
+            size.decrementAndGet();
+
+            return true;
+        }
+
+        return false;
+    }
+
+    static Map<String, String> readChecksumFiles(File artifactFile)
+            throws IOException
+    {
+        Map<String, String> checksums = new LinkedHashMap<>();
+        for (EncryptionAlgorithmsEnum algorithm : EncryptionAlgorithmsEnum.values())
+        {
+            final File checksumFile = new File(artifactFile.getPath() + algorithm.getExtension());
+            if (checksumFile.isFile())
+            {
+                final String checksum = MessageDigestUtils.readChecksumFile(checksumFile.getPath());
+                if (checksum != null && !checksum.trim().isEmpty())
+                {
+                    // The checksum file may also contain the name of the file after the checksum
+                    checksums.put(algorithm.getAlgorithm(), checksum.trim().split("\\s+")[0]);
+                }
+            }
+        }
+
+        return checksums;
+    }
+
+    private String getKey(String storageId, String repositoryId, String path)
+    {
+        return storageId + "/" + repositoryId + "/" + path;
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    public ChecksumStore getChecksumStore()
+    {
+        return checksumStore;
+    }
+
+    public void setChecksumStore(ChecksumStore checksumStore)
+    {
+        this.checksumStore = checksumStore;
+    }
+
+    public long getSize()
+    {
+        return size.get();
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    private static class CachedChecksums
+    {
+
+        private final Map<String, String> checksums;
+
+        /**
+         * The modification time of the artifact at the time the checksums were read.
+         */
+        private final long lastModified;
+
+        /**
+         * The length of the artifact at the time the checksums were read.
+         */
+        private final long length;
+
+
+        CachedChecksums(Map<String, String> checksums, long lastModified, long length)
+        {
+            this.checksums = Collections.unmodifiableMap(new LinkedHashMap<>(checksums));
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        boolean isValidFor(File artifactFile)
+        {
+            return lastModified == artifactFile.lastModified() && length == artifactFile.length();
+        }
+
+        Map<String, String> getChecksums()
+        {
+            return checksums;
+        }
+
+        long getLastModified()
+        {
+            return lastModified;
+        }
+
+        long getLength()
+        {
+            return length;
+        }
+
+    }
+
+}
@@ -1,9 +1,17 @@
 package org.carlspring.strongbox.storage.checksum;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +33,16 @@ import org.slf4j.LoggerFactory;
  *   this, then remove the checksum from the cache. (If this checksums set is empty,
  *   remove the respective Checksum from the cachedChecksums).
  *
+ * The checksums of an artifact are added and removed atomically with the artifact's entry, so that
+ * concurrent deployments never lose checksums, nor leave empty entries behind. Reading doesn't take any locks.
+ *
+ * The checksums expire via a timer wheel with a slot for each cachedChecksumExpiredCheckInterval of the
+ * cachedChecksumLifetime: every interval, only the checksums in the current slot are looked at, and those which
+ * have been accessed since they were scheduled are moved to the slot of their new expiry time, instead of
+ * scanning the whole cache. The expiry is accurate to within one interval. Once the cache has grown to maxSize
+ * artifacts, the checksums closest to expiring are evicted early. Both the expired and the evicted checksums
+ * are reported to the {@link ChecksumExpirationListener}-s.
+ *
  * @author mtodorov
  */
 public class ChecksumCacheManager
@@ -36,7 +54,7 @@ public class ChecksumCacheManager
      * Key:     Artifact path
      * Value:   Artifact checksum.
      */
-    private Map<String, ArtifactChecksum> cachedChecksums = new LinkedHashMap<String, ArtifactChecksum>();
+    private ConcurrentMap<String, ArtifactChecksum> cachedChecksums = new ConcurrentHashMap<String, ArtifactChecksum>();
 
     /**
      * Specifies how long to keep the cached checksums.
@@ -51,6 +69,21 @@ public class ChecksumCacheManager
      */
     private long cachedChecksumExpiredCheckInterval = 60000L;
 
+    /**
+     * The maximum number of artifacts to keep the checksums of.
+     */
+    private int maxSize = 10000;
+
+    private List<ChecksumExpirationListener> listeners = new CopyOnWriteArrayList<ChecksumExpirationListener>();
+
+    private volatile TimerWheel timerWheel;
+
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    private volatile Thread monitor;
+
 
     public ChecksumCacheManager()
     {
@@ -69,12 +102,15 @@ public class ChecksumCacheManager
 
     public String getArtifactChecksum(String artifactBasePath, String algorithm)
     {
-        if (!cachedChecksums.containsKey(artifactBasePath))
+        final ArtifactChecksum artifactChecksum = cachedChecksums.get(artifactBasePath);
+        if (artifactChecksum == null)
         {
             return null;
         }
 
-        final ArtifactChecksum artifactChecksum = cachedChecksums.get(artifactBasePath);
+        // Keep the checksums, while they are being used
+        artifactChecksum.setExpiryTick(getTimerWheel().getExpiryTick());
+
         final String checksum = artifactChecksum.getChecksum(algorithm);
         if (checksum != null)
         {
@@ -86,64 +122,238 @@ public class ChecksumCacheManager
 
     public boolean validateChecksum(String artifactPath, String algorithm, String checksum)
     {
-        return getArtifactChecksum(artifactPath, algorithm).equals(checksum);
+        return checksum != null && checksum.equals(getArtifactChecksum(artifactPath, algorithm));
     }
 
-    public synchronized void addArtifactChecksum(String artifactBasePath,
-                                                 String algorithm,
-                                                 String checksum)
+    public void addArtifactChecksum(final String artifactBasePath,
+                                    final String algorithm,
+                                    final String checksum)
     {
+        if (checksum == null)
+        {
+            return;
+        }
+
         logger.debug("Adding checksum '" + checksum + "' [" + algorithm + "]"  + " for '" + artifactBasePath + "' in cache.");
 
-        if (cachedChecksums.containsKey(artifactBasePath))
+        final TimerWheel wheel = getTimerWheel();
+
+        final ArtifactChecksum artifactChecksum = cachedChecksums.compute(artifactBasePath,
+                                                                          new BiFunction<String, ArtifactChecksum, ArtifactChecksum>()
         {
-            final ArtifactChecksum artifactChecksum = cachedChecksums.get(artifactBasePath);
-            artifactChecksum.addChecksum(algorithm, checksum);
-        }
-        else
+            @Override
+            public ArtifactChecksum apply(String path,
+                                          ArtifactChecksum artifactChecksum)
+            {
+                if (artifactChecksum == null)
+                {
+                    artifactChecksum = new ArtifactChecksum();
+                }
+
+                artifactChecksum.addChecksum(algorithm, checksum);
+                artifactChecksum.setExpiryTick(wheel.getExpiryTick());
+
+                return artifactChecksum;
+            }
+        });
+
+        if (artifactChecksum.markScheduled())
         {
-            ArtifactChecksum artifactChecksum = new ArtifactChecksum();
-            artifactChecksum.addChecksum(algorithm, checksum);
+            wheel.schedule(artifactBasePath, artifactChecksum);
 
-            cachedChecksums.put(artifactBasePath, artifactChecksum);
+            if (cachedChecksums.size() > maxSize)
+            {
+                evict(wheel);
+            }
         }
     }
 
-    public synchronized void removeArtifactChecksum(String artifactBasePath, String algorithm)
+    /**
+     * Removes the checksum, once it has been claimed. The artifact is removed, once all of its checksums have been.
+     */
+    public void removeArtifactChecksum(String artifactBasePath, final String algorithm)
     {
         logger.debug("Removing " + algorithm + " checksum for artifact '" + artifactBasePath + "' from cache.");
-        cachedChecksums.get(artifactBasePath).removeChecksum(algorithm);
+
+        cachedChecksums.computeIfPresent(artifactBasePath, new BiFunction<String, ArtifactChecksum, ArtifactChecksum>()
+        {
+            @Override
+            public ArtifactChecksum apply(String path,
+                                          ArtifactChecksum artifactChecksum)
+            {
+                artifactChecksum.removeChecksum(algorithm);
+                artifactChecksum.incrementNumberOfValidatedChecksums();
+
+                return artifactChecksum.isEmpty() ? null : artifactChecksum;
+            }
+        });
     }
 
-    public synchronized void removeArtifactChecksum(String artifactBasePath)
+    public void removeArtifactChecksum(String artifactBasePath)
     {
         logger.debug("Removing artifact '" + artifactBasePath + "' from cache.");
         cachedChecksums.remove(artifactBasePath);
     }
 
-    public synchronized void removeExpiredChecksums()
+    /**
+     * Advances the timer wheel by one tick and removes the checksums which have expired.
+     *
+     * @return The number of expired artifacts.
+     */
+    public int removeExpiredChecksums()
+    {
+        final TimerWheel wheel = getTimerWheel();
+
+        synchronized (wheel)
+        {
+            final long tick = wheel.advance();
+
+            int expired = 0;
+            for (ScheduledChecksum scheduledChecksum : wheel.drain(tick))
+            {
+                if (removeIfExpired(scheduledChecksum, tick))
+                {
+                    expiredCount.incrementAndGet();
+                    expired++;
+
+                    notifyExpired(scheduledChecksum);
+                }
+                else if (scheduledChecksum.artifactChecksum.getExpiryTick() > tick)
+                {
+                    // It has been accessed since it was scheduled
+                    wheel.reschedule(scheduledChecksum);
+                }
+
+                // Otherwise, it has already been claimed, or replaced
+            }
+
+            return expired;
+        }
+    }
+
+    /**
+     * Evicts the checksums closest to expiring, until the cache is back within its maximum size.
+     */
+    private void evict(TimerWheel wheel)
     {
-        for (String checksum : getExpiredChecksums())
+        synchronized (wheel)
         {
-            removeArtifactChecksum(checksum);
+            for (int i = 1; i <= wheel.getSlots() && cachedChecksums.size() > maxSize; i++)
+            {
+                final long tick = wheel.getCurrentTick() + i;
+                final Queue<ScheduledChecksum> slot = wheel.getSlot(tick);
+
+                ScheduledChecksum scheduledChecksum;
+                while (cachedChecksums.size() > maxSize && (scheduledChecksum = slot.poll()) != null)
+                {
+                    if (removeIfExpired(scheduledChecksum, tick))
+                    {
+                        evictedCount.incrementAndGet();
+
+                        notifyExpired(scheduledChecksum);
+                    }
+                    else if (scheduledChecksum.artifactChecksum.getExpiryTick() > tick)
+                    {
+                        // It has been accessed since it was scheduled, so it's not among the closest to expiring
+                        wheel.reschedule(scheduledChecksum);
+                    }
+                }
+            }
         }
     }
 
-    private Set<String> getExpiredChecksums()
+    /**
+     * Removes the scheduled checksums, unless they have been accessed since they were scheduled for the tick,
+     * or have already been claimed, or replaced. The expiry tick is checked atomically with the removal,
+     * so that the checksums which are being added concurrently are never lost.
+     *
+     * @return True, if the checksums were removed.
+     */
+    private boolean removeIfExpired(final ScheduledChecksum scheduledChecksum, final long tick)
     {
-        Set<String> expiredChecksums = new LinkedHashSet<String>();
+        final AtomicBoolean removed = new AtomicBoolean();
 
-        for (String artifactBasePath : cachedChecksums.keySet())
+        cachedChecksums.computeIfPresent(scheduledChecksum.artifactBasePath,
+                                         new BiFunction<String, ArtifactChecksum, ArtifactChecksum>()
         {
-            ArtifactChecksum checksum = cachedChecksums.get(artifactBasePath);
+            @Override
+            public ArtifactChecksum apply(String path,
+                                          ArtifactChecksum artifactChecksum)
+            {
+                if (artifactChecksum != scheduledChecksum.artifactChecksum || artifactChecksum.getExpiryTick() > tick)
+                {
+                    return artifactChecksum;
+                }
 
-            if (System.currentTimeMillis() - checksum.getLastAccessed() > cachedChecksumLifetime)
+                removed.set(true);
+
+                return null;
+            }
+        });
+
+        return removed.get();
+    }
+
+    private void notifyExpired(ScheduledChecksum scheduledChecksum)
+    {
+        final Map<String, String> unclaimedChecksums =
+                new LinkedHashMap<String, String>(scheduledChecksum.artifactChecksum.getChecksums());
+
+        logger.debug("The checksums " + unclaimedChecksums.keySet() + " of '" + scheduledChecksum.artifactBasePath +
+                     "' were not claimed.");
+
+        for (ChecksumExpirationListener listener : listeners)
+        {
+            try
+            {
+                listener.checksumsExpired(scheduledChecksum.artifactBasePath, unclaimedChecksums);
+            }
+            catch (RuntimeException e)
+            {
+                logger.error("Failed to notify " + listener + " of expired checksums!", e);
+            }
+        }
+    }
+
+    private TimerWheel getTimerWheel()
+    {
+        TimerWheel wheel = timerWheel;
+        if (wheel == null)
+        {
+            synchronized (this)
             {
-                expiredChecksums.add(artifactBasePath);
+                wheel = timerWheel;
+                if (wheel == null)
+                {
+                    wheel = new TimerWheel((int) Math.max(1L, (cachedChecksumLifetime +
+                                                               cachedChecksumExpiredCheckInterval - 1) /
+                                                              cachedChecksumExpiredCheckInterval));
+                    timerWheel = wheel;
+                }
             }
         }
 
-        return expiredChecksums;
+        return wheel;
+    }
+
+    public void addListener(ChecksumExpirationListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ChecksumExpirationListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    public List<ChecksumExpirationListener> getListeners()
+    {
+        return listeners;
+    }
+
+    public void setListeners(List<ChecksumExpirationListener> listeners)
+    {
+        this.listeners = new CopyOnWriteArrayList<ChecksumExpirationListener>(listeners);
     }
 
     public long getCachedChecksumLifetime()
@@ -151,6 +361,9 @@ public class ChecksumCacheManager
         return cachedChecksumLifetime;
     }
 
+    /**
+     * Has to be set before the cache is used.
+     */
     public void setCachedChecksumLifetime(long cachedChecksumLifetime)
     {
         this.cachedChecksumLifetime = cachedChecksumLifetime;
@@ -161,19 +374,61 @@ public class ChecksumCacheManager
         return cachedChecksumExpiredCheckInterval;
     }
 
+    /**
+     * Has to be set before the cache is used.
+     */
     public void setCachedChecksumExpiredCheckInterval(long cachedChecksumExpiredCheckInterval)
     {
         this.cachedChecksumExpiredCheckInterval = cachedChecksumExpiredCheckInterval;
     }
 
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
     public long getSize()
     {
         return cachedChecksums.size();
     }
 
-    public void startMonitor()
+    /**
+     * Returns the number of artifacts whose checksums were not claimed within their lifetime.
+     */
+    public long getExpiredCount()
     {
-        new CachedChecksumExpirer();
+        return expiredCount.get();
+    }
+
+    /**
+     * Returns the number of artifacts whose checksums were evicted, because the cache was full.
+     */
+    public long getEvictedCount()
+    {
+        return evictedCount.get();
+    }
+
+    public synchronized void startMonitor()
+    {
+        if (monitor == null)
+        {
+            monitor = new CachedChecksumExpirer();
+            monitor.start();
+        }
+    }
+
+    public synchronized void stopMonitor()
+    {
+        if (monitor != null)
+        {
+            monitor.interrupt();
+            monitor = null;
+        }
     }
 
     private class CachedChecksumExpirer
@@ -182,7 +437,8 @@ public class ChecksumCacheManager
 
         private CachedChecksumExpirer()
         {
-            start();
+            super("strongbox-checksum-expirer");
+            setDaemon(true);
         }
 
         @Override
@@ -190,8 +446,7 @@ public class ChecksumCacheManager
         {
             try
             {
-                //noinspection InfiniteLoopStatement
-                while (true)
+                while (!isInterrupted())
                 {
                     Thread.sleep(getCachedChecksumExpiredCheckInterval());
                     removeExpiredChecksums();
@@ -199,9 +454,105 @@ public class ChecksumCacheManager
             }
             catch (InterruptedException e)
             {
-                logger.error(e.getMessage(), e);
+                logger.debug("Stopped expiring the cached checksums.");
+            }
+        }
+    }
+
+    private static class ScheduledChecksum
+    {
+
+        private final String artifactBasePath;
+
+        private final ArtifactChecksum artifactChecksum;
+
+
+        ScheduledChecksum(String artifactBasePath, ArtifactChecksum artifactChecksum)
+        {
+            this.artifactBasePath = artifactBasePath;
+            this.artifactChecksum = artifactChecksum;
+        }
+
+    }
+
+    /**
+     * A ring of slots, one per tick of the lifetime (plus the current one), so that a checksum is always scheduled
+     * in the slot of the tick at which it expires. Scheduling is lock-free; advancing is done by one thread at a time.
+     */
+    private static class TimerWheel
+    {
+
+        private final int lifetimeTicks;
+
+        private final List<Queue<ScheduledChecksum>> slots;
+
+        private volatile long currentTick;
+
+
+        TimerWheel(int lifetimeTicks)
+        {
+            this.lifetimeTicks = lifetimeTicks;
+            this.slots = new ArrayList<Queue<ScheduledChecksum>>(lifetimeTicks + 1);
+
+            for (int i = 0; i <= lifetimeTicks; i++)
+            {
+                slots.add(new ConcurrentLinkedQueue<ScheduledChecksum>());
             }
         }
+
+        long getExpiryTick()
+        {
+            return currentTick + lifetimeTicks;
+        }
+
+        long getCurrentTick()
+        {
+            return currentTick;
+        }
+
+        int getSlots()
+        {
+            return slots.size();
+        }
+
+        Queue<ScheduledChecksum> getSlot(long tick)
+        {
+            return slots.get((int) (tick % slots.size()));
+        }
+
+        void schedule(String artifactBasePath, ArtifactChecksum artifactChecksum)
+        {
+            getSlot(artifactChecksum.getExpiryTick()).offer(new ScheduledChecksum(artifactBasePath, artifactChecksum));
+        }
+
+        void reschedule(ScheduledChecksum scheduledChecksum)
+        {
+            getSlot(scheduledChecksum.artifactChecksum.getExpiryTick()).offer(scheduledChecksum);
+        }
+
+        long advance()
+        {
+            return ++currentTick;
+        }
+
+        /**
+         * Takes the checksums scheduled for the tick out of their slot. The checksums which are
+         * scheduled in the meantime are left for the next round.
+         */
+        List<ScheduledChecksum> drain(long tick)
+        {
+            final Queue<ScheduledChecksum> slot = getSlot(tick);
+            final List<ScheduledChecksum> scheduledChecksums = new ArrayList<ScheduledChecksum>(slot.size());
+
+            ScheduledChecksum scheduledChecksum;
+            while ((scheduledChecksum = slot.poll()) != null)
+            {
+                scheduledChecksums.add(scheduledChecksum);
+            }
+
+            return scheduledChecksums;
+        }
+
     }
 
 }
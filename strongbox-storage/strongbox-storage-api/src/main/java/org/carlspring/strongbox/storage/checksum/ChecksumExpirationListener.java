@@ -0,0 +1,21 @@
+package org.carlspring.strongbox.storage.checksum;
+
+import java.util.Map;
+
+/**
+ * Is notified of the checksums which were never matched against uploaded checksum files, because
+ * they were not uploaded within the lifetime of the cached checksums, or the cache was full.
+ *
+ * @author mtodorov
+ */
+public interface ChecksumExpirationListener
+{
+
+    /**
+     * @param artifactBasePath      The path of the artifact.
+     * @param unclaimedChecksums    The checksums (by algorithm) which weren't claimed.
+     */
+    void checksumsExpired(String artifactBasePath,
+                          Map<String, String> unclaimedChecksums);
+
+}
@@ -0,0 +1,105 @@
+package org.carlspring.strongbox.storage.checksum;
+
+import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The MD5 and SHA-1 checksums of an artifact, as recorded in the {@link ChecksumStore}, along with the size and
+ * the modification time of the artifact file at the time, so that the record can be checked against the file.
+ *
+ * @author mtodorov
+ */
+public class ChecksumRecord
+{
+
+    private final String path;
+
+    private final String md5;
+
+    private final String sha1;
+
+    private final long size;
+
+    private final long lastModified;
+
+
+    public ChecksumRecord(String path,
+                          String md5,
+                          String sha1,
+                          long size,
+                          long lastModified)
+    {
+        this.path = path;
+        this.md5 = md5;
+        this.sha1 = sha1;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public ChecksumRecord(String path,
+                          Map<String, String> checksums,
+                          long size,
+                          long lastModified)
+    {
+        this(path,
+             checksums.get(EncryptionAlgorithmsEnum.MD5.getAlgorithm()),
+             checksums.get(EncryptionAlgorithmsEnum.SHA1.getAlgorithm()),
+             size,
+             lastModified);
+    }
+
+    /**
+     * Returns whether the record still applies to the artifact file with the specified size and modification time.
+     */
+    public boolean isValidFor(long size, long lastModified)
+    {
+        return this.size == size && this.lastModified == lastModified;
+    }
+
+    /**
+     * Key:   Algorithm
+     * Value: Checksum
+     */
+    public Map<String, String> getChecksums()
+    {
+        Map<String, String> checksums = new LinkedHashMap<>();
+        if (md5 != null)
+        {
+            checksums.put(EncryptionAlgorithmsEnum.MD5.getAlgorithm(), md5);
+        }
+        if (sha1 != null)
+        {
+            checksums.put(EncryptionAlgorithmsEnum.SHA1.getAlgorithm(), sha1);
+        }
+
+        return checksums;
+    }
+
+    public String getPath()
+    {
+        return path;
+    }
+
+    public String getMd5()
+    {
+        return md5;
+    }
+
+    public String getSha1()
+    {
+        return sha1;
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+}
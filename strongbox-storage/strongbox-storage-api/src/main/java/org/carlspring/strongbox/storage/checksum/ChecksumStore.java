@@ -0,0 +1,462 @@
+package org.carlspring.strongbox.storage.checksum;
+
+import org.carlspring.strongbox.configuration.Configuration;
+import org.carlspring.strongbox.configuration.ConfigurationManager;
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.repository.Repository;
+import org.carlspring.strongbox.storage.repository.RepositoryDurabilityEnum;
+import org.carlspring.strongbox.util.ArtifactFileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the MD5 and SHA-1 checksums, the size and the modification time of every stored artifact in
+ * a {@link RepositoryChecksumStore} per repository (under its .checksums directory), so that the checksums
+ * of any artifact can be looked up without reading its checksum files.
+ *
+ * The stores are opened on first use. A store can be rebuilt from the checksum files of the repository
+ * (for example, after the artifacts have been copied into the repository by hand), which are read in parallel
+ * by strongbox.checksum.store.rebuild.threads threads (default: the number of processors).
+ *
+ * Failing to update a store is only logged, as the checksum files remain the source of truth; the records
+ * which no longer match their artifact files are ignored.
+ *
+ * @author mtodorov
+ */
+public class ChecksumStore
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(ChecksumStore.class);
+
+    public static final String CHECKSUMS_DIRECTORY = ".checksums";
+
+    public static final String CHECKSUMS_LOG = "checksums.log";
+
+    private ConfigurationManager configurationManager;
+
+    private int segmentSize = Integer.getInteger("strongbox.checksum.store.segment.size",
+                                                 RepositoryChecksumStore.DEFAULT_SEGMENT_SIZE);
+
+    private int rebuildThreads = Integer.getInteger("strongbox.checksum.store.rebuild.threads",
+                                                    Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Key:     storageId:repositoryId
+     * Value:   The checksum store of the repository.
+     */
+    private ConcurrentMap<String, RepositoryChecksumStore> stores = new ConcurrentHashMap<>();
+
+
+    public ChecksumStore()
+    {
+    }
+
+    /**
+     * Returns the record of the artifact, or null, if there is none.
+     */
+    public ChecksumRecord get(String storageId,
+                              String repositoryId,
+                              String path)
+    {
+        final RepositoryChecksumStore store = getStore(storageId, repositoryId);
+
+        return store != null ? store.get(path) : null;
+    }
+
+    /**
+     * Records the checksums of the artifact file.
+     */
+    public void put(String storageId,
+                    String repositoryId,
+                    String path,
+                    Map<String, String> checksums,
+                    File artifactFile)
+    {
+        final RepositoryChecksumStore store = getStore(storageId, repositoryId);
+        if (store == null)
+        {
+            return;
+        }
+
+        final ChecksumRecord record = new ChecksumRecord(path, checksums, artifactFile.length(), artifactFile.lastModified());
+        if (record.getMd5() == null && record.getSha1() == null)
+        {
+            remove(storageId, repositoryId, path);
+
+            return;
+        }
+
+        try
+        {
+            store.put(record);
+        }
+        catch (IOException e)
+        {
+            logger.warn("Failed to record the checksums of " + storageId + ":" + repositoryId + ":" + path + ".", e);
+        }
+    }
+
+    /**
+     * Replaces the checksum of a recorded artifact for the specified algorithm, when its checksum file is stored.
+     */
+    public void updateChecksum(String storageId,
+                               String repositoryId,
+                               String path,
+                               String algorithm,
+                               String checksum)
+    {
+        final ChecksumRecord record = get(storageId, repositoryId, path);
+        if (record == null)
+        {
+            return;
+        }
+
+        final Map<String, String> checksums = record.getChecksums();
+        checksums.put(algorithm, checksum);
+
+        final RepositoryChecksumStore store = getStore(storageId, repositoryId);
+        try
+        {
+            store.put(new ChecksumRecord(path, checksums, record.getSize(), record.getLastModified()));
+        }
+        catch (IOException e)
+        {
+            logger.warn("Failed to record the checksums of " + storageId + ":" + repositoryId + ":" + path + ".", e);
+        }
+    }
+
+    /**
+     * Records the checksums of the artifact, which has been copied (or moved) from another repository,
+     * for its new file.
+     */
+    public void copy(String srcStorageId,
+                     String srcRepositoryId,
+                     String destStorageId,
+                     String destRepositoryId,
+                     String path,
+                     File destArtifactFile)
+    {
+        final ChecksumRecord record = get(srcStorageId, srcRepositoryId, path);
+        if (record != null && record.getSize() == destArtifactFile.length())
+        {
+            put(destStorageId, destRepositoryId, path, record.getChecksums(), destArtifactFile);
+        }
+    }
+
+    public void remove(String storageId,
+                       String repositoryId,
+                       String path)
+    {
+        final RepositoryChecksumStore store = getStore(storageId, repositoryId);
+        if (store == null)
+        {
+            return;
+        }
+
+        try
+        {
+            store.remove(path);
+        }
+        catch (IOException e)
+        {
+            logger.warn("Failed to remove the checksums of " + storageId + ":" + repositoryId + ":" + path + ".", e);
+        }
+    }
+
+    /**
+     * Removes the records of all the artifacts under the directory.
+     */
+    public void removeDirectory(String storageId,
+                                String repositoryId,
+                                String path)
+    {
+        final RepositoryChecksumStore store = getStore(storageId, repositoryId);
+        if (store == null)
+        {
+            return;
+        }
+
+        try
+        {
+            store.removeDirectory(path);
+        }
+        catch (IOException e)
+        {
+            logger.warn("Failed to remove the checksums under " + storageId + ":" + repositoryId + ":" + path + ".", e);
+        }
+    }
+
+    /**
+     * Replaces the records of the repository with the checksums in the checksum files of its artifacts.
+     *
+     * @return The number of recorded artifacts.
+     */
+    public int rebuild(String storageId,
+                       String repositoryId)
+            throws IOException
+    {
+        final RepositoryChecksumStore store = getStore(storageId, repositoryId);
+        if (store == null)
+        {
+            throw new IOException("Repository " + storageId + ":" + repositoryId + " does not exist.");
+        }
+
+        final File basedir = store.getLogFile().getParentFile().getParentFile();
+
+        final long start = System.currentTimeMillis();
+
+        final List<ChecksumRecord> records = scan(basedir);
+        store.replaceAll(records);
+
+        logger.info("Rebuilt the checksums of " + storageId + ":" + repositoryId + " (" + records.size() +
+                    " artifacts) in " + (System.currentTimeMillis() - start) + " ms.");
+
+        return records.size();
+    }
+
+    /**
+     * Reads the checksum files of all the artifacts under the directory, in parallel.
+     */
+    List<ChecksumRecord> scan(final File basedir)
+            throws IOException
+    {
+        final List<String> paths = new ArrayList<>();
+
+        final Path basePath = basedir.toPath();
+        Files.walkFileTree(basePath, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+            {
+                // Skip the trash, the temporary files, the blobs and the index
+                return !dir.equals(basePath) && dir.getFileName().toString().startsWith(".") ?
+                       FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+            {
+                final String path = basePath.relativize(file).toString().replace(File.separatorChar, '/');
+                if (attrs.isRegularFile() &&
+                    ArtifactFileUtils.isStorageArtifact(file.toFile()) &&
+                    !ArtifactFileUtils.isChecksum(path) &&
+                    !path.endsWith(".asc"))
+                {
+                    paths.add(path);
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        final int threads = Math.max(1, Math.min(rebuildThreads, paths.size() / 256 + 1));
+        final int batchSize = (paths.size() + threads - 1) / threads;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                final Thread thread = new Thread(runnable, "checksum-store-rebuild-" + count.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        try
+        {
+            final List<Future<List<ChecksumRecord>>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < paths.size(); i += batchSize)
+            {
+                final List<String> batch = paths.subList(i, Math.min(i + batchSize, paths.size()));
+                futures.add(executor.submit(new Callable<List<ChecksumRecord>>()
+                {
+                    @Override
+                    public List<ChecksumRecord> call()
+                            throws IOException
+                    {
+                        final List<ChecksumRecord> records = new ArrayList<>(batch.size());
+                        for (String path : batch)
+                        {
+                            final File artifactFile = new File(basedir, path);
+                            final Map<String, String> checksums = ChecksumCache.readChecksumFiles(artifactFile);
+
+                            final ChecksumRecord record = new ChecksumRecord(path,
+                                                                             checksums,
+                                                                             artifactFile.length(),
+                                                                             artifactFile.lastModified());
+                            if (record.getMd5() != null || record.getSha1() != null)
+                            {
+                                records.add(record);
+                            }
+                        }
+
+                        return records;
+                    }
+                }));
+            }
+
+            final List<ChecksumRecord> records = new ArrayList<>(paths.size());
+            for (Future<List<ChecksumRecord>> future : futures)
+            {
+                records.addAll(future.get());
+            }
+
+            return records;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+
+            throw new IOException(e.getMessage(), e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the store of the repository, opening it, if necessary, or null, if there is no such repository,
+     * or the store can't be opened.
+     */
+    public RepositoryChecksumStore getStore(String storageId,
+                                            String repositoryId)
+    {
+        final String key = storageId + ":" + repositoryId;
+
+        final RepositoryChecksumStore store = stores.get(key);
+        if (store != null)
+        {
+            return store;
+        }
+
+        final Repository repository = getRepository(storageId, repositoryId);
+        if (repository == null)
+        {
+            return null;
+        }
+
+        synchronized (this)
+        {
+            if (stores.containsKey(key))
+            {
+                return stores.get(key);
+            }
+
+            final File logFile = new File(new File(repository.getBasedir(), CHECKSUMS_DIRECTORY), CHECKSUMS_LOG);
+            final boolean forceWrites = RepositoryDurabilityEnum.fromDurability(repository.getDurability()) !=
+                                        RepositoryDurabilityEnum.NONE;
+
+            final RepositoryChecksumStore newStore = new RepositoryChecksumStore(logFile, segmentSize, forceWrites);
+            try
+            {
+                newStore.open();
+            }
+            catch (IOException e)
+            {
+                logger.warn("Failed to open the checksum store " + logFile.getAbsolutePath() + ".", e);
+
+                newStore.close();
+
+                return null;
+            }
+
+            stores.put(key, newStore);
+
+            return newStore;
+        }
+    }
+
+    private Repository getRepository(String storageId,
+                                     String repositoryId)
+    {
+        if (configurationManager == null || configurationManager.getConfiguration() == null)
+        {
+            return null;
+        }
+
+        final Configuration configuration = configurationManager.getConfiguration();
+        final Storage storage = configuration.getStorage(storageId);
+
+        return storage != null ? storage.getRepository(repositoryId) : null;
+    }
+
+    /**
+     * Returns the stores which have been opened, by storageId:repositoryId.
+     */
+    public Map<String, RepositoryChecksumStore> getStores()
+    {
+        return stores;
+    }
+
+    public synchronized void close()
+    {
+        for (RepositoryChecksumStore store : stores.values())
+        {
+            store.force();
+            store.close();
+        }
+
+        stores.clear();
+    }
+
+    public ConfigurationManager getConfigurationManager()
+    {
+        return configurationManager;
+    }
+
+    public void setConfigurationManager(ConfigurationManager configurationManager)
+    {
+        this.configurationManager = configurationManager;
+    }
+
+    public int getSegmentSize()
+    {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(int segmentSize)
+    {
+        this.segmentSize = segmentSize;
+    }
+
+    public int getRebuildThreads()
+    {
+        return rebuildThreads;
+    }
+
+    public void setRebuildThreads(int rebuildThreads)
+    {
+        this.rebuildThreads = rebuildThreads;
+    }
+
+}
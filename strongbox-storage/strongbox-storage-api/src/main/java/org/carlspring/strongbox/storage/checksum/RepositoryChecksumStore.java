@@ -0,0 +1,794 @@
+package org.carlspring.strongbox.storage.checksum;
+
+import org.carlspring.strongbox.resource.ResourceCloser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The checksums of the artifacts of a repository, kept in an append-only log, which is memory-mapped
+ * in segments, and indexed by an open-addressing hash table (of the hashes of the paths and the offsets
+ * of their latest records), which is rebuilt by scanning the log, when the store is opened.
+ *
+ * Looking up a checksum only takes a probe of the table and a read of the mapped log, without any file
+ * system access. Replacing and removing checksums appends new records; once most of the log consists of
+ * such superseded records, it's compacted, when the store is opened.
+ *
+ * The layout of a record (in the big-endian byte order) is:
+ * - the length of the record (int); 0 marks the end of the log and -1 the unused end of a segment;
+ * - the type of the record (byte): 1 for checksums and 2 for a removal;
+ * - the size and the modification time of the artifact file (long, long);
+ * - the flags of the checksums which are present (byte), the MD5 (16 bytes) and the SHA-1 (20 bytes);
+ * - the length of the path (short) and the path (in UTF-8).
+ *
+ * @author mtodorov
+ */
+public class RepositoryChecksumStore
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryChecksumStore.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final int END_OF_SEGMENT = -1;
+
+    private static final byte TYPE_CHECKSUMS = 1;
+
+    private static final byte TYPE_REMOVAL = 2;
+
+    private static final int FLAG_MD5 = 1;
+
+    private static final int FLAG_SHA1 = 2;
+
+    private static final int MD5_LENGTH = 16;
+
+    private static final int SHA1_LENGTH = 20;
+
+    private static final int HEADER_LENGTH = 4 + 1 + 8 + 8 + 1 + MD5_LENGTH + SHA1_LENGTH + 2;
+
+    private static final long EMPTY = 0L;
+
+    private static final long REMOVED = -1L;
+
+    private final File logFile;
+
+    private final int segmentSize;
+
+    private final boolean forceWrites;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel channel;
+
+    private List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * The offset at which the next record is appended.
+     */
+    private long position;
+
+    /**
+     * The hashes of the paths (0 marks an empty slot).
+     */
+    private long[] hashes;
+
+    /**
+     * The offsets of the latest records of the paths (-1 marks a removed path).
+     */
+    private long[] offsets;
+
+    /**
+     * The number of used slots, including the ones of removed paths.
+     */
+    private int usedSlots;
+
+    private int liveRecords;
+
+    private int totalRecords;
+
+
+    /**
+     * @param forceWrites   Whether to force each record to the disk, before returning.
+     */
+    public RepositoryChecksumStore(File logFile,
+                                   int segmentSize,
+                                   boolean forceWrites)
+    {
+        this.logFile = logFile;
+        this.segmentSize = segmentSize;
+        this.forceWrites = forceWrites;
+    }
+
+    public void open()
+            throws IOException
+    {
+        lock.writeLock().lock();
+        try
+        {
+            load();
+
+            // Most of the log consists of replaced, or removed checksums
+            if (totalRecords > 1024 && totalRecords > liveRecords * 2)
+            {
+                compact();
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load()
+            throws IOException
+    {
+        if (!logFile.getParentFile().exists())
+        {
+            //noinspection ResultOfMethodCallIgnored
+            logFile.getParentFile().mkdirs();
+        }
+
+        channel = FileChannel.open(logFile.toPath(),
+                                   StandardOpenOption.CREATE,
+                                   StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+        segments = new ArrayList<>();
+        hashes = new long[1024];
+        offsets = new long[1024];
+        usedSlots = 0;
+        liveRecords = 0;
+        totalRecords = 0;
+        position = 0;
+
+        final long fileSize = channel.size();
+
+        // Scan the records, until the end of the log
+        while (position < fileSize)
+        {
+            final MappedByteBuffer segment = getSegment(position);
+            final int offset = (int) (position % segmentSize);
+
+            final int length = offset + 4 <= segmentSize ? segment.getInt(offset) : END_OF_SEGMENT;
+            if (length == 0)
+            {
+                break;
+            }
+
+            if (length == END_OF_SEGMENT)
+            {
+                position = (position / segmentSize + 1) * segmentSize;
+                continue;
+            }
+
+            if (length < HEADER_LENGTH || offset + length > segmentSize)
+            {
+                // A record which wasn't written completely
+                logger.warn("Truncating " + logFile.getAbsolutePath() + " at an invalid record at " + position + ".");
+                break;
+            }
+
+            final byte[] path = readPath(segment, offset);
+            if (segment.get(offset + 4) == TYPE_REMOVAL)
+            {
+                removeFromIndex(path, hash(path));
+            }
+            else
+            {
+                addToIndex(path, hash(path), position);
+            }
+
+            totalRecords++;
+            position += length;
+        }
+
+        // Clear anything after the last complete record
+        if (position < fileSize)
+        {
+            final MappedByteBuffer segment = getSegment(position);
+            final int offset = (int) (position % segmentSize);
+            if (offset + 4 <= segmentSize)
+            {
+                segment.putInt(offset, 0);
+            }
+        }
+
+        logger.debug("Loaded " + liveRecords + " checksum records from " + logFile.getAbsolutePath() + ".");
+    }
+
+    /**
+     * Rewrites the log with only the latest records of the paths.
+     */
+    private void compact()
+            throws IOException
+    {
+        final List<ChecksumRecord> records = getRecords();
+
+        logger.debug("Compacting " + logFile.getAbsolutePath() + " (" + totalRecords + " records, " +
+                     records.size() + " of them current)...");
+
+        replaceLog(records);
+    }
+
+    /**
+     * Replaces all the records of the store.
+     */
+    public void replaceAll(Collection<ChecksumRecord> records)
+            throws IOException
+    {
+        lock.writeLock().lock();
+        try
+        {
+            replaceLog(records);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void replaceLog(Collection<ChecksumRecord> records)
+            throws IOException
+    {
+        final File newLogFile = new File(logFile.getPath() + ".new");
+        Files.deleteIfExists(newLogFile.toPath());
+
+        RepositoryChecksumStore newStore = new RepositoryChecksumStore(newLogFile, segmentSize, false);
+        try
+        {
+            newStore.lock.writeLock().lock();
+            try
+            {
+                newStore.load();
+                for (ChecksumRecord record : records)
+                {
+                    newStore.append(TYPE_CHECKSUMS, record);
+                }
+            }
+            finally
+            {
+                newStore.lock.writeLock().unlock();
+            }
+
+            newStore.force();
+        }
+        finally
+        {
+            newStore.close();
+        }
+
+        closeChannel();
+
+        Files.move(newLogFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+
+        load();
+    }
+
+    public ChecksumRecord get(String path)
+    {
+        final byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        final long hash = hash(pathBytes);
+
+        lock.readLock().lock();
+        try
+        {
+            if (channel == null)
+            {
+                return null;
+            }
+
+            final int slot = findSlot(pathBytes, hash);
+            if (slot < 0 || offsets[slot] == REMOVED)
+            {
+                return null;
+            }
+
+            return readRecord(offsets[slot], path);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(ChecksumRecord record)
+            throws IOException
+    {
+        lock.writeLock().lock();
+        try
+        {
+            append(TYPE_CHECKSUMS, record);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+
+        if (forceWrites)
+        {
+            force();
+        }
+    }
+
+    /**
+     * @return True, if there were checksums for the path.
+     */
+    public boolean remove(String path)
+            throws IOException
+    {
+        final byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+
+        lock.writeLock().lock();
+        try
+        {
+            final int slot = findSlot(pathBytes, hash(pathBytes));
+            if (slot < 0 || offsets[slot] == REMOVED)
+            {
+                return false;
+            }
+
+            append(TYPE_REMOVAL, new ChecksumRecord(path, null, null, 0, 0));
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+
+        if (forceWrites)
+        {
+            force();
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes the checksums of all the paths below the directory.
+     *
+     * @return The number of removed paths.
+     */
+    public int removeDirectory(String directory)
+            throws IOException
+    {
+        final String prefix = directory.isEmpty() || directory.endsWith("/") ? directory : directory + "/";
+
+        int removed = 0;
+        for (ChecksumRecord record : getRecords())
+        {
+            if (record.getPath().startsWith(prefix) && remove(record.getPath()))
+            {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Returns the latest records of all the paths.
+     */
+    public List<ChecksumRecord> getRecords()
+    {
+        lock.readLock().lock();
+        try
+        {
+            final List<ChecksumRecord> records = new ArrayList<>(liveRecords);
+            if (channel == null)
+            {
+                return records;
+            }
+
+            for (int slot = 0; slot < hashes.length; slot++)
+            {
+                if (hashes[slot] != EMPTY && offsets[slot] != REMOVED)
+                {
+                    records.add(readRecord(offsets[slot], null));
+                }
+            }
+
+            return records;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getSize()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return liveRecords;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of records in the log, including the replaced and removed ones.
+     */
+    public int getTotalRecords()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return totalRecords;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    public File getLogFile()
+    {
+        return logFile;
+    }
+
+    public void force()
+    {
+        lock.readLock().lock();
+        try
+        {
+            for (MappedByteBuffer segment : segments)
+            {
+                segment.force();
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void close()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            closeChannel();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void closeChannel()
+    {
+        // The mapped segments are released by the garbage collector
+        segments = new ArrayList<>();
+
+        ResourceCloser.close(channel, logger);
+        channel = null;
+    }
+
+    private void append(byte type, ChecksumRecord record)
+            throws IOException
+    {
+        if (channel == null)
+        {
+            throw new IOException("The checksum store " + logFile.getAbsolutePath() + " is closed.");
+        }
+
+        final byte[] path = record.getPath().getBytes(StandardCharsets.UTF_8);
+        if (path.length > Short.MAX_VALUE)
+        {
+            throw new IOException("The path " + record.getPath() + " is too long.");
+        }
+
+        final int length = HEADER_LENGTH + path.length;
+
+        int offset = (int) (position % segmentSize);
+        if (offset + length > segmentSize)
+        {
+            // Records don't span segments
+            if (offset + 4 <= segmentSize)
+            {
+                getSegment(position).putInt(offset, END_OF_SEGMENT);
+            }
+
+            position = (position / segmentSize + 1) * segmentSize;
+            offset = 0;
+        }
+
+        final MappedByteBuffer segment = getSegment(position);
+
+        int flags = 0;
+        final byte[] md5 = decodeHex(record.getMd5(), MD5_LENGTH);
+        if (md5 != null)
+        {
+            flags |= FLAG_MD5;
+        }
+
+        final byte[] sha1 = decodeHex(record.getSha1(), SHA1_LENGTH);
+        if (sha1 != null)
+        {
+            flags |= FLAG_SHA1;
+        }
+
+        int index = offset + 4;
+        segment.put(index, type);
+        segment.putLong(index + 1, record.getSize());
+        segment.putLong(index + 9, record.getLastModified());
+        segment.put(index + 17, (byte) flags);
+        put(segment, index + 18, md5 != null ? md5 : new byte[MD5_LENGTH]);
+        put(segment, index + 18 + MD5_LENGTH, sha1 != null ? sha1 : new byte[SHA1_LENGTH]);
+        segment.putShort(index + 18 + MD5_LENGTH + SHA1_LENGTH, (short) path.length);
+        put(segment, offset + HEADER_LENGTH, path);
+
+        // Mark the end of the log after the record, then make the record visible
+        if (offset + length + 4 <= segmentSize)
+        {
+            segment.putInt(offset + length, 0);
+        }
+        segment.putInt(offset, length);
+
+        final long hash = hash(path);
+        if (type == TYPE_REMOVAL)
+        {
+            removeFromIndex(path, hash);
+        }
+        else
+        {
+            addToIndex(path, hash, position);
+        }
+
+        totalRecords++;
+        position += length;
+    }
+
+    private MappedByteBuffer getSegment(long position)
+            throws IOException
+    {
+        final int index = (int) (position / segmentSize);
+        while (segments.size() <= index)
+        {
+            // Mapping a segment for writing extends the file
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * segmentSize, segmentSize));
+        }
+
+        return segments.get(index);
+    }
+
+    private ChecksumRecord readRecord(long position, String path)
+    {
+        final MappedByteBuffer segment = segments.get((int) (position / segmentSize));
+        final int offset = (int) (position % segmentSize);
+
+        final long size = segment.getLong(offset + 5);
+        final long lastModified = segment.getLong(offset + 13);
+        final int flags = segment.get(offset + 21);
+
+        final String md5 = (flags & FLAG_MD5) != 0 ? encodeHex(segment, offset + 22, MD5_LENGTH) : null;
+        final String sha1 = (flags & FLAG_SHA1) != 0 ? encodeHex(segment, offset + 22 + MD5_LENGTH, SHA1_LENGTH) : null;
+
+        if (path == null)
+        {
+            path = new String(readPath(segment, offset), StandardCharsets.UTF_8);
+        }
+
+        return new ChecksumRecord(path, md5, sha1, size, lastModified);
+    }
+
+    private byte[] readPath(MappedByteBuffer segment, int offset)
+    {
+        final int pathLength = segment.getShort(offset + HEADER_LENGTH - 2);
+
+        final byte[] path = new byte[pathLength];
+        for (int i = 0; i < pathLength; i++)
+        {
+            path[i] = segment.get(offset + HEADER_LENGTH + i);
+        }
+
+        return path;
+    }
+
+    private boolean pathEquals(long position, byte[] path)
+    {
+        final MappedByteBuffer segment = segments.get((int) (position / segmentSize));
+        final int offset = (int) (position % segmentSize);
+
+        if (segment.getShort(offset + HEADER_LENGTH - 2) != path.length)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < path.length; i++)
+        {
+            if (segment.get(offset + HEADER_LENGTH + i) != path[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the slot of the path, or -1, if it's not in the index.
+     */
+    private int findSlot(byte[] path, long hash)
+    {
+        final int mask = hashes.length - 1;
+
+        for (int slot = (int) hash & mask; hashes[slot] != EMPTY; slot = (slot + 1) & mask)
+        {
+            if (hashes[slot] == hash)
+            {
+                if (offsets[slot] == REMOVED)
+                {
+                    // There are no other paths with the same hash
+                    return slot;
+                }
+
+                if (pathEquals(offsets[slot], path))
+                {
+                    return slot;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    private void addToIndex(byte[] path, long hash, long offset)
+    {
+        int slot = findSlot(path, hash);
+        if (slot >= 0)
+        {
+            if (offsets[slot] == REMOVED)
+            {
+                liveRecords++;
+            }
+
+            offsets[slot] = offset;
+
+            return;
+        }
+
+        if ((usedSlots + 1) * 2 > hashes.length)
+        {
+            resize();
+        }
+
+        final int mask = hashes.length - 1;
+
+        slot = (int) hash & mask;
+        while (hashes[slot] != EMPTY)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        hashes[slot] = hash;
+        offsets[slot] = offset;
+        usedSlots++;
+        liveRecords++;
+    }
+
+    private void removeFromIndex(byte[] path, long hash)
+    {
+        final int slot = findSlot(path, hash);
+        if (slot >= 0 && offsets[slot] != REMOVED)
+        {
+            // The slot is kept, so that the paths which were probed past it can still be found
+            offsets[slot] = REMOVED;
+            liveRecords--;
+        }
+    }
+
+    /**
+     * Doubles the table (if it's mostly used by live paths) and drops the slots of the removed paths.
+     */
+    private void resize()
+    {
+        final long[] oldHashes = hashes;
+        final long[] oldOffsets = offsets;
+
+        final int capacity = liveRecords * 4 > oldHashes.length ? oldHashes.length * 2 : oldHashes.length;
+
+        hashes = new long[capacity];
+        offsets = new long[capacity];
+        usedSlots = 0;
+
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldHashes.length; i++)
+        {
+            if (oldHashes[i] != EMPTY && oldOffsets[i] != REMOVED)
+            {
+                int slot = (int) oldHashes[i] & mask;
+                while (hashes[slot] != EMPTY)
+                {
+                    slot = (slot + 1) & mask;
+                }
+
+                hashes[slot] = oldHashes[i];
+                offsets[slot] = oldOffsets[i];
+                usedSlots++;
+            }
+        }
+    }
+
+    /**
+     * The 64-bit FNV-1a hash of the path, with a final mix of the bits; never 0.
+     */
+    static long hash(byte[] path)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : path)
+        {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+
+        return hash != EMPTY ? hash : 1L;
+    }
+
+    private static void put(MappedByteBuffer segment, int offset, byte[] bytes)
+    {
+        for (int i = 0; i < bytes.length; i++)
+        {
+            segment.put(offset + i, bytes[i]);
+        }
+    }
+
+    private static byte[] decodeHex(String hex, int length)
+    {
+        if (hex == null || hex.length() != length * 2)
+        {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+        {
+            final int high = Character.digit(hex.charAt(i * 2), 16);
+            final int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0)
+            {
+                return null;
+            }
+
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+
+        return bytes;
+    }
+
+    private static String encodeHex(MappedByteBuffer segment, int offset, int length)
+    {
+        final char[] digits = "0123456789abcdef".toCharArray();
+
+        final char[] hex = new char[length * 2];
+        for (int i = 0; i < length; i++)
+        {
+            final int b = segment.get(offset + i) & 0xff;
+            hex[i * 2] = digits[b >>> 4];
+            hex[i * 2 + 1] = digits[b & 0x0f];
+        }
+
+        return new String(hex);
+    }
+
+}
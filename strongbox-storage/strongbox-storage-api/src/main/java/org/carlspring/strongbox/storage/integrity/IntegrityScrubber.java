@@ -0,0 +1,1006 @@
+package org.carlspring.strongbox.storage.integrity;
+
+import org.carlspring.strongbox.configuration.Configuration;
+import org.carlspring.strongbox.configuration.ConfigurationManager;
+import org.carlspring.strongbox.io.ByteRateLimiter;
+import org.carlspring.strongbox.io.MultipleDigestInputStream;
+import org.carlspring.strongbox.io.ThrottledInputStream;
+import org.carlspring.strongbox.resource.ResourceCloser;
+import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.checksum.ChecksumCache;
+import org.carlspring.strongbox.storage.checksum.ChecksumRecord;
+import org.carlspring.strongbox.storage.checksum.ChecksumStore;
+import org.carlspring.strongbox.storage.repository.Repository;
+import org.carlspring.strongbox.storage.repository.RepositoryTypeEnum;
+import org.carlspring.strongbox.util.ArtifactFileUtils;
+import org.carlspring.strongbox.util.MessageDigestUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies in the background that the artifacts of the hosted repositories still match their checksum files.
+ *
+ * Each repository is scrubbed once every scrubInterval: its directories are walked in order and the digests of
+ * the artifacts are recalculated by strongbox.scrub.threads threads (default: 2), reading no more than
+ * strongbox.scrub.rate MB per second (default: 20) between them, so that the scrub doesn't compete with
+ * the clients for the disks. The last verified path is checkpointed under the .scrub directory of the repository
+ * every few dozen artifacts, so a scrub which was interrupted (for example, by a restart) resumes where it stopped.
+ *
+ * An artifact which doesn't match one of its checksum files is reported in .scrub/mismatches.log. By default,
+ * the scrubber only reports: the artifact is only moved to the .quarantine directory of the repository (along with
+ * its checksum files), if quarantine has been enabled, and missing checksum files (for example, of artifacts
+ * deployed before the checksums were generated) are only written, if repair has been enabled. The artifacts
+ * which have been modified recently, or while being read, are skipped, as their checksum files may still be
+ * on their way.
+ *
+ * So that the repositories which are due (or have never been scrubbed) aren't all scrubbed right after a start,
+ * their first scrubs are spread across the startupSpread after it (the default is one hour).
+ *
+ * @author mtodorov
+ */
+public class IntegrityScrubber
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(IntegrityScrubber.class);
+
+    public static final String SCRUB_DIRECTORY = ".scrub";
+
+    public static final String QUARANTINE_DIRECTORY = ".quarantine";
+
+    private static final String CHECKPOINT_FILE = "checkpoint.properties";
+
+    private static final String MISMATCHES_FILE = "mismatches.log";
+
+    private static final String CHECKPOINT_PATH = "path";
+
+    private static final String CHECKPOINT_COMPLETED = "completed";
+
+    /**
+     * The number of artifacts each thread verifies between two checkpoints.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    private ConfigurationManager configurationManager;
+
+    private ChecksumCache checksumCache;
+
+    private ChecksumStore checksumStore;
+
+    /**
+     * How often (in milliseconds) to scrub each repository.
+     * The default is once a week.
+     */
+    private long scrubInterval = 7 * 24 * 60 * 60000L;
+
+    /**
+     * How often (in milliseconds) to check which repositories are due to be scrubbed.
+     * The default is once every minute.
+     */
+    private long scrubCheckInterval = 60000L;
+
+    /**
+     * How long ago (in milliseconds) an artifact has to have been modified, in order to be verified.
+     */
+    private long minimumAge = 60000L;
+
+    private int threads = Integer.getInteger("strongbox.scrub.threads", 2);
+
+    private final ByteRateLimiter rateLimiter = new ByteRateLimiter(Long.getLong("strongbox.scrub.rate", 20L) *
+                                                                    1024 * 1024);
+
+    /**
+     * The period (in milliseconds) after the start of the monitor, across which the first scrubs
+     * of the repositories are spread.
+     */
+    private long startupSpread = 60 * 60000L;
+
+    private boolean quarantineEnabled = false;
+
+    private boolean repairEnabled = false;
+
+    /**
+     * The time at which the monitor was started.
+     */
+    private volatile long startTime;
+
+    /**
+     * Key:     storageId:repositoryId
+     * Value:   The progress of the repository's current, or last scrub.
+     */
+    private ConcurrentMap<String, ScrubStatus> statuses = new ConcurrentHashMap<>();
+
+    /**
+     * The repositories (storageId:repositoryId) which have been requested to be scrubbed right away.
+     */
+    private BlockingQueue<String> requests = new LinkedBlockingQueue<>();
+
+    private Thread monitor;
+
+
+    public IntegrityScrubber()
+    {
+    }
+
+    /**
+     * Scrubs the repositories which haven't been scrubbed for the scrubInterval, or whose scrub was interrupted.
+     */
+    public void scrubDueRepositories()
+    {
+        if (configurationManager == null || configurationManager.getConfiguration() == null)
+        {
+            return;
+        }
+
+        final Configuration configuration = configurationManager.getConfiguration();
+        for (Storage storage : configuration.getStorages().values())
+        {
+            for (Repository repository : storage.getRepositories().values())
+            {
+                if (Thread.currentThread().isInterrupted())
+                {
+                    return;
+                }
+
+                if (!isScrubbable(repository))
+                {
+                    continue;
+                }
+
+                try
+                {
+                    if (isDue(storage, repository))
+                    {
+                        scrub(storage, repository);
+                    }
+                }
+                catch (IOException e)
+                {
+                    logger.error("Failed to scrub " + storage.getId() + ":" + repository.getId() + "!", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules the repository to be scrubbed right away (resuming its interrupted scrub, if there is one).
+     *
+     * @return False, if there is no such repository.
+     */
+    public boolean requestScrub(String storageId,
+                                String repositoryId)
+    {
+        final Repository repository = getRepository(storageId, repositoryId);
+        if (repository == null || !isScrubbable(repository))
+        {
+            return false;
+        }
+
+        final String key = storageId + ":" + repositoryId;
+        if (!requests.contains(key))
+        {
+            requests.add(key);
+        }
+
+        return true;
+    }
+
+    /**
+     * Scrubs the repository, resuming its interrupted scrub, if there is one.
+     *
+     * @return The progress of the scrub, or null, if there is no such repository.
+     */
+    public ScrubStatus scrub(String storageId,
+                             String repositoryId)
+            throws IOException
+    {
+        final Repository repository = getRepository(storageId, repositoryId);
+        if (repository == null)
+        {
+            return null;
+        }
+
+        return scrub(configurationManager.getConfiguration().getStorage(storageId), repository);
+    }
+
+    private ScrubStatus scrub(Storage storage,
+                              Repository repository)
+            throws IOException
+    {
+        final String key = storage.getId() + ":" + repository.getId();
+        final File basedir = new File(repository.getBasedir());
+
+        final ScrubStatus status = getStatus(key);
+
+        final Properties checkpoint = readCheckpoint(basedir);
+        final String resumeFrom = checkpoint.getProperty(CHECKPOINT_PATH);
+
+        if (!status.start(resumeFrom))
+        {
+            logger.debug(key + " is already being scrubbed.");
+
+            return status;
+        }
+
+        logger.info(resumeFrom != null ? "Resuming the scrub of " + key + " after " + resumeFrom + "..." :
+                    "Scrubbing " + key + "...");
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                final Thread thread = new Thread(runnable, "strongbox-scrubber-" + count.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        try
+        {
+            final RepositoryScrub scrub = new RepositoryScrub(storage, repository, status, executor, checkpoint);
+            if (scrub.walk(basedir, "") && scrub.flush())
+            {
+                checkpoint.remove(CHECKPOINT_PATH);
+                checkpoint.setProperty(CHECKPOINT_COMPLETED, String.valueOf(System.currentTimeMillis()));
+                writeCheckpoint(basedir, checkpoint);
+
+                status.setCheckpoint(null);
+
+                logger.info("Scrubbed " + key + ": verified " + status.getScannedFiles() + " artifacts (" +
+                            status.getScannedBytes() + " bytes), found " + status.getMismatches() +
+                            " mismatches and regenerated " + status.getRegeneratedChecksums() + " checksum files.");
+            }
+            else
+            {
+                logger.info("Stopped scrubbing " + key + " after " + status.getCheckpoint() + ".");
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+
+            status.finish();
+        }
+
+        return status;
+    }
+
+    private boolean isDue(Storage storage,
+                          Repository repository)
+            throws IOException
+    {
+        final long now = System.currentTimeMillis();
+        if (now < startTime + getStartupDelay(storage.getId() + ":" + repository.getId()))
+        {
+            return false;
+        }
+
+        final Properties checkpoint = readCheckpoint(new File(repository.getBasedir()));
+        if (checkpoint.getProperty(CHECKPOINT_PATH) != null)
+        {
+            return true;
+        }
+
+        final long completed = Long.parseLong(checkpoint.getProperty(CHECKPOINT_COMPLETED, "0"));
+
+        return now - completed >= scrubInterval;
+    }
+
+    /**
+     * Returns the delay after the start, before which the repository isn't scrubbed (unless requested),
+     * so that the first scrubs are spread evenly across the startupSpread, but always in the same order.
+     */
+    private long getStartupDelay(String key)
+    {
+        return startupSpread > 0 ? Math.abs((long) key.hashCode()) % startupSpread : 0;
+    }
+
+    private boolean isScrubbable(Repository repository)
+    {
+        // The group repositories don't have any artifacts of their own
+        return !RepositoryTypeEnum.GROUP.getType().equals(repository.getType()) &&
+               new File(repository.getBasedir()).isDirectory();
+    }
+
+    /**
+     * Verifies the artifact against its checksum files, writing the missing ones.
+     */
+    private void verify(Storage storage,
+                        Repository repository,
+                        String path,
+                        ScrubStatus status)
+    {
+        final File basedir = new File(repository.getBasedir());
+        final File artifactFile = new File(basedir, path);
+
+        try
+        {
+            final long lastModified = artifactFile.lastModified();
+            final long length = artifactFile.length();
+
+            if (System.currentTimeMillis() - lastModified < minimumAge)
+            {
+                status.addSkippedFile();
+
+                return;
+            }
+
+            final Set<String> algorithms = new LinkedHashSet<>(Arrays.asList(MultipleDigestInputStream.DEFAULT_ALGORITHMS));
+            algorithms.addAll(repository.getDigestAlgorithms());
+
+            final Map<String, String> digests = digest(artifactFile, algorithms);
+
+            if (artifactFile.lastModified() != lastModified || artifactFile.length() != length)
+            {
+                // The artifact has been replaced in the meantime
+                status.addSkippedFile();
+
+                return;
+            }
+
+            status.addScannedFile(length);
+
+            final List<String> mismatches = new ArrayList<>();
+            for (String algorithm : algorithms)
+            {
+                final String digest = digests.get(algorithm);
+                final String extension = EncryptionAlgorithmsEnum.fromAlgorithm(algorithm).getExtension();
+                final String checksum = readChecksum(new File(artifactFile.getPath() + extension));
+
+                if (checksum == null)
+                {
+                    if (repairEnabled)
+                    {
+                        MessageDigestUtils.writeChecksum(artifactFile, extension, digest);
+                        status.addRegeneratedChecksum();
+
+                        logger.debug("Regenerated the missing checksum file " + path + extension + ".");
+                    }
+                }
+                else if (!checksum.equalsIgnoreCase(digest))
+                {
+                    mismatches.add(algorithm + " (expected: " + checksum + ", actual: " + digest + ")");
+                }
+            }
+
+            if (!mismatches.isEmpty())
+            {
+                handleMismatch(storage, repository, path, mismatches, status);
+            }
+            else if (checksumStore != null)
+            {
+                final ChecksumRecord record = checksumStore.get(storage.getId(), repository.getId(), path);
+                if (record == null || !record.isValidFor(length, lastModified))
+                {
+                    checksumStore.put(storage.getId(), repository.getId(), path, digests, artifactFile);
+                }
+            }
+        }
+        catch (IOException | NoSuchAlgorithmException e)
+        {
+            if (!artifactFile.exists())
+            {
+                // Deleted in the meantime
+                status.addSkippedFile();
+
+                return;
+            }
+
+            status.addError();
+
+            logger.error("Failed to verify " + storage.getId() + ":" + repository.getId() + ":" + path + "!", e);
+        }
+    }
+
+    private Map<String, String> digest(File artifactFile,
+                                       Set<String> algorithms)
+            throws IOException, NoSuchAlgorithmException
+    {
+        InputStream is = null;
+        try
+        {
+            final MultipleDigestInputStream mdis =
+                    new MultipleDigestInputStream(new ThrottledInputStream(new FileInputStream(artifactFile), rateLimiter),
+                                                  algorithms.toArray(new String[algorithms.size()]));
+            is = mdis;
+
+            final byte[] bytes = new byte[64 * 1024];
+            //noinspection StatementWithEmptyBody
+            while (mdis.read(bytes, 0, bytes.length) != -1)
+            {
+            }
+
+            return mdis.getHexDigests();
+        }
+        finally
+        {
+            ResourceCloser.close(is, logger);
+        }
+    }
+
+    private void handleMismatch(Storage storage,
+                                Repository repository,
+                                String path,
+                                List<String> mismatches,
+                                ScrubStatus status)
+            throws IOException
+    {
+        final File basedir = new File(repository.getBasedir());
+
+        final boolean quarantined = quarantineEnabled && quarantine(basedir, path);
+        status.addMismatch(quarantined);
+
+        logger.error("The artifact " + storage.getId() + ":" + repository.getId() + ":" + path +
+                     " does not match its checksum files: " + mismatches +
+                     (quarantined ? "; moved it to " + QUARANTINE_DIRECTORY + "." : "."));
+
+        report(basedir, new Date() + " " + path + " " + mismatches + (quarantined ? " quarantined" : "") + "\n");
+
+        if (checksumCache != null)
+        {
+            checksumCache.invalidate(storage.getId(), repository.getId(), path);
+        }
+    }
+
+    /**
+     * Moves the artifact and its checksum files to the quarantine directory of the repository.
+     */
+    private boolean quarantine(File basedir,
+                               String path)
+            throws IOException
+    {
+        final File quarantineDirectory = new File(basedir, QUARANTINE_DIRECTORY);
+        final File artifactFile = new File(basedir, path);
+
+        final List<String> paths = new ArrayList<>();
+        paths.add(path);
+        for (EncryptionAlgorithmsEnum algorithm : EncryptionAlgorithmsEnum.values())
+        {
+            paths.add(path + algorithm.getExtension());
+        }
+
+        for (String p : paths)
+        {
+            final File file = new File(basedir, p);
+            if (file.isFile())
+            {
+                final File quarantinedFile = new File(quarantineDirectory, p);
+                if (!quarantinedFile.getParentFile().exists())
+                {
+                    //noinspection ResultOfMethodCallIgnored
+                    quarantinedFile.getParentFile().mkdirs();
+                }
+
+                Files.move(file.toPath(), quarantinedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        return !artifactFile.exists();
+    }
+
+    private synchronized void report(File basedir,
+                                     String line)
+            throws IOException
+    {
+        final File reportFile = new File(new File(basedir, SCRUB_DIRECTORY), MISMATCHES_FILE);
+        if (!reportFile.getParentFile().exists())
+        {
+            //noinspection ResultOfMethodCallIgnored
+            reportFile.getParentFile().mkdirs();
+        }
+
+        Files.write(reportFile.toPath(),
+                    line.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Returns the mismatches found in the repository so far (one per line), or null, if there is no such repository.
+     */
+    public String getMismatchReport(String storageId,
+                                    String repositoryId)
+            throws IOException
+    {
+        final Repository repository = getRepository(storageId, repositoryId);
+        if (repository == null)
+        {
+            return null;
+        }
+
+        final File reportFile = new File(new File(repository.getBasedir(), SCRUB_DIRECTORY), MISMATCHES_FILE);
+
+        return reportFile.isFile() ? new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8) : "";
+    }
+
+    private static String readChecksum(File checksumFile)
+            throws IOException
+    {
+        if (!checksumFile.isFile())
+        {
+            return null;
+        }
+
+        final String checksum = MessageDigestUtils.readChecksumFile(checksumFile.getPath());
+
+        // The checksum file may also contain the name of the file after the checksum
+        return checksum != null && !checksum.trim().isEmpty() ? checksum.trim().split("\\s+")[0] : null;
+    }
+
+    private Properties readCheckpoint(File basedir)
+            throws IOException
+    {
+        final Properties checkpoint = new Properties();
+
+        final File checkpointFile = new File(new File(basedir, SCRUB_DIRECTORY), CHECKPOINT_FILE);
+        if (checkpointFile.isFile())
+        {
+            InputStream is = null;
+            try
+            {
+                is = new FileInputStream(checkpointFile);
+                checkpoint.load(is);
+            }
+            finally
+            {
+                ResourceCloser.close(is, logger);
+            }
+        }
+
+        return checkpoint;
+    }
+
+    private void writeCheckpoint(File basedir,
+                                 Properties checkpoint)
+            throws IOException
+    {
+        final File checkpointFile = new File(new File(basedir, SCRUB_DIRECTORY), CHECKPOINT_FILE);
+        if (!checkpointFile.getParentFile().exists())
+        {
+            //noinspection ResultOfMethodCallIgnored
+            checkpointFile.getParentFile().mkdirs();
+        }
+
+        final File tempFile = new File(checkpointFile.getPath() + ".tmp");
+
+        OutputStream os = null;
+        try
+        {
+            os = new FileOutputStream(tempFile);
+            checkpoint.store(os, null);
+            os.close();
+
+            Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            ResourceCloser.close(os, logger);
+        }
+    }
+
+    /**
+     * Compares the paths in the order in which the repository is walked (element by element).
+     */
+    static int comparePaths(String path1,
+                            String path2)
+    {
+        final String[] elements1 = path1.split("/");
+        final String[] elements2 = path2.split("/");
+
+        for (int i = 0; i < Math.min(elements1.length, elements2.length); i++)
+        {
+            final int result = elements1[i].compareTo(elements2[i]);
+            if (result != 0)
+            {
+                return result;
+            }
+        }
+
+        return elements1.length - elements2.length;
+    }
+
+    private Repository getRepository(String storageId,
+                                     String repositoryId)
+    {
+        if (configurationManager == null || configurationManager.getConfiguration() == null)
+        {
+            return null;
+        }
+
+        final Storage storage = configurationManager.getConfiguration().getStorage(storageId);
+
+        return storage != null ? storage.getRepository(repositoryId) : null;
+    }
+
+    private ScrubStatus getStatus(String key)
+    {
+        ScrubStatus status = statuses.get(key);
+        if (status == null)
+        {
+            final ScrubStatus newStatus = new ScrubStatus(key);
+
+            status = statuses.putIfAbsent(key, newStatus);
+            if (status == null)
+            {
+                status = newStatus;
+            }
+        }
+
+        return status;
+    }
+
+    /**
+     * Returns the progress of the repositories which have been scrubbed since the server started, by name.
+     */
+    public Map<String, ScrubStatus> getStatuses()
+    {
+        return new TreeMap<>(statuses);
+    }
+
+    public ConfigurationManager getConfigurationManager()
+    {
+        return configurationManager;
+    }
+
+    public void setConfigurationManager(ConfigurationManager configurationManager)
+    {
+        this.configurationManager = configurationManager;
+    }
+
+    public ChecksumCache getChecksumCache()
+    {
+        return checksumCache;
+    }
+
+    public void setChecksumCache(ChecksumCache checksumCache)
+    {
+        this.checksumCache = checksumCache;
+    }
+
+    public ChecksumStore getChecksumStore()
+    {
+        return checksumStore;
+    }
+
+    public void setChecksumStore(ChecksumStore checksumStore)
+    {
+        this.checksumStore = checksumStore;
+    }
+
+    public long getScrubInterval()
+    {
+        return scrubInterval;
+    }
+
+    public void setScrubInterval(long scrubInterval)
+    {
+        this.scrubInterval = scrubInterval;
+    }
+
+    public long getScrubCheckInterval()
+    {
+        return scrubCheckInterval;
+    }
+
+    public void setScrubCheckInterval(long scrubCheckInterval)
+    {
+        this.scrubCheckInterval = scrubCheckInterval;
+    }
+
+    public long getMinimumAge()
+    {
+        return minimumAge;
+    }
+
+    public void setMinimumAge(long minimumAge)
+    {
+        this.minimumAge = minimumAge;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the maximum number of megabytes read per second (0, or less, for unlimited).
+     */
+    public long getRate()
+    {
+        return rateLimiter.getBytesPerSecond() / (1024 * 1024);
+    }
+
+    public void setRate(long rate)
+    {
+        rateLimiter.setBytesPerSecond(rate * 1024 * 1024);
+    }
+
+    public long getStartupSpread()
+    {
+        return startupSpread;
+    }
+
+    public void setStartupSpread(long startupSpread)
+    {
+        this.startupSpread = startupSpread;
+    }
+
+    public boolean isQuarantineEnabled()
+    {
+        return quarantineEnabled;
+    }
+
+    public void setQuarantineEnabled(boolean quarantineEnabled)
+    {
+        this.quarantineEnabled = quarantineEnabled;
+    }
+
+    public boolean isRepairEnabled()
+    {
+        return repairEnabled;
+    }
+
+    public void setRepairEnabled(boolean repairEnabled)
+    {
+        this.repairEnabled = repairEnabled;
+    }
+
+    public synchronized void startMonitor()
+    {
+        if (monitor == null)
+        {
+            startTime = System.currentTimeMillis();
+
+            monitor = new ScrubMonitor();
+            monitor.start();
+        }
+    }
+
+    public synchronized void stopMonitor()
+    {
+        if (monitor != null)
+        {
+            monitor.interrupt();
+            monitor = null;
+        }
+    }
+
+    /**
+     * Walks a repository in order, verifying its artifacts in batches and checkpointing after each batch.
+     */
+    private class RepositoryScrub
+    {
+
+        private final Storage storage;
+
+        private final Repository repository;
+
+        private final ScrubStatus status;
+
+        private final ExecutorService executor;
+
+        private final Properties checkpoint;
+
+        /**
+         * The path after which to resume, or null, if the scrub is starting from the beginning.
+         */
+        private final String resumeFrom;
+
+        private final List<String> batch = new ArrayList<>();
+
+
+        RepositoryScrub(Storage storage,
+                        Repository repository,
+                        ScrubStatus status,
+                        ExecutorService executor,
+                        Properties checkpoint)
+        {
+            this.storage = storage;
+            this.repository = repository;
+            this.status = status;
+            this.executor = executor;
+            this.checkpoint = checkpoint;
+            this.resumeFrom = checkpoint.getProperty(CHECKPOINT_PATH);
+        }
+
+        /**
+         * @return False, if the scrub was stopped.
+         */
+        boolean walk(File directory,
+                     String directoryPath)
+                throws IOException
+        {
+            final String[] names = directory.list();
+            if (names == null)
+            {
+                return true;
+            }
+
+            Arrays.sort(names);
+
+            for (String name : names)
+            {
+                final File file = new File(directory, name);
+
+                // Skip the trash, the temporary files, the compressed siblings, the blobs, the index,
+                // the quarantine, etc.
+                if (!ArtifactFileUtils.isStorageArtifact(file))
+                {
+                    continue;
+                }
+
+                final String path = directoryPath.isEmpty() ? name : directoryPath + "/" + name;
+
+                if (file.isDirectory())
+                {
+                    // Skip the directories which were verified before the scrub was interrupted
+                    if (resumeFrom != null && comparePaths(path, resumeFrom) < 0 && !resumeFrom.startsWith(path + "/"))
+                    {
+                        continue;
+                    }
+
+                    if (!walk(file, path))
+                    {
+                        return false;
+                    }
+                }
+                else if (!ArtifactFileUtils.isChecksum(path) &&
+                         !path.endsWith(".asc") &&
+                         (resumeFrom == null || comparePaths(path, resumeFrom) > 0))
+                {
+                    batch.add(path);
+                    if (batch.size() >= threads * BATCH_SIZE && !flush())
+                    {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Verifies the batch of artifacts and checkpoints the last one.
+         *
+         * @return False, if the scrub was stopped.
+         */
+        boolean flush()
+                throws IOException
+        {
+            if (batch.isEmpty())
+            {
+                return !Thread.currentThread().isInterrupted();
+            }
+
+            final List<Future<?>> futures = new ArrayList<>(batch.size());
+            for (final String path : batch)
+            {
+                futures.add(executor.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        verify(storage, repository, path, status);
+                    }
+                }));
+            }
+
+            try
+            {
+                for (Future<?> future : futures)
+                {
+                    future.get();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+
+                return false;
+            }
+            catch (ExecutionException e)
+            {
+                status.addError();
+
+                logger.error(e.getCause().getMessage(), e.getCause());
+            }
+
+            final String lastPath = batch.get(batch.size() - 1);
+            batch.clear();
+
+            checkpoint.setProperty(CHECKPOINT_PATH, lastPath);
+            writeCheckpoint(new File(repository.getBasedir()), checkpoint);
+
+            status.setCheckpoint(lastPath);
+
+            return !Thread.currentThread().isInterrupted();
+        }
+
+    }
+
+    private class ScrubMonitor
+            extends Thread
+    {
+
+        private ScrubMonitor()
+        {
+            super("strongbox-integrity-scrubber");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (!isInterrupted())
+                {
+                    final String key = requests.poll(getScrubCheckInterval(), TimeUnit.MILLISECONDS);
+                    if (key != null)
+                    {
+                        try
+                        {
+                            scrub(key.substring(0, key.indexOf(':')), key.substring(key.indexOf(':') + 1));
+                        }
+                        catch (IOException e)
+                        {
+                            logger.error("Failed to scrub " + key + "!", e);
+                        }
+                    }
+                    else
+                    {
+                        scrubDueRepositories();
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                logger.debug("Stopped scrubbing the repositories.");
+            }
+        }
+    }
+
+}
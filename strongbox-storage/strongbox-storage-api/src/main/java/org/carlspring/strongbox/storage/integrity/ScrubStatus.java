@@ -0,0 +1,211 @@
+package org.carlspring.strongbox.storage.integrity;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The progress of the current (or the last) scrub of a repository.
+ *
+ * @author mtodorov
+ */
+public class ScrubStatus
+{
+
+    private final String name;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile long startTime;
+
+    private volatile long finishTime;
+
+    /**
+     * The last path of the repository which has been verified (and checkpointed).
+     */
+    private volatile String checkpoint;
+
+    private final AtomicLong scannedFiles = new AtomicLong();
+
+    private final AtomicLong scannedBytes = new AtomicLong();
+
+    private final AtomicLong skippedFiles = new AtomicLong();
+
+    private final AtomicLong mismatches = new AtomicLong();
+
+    private final AtomicLong quarantined = new AtomicLong();
+
+    private final AtomicLong regeneratedChecksums = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+
+    public ScrubStatus(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * @return False, if the repository is already being scrubbed.
+     */
+    boolean start(String checkpoint)
+    {
+        if (!running.compareAndSet(false, true))
+        {
+            return false;
+        }
+
+        this.startTime = System.currentTimeMillis();
+        this.finishTime = 0;
+        this.checkpoint = checkpoint;
+
+        scannedFiles.set(0);
+        scannedBytes.set(0);
+        skippedFiles.set(0);
+        mismatches.set(0);
+        quarantined.set(0);
+        regeneratedChecksums.set(0);
+        errors.set(0);
+
+        return true;
+    }
+
+    void finish()
+    {
+        finishTime = System.currentTimeMillis();
+        running.set(false);
+    }
+
+    void addScannedFile(long bytes)
+    {
+        scannedFiles.incrementAndGet();
+        scannedBytes.addAndGet(bytes);
+    }
+
+    void addSkippedFile()
+    {
+        skippedFiles.incrementAndGet();
+    }
+
+    void addMismatch(boolean quarantined)
+    {
+        mismatches.incrementAndGet();
+        if (quarantined)
+        {
+            this.quarantined.incrementAndGet();
+        }
+    }
+
+    void addRegeneratedChecksum()
+    {
+        regeneratedChecksums.incrementAndGet();
+    }
+
+    void addError()
+    {
+        errors.incrementAndGet();
+    }
+
+    void setCheckpoint(String checkpoint)
+    {
+        this.checkpoint = checkpoint;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public boolean isRunning()
+    {
+        return running.get();
+    }
+
+    public long getStartTime()
+    {
+        return startTime;
+    }
+
+    public long getFinishTime()
+    {
+        return finishTime;
+    }
+
+    public String getCheckpoint()
+    {
+        return checkpoint;
+    }
+
+    public long getScannedFiles()
+    {
+        return scannedFiles.get();
+    }
+
+    public long getScannedBytes()
+    {
+        return scannedBytes.get();
+    }
+
+    /**
+     * Returns the number of files which were skipped, because they were modified recently, or while being read.
+     */
+    public long getSkippedFiles()
+    {
+        return skippedFiles.get();
+    }
+
+    /**
+     * Returns the number of artifacts which didn't match their checksum files.
+     */
+    public long getMismatches()
+    {
+        return mismatches.get();
+    }
+
+    public long getQuarantined()
+    {
+        return quarantined.get();
+    }
+
+    public long getRegeneratedChecksums()
+    {
+        return regeneratedChecksums.get();
+    }
+
+    public long getErrors()
+    {
+        return errors.get();
+    }
+
+    /**
+     * Returns the number of bytes read per second since the scrub started.
+     */
+    public long getThroughput()
+    {
+        if (startTime == 0)
+        {
+            return 0;
+        }
+
+        final long elapsed = (finishTime > 0 ? finishTime : System.currentTimeMillis()) - startTime;
+
+        return elapsed > 0 ? scannedBytes.get() * 1000 / elapsed : 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + ".running=" + isRunning() + '\n' +
+               name + ".startTime=" + getStartTime() + '\n' +
+               name + ".finishTime=" + getFinishTime() + '\n' +
+               name + ".checkpoint=" + (checkpoint != null ? checkpoint : "") + '\n' +
+               name + ".scannedFiles=" + getScannedFiles() + '\n' +
+               name + ".scannedBytes=" + getScannedBytes() + '\n' +
+               name + ".skippedFiles=" + getSkippedFiles() + '\n' +
+               name + ".throughput=" + getThroughput() + '\n' +
+               name + ".mismatches=" + getMismatches() + '\n' +
+               name + ".quarantined=" + getQuarantined() + '\n' +
+               name + ".regeneratedChecksums=" + getRegeneratedChecksums() + '\n' +
+               name + ".errors=" + getErrors() + '\n';
+    }
+
+}
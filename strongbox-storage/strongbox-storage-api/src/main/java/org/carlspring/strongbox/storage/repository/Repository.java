@@ -61,6 +61,41 @@ public class Repository
     @XmlAttribute(name = "checksum-headers-enabled")
     private boolean checksumHeadersEnabled = false;
 
+    /**
+     * Whether the server writes the MD5 and SHA-1 checksum files of the uploaded artifacts itself.
+     * The checksum files deployed by the clients are then only verified against these and never stored.
+     */
+    @XmlAttribute(name = "checksum-generation-enabled")
+    private boolean checksumGenerationEnabled = false;
+
+    /**
+     * What is forced to the disk, before a stored file is moved to its location (none, data or full).
+     */
+    @XmlAttribute
+    private String durability = RepositoryDurabilityEnum.NONE.getDurability();
+
+    /**
+     * The maximum number of uploads to the repository which are written at the same time
+     * (0: the server's default, -1: unlimited).
+     */
+    @XmlAttribute(name = "max-concurrent-uploads")
+    private int maxConcurrentUploads = 0;
+
+    /**
+     * The maximum number of uploads to the repository which wait for one of the others to complete, before further uploads
+     * are rejected (0: the server's default).
+     */
+    @XmlAttribute(name = "max-queued-uploads")
+    private int maxQueuedUploads = 0;
+
+    /**
+     * The digests (such as SHA-256 and SHA-512) to calculate for the uploaded artifacts, in addition to MD5 and SHA-1.
+     * The checksum files for these are generated by the server.
+     */
+    @XmlElement(name = "digest-algorithm")
+    @XmlElementWrapper(name = "digest-algorithms")
+    private Set<String> digestAlgorithms = new LinkedHashSet<>();
+
     /**
      * The per-repository proxy settings that override the overall global proxy settings.
      */
@@ -265,6 +300,56 @@ public class Repository
         this.checksumHeadersEnabled = checksumHeadersEnabled;
     }
 
+    public boolean isChecksumGenerationEnabled()
+    {
+        return checksumGenerationEnabled;
+    }
+
+    public void setChecksumGenerationEnabled(boolean checksumGenerationEnabled)
+    {
+        this.checksumGenerationEnabled = checksumGenerationEnabled;
+    }
+
+    public String getDurability()
+    {
+        return durability;
+    }
+
+    public void setDurability(String durability)
+    {
+        this.durability = durability;
+    }
+
+    public int getMaxConcurrentUploads()
+    {
+        return maxConcurrentUploads;
+    }
+
+    public void setMaxConcurrentUploads(int maxConcurrentUploads)
+    {
+        this.maxConcurrentUploads = maxConcurrentUploads;
+    }
+
+    public int getMaxQueuedUploads()
+    {
+        return maxQueuedUploads;
+    }
+
+    public void setMaxQueuedUploads(int maxQueuedUploads)
+    {
+        this.maxQueuedUploads = maxQueuedUploads;
+    }
+
+    public Set<String> getDigestAlgorithms()
+    {
+        return digestAlgorithms;
+    }
+
+    public void setDigestAlgorithms(Set<String> digestAlgorithms)
+    {
+        this.digestAlgorithms = digestAlgorithms;
+    }
+
     public ProxyConfiguration getProxyConfiguration()
     {
         return proxyConfiguration;
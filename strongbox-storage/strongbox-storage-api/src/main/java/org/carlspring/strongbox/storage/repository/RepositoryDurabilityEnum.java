@@ -0,0 +1,67 @@
+package org.carlspring.strongbox.storage.repository;
+
+/**
+ * Defines what is forced to the disk, before a stored file is made visible to the clients.
+ *
+ * @author mtodorov
+ */
+public enum RepositoryDurabilityEnum
+{
+
+    /**
+     * Nothing is forced; the file is flushed to the disk by the operating system.
+     */
+    NONE("none"),
+
+    /**
+     * The contents of the file are forced to the disk (fdatasync), before it's moved to its location.
+     */
+    DATA("data"),
+
+    /**
+     * The contents of the file are forced to the disk, before it's moved to its location,
+     * after which its directory is also forced, so that the move itself survives a crash.
+     */
+    FULL("full");
+
+    private String durability;
+
+
+    RepositoryDurabilityEnum(String durability)
+    {
+        this.durability = durability;
+    }
+
+    public String getDurability()
+    {
+        return durability;
+    }
+
+    public void setDurability(String durability)
+    {
+        this.durability = durability;
+    }
+
+    /**
+     * Returns the durability with the specified name, or {@link #NONE}, if there is no such durability.
+     */
+    public static RepositoryDurabilityEnum fromDurability(String durability)
+    {
+        for (RepositoryDurabilityEnum value : values())
+        {
+            if (value.getDurability().equalsIgnoreCase(durability))
+            {
+                return value;
+            }
+        }
+
+        return NONE;
+    }
+
+    @Override
+    public String toString()
+    {
+        return durability;
+    }
+
+}
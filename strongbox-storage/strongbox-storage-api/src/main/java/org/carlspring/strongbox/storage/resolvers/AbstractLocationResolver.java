@@ -2,10 +2,27 @@ package org.carlspring.strongbox.storage.resolvers;
 
 import org.carlspring.strongbox.configuration.Configuration;
 import org.carlspring.strongbox.configuration.ConfigurationManager;
+import org.carlspring.strongbox.io.ArtifactInputStream;
+import org.carlspring.strongbox.io.MultipleDigestInputStream;
 import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.repository.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.NoSuchAlgorithmException;
+
 /**
  * @author mtodorov
  */
@@ -13,9 +30,16 @@ import org.springframework.stereotype.Component;
 public abstract class AbstractLocationResolver implements LocationResolver
 {
 
+    private static final Logger logger = LoggerFactory.getLogger(AbstractLocationResolver.class);
+
     @Autowired
     private ConfigurationManager configurationManager;
 
+    @Autowired
+    private NegativeLookupCache negativeLookupCache;
+
+    private RepositoryPathResolver repositoryPathResolver = new RepositoryPathResolver();
+
 
     public ConfigurationManager getConfigurationManager()
     {
@@ -37,4 +61,128 @@ public abstract class AbstractLocationResolver implements LocationResolver
         return configurationManager.getConfiguration().getStorage(storageId);
     }
 
+    /**
+     * Resolves the path against the basedir of the repository, rejecting paths outside of it.
+     */
+    protected Path resolvePath(Repository repository, String path)
+            throws IOException
+    {
+        return repositoryPathResolver.resolve(repository, path);
+    }
+
+    /**
+     * Returns the artifact file with a single file system call,
+     * or null, if there is no such file (or if it's a directory).
+     */
+    protected File getFile(Repository repository, String path)
+            throws IOException
+    {
+        final String storageId = repository.getStorage().getId();
+        if (negativeLookupCache.isKnownMiss(storageId, repository.getId(), path))
+        {
+            return null;
+        }
+
+        final long generation = negativeLookupCache.getGeneration();
+        final Path artifactPath = resolvePath(repository, path);
+
+        logger.debug(" -> Checking for " + artifactPath + "...");
+
+        final BasicFileAttributes attributes;
+        try
+        {
+            attributes = Files.readAttributes(artifactPath, BasicFileAttributes.class);
+        }
+        catch (NoSuchFileException e)
+        {
+            negativeLookupCache.addMiss(storageId, repository.getId(), path, generation);
+
+            return null;
+        }
+        catch (FileSystemException e)
+        {
+            // For example, when a part of the path is a file. Just like File.exists(), treat this as a miss.
+            logger.debug("Failed to check for " + artifactPath + ": " + e.getMessage());
+
+            negativeLookupCache.addMiss(storageId, repository.getId(), path, generation);
+
+            return null;
+        }
+
+        if (!attributes.isRegularFile())
+        {
+            return null;
+        }
+
+        logger.debug("Resolved " + artifactPath + "!");
+
+        return artifactPath.toFile();
+    }
+
+    /**
+     * Opens the resolved artifact file for reading.
+     */
+    protected ArtifactInputStream getInputStream(File artifactFile)
+            throws IOException, NoSuchAlgorithmException
+    {
+        return getInputStream(artifactFile.toPath());
+    }
+
+    /**
+     * Opens the artifact file for reading with a single attempt, instead of checking whether it exists first,
+     * or returns null, if there is no such file.
+     *
+     * Directories can be opened as well, but fail, once they're read; use {@link #getFile(Repository, String)}
+     * first, if the path might be a directory.
+     */
+    protected ArtifactInputStream getInputStream(Path artifactPath)
+            throws IOException, NoSuchAlgorithmException
+    {
+        final FileChannel fileChannel;
+        try
+        {
+            fileChannel = FileChannel.open(artifactPath, StandardOpenOption.READ);
+        }
+        catch (NoSuchFileException e)
+        {
+            return null;
+        }
+        catch (FileSystemException e)
+        {
+            logger.debug("Failed to open " + artifactPath + ": " + e.getMessage());
+
+            return null;
+        }
+
+        logger.debug("Resolved " + artifactPath + "!");
+
+        // Downloads don't need any digests; callers which do can add them via addAlgorithm()
+        ArtifactInputStream ais = new ArtifactInputStream(Channels.newInputStream(fileChannel),
+                                                          MultipleDigestInputStream.NO_ALGORITHMS);
+        ais.setLength(fileChannel.size());
+        ais.setFileChannel(fileChannel);
+
+        return ais;
+    }
+
+    public NegativeLookupCache getNegativeLookupCache()
+    {
+        return negativeLookupCache;
+    }
+
+    public void setNegativeLookupCache(NegativeLookupCache negativeLookupCache)
+    {
+        this.negativeLookupCache = negativeLookupCache;
+    }
+
+    public RepositoryPathResolver getRepositoryPathResolver()
+    {
+        return repositoryPathResolver;
+    }
+
+    public void setRepositoryPathResolver(RepositoryPathResolver repositoryPathResolver)
+    {
+        this.repositoryPathResolver = repositoryPathResolver;
+    }
+
 }
@@ -0,0 +1,58 @@
+package org.carlspring.strongbox.storage.resolvers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thrown, when a file of an archive couldn't be stored. The files of the archive before it have already been
+ * stored (and queued for indexing), so the metadata of their artifact directories still has to be rebuilt.
+ *
+ * @author mtodorov
+ */
+public class ArchiveStorageException
+        extends ArtifactStorageException
+{
+
+    /**
+     * The path of the file which couldn't be stored.
+     */
+    private String path;
+
+    /**
+     * The paths of the files of the archive, which have been stored.
+     */
+    private List<String> storedPaths = new ArrayList<>();
+
+
+    public ArchiveStorageException(String message,
+                                   String path,
+                                   List<String> storedPaths,
+                                   Throwable cause)
+    {
+        super(message, cause);
+
+        this.path = path;
+        this.storedPaths = storedPaths;
+    }
+
+    public String getPath()
+    {
+        return path;
+    }
+
+    public void setPath(String path)
+    {
+        this.path = path;
+    }
+
+    public List<String> getStoredPaths()
+    {
+        return storedPaths;
+    }
+
+    public void setStoredPaths(List<String> storedPaths)
+    {
+        this.storedPaths = storedPaths;
+    }
+
+}
@@ -7,18 +7,20 @@ import org.carlspring.maven.commons.util.ArtifactUtils;
 import org.carlspring.strongbox.io.ArtifactFile;
 import org.carlspring.strongbox.io.ArtifactFileOutputStream;
 import org.carlspring.strongbox.io.ArtifactInputStream;
+import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
 import org.carlspring.strongbox.storage.Storage;
 import org.carlspring.strongbox.storage.repository.Repository;
+import org.carlspring.strongbox.util.ArtifactFileUtils;
 import org.carlspring.strongbox.util.DirUtils;
+import org.carlspring.strongbox.util.GzipFileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.file.Paths;
+import java.nio.file.Files;
 import java.security.NoSuchAlgorithmException;
 import java.util.Map;
 
@@ -49,22 +51,34 @@ public class FSLocationResolver
 
         logger.debug("Checking in " + storage.getId() + ":" + repositoryId + "...");
 
-        final File repoPath = new File(storage.getRepository(repositoryId).getBasedir());
-        final File artifactFile = new File(repoPath, artifactPath).getCanonicalFile();
+        if (getNegativeLookupCache().isKnownMiss(storageId, repositoryId, artifactPath))
+        {
+            return null;
+        }
 
-        logger.debug(" -> Checking for " + artifactFile.getCanonicalPath() + "...");
+        final long generation = getNegativeLookupCache().getGeneration();
 
-        if (artifactFile.exists())
+        // Just try to open it; a missing file is a miss, so there's no need to check whether it exists
+        final ArtifactInputStream ais = getInputStream(resolvePath(storage.getRepository(repositoryId), artifactPath));
+        if (ais == null)
         {
-            logger.debug("Resolved " + artifactFile.getCanonicalPath() + "!");
-
-            ArtifactInputStream ais = new ArtifactInputStream(new FileInputStream(artifactFile));
-            ais.setLength(artifactFile.length());
-            
-            return ais;
+            getNegativeLookupCache().addMiss(storageId, repositoryId, artifactPath, generation);
         }
 
-        return null;
+        return ais;
+    }
+
+    @Override
+    public File getFile(String storageId,
+                        String repositoryId,
+                        String artifactPath)
+            throws IOException
+    {
+        Storage storage = getConfiguration().getStorage(storageId);
+
+        logger.debug("Checking in " + storage.getId() + ":" + repositoryId + "...");
+
+        return getFile(storage.getRepository(repositoryId), artifactPath);
     }
 
     @Override
@@ -76,16 +90,19 @@ public class FSLocationResolver
         Storage storage = getConfiguration().getStorage(storageId);
         Repository repository = storage.getRepository(repositoryId);
 
+        // Reject paths outside of the repository, before anything is written
+        resolvePath(repository, artifactPath);
+
+        // All the files are written to a temporary file first, which then atomically replaces the file
         ArtifactFile artifactFile;
-        if (!ArtifactUtils.isMetadata(artifactPath) && !ArtifactUtils.isChecksum(artifactPath))
+        if (!ArtifactUtils.isMetadata(artifactPath) && !ArtifactFileUtils.isChecksum(artifactPath))
         {
             Artifact artifact = ArtifactUtils.convertPathToArtifact(artifactPath);
             artifactFile = new ArtifactFile(repository, artifact, true);
         }
         else
         {
-            final File repoPath = new File(storage.getRepository(repositoryId).getBasedir());
-            artifactFile = new ArtifactFile(new File(repoPath, artifactPath).getCanonicalFile());
+            artifactFile = new ArtifactFile(repository, artifactPath, true);
         }
 
         artifactFile.createParents();
@@ -99,10 +116,7 @@ public class FSLocationResolver
     {
         Storage storage = getConfiguration().getStorage(storageId);
 
-        final File repoPath = new File(storage.getRepository(repositoryId).getBasedir());
-        final File artifactFile = new File(repoPath, path).getCanonicalFile();
-
-        return artifactFile.exists();
+        return Files.exists(resolvePath(storage.getRepository(repositoryId), path));
     }
 
     @Override
@@ -115,11 +129,10 @@ public class FSLocationResolver
         Storage storage = getConfiguration().getStorage(storageId);
         Repository repository = storage.getRepository(repositoryId);
 
-        final File repoPath = new File(repository.getBasedir());
-        final File artifactFile = new File(repoPath, path).getCanonicalFile();
+        final File artifactFile = resolvePath(repository, path).toFile();
         final File basedirTrash = repository.getTrashDir();
 
-        logger.debug("Checking in " + storage.getId() + ":" + repository.getId() + "(" + artifactFile.getCanonicalPath() + ")...");
+        logger.debug("Checking in " + storage.getId() + ":" + repository.getId() + "(" + artifactFile.getPath() + ")...");
 
         if (artifactFile.exists())
         {
@@ -141,6 +154,9 @@ public class FSLocationResolver
                     artifactFile.delete();
                     deleteChecksums(repositoryId, path, artifactFile);
                 }
+
+                // The compressed sibling is not moved to the trash, as it's regenerated upon request
+                GzipFileUtils.deleteCompressedFile(artifactFile);
             }
             else
             {
@@ -168,24 +184,19 @@ public class FSLocationResolver
                                       File basedirTrash)
             throws IOException
     {
-        File md5ChecksumFile = new File(artifactFile.getAbsolutePath() + ".md5");
-        if (md5ChecksumFile.exists())
+        for (EncryptionAlgorithmsEnum algorithm : EncryptionAlgorithmsEnum.values())
         {
-            File md5TrashFile = new File(basedirTrash, path + ".md5").getCanonicalFile();
-            FileUtils.moveFile(md5ChecksumFile, md5TrashFile);
+            final String extension = algorithm.getExtension();
 
-            logger.debug("Moved /" + repositoryId + "/" + path + ".md5" + " to trash (" + md5TrashFile.getAbsolutePath() + ").");
-        }
-
-        File sha1ChecksumFile = new File(artifactFile.getAbsolutePath() + ".sha1");
-        if (sha1ChecksumFile.exists())
-        {
-            File sha1TrashFile = new File(basedirTrash, path + ".sha1").getCanonicalFile();
-            FileUtils.moveFile(sha1ChecksumFile, sha1TrashFile);
+            File checksumFile = new File(artifactFile.getAbsolutePath() + extension);
+            if (checksumFile.exists())
+            {
+                File trashFile = new File(basedirTrash, path + extension).getCanonicalFile();
+                FileUtils.moveFile(checksumFile, trashFile);
 
-            logger.debug(
-                    "Moved /" + repositoryId + "/" + path + ".sha1" + " to trash (" + sha1TrashFile.getAbsolutePath() +
-                    ").");
+                logger.debug("Moved /" + repositoryId + "/" + path + extension + " to trash (" +
+                             trashFile.getAbsolutePath() + ").");
+            }
         }
     }
 
@@ -194,22 +205,18 @@ public class FSLocationResolver
                                  File artifactFile)
             throws IOException
     {
-        File md5ChecksumFile = new File(artifactFile.getAbsolutePath() + ".md5");
-        if (md5ChecksumFile.exists())
+        for (EncryptionAlgorithmsEnum algorithm : EncryptionAlgorithmsEnum.values())
         {
-            //noinspection ResultOfMethodCallIgnored
-            md5ChecksumFile.delete();
-
-            logger.debug("Deleted /" + repositoryId + "/" + path + ".md5.");
-        }
+            final String extension = algorithm.getExtension();
 
-        File sha1ChecksumFile = new File(artifactFile.getAbsolutePath() + ".sha1");
-        if (sha1ChecksumFile.exists())
-        {
-            //noinspection ResultOfMethodCallIgnored
-            sha1ChecksumFile.delete();
+            File checksumFile = new File(artifactFile.getAbsolutePath() + extension);
+            if (checksumFile.exists())
+            {
+                //noinspection ResultOfMethodCallIgnored
+                checksumFile.delete();
 
-            logger.debug("Deleted /" + repositoryId + "/" + path + ".sha1.");
+                logger.debug("Deleted /" + repositoryId + "/" + path + extension + ".");
+            }
         }
     }
 
@@ -222,22 +229,19 @@ public class FSLocationResolver
         Storage storage = getConfiguration().getStorage(storageId);
         Repository repository = storage.getRepository(repositoryId);
 
-        File md5ChecksumFile = new File(artifactFile.getAbsolutePath() + ".md5");
-        if (md5ChecksumFile.exists())
+        for (EncryptionAlgorithmsEnum algorithm : EncryptionAlgorithmsEnum.values())
         {
-            File md5RestoredFile = new File(repository.getBasedir(), path + ".md5").getCanonicalFile();
-            FileUtils.moveFile(md5ChecksumFile, md5RestoredFile);
-
-            logger.debug("Restored /" + repositoryId + "/" + path + ".md5" + " from trash (" + md5ChecksumFile.getAbsolutePath() + ").");
-        }
+            final String extension = algorithm.getExtension();
 
-        File sha1ChecksumFile = new File(artifactFile.getAbsolutePath() + ".sha1");
-        if (sha1ChecksumFile.exists())
-        {
-            File sha1RestoredFile = new File(repository.getBasedir(), path + ".sha1").getCanonicalFile();
-            FileUtils.moveFile(sha1ChecksumFile, sha1RestoredFile);
+            File checksumFile = new File(artifactFile.getAbsolutePath() + extension);
+            if (checksumFile.exists())
+            {
+                File restoredFile = new File(repository.getBasedir(), path + extension).getCanonicalFile();
+                FileUtils.moveFile(checksumFile, restoredFile);
 
-            logger.debug("Restored /" + repositoryId + "/" + path + ".sha1" + " from trash (" + sha1ChecksumFile.getAbsolutePath() + ").");
+                logger.debug("Restored /" + repositoryId + "/" + path + extension + " from trash (" +
+                             checksumFile.getAbsolutePath() + ").");
+            }
         }
     }
 
@@ -295,11 +299,10 @@ public class FSLocationResolver
         Storage storage = getConfiguration().getStorage(storageId);
         Repository repository = storage.getRepository(repositoryId);
 
-        final File repoPath = new File(repository.getBasedir());
-        final File artifactFile = new File(repoPath, path).getCanonicalFile();
+        final File artifactFile = resolvePath(repository, path).toFile();
         final File artifactFileTrash = new File(repository.getTrashDir(), path);
 
-        logger.debug("Attempting to restore " + artifactFileTrash.getCanonicalPath() + " (from " + storage.getId() + ":" + repository.getId() + ")...");
+        logger.debug("Attempting to restore " + artifactFileTrash.getPath() + " (from " + storage.getId() + ":" + repository.getId() + ")...");
 
         if (artifactFileTrash.exists())
         {
@@ -13,10 +13,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -35,6 +35,9 @@ public class GroupLocationResolver
     @Autowired
     private BasicRepositoryService basicRepositoryService;
 
+    @Autowired
+    private GroupMemberIndex groupMemberIndex;
+
 
     public GroupLocationResolver()
     {
@@ -45,36 +48,68 @@ public class GroupLocationResolver
                                               String repositoryId,
                                               String artifactPath)
             throws IOException, NoSuchAlgorithmException
+    {
+        final File artifactFile = getFile(storageId, repositoryId, artifactPath);
+
+        return artifactFile != null ? getInputStream(artifactFile) : null;
+    }
+
+    @Override
+    public File getFile(String storageId,
+                        String repositoryId,
+                        String artifactPath)
+            throws IOException
     {
         Storage storage = getConfiguration().getStorage(storageId);
 
         logger.debug("Checking in " + storage.getId() + ":" + repositoryId + "...");
 
+        // Don't walk all the member repositories for paths which are known not to exist in any of them
+        if (getNegativeLookupCache().isKnownMiss(storageId, repositoryId, artifactPath))
+        {
+            return null;
+        }
+
+        final long generation = getNegativeLookupCache().getGeneration();
+
+        final File artifactFile = getFileFromGroupRepository(storage, repositoryId, artifactPath);
+        if (artifactFile == null)
+        {
+            getNegativeLookupCache().addMiss(storageId, repositoryId, artifactPath, generation);
+        }
+
+        return artifactFile;
+    }
+
+    private File getFileFromGroupRepository(Storage storage,
+                                            String repositoryId,
+                                            String artifactPath)
+            throws IOException
+    {
         Repository groupRepository = storage.getRepository(repositoryId);
 
         // Check the routing rules first.
         // Check the routing accept rules for the specified repository.
-        final ArtifactInputStream isRepositoryAccept = getInputStreamFromRepositoryAcceptRules(repositoryId,
-                                                                                               artifactPath,
-                                                                                               storage);
-
-        if (isRepositoryAccept != null)
+        final File fileRepositoryAccept = getFileFromRepositoryAcceptRules(repositoryId, artifactPath, storage);
+        if (fileRepositoryAccept != null)
         {
-            return isRepositoryAccept;
+            return fileRepositoryAccept;
         }
 
         // Check the routing rules for wildcard accept rules
-        final ArtifactInputStream isWildcardRepositoryAccept = getInputStreamFromWildcardRepositoryAcceptRules(artifactPath, storage);
-        if (isWildcardRepositoryAccept != null)
+        final File fileWildcardRepositoryAccept = getFileFromWildcardRepositoryAcceptRules(artifactPath, storage);
+        if (fileWildcardRepositoryAccept != null)
         {
-            return isWildcardRepositoryAccept;
+            return fileWildcardRepositoryAccept;
         }
 
         // Handle:
         // - Repository deny
         // - Repository wildcard repository deny
-        final RuleSet denyRules = getRoutingRules().getDenyRules(repositoryId);
-        final RuleSet wildcardDenyRules = getRoutingRules().getWildcardDeniedRules();
+        // The deny rules are matched against the path only once, rather than for each member repository
+        final List<RoutingRule> denyRules = getMatchingRules(getRoutingRules().getDenyRules(repositoryId), artifactPath);
+        final List<RoutingRule> wildcardDenyRules = getMatchingRules(getRoutingRules().getWildcardDeniedRules(),
+                                                                     artifactPath);
 
         // If there are no matches in the routing rules, then loop as usual:
         for (String storageAndRepositoryId : groupRepository.getGroupRepositories())
@@ -82,16 +117,22 @@ public class GroupLocationResolver
             String sId = getConfigurationManager().getStorageId(storage, storageAndRepositoryId);
             String rId = getConfigurationManager().getRepositoryId(storageAndRepositoryId);
 
+            // Skip the members which are known not to contain the path (without changing the order)
+            if (!groupMemberIndex.mayContain(sId, rId, artifactPath))
+            {
+                continue;
+            }
+
             Repository r = getConfiguration().getStorage(sId).getRepository(rId);
 
             if (r.isInService() &&
                 !repositoryRejects(r.getId(), artifactPath, denyRules) &&
                 !repositoryRejects(r.getId(), artifactPath, wildcardDenyRules))
             {
-                final ArtifactInputStream is = getInputStream(r, artifactPath);
-                if (is != null)
+                final File artifactFile = getFile(r, artifactPath);
+                if (artifactFile != null)
                 {
-                    return is;
+                    return artifactFile;
                 }
             }
         }
@@ -101,122 +142,89 @@ public class GroupLocationResolver
 
     public boolean repositoryRejects(String repositoryId, String artifactPath, RuleSet denyRules)
     {
-        if (denyRules != null && !denyRules.getRoutingRules().isEmpty())
+        return repositoryRejects(repositoryId, artifactPath, getMatchingRules(denyRules, artifactPath));
+    }
+
+    private boolean repositoryRejects(String repositoryId, String artifactPath, List<RoutingRule> matchingDenyRules)
+    {
+        for (RoutingRule rule : matchingDenyRules)
         {
-            for (RoutingRule rule : denyRules.getRoutingRules())
+            if (rule.getRepositories().contains(repositoryId))
             {
-                if (rule.getRepositories().contains(repositoryId) && artifactPath.matches(rule.getPattern()))
-                {
-                    return true;
-                }
+                logger.debug("Repository " + repositoryId + " rejects " + artifactPath + " via routing rule [-]: " +
+                             rule.getPattern() + ".");
+
+                return true;
             }
         }
 
         return false;
     }
 
-    private ArtifactInputStream getInputStreamFromWildcardRepositoryAcceptRules(String artifactPath, Storage storage)
-            throws IOException, NoSuchAlgorithmException
+    /**
+     * Returns the rules of the rule set which match the path, in their order.
+     */
+    private List<RoutingRule> getMatchingRules(RuleSet ruleSet, String artifactPath)
     {
-        RuleSet globalAcceptRules = getRoutingRules().getWildcardAcceptedRules();
-        if (globalAcceptRules != null && globalAcceptRules.getRoutingRules() != null &&
-            !globalAcceptRules.getRoutingRules().isEmpty())
+        if (ruleSet == null || ruleSet.getRoutingRules() == null || ruleSet.getRoutingRules().isEmpty())
         {
-            int hops = 1;
-            final List<RoutingRule> routingRules = globalAcceptRules.getRoutingRules();
-            for (RoutingRule rule : routingRules)
-            {
-                if (artifactPath.matches(rule.getPattern()))
-                {
-                    for (String rId : rule.getRepositories())
-                    {
-                        String sId = getConfigurationManager().getStorageId(storage, rId);
-                        rId = getConfigurationManager().getRepositoryId(rId);
-
-                        Repository repository = getConfiguration().getStorage(sId).getRepository(rId);
-                        if (repository.isInService() && basicRepositoryService.containsPath(repository, artifactPath))
-                        {
-                            final ArtifactInputStream is = getInputStream(repository, artifactPath);
-                            if (is != null)
-                            {
-                                logger.debug("Located artifact via wildcard routing rule [" + sId + ":" + rId + "]: [+]: " +
-                                             rule.getPattern() + " after " + hops + " hops.");
-
-                                return is;
-                            }
-                        }
-
-                        hops++;
-                    }
-
-                    hops++;
-                }
-            }
+            return Collections.emptyList();
         }
 
-        return null;
+        return ruleSet.getMatcher().getMatchingRules(artifactPath);
     }
 
-    private ArtifactInputStream getInputStreamFromRepositoryAcceptRules(String repositoryId,
-                                                                        String artifactPath,
-                                                                        Storage storage)
-            throws IOException, NoSuchAlgorithmException
+    private File getFileFromWildcardRepositoryAcceptRules(String artifactPath, Storage storage)
+            throws IOException
     {
-        RuleSet acceptRules = getRoutingRules().getAcceptRules(repositoryId);
-        if (acceptRules != null && acceptRules.getRoutingRules() != null &&
-            !acceptRules.getRoutingRules().isEmpty())
-        {
-            int hops = 1;
-            final List<RoutingRule> routingRules = acceptRules.getRoutingRules();
-            for (RoutingRule rule : routingRules)
-            {
-                if (artifactPath.matches(rule.getPattern()))
-                {
-                    for (String rId : rule.getRepositories())
-                    {
-                        String sId = getConfigurationManager().getStorageId(storage, rId);
-                        rId = getConfigurationManager().getRepositoryId(rId);
-
-                        Repository repository = getConfiguration().getStorage(sId).getRepository(rId);
-                        if (repository.isInService() && basicRepositoryService.containsPath(repository, artifactPath))
-                        {
-                            final ArtifactInputStream is = getInputStream(repository, artifactPath);
-                            if (is != null)
-                            {
-                                logger.debug("Located artifact via routing rule [" + sId + ":" + rId + "]: [+]: " +
-                                             rule.getPattern() + " after " + hops + " hops.");
-
-                                return is;
-                            }
-                        }
-
-                        hops++;
-                    }
-
-                    hops++;
-                }
-            }
-        }
+        final List<RoutingRule> routingRules = getMatchingRules(getRoutingRules().getWildcardAcceptedRules(),
+                                                                artifactPath);
 
-        return null;
+        return getFileFromAcceptRules(routingRules, artifactPath, storage, "wildcard routing rule");
     }
 
-    private ArtifactInputStream getInputStream(Repository repository, String artifactPath)
-            throws IOException, NoSuchAlgorithmException
+    private File getFileFromRepositoryAcceptRules(String repositoryId,
+                                                  String artifactPath,
+                                                  Storage storage)
+            throws IOException
     {
-        final File repoPath = new File(repository.getBasedir());
-        final File artifactFile = new File(repoPath, artifactPath).getCanonicalFile();
+        final List<RoutingRule> routingRules = getMatchingRules(getRoutingRules().getAcceptRules(repositoryId),
+                                                                artifactPath);
 
-        logger.debug(" -> Checking for " + artifactFile.getCanonicalPath() + "...");
+        return getFileFromAcceptRules(routingRules, artifactPath, storage, "routing rule");
+    }
 
-        if (artifactFile.exists())
+    private File getFileFromAcceptRules(List<RoutingRule> matchingRules,
+                                        String artifactPath,
+                                        Storage storage,
+                                        String ruleType)
+            throws IOException
+    {
+        int hops = 1;
+        for (RoutingRule rule : matchingRules)
         {
-            logger.debug("Resolved " + artifactFile.getCanonicalPath() + "!");
+            for (String rId : rule.getRepositories())
+            {
+                String sId = getConfigurationManager().getStorageId(storage, rId);
+                rId = getConfigurationManager().getRepositoryId(rId);
 
-            ArtifactInputStream ais = new ArtifactInputStream(new FileInputStream(artifactFile));
-            ais.setLength(artifactFile.length());
+                Repository repository = getConfiguration().getStorage(sId).getRepository(rId);
+                if (repository.isInService() && basicRepositoryService.containsPath(repository, artifactPath))
+                {
+                    final File artifactFile = getFile(repository, artifactPath);
+                    if (artifactFile != null)
+                    {
+                        logger.debug("Located artifact via " + ruleType + " [" + sId + ":" + rId + "]: [+]: " +
+                                     rule.getPattern() + " after " + hops + " hops.");
+
+                        return artifactFile;
+                    }
+                }
 
-            return ais;
+                hops++;
+            }
+
+            hops++;
         }
 
         return null;
@@ -313,4 +321,14 @@ public class GroupLocationResolver
         return getConfiguration().getRoutingRules();
     }
 
+    public GroupMemberIndex getGroupMemberIndex()
+    {
+        return groupMemberIndex;
+    }
+
+    public void setGroupMemberIndex(GroupMemberIndex groupMemberIndex)
+    {
+        this.groupMemberIndex = groupMemberIndex;
+    }
+
 }
@@ -0,0 +1,896 @@
+package org.carlspring.strongbox.storage.resolvers;
+
+import org.carlspring.strongbox.configuration.Configuration;
+import org.carlspring.strongbox.configuration.ConfigurationManager;
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.repository.Repository;
+import org.carlspring.strongbox.storage.repository.RepositoryTypeEnum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the directories (up to a certain depth, which covers the groupId and artifactId directories
+ * of most artifacts) of the member repositories of the group repositories, so that resolving a path through
+ * a group repository only looks the path up in the members which contain its directory.
+ *
+ * The index only ever leaves out members which are known not to contain the path, so the order in which
+ * the members are looked up (and the routing rules) are not affected by it. A repository which hasn't been scanned
+ * yet is assumed to contain every path, as are the paths which can't be reduced to a directory (such as files
+ * at the root of the repositories, or paths with "." and ".." elements).
+ *
+ * The index also records the modification time of each directory it has listed. A directory which isn't
+ * in the index is only known not to exist, if its deepest indexed parent directory hasn't been modified
+ * since it was listed; otherwise, the member is assumed to contain the path and the parent directory
+ * (only its own entries) is listed again in the background. This way, the directories which are created
+ * by other means (such as copying files into the repositories directly) are found right away, without
+ * listing any directories while a path is being resolved.
+ * Modification times which are too recent to be relied on (as they may not change when a directory is created
+ * within the resolution of the file system's timestamps) make the member be looked up as usual.
+ *
+ * The directories of the stored, copied, moved and restored files are added as soon as they are written.
+ * Deleting files doesn't remove their directories, until the repositories are scanned again; this only costs
+ * a file system lookup.
+ *
+ * @author mtodorov
+ */
+public class GroupMemberIndex
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupMemberIndex.class);
+
+    /**
+     * The coarsest resolution (in milliseconds) of the modification times of the supported file systems.
+     */
+    private static final long TIMESTAMP_RESOLUTION = 2000L;
+
+    /**
+     * The directories whose contents haven't been listed (the ones at the indexed depth, or added after
+     * a file had been written).
+     */
+    private static final Listing UNLISTED = new Listing(-1L, -1L);
+
+    /**
+     * The number of path elements of the indexed directories.
+     */
+    private int depth = Integer.getInteger("strongbox.group.index.depth", 3);
+
+    /**
+     * The number of threads scanning the repositories.
+     */
+    private int threads = Integer.getInteger("strongbox.group.index.threads",
+                                             Runtime.getRuntime().availableProcessors());
+
+    /**
+     * How often (in milliseconds) to scan the member repositories again (to drop the directories
+     * which have been deleted).
+     */
+    private long rescanInterval = 300000L;
+
+    private ConfigurationManager configurationManager;
+
+    /**
+     * Key:     storageId:repositoryId
+     * Value:   Key: The directories of the repository (relative to its basedir; the basedir itself is ""),
+     *          Value: When they were listed.
+     */
+    private ConcurrentMap<String, ConcurrentMap<String, Listing>> directories = new ConcurrentHashMap<>();
+
+    /**
+     * The directories of the repositories which are being scanned; the directories which are added during
+     * a scan are added to both maps, so that they are not lost when the scanned map replaces the current one.
+     */
+    private ConcurrentMap<String, ConcurrentMap<String, Listing>> scans = new ConcurrentHashMap<>();
+
+    /**
+     * The locks which the scans of each repository are serialized on, so that a requested scan
+     * is never skipped because of a scan which started before the files it should find were written.
+     */
+    private ConcurrentMap<String, Object> scanLocks = new ConcurrentHashMap<>();
+
+    /**
+     * The repositories (storageId:repositoryId) which have been requested to be scanned right away.
+     */
+    private Set<String> requests = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The directories (storageId:repositoryId:directory) which have been modified and are waiting
+     * to be listed again.
+     */
+    private Set<String> refreshes = ConcurrentHashMap.newKeySet();
+
+    private AtomicLong skippedLookups = new AtomicLong();
+
+    /**
+     * Scans the member repositories and lists the modified directories again.
+     */
+    private ScheduledExecutorService scheduler;
+
+
+    public GroupMemberIndex()
+    {
+    }
+
+    /**
+     * Returns false, if the repository is known not to contain the path.
+     */
+    public boolean mayContain(String storageId,
+                              String repositoryId,
+                              String path)
+    {
+        final ConcurrentMap<String, Listing> repositoryDirectories =
+                directories.get(getRepositoryKey(storageId, repositoryId));
+        if (repositoryDirectories == null)
+        {
+            return true;
+        }
+
+        final String directory = getDirectory(path);
+        if (directory == null || repositoryDirectories.containsKey(directory))
+        {
+            return true;
+        }
+
+        final Repository repository = getRepository(storageId, repositoryId);
+        if (repository == null || repository.getBasedir() == null)
+        {
+            return true;
+        }
+
+        // Find the deepest parent directory which has been indexed
+        String parent = directory;
+        do
+        {
+            final int lastSlash = parent.lastIndexOf('/');
+            parent = lastSlash > 0 ? parent.substring(0, lastSlash) : "";
+        }
+        while (!parent.isEmpty() && !repositoryDirectories.containsKey(parent));
+
+        final Listing listing = repositoryDirectories.get(parent);
+        if (listing == null)
+        {
+            return true;
+        }
+
+        final File parentDirectory = parent.isEmpty() ? new File(repository.getBasedir()) :
+                                     new File(repository.getBasedir(), parent);
+
+        final long lastModified = getLastModified(parentDirectory);
+        if (listing.lastModified == lastModified)
+        {
+            if (listing.isReliable())
+            {
+                skippedLookups.incrementAndGet();
+
+                return false;
+            }
+
+            if (System.currentTimeMillis() - lastModified < TIMESTAMP_RESOLUTION)
+            {
+                // A directory could have been created since, without changing the modification time
+                return true;
+            }
+        }
+
+        // The parent directory has been modified since it was listed (or it can be listed reliably now)
+        refresh(storageId, repositoryId, parent);
+
+        return true;
+    }
+
+    /**
+     * Lists the directory again in the background, unless it's already waiting to be listed.
+     * Without a scheduler (before {@link #startMonitor()}), it's listed right away.
+     */
+    private void refresh(final String storageId,
+                         final String repositoryId,
+                         final String directory)
+    {
+        final String refreshKey = getRepositoryKey(storageId, repositoryId) + ":" + directory;
+        if (!refreshes.add(refreshKey))
+        {
+            return;
+        }
+
+        final Runnable refresh = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                refreshes.remove(refreshKey);
+
+                try
+                {
+                    list(storageId, repositoryId, directory);
+                }
+                catch (RuntimeException e)
+                {
+                    logger.error("Failed to list " + refreshKey + " again!", e);
+                }
+            }
+        };
+
+        final ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler == null)
+        {
+            refresh.run();
+
+            return;
+        }
+
+        try
+        {
+            scheduler.execute(refresh);
+        }
+        catch (RejectedExecutionException e)
+        {
+            // The index is being stopped
+            refreshes.remove(refreshKey);
+        }
+    }
+
+    /**
+     * Lists the directory of the repository again: its own entries are added as unlisted directories,
+     * which are listed in turn, once a path underneath them is looked up.
+     */
+    private void list(String storageId,
+                      String repositoryId,
+                      String directory)
+    {
+        final ConcurrentMap<String, Listing> repositoryDirectories =
+                directories.get(getRepositoryKey(storageId, repositoryId));
+        final Repository repository = getRepository(storageId, repositoryId);
+        if (repositoryDirectories == null || repository == null || repository.getBasedir() == null)
+        {
+            return;
+        }
+
+        final File file = directory.isEmpty() ? new File(repository.getBasedir()) :
+                          new File(repository.getBasedir(), directory);
+        final int level = directory.isEmpty() ? 0 : directory.split("/").length;
+
+        final ConcurrentMap<String, Listing> listedDirectories = new ConcurrentHashMap<>();
+        walk(file, directory, level, level + 1, listedDirectories);
+
+        merge(listedDirectories, repositoryDirectories);
+    }
+
+    /**
+     * Adds the directories of a file, which has been written to the repository. If the path is a directory
+     * (or empty), the directories underneath it are added as well.
+     */
+    public void add(String storageId,
+                    String repositoryId,
+                    String path)
+    {
+        final String key = getRepositoryKey(storageId, repositoryId);
+
+        final ConcurrentMap<String, Listing> scannedDirectories = scans.get(key);
+        final ConcurrentMap<String, Listing> repositoryDirectories = directories.get(key);
+        if (scannedDirectories == null && repositoryDirectories == null)
+        {
+            // The repository isn't indexed
+            return;
+        }
+
+        final Repository repository = getRepository(storageId, repositoryId);
+        if (repository == null)
+        {
+            return;
+        }
+
+        final ConcurrentMap<String, Listing> addedDirectories = new ConcurrentHashMap<>();
+
+        final File file = new File(repository.getBasedir(), path);
+        final boolean isDirectory = file.isDirectory();
+
+        String prefix = "";
+        int level = 0;
+
+        final String[] elements = path.split("/");
+        final int directoryElements = isDirectory ? elements.length : elements.length - 1;
+        for (int i = 0; i < directoryElements && level < depth; i++)
+        {
+            if (elements[i].isEmpty())
+            {
+                continue;
+            }
+
+            prefix = prefix.isEmpty() ? elements[i] : prefix + "/" + elements[i];
+            level++;
+
+            addedDirectories.put(prefix, UNLISTED);
+        }
+
+        if (isDirectory && level < depth)
+        {
+            walk(file, prefix, level, depth, addedDirectories);
+        }
+
+        if (scannedDirectories != null)
+        {
+            merge(addedDirectories, scannedDirectories);
+        }
+        if (repositoryDirectories != null)
+        {
+            merge(addedDirectories, repositoryDirectories);
+        }
+    }
+
+    /**
+     * Adds the directories to the index of a repository, without replacing the listings of the directories
+     * which have been listed with the unlisted ones.
+     */
+    private void merge(Map<String, Listing> addedDirectories,
+                       ConcurrentMap<String, Listing> repositoryDirectories)
+    {
+        for (Map.Entry<String, Listing> entry : addedDirectories.entrySet())
+        {
+            if (entry.getValue() == UNLISTED)
+            {
+                repositoryDirectories.putIfAbsent(entry.getKey(), UNLISTED);
+            }
+            else
+            {
+                repositoryDirectories.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Adds the directories which have been created in the indexed repositories since they were scanned.
+     */
+    public void update()
+    {
+        for (String key : new ArrayList<>(directories.keySet()))
+        {
+            final String[] storageAndRepositoryId = key.split(":");
+
+            add(storageAndRepositoryId[0], storageAndRepositoryId[1], "");
+        }
+    }
+
+    /**
+     * Stops using the directories of the repository (which may have been reconfigured), until it has been
+     * scanned again, and schedules the scan. If it's a group repository, its members which haven't been scanned
+     * yet are scheduled to be scanned.
+     */
+    public void invalidate(String storageId,
+                           String repositoryId)
+    {
+        final Repository repository = getRepository(storageId, repositoryId);
+        if (repository == null)
+        {
+            return;
+        }
+
+        if (RepositoryTypeEnum.GROUP.getType().equals(repository.getType()))
+        {
+            for (String key : getMemberKeys(storageId, repository))
+            {
+                if (!directories.containsKey(key))
+                {
+                    request(key);
+                }
+            }
+        }
+        else
+        {
+            final String key = getRepositoryKey(storageId, repositoryId);
+
+            directories.remove(key);
+            request(key);
+        }
+    }
+
+    /**
+     * Stops using the directories of all the repositories, until they have been scanned again, and schedules
+     * the scans.
+     */
+    public void clear()
+    {
+        directories.clear();
+
+        for (String key : getMemberKeys())
+        {
+            request(key);
+        }
+    }
+
+    /**
+     * Schedules the scan of the repository, unless it's already waiting to be scanned.
+     */
+    private void request(final String key)
+    {
+        final ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler == null || !requests.add(key))
+        {
+            // The repositories are all scanned, once the monitor is started
+            return;
+        }
+
+        try
+        {
+            scheduler.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    requests.remove(key);
+
+                    try
+                    {
+                        scan(key);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        logger.error("Failed to scan " + key + "!", e);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            // The index is being stopped
+            requests.remove(key);
+        }
+    }
+
+    /**
+     * Scans the member repositories of all the group repositories in parallel.
+     */
+    public void scan()
+    {
+        final Set<String> keys = getMemberKeys();
+        if (keys.isEmpty())
+        {
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, keys.size())),
+                                                                      new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                final Thread thread = new Thread(runnable, "strongbox-group-index-" + count.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (final String key : keys)
+            {
+                futures.add(executor.submit(new Callable<Object>()
+                {
+                    @Override
+                    public Object call()
+                    {
+                        scan(key);
+
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            logger.error("Failed to scan the member repositories of the group repositories!", e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Scans the directories of the repository and replaces its current ones with them.
+     */
+    public void scan(String storageId,
+                     String repositoryId)
+    {
+        scan(getRepositoryKey(storageId, repositoryId));
+    }
+
+    private void scan(String key)
+    {
+        final String[] storageAndRepositoryId = key.split(":");
+
+        final Repository repository = getRepository(storageAndRepositoryId[0], storageAndRepositoryId[1]);
+        if (repository == null || repository.getBasedir() == null)
+        {
+            return;
+        }
+
+        Object lock = scanLocks.get(key);
+        if (lock == null)
+        {
+            final Object newLock = new Object();
+
+            lock = scanLocks.putIfAbsent(key, newLock);
+            if (lock == null)
+            {
+                lock = newLock;
+            }
+        }
+
+        synchronized (lock)
+        {
+            final long startTime = System.currentTimeMillis();
+
+            final ConcurrentMap<String, Listing> scannedDirectories = new ConcurrentHashMap<>();
+            scans.put(key, scannedDirectories);
+
+            try
+            {
+                walk(new File(repository.getBasedir()), "", 0, depth, scannedDirectories);
+
+                directories.put(key, scannedDirectories);
+            }
+            finally
+            {
+                scans.remove(key, scannedDirectories);
+            }
+
+            logger.debug("Indexed " + scannedDirectories.size() + " directories of " + key + " in " +
+                         (System.currentTimeMillis() - startTime) + " ms.");
+        }
+    }
+
+    /**
+     * Lists the directory and its subdirectories up to the specified depth; the ones at that depth
+     * are added as unlisted.
+     */
+    private void walk(File directory,
+                      String prefix,
+                      int level,
+                      int depth,
+                      Map<String, Listing> walkedDirectories)
+    {
+        // The modification time has to be obtained before the directory is listed, so that any directory
+        // which is created after it's been listed changes it
+        final long lastModified = getLastModified(directory);
+        final long listedAt = System.currentTimeMillis();
+
+        final File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                // Skip the .trash, .index, .checksums and similar directories
+                if ((level == 0 && file.getName().startsWith(".")) || !file.isDirectory())
+                {
+                    continue;
+                }
+
+                final String path = prefix.isEmpty() ? file.getName() : prefix + "/" + file.getName();
+
+                if (level + 1 < depth)
+                {
+                    walk(file, path, level + 1, depth, walkedDirectories);
+                }
+                else if (!walkedDirectories.containsKey(path))
+                {
+                    walkedDirectories.put(path, UNLISTED);
+                }
+            }
+        }
+
+        walkedDirectories.put(prefix, new Listing(lastModified, listedAt));
+    }
+
+    private static long getLastModified(File directory)
+    {
+        try
+        {
+            return Files.getLastModifiedTime(directory.toPath()).toMillis();
+        }
+        catch (IOException e)
+        {
+            // The directory doesn't exist
+            return -1L;
+        }
+    }
+
+    /**
+     * Returns the directory of the path, up to the indexed depth, or null, if the path can't be looked up
+     * in the index.
+     */
+    String getDirectory(String path)
+    {
+        if (path == null)
+        {
+            return null;
+        }
+
+        int start = 0;
+        while (start < path.length() && path.charAt(start) == '/')
+        {
+            start++;
+        }
+
+        final int lastSlash = path.lastIndexOf('/');
+        if (lastSlash <= start ||
+            path.charAt(start) == '.' ||
+            path.indexOf('\\') >= 0 ||
+            path.contains("/../"))
+        {
+            return null;
+        }
+
+        int end = start;
+        int level = 0;
+        while (end < lastSlash && level < depth)
+        {
+            int next = path.indexOf('/', end);
+            if (next < 0 || next > lastSlash)
+            {
+                next = lastSlash;
+            }
+
+            final int length = next - end;
+            if (length == 0 ||
+                (length == 1 && path.charAt(end) == '.') ||
+                (length == 2 && path.charAt(end) == '.' && path.charAt(end + 1) == '.'))
+            {
+                return null;
+            }
+
+            level++;
+
+            if (level == depth || next == lastSlash)
+            {
+                end = next;
+                break;
+            }
+
+            end = next + 1;
+        }
+
+        return path.substring(start, end);
+    }
+
+    /**
+     * Returns the storageId:repositoryId keys of the hosted members of all the group repositories.
+     */
+    private Set<String> getMemberKeys()
+    {
+        final Set<String> keys = new LinkedHashSet<>();
+
+        if (configurationManager == null || configurationManager.getConfiguration() == null)
+        {
+            return keys;
+        }
+
+        final Configuration configuration = configurationManager.getConfiguration();
+        for (Storage storage : configuration.getStorages().values())
+        {
+            for (Repository repository : storage.getRepositories().values())
+            {
+                if (RepositoryTypeEnum.GROUP.getType().equals(repository.getType()))
+                {
+                    keys.addAll(getMemberKeys(storage.getId(), repository));
+                }
+            }
+        }
+
+        return keys;
+    }
+
+    private Set<String> getMemberKeys(String storageId,
+                                      Repository groupRepository)
+    {
+        final Set<String> keys = new LinkedHashSet<>();
+
+        final Storage storage = configurationManager.getConfiguration().getStorage(storageId);
+        for (String storageAndRepositoryId : groupRepository.getGroupRepositories())
+        {
+            final String sId = configurationManager.getStorageId(storage, storageAndRepositoryId);
+            final String rId = configurationManager.getRepositoryId(storageAndRepositoryId);
+
+            final Repository repository = getRepository(sId, rId);
+            if (repository != null && !RepositoryTypeEnum.GROUP.getType().equals(repository.getType()))
+            {
+                keys.add(getRepositoryKey(sId, rId));
+            }
+        }
+
+        return keys;
+    }
+
+    private Repository getRepository(String storageId,
+                                     String repositoryId)
+    {
+        if (configurationManager == null || configurationManager.getConfiguration() == null)
+        {
+            return null;
+        }
+
+        final Storage storage = configurationManager.getConfiguration().getStorage(storageId);
+
+        return storage != null ? storage.getRepository(repositoryId) : null;
+    }
+
+    private String getRepositoryKey(String storageId,
+                                    String repositoryId)
+    {
+        return storageId + ":" + repositoryId;
+    }
+
+    /**
+     * Returns whether the repository has been scanned.
+     */
+    public boolean isIndexed(String storageId,
+                             String repositoryId)
+    {
+        return directories.containsKey(getRepositoryKey(storageId, repositoryId));
+    }
+
+    /**
+     * Returns the number of lookups in member repositories, which were skipped, because they didn't contain
+     * the directory of the path.
+     */
+    public long getSkippedLookups()
+    {
+        return skippedLookups.get();
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public void setDepth(int depth)
+    {
+        this.depth = depth;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+    }
+
+    public long getRescanInterval()
+    {
+        return rescanInterval;
+    }
+
+    public void setRescanInterval(long rescanInterval)
+    {
+        this.rescanInterval = rescanInterval;
+    }
+
+    public ConfigurationManager getConfigurationManager()
+    {
+        return configurationManager;
+    }
+
+    public void setConfigurationManager(ConfigurationManager configurationManager)
+    {
+        this.configurationManager = configurationManager;
+    }
+
+    /**
+     * The modification time of a directory at the time it was listed.
+     */
+    private static final class Listing
+    {
+
+        private final long lastModified;
+
+        private final long listedAt;
+
+
+        Listing(long lastModified,
+                long listedAt)
+        {
+            this.lastModified = lastModified;
+            this.listedAt = listedAt;
+        }
+
+        /**
+         * Returns whether a directory created after the listing would have changed the modification time.
+         */
+        boolean isReliable()
+        {
+            return listedAt > 0 && listedAt - lastModified >= TIMESTAMP_RESOLUTION;
+        }
+
+    }
+
+    /**
+     * Scans the member repositories on startup and every rescanInterval, as well as the ones requested
+     * in between, and lists the modified directories again.
+     */
+    public synchronized void startMonitor()
+    {
+        if (scheduler != null)
+        {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                final Thread thread = new Thread(runnable, "strongbox-group-index-monitor");
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        scheduler.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    scan();
+                }
+                catch (RuntimeException e)
+                {
+                    // An exception would cancel the subsequent scans
+                    logger.error("Failed to scan the member repositories of the group repositories!", e);
+                }
+            }
+        }, 0L, rescanInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopMonitor()
+    {
+        if (scheduler != null)
+        {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+
+        requests.clear();
+        refreshes.clear();
+    }
+
+}
@@ -2,6 +2,7 @@ package org.carlspring.strongbox.storage.resolvers;
 
 import org.carlspring.strongbox.io.ArtifactInputStream;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.security.NoSuchAlgorithmException;
@@ -17,6 +18,14 @@ public interface LocationResolver
                                        String path)
             throws IOException, NoSuchAlgorithmException;
 
+    /**
+     * Returns the file which the path resolves to, without opening it, or null, if it doesn't exist.
+     */
+    File getFile(String storageId,
+                 String repositoryId,
+                 String path)
+            throws IOException;
+
     OutputStream getOutputStream(String storageId, String repositoryId, String path)
             throws IOException;
 
@@ -0,0 +1,257 @@
+package org.carlspring.strongbox.storage.resolvers;
+
+import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A time-bounded cache of the paths which were not found in a repository, so that the clients probing
+ * for paths which don't exist (missing classifiers, sources, plugin metadata, etc.) don't cause
+ * file system lookups in every (member) repository on each request.
+ *
+ * The misses are grouped by path, so that storing a path invalidates its misses in all the repositories
+ * at once, including the group repositories which contain the repository it was stored in.
+ *
+ * A lookup which started before the path was stored could record its miss after the invalidation;
+ * to prevent this, the callers pass the generation of the cache from before the lookup and misses
+ * are only recorded, if there have been no invalidations since.
+ *
+ * Files which are placed in the repositories by other means become visible, once their misses expire.
+ *
+ * @author mtodorov
+ */
+public class NegativeLookupCache
+{
+
+    /**
+     * The maximum number of paths to keep the misses of.
+     */
+    private int maxSize = 10000;
+
+    /**
+     * For how long (in milliseconds) to remember a miss.
+     */
+    private long timeToLive = 60000L;
+
+    /**
+     * Key:     path
+     * Value:   Key: storageId:repositoryId, Value: The time at which the miss expires.
+     */
+    private ConcurrentMap<String, ConcurrentMap<String, Long>> misses = new ConcurrentHashMap<>();
+
+    /**
+     * The paths, in the order in which they were added; used for eviction.
+     */
+    private Queue<String> paths = new ConcurrentLinkedQueue<>();
+
+    private AtomicLong generation = new AtomicLong();
+
+    private AtomicLong hitCount = new AtomicLong();
+
+    private AtomicLong missCount = new AtomicLong();
+
+
+    public NegativeLookupCache()
+    {
+    }
+
+    /**
+     * Returns true, if the path is known not to exist in the repository.
+     */
+    public boolean isKnownMiss(String storageId, String repositoryId, String path)
+    {
+        final ConcurrentMap<String, Long> repositoryMisses = misses.get(path);
+        if (repositoryMisses != null)
+        {
+            final String repositoryKey = getRepositoryKey(storageId, repositoryId);
+
+            final Long expiresAt = repositoryMisses.get(repositoryKey);
+            if (expiresAt != null)
+            {
+                if (expiresAt > System.currentTimeMillis())
+                {
+                    hitCount.incrementAndGet();
+
+                    return true;
+                }
+
+                repositoryMisses.remove(repositoryKey, expiresAt);
+            }
+        }
+
+        missCount.incrementAndGet();
+
+        return false;
+    }
+
+    /**
+     * Returns the current generation of the cache, which has to be obtained before looking the path up.
+     */
+    public long getGeneration()
+    {
+        return generation.get();
+    }
+
+    /**
+     * Records that the path was not found in the repository, unless the cache has been invalidated,
+     * since the specified generation was obtained.
+     */
+    public void addMiss(String storageId, String repositoryId, String path, long generation)
+    {
+        if (this.generation.get() != generation)
+        {
+            return;
+        }
+
+        ConcurrentMap<String, Long> repositoryMisses = misses.get(path);
+        if (repositoryMisses == null)
+        {
+            repositoryMisses = new ConcurrentHashMap<>();
+
+            final ConcurrentMap<String, Long> existingMisses = misses.putIfAbsent(path, repositoryMisses);
+            if (existingMisses != null)
+            {
+                repositoryMisses = existingMisses;
+            }
+            else
+            {
+                paths.add(path);
+                evict();
+            }
+        }
+
+        repositoryMisses.put(getRepositoryKey(storageId, repositoryId), System.currentTimeMillis() + timeToLive);
+
+        // The path may have been stored while the miss was being added
+        if (this.generation.get() != generation)
+        {
+            misses.remove(path);
+        }
+    }
+
+    /**
+     * Invalidates the misses of the path (and its checksums) in all repositories.
+     */
+    public void invalidate(String path)
+    {
+        generation.incrementAndGet();
+
+        misses.remove(path);
+        for (EncryptionAlgorithmsEnum algorithm : EncryptionAlgorithmsEnum.values())
+        {
+            misses.remove(path + algorithm.getExtension());
+        }
+    }
+
+    /**
+     * Invalidates the misses of the path and all the paths below it in all repositories.
+     */
+    public void invalidateDirectory(String path)
+    {
+        invalidate(path);
+
+        final String prefix = path.endsWith("/") ? path : path + "/";
+        for (String p : misses.keySet())
+        {
+            if (p.startsWith(prefix))
+            {
+                misses.remove(p);
+            }
+        }
+    }
+
+    public void clear()
+    {
+        generation.incrementAndGet();
+
+        misses.clear();
+        paths.clear();
+    }
+
+    private void evict()
+    {
+        while (misses.size() > maxSize)
+        {
+            final String eldestPath = paths.poll();
+            if (eldestPath == null)
+            {
+                break;
+            }
+
+            misses.remove(eldestPath);
+        }
+
+        if (paths.size() > maxSize * 2)
+        {
+            // Drop the invalidated paths, so that the queue doesn't grow forever.
+            paths.retainAll(misses.keySet());
+        }
+    }
+
+    private String getRepositoryKey(String storageId, String repositoryId)
+    {
+        return storageId + ":" + repositoryId;
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    public long getTimeToLive()
+    {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive)
+    {
+        this.timeToLive = timeToLive;
+    }
+
+    public long getSize()
+    {
+        return misses.size();
+    }
+
+    /**
+     * Returns the number of lookups which were answered by the cache.
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups which had to go to the repository.
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    public double getHitRate()
+    {
+        final long hits = hitCount.get();
+        final long total = hits + missCount.get();
+
+        return total > 0 ? (double) hits / total : 0d;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "NegativeLookupCache{size=" + getSize() +
+               ", hits=" + getHitCount() +
+               ", misses=" + getMissCount() + "}";
+    }
+
+}
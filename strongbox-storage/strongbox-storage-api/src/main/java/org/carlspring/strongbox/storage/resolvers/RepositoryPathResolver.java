@@ -0,0 +1,117 @@
+package org.carlspring.strongbox.storage.resolvers;
+
+import org.carlspring.strongbox.storage.repository.Repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the paths of artifacts against the basedirs of their repositories.
+ *
+ * The requested paths are normalized lexically, without touching the file system,
+ * and paths which would resolve outside of the repository's basedir (such as ../../etc/passwd)
+ * are rejected. The basedirs themselves are only canonicalized once per repository and then cached,
+ * so resolving a path doesn't cost any file system calls.
+ *
+ * Symbolic links inside the repository are not resolved; they are followed when the file is opened.
+ *
+ * @author mtodorov
+ */
+public class RepositoryPathResolver
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryPathResolver.class);
+
+    /**
+     * Key:     The basedir of the repository, as configured.
+     * Value:   The canonical basedir.
+     */
+    private ConcurrentMap<String, Path> basedirs = new ConcurrentHashMap<>();
+
+
+    public RepositoryPathResolver()
+    {
+    }
+
+    /**
+     * Resolves the path against the basedir of the repository.
+     *
+     * @throws ArtifactResolutionException  If the path is invalid, or points outside of the repository.
+     */
+    public Path resolve(Repository repository, String path)
+            throws IOException
+    {
+        final Path basedir = getBasedir(repository);
+
+        final Path resolvedPath;
+        try
+        {
+            // Like new File(basedir, path), treat absolute paths as relative to the basedir
+            resolvedPath = basedir.resolve(stripLeadingSlashes(path)).normalize();
+        }
+        catch (InvalidPathException e)
+        {
+            throw new ArtifactResolutionException("Invalid path " + path + "!", e);
+        }
+
+        if (!resolvedPath.startsWith(basedir))
+        {
+            logger.warn("Rejected path " + path + ", as it is outside of repository " + repository.getId() + ".");
+
+            throw new ArtifactResolutionException("Path " + path + " is outside of repository " +
+                                                  repository.getId() + "!");
+        }
+
+        return resolvedPath;
+    }
+
+    /**
+     * Returns the canonical basedir of the repository.
+     */
+    public Path getBasedir(Repository repository)
+            throws IOException
+    {
+        final String basedir = repository.getBasedir();
+
+        Path path = basedirs.get(basedir);
+        if (path == null)
+        {
+            path = new File(basedir).getCanonicalFile().toPath();
+
+            // Only cache basedirs which exist, as they could be replaced by a symbolic link once they're created
+            if (path.toFile().isDirectory())
+            {
+                basedirs.put(basedir, path);
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * Forgets the canonical basedirs, for example, after the configuration has been changed.
+     */
+    public void clear()
+    {
+        basedirs.clear();
+    }
+
+    private String stripLeadingSlashes(String path)
+    {
+        int i = 0;
+        while (i < path.length() && (path.charAt(i) == '/' || path.charAt(i) == '\\'))
+        {
+            i++;
+        }
+
+        return path.substring(i);
+    }
+
+}
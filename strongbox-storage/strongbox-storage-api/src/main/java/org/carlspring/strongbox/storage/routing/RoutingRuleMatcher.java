@@ -0,0 +1,363 @@
+package org.carlspring.strongbox.storage.routing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The routing rules of a {@link RuleSet}, compiled for matching paths against all of them at once.
+ *
+ * The patterns are compiled only once. Most patterns contain a literal (such as "/com/foo/" in ".+/com/foo/.+"),
+ * which every path they match has to contain, so the literals of all the rules are combined into an Aho-Corasick
+ * automaton, which finds the rules whose literals occur in the path in a single pass over it. Only the patterns
+ * of those rules (and of the rules without any such literal) are then matched against the path.
+ *
+ * A matcher is compiled from the rules as they are at the time; the {@link RuleSet} compiles a new one,
+ * once its rules have been replaced, or it has been told they have been changed.
+ *
+ * @author mtodorov
+ */
+public class RoutingRuleMatcher
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingRuleMatcher.class);
+
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    /**
+     * The escapes which consist of a single letter (character classes, boundaries and control characters).
+     * Any other escape (such as \x2F, \u0041, \0101, back references, or \p{Alpha}) is followed by more
+     * characters which belong to it, so patterns containing them are not analyzed.
+     */
+    private static final String SINGLE_LETTER_ESCAPES = "dDsSwWbBAGzZhHvVRXtnrfae";
+
+    private final RoutingRule[] rules;
+
+    private final Pattern[] compiledPatterns;
+
+    /**
+     * The rules which have to be matched against every path, as their patterns don't contain any required literals.
+     */
+    private final BitSet unfilteredRules = new BitSet();
+
+    private final Node root = new Node();
+
+
+    public RoutingRuleMatcher(List<RoutingRule> routingRules)
+    {
+        rules = routingRules.toArray(new RoutingRule[routingRules.size()]);
+        compiledPatterns = new Pattern[rules.length];
+
+        for (int i = 0; i < rules.length; i++)
+        {
+            final String pattern = rules[i].getPattern();
+
+            try
+            {
+                compiledPatterns[i] = Pattern.compile(pattern);
+            }
+            catch (PatternSyntaxException | NullPointerException e)
+            {
+                // Such a rule never matches. As the rules are only compiled once, this is only logged once.
+                logger.error("Invalid routing rule pattern '" + pattern + "'!", e);
+
+                continue;
+            }
+
+            final String literal = getRequiredLiteral(pattern);
+            if (literal != null && !literal.isEmpty())
+            {
+                addLiteral(literal, i);
+            }
+            else
+            {
+                unfilteredRules.set(i);
+            }
+        }
+
+        linkFailures();
+    }
+
+    /**
+     * Returns the rules whose patterns match the whole path, in the order of the rule set.
+     */
+    public List<RoutingRule> getMatchingRules(String path)
+    {
+        if (rules.length == 0)
+        {
+            return Collections.emptyList();
+        }
+
+        final BitSet candidates = (BitSet) unfilteredRules.clone();
+
+        Node node = root;
+        for (int i = 0; i < path.length(); i++)
+        {
+            final Character c = path.charAt(i);
+
+            while (node != root && !node.children.containsKey(c))
+            {
+                node = node.failure;
+            }
+
+            final Node next = node.children.get(c);
+            node = next != null ? next : root;
+
+            for (int rule : node.rules)
+            {
+                candidates.set(rule);
+            }
+        }
+
+        List<RoutingRule> matchingRules = null;
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
+        {
+            if (compiledPatterns[i].matcher(path).matches())
+            {
+                if (matchingRules == null)
+                {
+                    matchingRules = new ArrayList<>();
+                }
+
+                matchingRules.add(rules[i]);
+            }
+        }
+
+        return matchingRules != null ? matchingRules : Collections.<RoutingRule>emptyList();
+    }
+
+    /**
+     * Returns whether any of the rules which match the path applies to the repository.
+     */
+    public boolean rejects(String repositoryId,
+                           String path)
+    {
+        for (RoutingRule rule : getMatchingRules(path))
+        {
+            if (rule.getRepositories().contains(repositoryId))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void addLiteral(String literal, int rule)
+    {
+        Node node = root;
+        for (int i = 0; i < literal.length(); i++)
+        {
+            final Character c = literal.charAt(i);
+
+            Node child = node.children.get(c);
+            if (child == null)
+            {
+                child = new Node();
+                node.children.put(c, child);
+            }
+
+            node = child;
+        }
+
+        node.rules = append(node.rules, rule);
+    }
+
+    /**
+     * Links each node to the node of the longest proper suffix of its literal, and adds the rules
+     * of the literals which end with its literal to it, so that no matches are missed while matching.
+     */
+    private void linkFailures()
+    {
+        final Queue<Node> queue = new ArrayDeque<>();
+
+        root.failure = root;
+        for (Node child : root.children.values())
+        {
+            child.failure = root;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty())
+        {
+            final Node node = queue.poll();
+
+            for (Map.Entry<Character, Node> entry : node.children.entrySet())
+            {
+                final Character c = entry.getKey();
+                final Node child = entry.getValue();
+
+                Node failure = node.failure;
+                while (failure != root && !failure.children.containsKey(c))
+                {
+                    failure = failure.failure;
+                }
+
+                final Node next = failure.children.get(c);
+                child.failure = next != null && next != child ? next : root;
+
+                for (int rule : child.failure.rules)
+                {
+                    child.rules = append(child.rules, rule);
+                }
+
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Returns the longest literal which every path matching the whole pattern has to contain, or null,
+     * if the pattern doesn't have any, or can't be analyzed (for example, because of top-level alternatives,
+     * or flags).
+     */
+    static String getRequiredLiteral(String pattern)
+    {
+        if (pattern == null || pattern.contains("(?") || pattern.contains("\\Q"))
+        {
+            return null;
+        }
+
+        String longest = "";
+        StringBuilder current = new StringBuilder();
+
+        int depth = 0;
+        boolean lastWasLiteral = false;
+
+        for (int i = 0; i < pattern.length(); i++)
+        {
+            final char c = pattern.charAt(i);
+
+            if (c == '\\' && i + 1 < pattern.length())
+            {
+                final char escaped = pattern.charAt(++i);
+                if (depth == 0 && !Character.isLetterOrDigit(escaped))
+                {
+                    current.append(escaped);
+                    lastWasLiteral = true;
+
+                    continue;
+                }
+
+                if (SINGLE_LETTER_ESCAPES.indexOf(escaped) < 0)
+                {
+                    return null;
+                }
+
+                // A character class (such as \d), or a boundary
+                longest = longest(longest, current);
+                current.setLength(0);
+                lastWasLiteral = false;
+
+                continue;
+            }
+
+            if (c == '[')
+            {
+                // Skip the character class
+                int j = i + 1;
+                if (j < pattern.length() && pattern.charAt(j) == '^')
+                {
+                    j++;
+                }
+                if (j < pattern.length() && pattern.charAt(j) == ']')
+                {
+                    j++;
+                }
+                while (j < pattern.length() && pattern.charAt(j) != ']')
+                {
+                    j += pattern.charAt(j) == '\\' ? 2 : 1;
+                }
+
+                i = j;
+            }
+            else if (c == '(')
+            {
+                depth++;
+            }
+            else if (c == ')')
+            {
+                depth--;
+            }
+            else if (c == '|' && depth == 0)
+            {
+                // None of the alternatives is required
+                return null;
+            }
+            else if (c == '?' || c == '*' || c == '{')
+            {
+                if (lastWasLiteral && current.length() > 0)
+                {
+                    // The last character is optional, or repeated
+                    current.setLength(current.length() - 1);
+                }
+
+                if (c == '{')
+                {
+                    // Skip the bounds
+                    while (i < pattern.length() && pattern.charAt(i) != '}')
+                    {
+                        i++;
+                    }
+                }
+            }
+            else if (depth == 0 && METACHARACTERS.indexOf(c) < 0)
+            {
+                current.append(c);
+                lastWasLiteral = true;
+
+                continue;
+            }
+
+            longest = longest(longest, current);
+            current.setLength(0);
+            lastWasLiteral = false;
+        }
+
+        return longest(longest, current);
+    }
+
+    private static String longest(String longest, StringBuilder current)
+    {
+        return current.length() > longest.length() ? current.toString() : longest;
+    }
+
+    private static int[] append(int[] array, int value)
+    {
+        final int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, array.length);
+        result[array.length] = value;
+
+        return result;
+    }
+
+    public int getSize()
+    {
+        return rules.length;
+    }
+
+    private static class Node
+    {
+
+        private final Map<Character, Node> children = new HashMap<>();
+
+        private Node failure;
+
+        /**
+         * The rules whose literals end at this node.
+         */
+        private int[] rules = new int[0];
+
+    }
+
+}
@@ -18,6 +18,12 @@ public class RuleSet
     @XmlElement(name = "rule")
     private List<RoutingRule> routingRules = new ArrayList<>();
 
+    /**
+     * The rules, compiled for matching; recompiled, once the rules have been replaced, or invalidated.
+     */
+    @XmlTransient
+    private volatile RoutingRuleMatcher matcher;
+
 
     public RuleSet()
     {
@@ -41,6 +47,31 @@ public class RuleSet
     public void setRoutingRules(List<RoutingRule> routingRules)
     {
         this.routingRules = routingRules;
+        this.matcher = null;
+    }
+
+    /**
+     * Returns the rules, compiled for matching paths against all of them at once.
+     */
+    public RoutingRuleMatcher getMatcher()
+    {
+        RoutingRuleMatcher routingRuleMatcher = matcher;
+        if (routingRuleMatcher == null)
+        {
+            routingRuleMatcher = new RoutingRuleMatcher(routingRules);
+            matcher = routingRuleMatcher;
+        }
+
+        return routingRuleMatcher;
+    }
+
+    /**
+     * Has the rules compiled again, the next time they are matched. This has to be called, once the rules
+     * have been changed in place (instead of being replaced via {@link #setRoutingRules(List)}).
+     */
+    public void invalidateMatcher()
+    {
+        matcher = null;
     }
 
 }
@@ -0,0 +1,37 @@
+package org.carlspring.strongbox.storage.upload;
+
+import org.carlspring.strongbox.storage.resolvers.ArtifactStorageException;
+
+/**
+ * Thrown, when a chunk of a resumable upload doesn't start where the received part of the file ends.
+ *
+ * @author mtodorov
+ */
+public class UploadOffsetMismatchException
+        extends ArtifactStorageException
+{
+
+    /**
+     * The number of bytes of the file, which have been received so far.
+     */
+    private long length;
+
+
+    public UploadOffsetMismatchException(String message, long length)
+    {
+        super(message);
+
+        this.length = length;
+    }
+
+    public long getLength()
+    {
+        return length;
+    }
+
+    public void setLength(long length)
+    {
+        this.length = length;
+    }
+
+}
@@ -0,0 +1,166 @@
+package org.carlspring.strongbox.storage.upload;
+
+import org.carlspring.strongbox.io.ArtifactFile;
+import org.carlspring.strongbox.io.DigestEngine;
+
+/**
+ * A resumable upload of a file, which is received in chunks and appended to the temporary file
+ * of the artifact file, until all of it has been received.
+ *
+ * The digests of the received bytes are kept in memory along with the session, so that they don't have to be
+ * recalculated from the temporary file for each chunk, or when the upload is completed. They are not saved
+ * along with the session though (see {@link UploadSessionManager#saveSession(UploadSession)}), so the sessions
+ * which are loaded after a restart have no digests, until they have been recalculated from the temporary file.
+ *
+ * The callers must synchronize on the session, while they are appending to it.
+ *
+ * @author mtodorov
+ */
+public class UploadSession
+{
+
+    private String storageId;
+
+    private String repositoryId;
+
+    private String path;
+
+    private ArtifactFile artifactFile;
+
+    private DigestEngine digestEngine;
+
+    /**
+     * The number of bytes which have been received so far.
+     */
+    private long length;
+
+    /**
+     * The length of the whole file, or -1, if the client hasn't specified it yet.
+     */
+    private long totalLength = -1;
+
+    private long lastAccessed = System.currentTimeMillis();
+
+    private boolean closed;
+
+
+    public UploadSession(String storageId,
+                         String repositoryId,
+                         String path,
+                         ArtifactFile artifactFile,
+                         DigestEngine digestEngine)
+    {
+        this.storageId = storageId;
+        this.repositoryId = repositoryId;
+        this.path = path;
+        this.artifactFile = artifactFile;
+        this.digestEngine = digestEngine;
+    }
+
+    public boolean isComplete()
+    {
+        return totalLength != -1 && length == totalLength;
+    }
+
+    public void touch()
+    {
+        lastAccessed = System.currentTimeMillis();
+    }
+
+    public String getStorageId()
+    {
+        return storageId;
+    }
+
+    public void setStorageId(String storageId)
+    {
+        this.storageId = storageId;
+    }
+
+    public String getRepositoryId()
+    {
+        return repositoryId;
+    }
+
+    public void setRepositoryId(String repositoryId)
+    {
+        this.repositoryId = repositoryId;
+    }
+
+    public String getPath()
+    {
+        return path;
+    }
+
+    public void setPath(String path)
+    {
+        this.path = path;
+    }
+
+    public ArtifactFile getArtifactFile()
+    {
+        return artifactFile;
+    }
+
+    public void setArtifactFile(ArtifactFile artifactFile)
+    {
+        this.artifactFile = artifactFile;
+    }
+
+    /**
+     * Returns the digests of the received bytes, or null, if they have to be recalculated from the temporary file.
+     */
+    public DigestEngine getDigestEngine()
+    {
+        return digestEngine;
+    }
+
+    public void setDigestEngine(DigestEngine digestEngine)
+    {
+        this.digestEngine = digestEngine;
+    }
+
+    public long getLength()
+    {
+        return length;
+    }
+
+    public void setLength(long length)
+    {
+        this.length = length;
+    }
+
+    public long getTotalLength()
+    {
+        return totalLength;
+    }
+
+    public void setTotalLength(long totalLength)
+    {
+        this.totalLength = totalLength;
+    }
+
+    public long getLastAccessed()
+    {
+        return lastAccessed;
+    }
+
+    public void setLastAccessed(long lastAccessed)
+    {
+        this.lastAccessed = lastAccessed;
+    }
+
+    /**
+     * A session is closed, once it has been completed, or discarded. Chunks must not be appended to it afterwards.
+     */
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    public void setClosed(boolean closed)
+    {
+        this.closed = closed;
+    }
+
+}
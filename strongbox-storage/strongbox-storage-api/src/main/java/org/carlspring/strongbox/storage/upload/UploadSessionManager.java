@@ -0,0 +1,507 @@
+package org.carlspring.strongbox.storage.upload;
+
+import org.carlspring.strongbox.configuration.Configuration;
+import org.carlspring.strongbox.configuration.ConfigurationManager;
+import org.carlspring.strongbox.io.ArtifactFile;
+import org.carlspring.strongbox.resource.ResourceCloser;
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.repository.Repository;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the resumable uploads which are in progress.
+ *
+ * The storage, the repository, the path and the lengths of each session are saved next to its temporary file
+ * (in a file with the {@link #SESSION_FILE_EXTENSION} extension), once a chunk has been received, so that
+ * the sessions can be resumed after a restart (see {@link #loadSessions()}).
+ *
+ * The sessions which haven't received a chunk within the session lifetime are considered abandoned
+ * and are discarded along with their temporary files. Any other temporary files under the .temp directories
+ * of the repositories, which are older than the session lifetime and don't belong to a session, are also removed.
+ *
+ * @author mtodorov
+ */
+public class UploadSessionManager
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionManager.class);
+
+    public static final String SESSION_FILE_EXTENSION = ".upload";
+
+    /**
+     * Key:     storageId:repositoryId:path
+     * Value:   The upload session.
+     */
+    private ConcurrentMap<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * For how long (in milliseconds) to keep a session, which isn't receiving any chunks.
+     *
+     * The default is one day.
+     */
+    private long sessionLifetime = 24 * 60 * 60000L;
+
+    /**
+     * Specifies at what interval to check for abandoned sessions.
+     *
+     * The default is to check once every hour.
+     */
+    private long sessionExpiredCheckInterval = 60 * 60000L;
+
+    private ConfigurationManager configurationManager;
+
+    private ScheduledExecutorService scheduler;
+
+
+    public UploadSessionManager()
+    {
+    }
+
+    public UploadSession getSession(String storageId, String repositoryId, String path)
+    {
+        return sessions.get(getKey(storageId, repositoryId, path));
+    }
+
+    /**
+     * Adds the session, unless there already is a session for the same file.
+     *
+     * @return The existing session, or null, if the session was added.
+     */
+    public UploadSession addSession(UploadSession session)
+    {
+        return sessions.putIfAbsent(getKey(session.getStorageId(), session.getRepositoryId(), session.getPath()),
+                                    session);
+    }
+
+    /**
+     * Closes and removes the session, once the file has been stored.
+     */
+    public void removeSession(UploadSession session)
+    {
+        synchronized (session)
+        {
+            session.setClosed(true);
+
+            deleteSessionFile(session);
+        }
+
+        sessions.remove(getKey(session.getStorageId(), session.getRepositoryId(), session.getPath()), session);
+    }
+
+    /**
+     * Closes and removes the session, along with what has been received so far.
+     */
+    public void discardSession(UploadSession session)
+    {
+        synchronized (session)
+        {
+            session.setClosed(true);
+
+            try
+            {
+                session.getArtifactFile().deleteTemporaryFile();
+            }
+            catch (IOException e)
+            {
+                logger.error("Failed to delete " + session.getArtifactFile().getTemporaryFile() + ".", e);
+            }
+
+            deleteSessionFile(session);
+        }
+
+        sessions.remove(getKey(session.getStorageId(), session.getRepositoryId(), session.getPath()), session);
+    }
+
+    /**
+     * Saves the session next to its temporary file, so that it can be resumed after a restart.
+     * The callers must synchronize on the session.
+     */
+    public void saveSession(UploadSession session)
+            throws IOException
+    {
+        final Properties properties = new Properties();
+        properties.setProperty("storageId", session.getStorageId());
+        properties.setProperty("repositoryId", session.getRepositoryId());
+        properties.setProperty("path", session.getPath());
+        properties.setProperty("length", String.valueOf(session.getLength()));
+        properties.setProperty("totalLength", String.valueOf(session.getTotalLength()));
+
+        final File sessionFile = getSessionFile(session.getArtifactFile());
+        final File file = new File(sessionFile.getPath() + ".tmp");
+
+        OutputStream os = null;
+        try
+        {
+            os = new FileOutputStream(file);
+            properties.store(os, null);
+        }
+        finally
+        {
+            ResourceCloser.close(os, logger);
+        }
+
+        // The session file is replaced atomically, so that a restart never finds half of it
+        Files.move(file.toPath(), sessionFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the sessions, which were saved before a restart, of all the repositories.
+     */
+    public void loadSessions()
+    {
+        if (configurationManager == null || configurationManager.getConfiguration() == null)
+        {
+            return;
+        }
+
+        final Configuration configuration = configurationManager.getConfiguration();
+        for (Storage storage : configuration.getStorages().values())
+        {
+            for (Repository repository : storage.getRepositories().values())
+            {
+                loadSessions(storage.getId(), repository);
+            }
+        }
+    }
+
+    /**
+     * Loads the sessions of the repository, which were saved before a restart. The digests of the received
+     * part of their files are not saved and have to be recalculated, before the uploads are resumed
+     * (see {@link UploadSession#getDigestEngine()}).
+     *
+     * @return The number of loaded sessions.
+     */
+    public int loadSessions(final String storageId, final Repository repository)
+    {
+        final File temporaryDirectory = new File(repository.getBasedir(), ".temp");
+        if (!temporaryDirectory.isDirectory())
+        {
+            return 0;
+        }
+
+        final int[] loaded = new int[1];
+        try
+        {
+            Files.walkFileTree(temporaryDirectory.toPath(), new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+                        throws IOException
+                {
+                    if (attributes.isRegularFile() && file.getFileName().toString().endsWith(SESSION_FILE_EXTENSION))
+                    {
+                        try
+                        {
+                            final UploadSession session = loadSession(storageId, repository, file.toFile());
+                            if (session != null && addSession(session) == null)
+                            {
+                                loaded[0]++;
+                            }
+                        }
+                        catch (IOException | RuntimeException e)
+                        {
+                            logger.warn("Failed to load the upload session " + file + ": " + e.getMessage());
+                        }
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch (IOException e)
+        {
+            logger.error("Failed to load the upload sessions of " + storageId + ":" + repository.getId() + ".", e);
+        }
+
+        if (loaded[0] > 0)
+        {
+            logger.info("Loaded " + loaded[0] + " upload session(s) of " + storageId + ":" + repository.getId() + ".");
+        }
+
+        return loaded[0];
+    }
+
+    /**
+     * @return The session, or null, if the session file doesn't belong to the repository,
+     *         or there is no temporary file to resume.
+     */
+    private UploadSession loadSession(String storageId, Repository repository, File sessionFile)
+            throws IOException
+    {
+        final Properties properties = new Properties();
+
+        InputStream is = null;
+        try
+        {
+            is = new FileInputStream(sessionFile);
+            properties.load(is);
+        }
+        finally
+        {
+            ResourceCloser.close(is, logger);
+        }
+
+        final String path = properties.getProperty("path");
+        if (path == null ||
+            !storageId.equals(properties.getProperty("storageId")) ||
+            !repository.getId().equals(properties.getProperty("repositoryId")))
+        {
+            return null;
+        }
+
+        // The temporary file is named after the path and the timestamp of the session
+        final String temporaryFileName = sessionFile.getName().substring(0, sessionFile.getName().length() -
+                                                                            SESSION_FILE_EXTENSION.length());
+
+        final ArtifactFile artifactFile = new ArtifactFile(repository, path, true);
+        artifactFile.setTemporaryTimestamp(Long.parseLong(
+                temporaryFileName.substring(temporaryFileName.lastIndexOf('.') + 1)));
+
+        final File temporaryFile = artifactFile.getTemporaryFile().getAbsoluteFile();
+        if (!temporaryFile.equals(new File(sessionFile.getParentFile(), temporaryFileName).getAbsoluteFile()) ||
+            !temporaryFile.isFile())
+        {
+            return null;
+        }
+
+        // The last chunk may have been written only partially before the restart
+        final long length = Math.min(Long.parseLong(properties.getProperty("length")), temporaryFile.length());
+        if (temporaryFile.length() > length)
+        {
+            final RandomAccessFile file = new RandomAccessFile(temporaryFile, "rw");
+            try
+            {
+                file.setLength(length);
+            }
+            finally
+            {
+                ResourceCloser.close(file, logger);
+            }
+        }
+
+        final UploadSession session = new UploadSession(storageId, repository.getId(), path, artifactFile, null);
+        session.setLength(length);
+        session.setTotalLength(Long.parseLong(properties.getProperty("totalLength", "-1")));
+        session.setLastAccessed(sessionFile.lastModified());
+
+        return session;
+    }
+
+    private void deleteSessionFile(UploadSession session)
+    {
+        final File sessionFile = getSessionFile(session.getArtifactFile());
+
+        try
+        {
+            Files.deleteIfExists(sessionFile.toPath());
+        }
+        catch (IOException e)
+        {
+            logger.error("Failed to delete " + sessionFile + ".", e);
+        }
+    }
+
+    public static File getSessionFile(ArtifactFile artifactFile)
+    {
+        return new File(artifactFile.getTemporaryFile().getPath() + SESSION_FILE_EXTENSION);
+    }
+
+    public void removeExpiredSessions()
+    {
+        for (UploadSession session : sessions.values())
+        {
+            if (isExpired(session.getLastAccessed()))
+            {
+                logger.info("Discarding the abandoned upload of " + session.getStorageId() + ":" +
+                            session.getRepositoryId() + ":" + session.getPath() + ".");
+
+                discardSession(session);
+            }
+        }
+
+        removeAbandonedTemporaryFiles();
+    }
+
+    /**
+     * Removes the temporary files, which don't belong to a session, such as the ones of regular uploads,
+     * which were interrupted by a restart. The files of the sessions (including the ones loaded after a restart)
+     * are only removed along with their sessions, once these have expired.
+     */
+    public void removeAbandonedTemporaryFiles()
+    {
+        if (configurationManager == null || configurationManager.getConfiguration() == null)
+        {
+            return;
+        }
+
+        final Set<Path> activeFiles = new HashSet<>();
+        for (UploadSession session : sessions.values())
+        {
+            activeFiles.add(session.getArtifactFile().getTemporaryFile().toPath());
+            activeFiles.add(getSessionFile(session.getArtifactFile()).toPath());
+        }
+
+        final Configuration configuration = configurationManager.getConfiguration();
+        for (Storage storage : configuration.getStorages().values())
+        {
+            for (Repository repository : storage.getRepositories().values())
+            {
+                final File temporaryDirectory = new File(repository.getBasedir(), ".temp");
+                if (!temporaryDirectory.isDirectory())
+                {
+                    continue;
+                }
+
+                try
+                {
+                    Files.walkFileTree(temporaryDirectory.toPath(), new SimpleFileVisitor<Path>()
+                    {
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+                                throws IOException
+                        {
+                            if (attributes.isRegularFile() &&
+                                isExpired(attributes.lastModifiedTime().toMillis()) &&
+                                !activeFiles.contains(file))
+                            {
+                                logger.info("Removing abandoned temporary file " + file + ".");
+
+                                Files.deleteIfExists(file);
+                            }
+
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+                }
+                catch (IOException e)
+                {
+                    logger.error("Failed to remove the abandoned temporary files of " + storage.getId() + ":" +
+                                 repository.getId() + ".", e);
+                }
+            }
+        }
+    }
+
+    private boolean isExpired(long lastAccessed)
+    {
+        return System.currentTimeMillis() - lastAccessed > sessionLifetime;
+    }
+
+    private static String getKey(String storageId, String repositoryId, String path)
+    {
+        return storageId + ":" + repositoryId + ":" + path;
+    }
+
+    public long getSize()
+    {
+        return sessions.size();
+    }
+
+    public long getSessionLifetime()
+    {
+        return sessionLifetime;
+    }
+
+    public void setSessionLifetime(long sessionLifetime)
+    {
+        this.sessionLifetime = sessionLifetime;
+    }
+
+    public long getSessionExpiredCheckInterval()
+    {
+        return sessionExpiredCheckInterval;
+    }
+
+    public void setSessionExpiredCheckInterval(long sessionExpiredCheckInterval)
+    {
+        this.sessionExpiredCheckInterval = sessionExpiredCheckInterval;
+    }
+
+    public ConfigurationManager getConfigurationManager()
+    {
+        return configurationManager;
+    }
+
+    public void setConfigurationManager(ConfigurationManager configurationManager)
+    {
+        this.configurationManager = configurationManager;
+    }
+
+    /**
+     * Loads the sessions, which were saved before a restart, and starts checking for abandoned sessions.
+     */
+    public synchronized void startMonitor()
+    {
+        if (scheduler != null)
+        {
+            return;
+        }
+
+        loadSessions();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                final Thread thread = new Thread(runnable, "strongbox-upload-session-expirer");
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        scheduler.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    removeExpiredSessions();
+                }
+                catch (RuntimeException e)
+                {
+                    // An exception would cancel the subsequent checks
+                    logger.error("Failed to remove the abandoned upload sessions.", e);
+                }
+            }
+        }, sessionExpiredCheckInterval, sessionExpiredCheckInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopMonitor()
+    {
+        if (scheduler != null)
+        {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+}
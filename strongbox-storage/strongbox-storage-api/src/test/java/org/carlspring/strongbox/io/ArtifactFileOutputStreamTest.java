@@ -7,6 +7,7 @@ import org.carlspring.strongbox.configuration.Configuration;
 import org.carlspring.strongbox.configuration.ConfigurationManager;
 import org.carlspring.strongbox.storage.Storage;
 import org.carlspring.strongbox.storage.repository.Repository;
+import org.carlspring.strongbox.storage.repository.RepositoryDurabilityEnum;
 import org.carlspring.strongbox.testing.TestCaseWithArtifactGeneration;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -16,7 +17,9 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -82,6 +85,87 @@ public class ArtifactFileOutputStreamTest
                    afos.getArtifactFile().getTemporaryFile().exists());
     }
 
+    @Test
+    public void testReplaceExistingFile()
+            throws IOException
+    {
+        final Storage storage = getConfiguration().getStorage("storage0");
+        final Repository repository = storage.getRepository("releases");
+
+        final Artifact artifact = ArtifactUtils.getArtifactFromGAVTC("org.carlspring.foo:temp-file-test:1.2.5:jar");
+
+        for (String contents : new String[]{ "This is the first version\n", "This is the second version\n" })
+        {
+            final ArtifactFile artifactFile = new ArtifactFile(repository, artifact, true);
+            artifactFile.createParents();
+
+            final ArtifactFileOutputStream afos = new ArtifactFileOutputStream(artifactFile);
+            IOUtils.copy(new ByteArrayInputStream(contents.getBytes()), afos);
+            afos.close();
+
+            assertEquals("Failed to replace the artifact file!",
+                         contents,
+                         new String(Files.readAllBytes(artifactFile.toPath())));
+            assertFalse("Failed to remove the temporary artifact file!", artifactFile.getTemporaryFile().exists());
+        }
+    }
+
+    @Test
+    public void testDurability()
+            throws IOException
+    {
+        final Storage storage = getConfiguration().getStorage("storage0");
+        final Repository repository = storage.getRepository("releases");
+        final String durability = repository.getDurability();
+
+        try
+        {
+            for (RepositoryDurabilityEnum value : RepositoryDurabilityEnum.values())
+            {
+                repository.setDurability(value.getDurability());
+
+                final ArtifactFile artifactFile = new ArtifactFile(repository,
+                                                                   "org/carlspring/foo/temp-file-test/maven-metadata-" +
+                                                                   value.getDurability() + ".xml",
+                                                                   true);
+                artifactFile.createParents();
+
+                assertEquals("Incorrect durability!", value, artifactFile.getDurability());
+
+                final ArtifactFileOutputStream afos = new ArtifactFileOutputStream(artifactFile);
+                IOUtils.copy(new ByteArrayInputStream("<metadata/>\n".getBytes()), afos);
+                afos.close();
+
+                assertTrue("Failed to the move temporary file to original location!", artifactFile.exists());
+            }
+        }
+        finally
+        {
+            repository.setDurability(durability);
+        }
+    }
+
+    @Test
+    public void testAbort()
+            throws IOException
+    {
+        final Storage storage = getConfiguration().getStorage("storage0");
+        final Repository repository = storage.getRepository("releases");
+
+        final Artifact artifact = ArtifactUtils.getArtifactFromGAVTC("org.carlspring.foo:temp-file-test:1.2.6:jar");
+        final ArtifactFile artifactFile = new ArtifactFile(repository, artifact, true);
+        artifactFile.createParents();
+
+        final ArtifactFileOutputStream afos = new ArtifactFileOutputStream(artifactFile);
+        IOUtils.copy(new ByteArrayInputStream("This is a partial upload".getBytes()), afos);
+
+        afos.abort();
+        afos.close();
+
+        assertFalse("Should not have moved the aborted artifact file to original location!", artifactFile.exists());
+        assertFalse("Failed to remove the temporary artifact file!", artifactFile.getTemporaryFile().exists());
+    }
+
     private Configuration getConfiguration()
     {
         return configurationManager.getConfiguration();
@@ -0,0 +1,105 @@
+package org.carlspring.strongbox.io;
+
+import org.carlspring.strongbox.storage.repository.Repository;
+import org.carlspring.strongbox.storage.repository.RepositoryDurabilityEnum;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the cost of each durability level, when storing small (checksum, POM) and large (archive) files
+ * via a temporary file, which is then atomically moved to the location of the file.
+ *
+ * The benchmark is only executed, if the strongbox.benchmark system property is set. It should be executed
+ * with the target directory on the disks which are to be measured:
+ *
+ *     mvn test -Dtest=DurabilityBenchmark -Dstrongbox.benchmark=true [-Dstrongbox.benchmark.files=1000]
+ *
+ * @author mtodorov
+ */
+public class DurabilityBenchmark
+{
+
+    private static final File BASEDIR = new File("target/test-resources/durability-benchmark").getAbsoluteFile();
+
+    private static final int FILES = Integer.getInteger("strongbox.benchmark.files", 1000);
+
+    private static final int[] FILE_SIZES = { 1024, 1024 * 1024, 16 * 1024 * 1024 };
+
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        Assume.assumeTrue(Boolean.getBoolean("strongbox.benchmark"));
+
+        if (!BASEDIR.exists())
+        {
+            //noinspection ResultOfMethodCallIgnored
+            BASEDIR.mkdirs();
+        }
+    }
+
+    @Test
+    public void testDurabilityThroughput()
+            throws Exception
+    {
+        final Repository repository = new Repository("durability-benchmark");
+        repository.setBasedir(BASEDIR.getAbsolutePath());
+
+        for (int fileSize : FILE_SIZES)
+        {
+            final byte[] contents = new byte[fileSize];
+            new Random(0).nextBytes(contents);
+
+            // Fewer large files, so that no more than 256 MB are written per level
+            final int files = (int) Math.min(FILES, Math.max(8, (256L * 1024L * 1024L) / fileSize));
+
+            // Warm up
+            store(repository, RepositoryDurabilityEnum.NONE, contents, files);
+
+            for (RepositoryDurabilityEnum durability : RepositoryDurabilityEnum.values())
+            {
+                final long start = System.nanoTime();
+
+                store(repository, durability, contents, files);
+
+                final double seconds = (System.nanoTime() - start) / 1000000000d;
+
+                System.out.println(String.format("%8d KB x %5d   %-5s %10.1f files/s %10.1f MB/s",
+                                                 fileSize / 1024,
+                                                 files,
+                                                 durability.getDurability(),
+                                                 files / seconds,
+                                                 ((double) files * fileSize) / seconds / (1024 * 1024)));
+            }
+        }
+    }
+
+    private void store(Repository repository, RepositoryDurabilityEnum durability, byte[] contents, int files)
+            throws IOException
+    {
+        repository.setDurability(durability.getDurability());
+
+        for (int i = 0; i < files; i++)
+        {
+            final ArtifactFile artifactFile = new ArtifactFile(repository,
+                                                               "org/carlspring/benchmark/file-" + (i % 100) + ".bin",
+                                                               true);
+            artifactFile.createParents();
+
+            final ArtifactFileOutputStream afos = new ArtifactFileOutputStream(artifactFile);
+            afos.write(contents);
+            afos.close();
+
+            assertEquals("Incorrect file size!", contents.length, artifactFile.length());
+        }
+    }
+
+}
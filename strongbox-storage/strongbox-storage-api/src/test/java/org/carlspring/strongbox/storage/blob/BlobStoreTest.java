@@ -0,0 +1,289 @@
+package org.carlspring.strongbox.storage.blob;
+
+import org.carlspring.strongbox.io.ArtifactFile;
+import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.repository.Repository;
+import org.carlspring.strongbox.util.MessageDigestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mtodorov
+ */
+public class BlobStoreTest
+{
+
+    private static final File STORAGE_BASEDIR = new File("target/strongbox-blobs/storage0");
+
+    private static final String CONTENTS = "This is a deduplicated artifact";
+
+    private Storage storage;
+
+    private BlobStore blobStore;
+
+
+    @Before
+    public void setUp()
+            throws IOException
+    {
+        FileUtils.deleteDirectory(STORAGE_BASEDIR);
+
+        storage = new Storage("storage0", STORAGE_BASEDIR.getAbsolutePath());
+        storage.setDeduplicationEnabled(true);
+
+        blobStore = new BlobStore();
+    }
+
+    @Test
+    public void testDeduplication()
+            throws IOException, NoSuchAlgorithmException
+    {
+        File releasesFile = createFile("releases");
+        File snapshotsFile = createFile("snapshots");
+
+        String sha1 = calculateChecksum();
+
+        blobStore.link(storage, releasesFile, sha1);
+        blobStore.link(storage, snapshotsFile, sha1);
+
+        File blob = blobStore.getBlob(storage, sha1);
+
+        assertTrue("Failed to create the blob!", blob.exists());
+        assertTrue("Failed to link the file to the blob!", Files.isSameFile(blob.toPath(), releasesFile.toPath()));
+        assertTrue("Failed to link the duplicate to the blob!", Files.isSameFile(blob.toPath(), snapshotsFile.toPath()));
+        assertEquals("Incorrect number of links!", 3, BlobStore.getLinkCount(blob));
+
+        DeduplicationReport report = blobStore.getReport(storage);
+
+        assertEquals("Incorrect number of blobs!", 1, report.getBlobs());
+        assertEquals("Incorrect number of references!", 2, report.getReferences());
+        assertEquals("Incorrect number of saved bytes!", CONTENTS.length(), report.getSavedBytes());
+    }
+
+    @Test
+    public void testReferenceCounting()
+            throws IOException, NoSuchAlgorithmException
+    {
+        File releasesFile = createFile("releases");
+
+        String sha1 = calculateChecksum();
+        blobStore.link(storage, releasesFile, sha1);
+
+        File copy = new File(STORAGE_BASEDIR, "snapshots/org/carlspring/strongbox/blobs/1.0/blobs-1.0.jar");
+        assertTrue("Failed to copy the file!", blobStore.copy(storage, releasesFile, copy));
+
+        // The blob is still referenced by the copy
+        assertNull("Incorrect blob!", blobStore.getLastReferencedBlob(storage, releasesFile));
+
+        Files.delete(copy.toPath());
+
+        File blob = blobStore.getLastReferencedBlob(storage, releasesFile);
+        assertNotNull("Failed to find the blob of the last reference!", blob);
+
+        Files.delete(releasesFile.toPath());
+
+        assertTrue("Failed to remove the unreferenced blob!", blobStore.removeIfUnreferenced(blob));
+        assertFalse("Failed to remove the unreferenced blob!", blob.exists());
+    }
+
+    @Test
+    public void testRemoveUnreferencedBlobs()
+            throws IOException, NoSuchAlgorithmException
+    {
+        File releasesFile = createFile("releases");
+
+        String sha1 = calculateChecksum();
+        blobStore.link(storage, releasesFile, sha1);
+
+        assertEquals("Removed a referenced blob!", 0, blobStore.removeUnreferencedBlobs(storage));
+
+        Files.delete(releasesFile.toPath());
+
+        assertEquals("Failed to remove the unreferenced blob!", 1, blobStore.removeUnreferencedBlobs(storage));
+        assertEquals("Incorrect number of blobs!", 0, blobStore.getReport(storage).getBlobs());
+    }
+
+    @Test
+    public void testCollidingChecksums()
+            throws IOException, NoSuchAlgorithmException
+    {
+        File releasesFile = createFile("releases");
+
+        String sha1 = calculateChecksum();
+        blobStore.link(storage, releasesFile, sha1);
+
+        // As if the contents had the same SHA-1 checksum (and length)
+        File snapshotsFile = createFile("snapshots", CONTENTS.toUpperCase());
+        blobStore.link(storage, snapshotsFile, sha1);
+
+        File blob = blobStore.getBlob(storage, sha1);
+
+        assertFalse("Linked a file with different contents to the blob!",
+                    Files.isSameFile(blob.toPath(), snapshotsFile.toPath()));
+        assertEquals("Incorrect contents!", CONTENTS.toUpperCase(), new String(Files.readAllBytes(snapshotsFile.toPath())));
+        assertEquals("Incorrect contents!", CONTENTS, new String(Files.readAllBytes(blob.toPath())));
+    }
+
+    @Test
+    public void testStoreDuplicate()
+            throws IOException, NoSuchAlgorithmException
+    {
+        File releasesFile = createFile("releases");
+
+        String sha1 = calculateChecksum();
+        blobStore.link(storage, releasesFile, sha1);
+
+        ArtifactFile artifactFile = createTemporaryFile("snapshots", CONTENTS);
+        File temporaryFile = artifactFile.getTemporaryFile();
+
+        blobStore.store(storage, artifactFile, sha1);
+
+        File blob = blobStore.getBlob(storage, sha1);
+
+        assertTrue("Failed to link the duplicate to the blob!", Files.isSameFile(blob.toPath(), artifactFile.toPath()));
+        assertFalse("Failed to discard the temporary file!", temporaryFile.exists());
+        assertEquals("Incorrect number of links!", 3, BlobStore.getLinkCount(blob));
+    }
+
+    @Test
+    public void testStoreNewContents()
+            throws IOException, NoSuchAlgorithmException
+    {
+        ArtifactFile artifactFile = createTemporaryFile("snapshots", CONTENTS);
+        File temporaryFile = artifactFile.getTemporaryFile();
+
+        String sha1 = calculateChecksum();
+        blobStore.store(storage, artifactFile, sha1);
+
+        File blob = blobStore.getBlob(storage, sha1);
+
+        assertTrue("Failed to create the blob!", blob.exists());
+        assertTrue("Failed to link the file to the blob!", Files.isSameFile(blob.toPath(), artifactFile.toPath()));
+        assertFalse("Failed to move the temporary file!", temporaryFile.exists());
+        assertEquals("Incorrect contents!", CONTENTS, new String(Files.readAllBytes(artifactFile.toPath())));
+    }
+
+    @Test
+    public void testGetLastReferencedBlobFromRecordedChecksum()
+            throws IOException, NoSuchAlgorithmException
+    {
+        File releasesFile = createFile("releases");
+
+        String sha1 = calculateChecksum();
+        blobStore.link(storage, releasesFile, sha1);
+
+        File blob = blobStore.getBlob(storage, sha1);
+
+        assertEquals("Failed to find the blob via the recorded checksum!",
+                     blob,
+                     blobStore.getLastReferencedBlob(storage, releasesFile, sha1));
+
+        // Without a recorded checksum, or a checksum file, the file is not read
+        assertNull("Incorrect blob!", blobStore.getLastReferencedBlob(storage, releasesFile, null));
+
+        MessageDigestUtils.writeChecksum(releasesFile, EncryptionAlgorithmsEnum.SHA1.getExtension(), sha1);
+
+        assertEquals("Failed to find the blob via the checksum file!",
+                     blob,
+                     blobStore.getLastReferencedBlob(storage, releasesFile, null));
+    }
+
+    @Test
+    public void testRemoveBlobsOfDirectory()
+            throws IOException, NoSuchAlgorithmException
+    {
+        File releasesFile = createFile("releases");
+        blobStore.link(storage, releasesFile, calculateChecksum());
+
+        // A file with a checksum file next to it, which is also referenced by another repository
+        File otherFile = createFile("releases", "org/carlspring/strongbox/blobs/1.1/blobs-1.1.jar", "Another artifact");
+        String otherSha1 = calculateChecksum("Another artifact");
+        MessageDigestUtils.writeChecksum(otherFile, EncryptionAlgorithmsEnum.SHA1.getExtension(), otherSha1);
+        blobStore.link(storage, otherFile, otherSha1);
+
+        File copy = new File(STORAGE_BASEDIR, "snapshots/org/carlspring/strongbox/blobs/1.1/blobs-1.1.jar");
+        assertTrue("Failed to copy the file!", blobStore.copy(storage, otherFile, copy));
+
+        File directory = new File(STORAGE_BASEDIR, "releases/org/carlspring/strongbox/blobs");
+
+        Set<File> blobs = blobStore.getReferencedBlobs(storage, directory);
+
+        assertEquals("Incorrect number of referenced blobs!", 2, blobs.size());
+        assertTrue("Failed to find the referenced blob!", blobs.contains(blobStore.getBlob(storage, calculateChecksum())));
+        assertTrue("Failed to find the referenced blob!", blobs.contains(blobStore.getBlob(storage, otherSha1)));
+
+        FileUtils.deleteDirectory(directory);
+
+        assertEquals("Incorrect number of removed blobs!", 1, blobStore.removeIfUnreferenced(blobs));
+        assertFalse("Failed to remove the unreferenced blob!", blobStore.getBlob(storage, calculateChecksum()).exists());
+        assertTrue("Removed a blob which is still referenced!", blobStore.getBlob(storage, otherSha1).exists());
+    }
+
+    private String calculateChecksum()
+            throws NoSuchAlgorithmException
+    {
+        return calculateChecksum(CONTENTS);
+    }
+
+    private String calculateChecksum(String contents)
+            throws NoSuchAlgorithmException
+    {
+        MessageDigest digest = MessageDigest.getInstance(EncryptionAlgorithmsEnum.SHA1.getAlgorithm());
+        digest.update(contents.getBytes());
+
+        return MessageDigestUtils.convertToHexadecimalString(digest);
+    }
+
+    private File createFile(String repositoryId)
+            throws IOException
+    {
+        return createFile(repositoryId, CONTENTS);
+    }
+
+    private File createFile(String repositoryId, String contents)
+            throws IOException
+    {
+        return createFile(repositoryId, "org/carlspring/strongbox/blobs/1.0/blobs-1.0.jar", contents);
+    }
+
+    private ArtifactFile createTemporaryFile(String repositoryId, String contents)
+            throws IOException
+    {
+        Repository repository = new Repository(repositoryId);
+        repository.setBasedir(new File(STORAGE_BASEDIR, repositoryId).getAbsolutePath());
+
+        ArtifactFile artifactFile = new ArtifactFile(repository, "org/carlspring/strongbox/blobs/1.0/blobs-1.0.jar", true);
+        artifactFile.createParents();
+
+        Files.write(artifactFile.getTemporaryFile().toPath(), contents.getBytes());
+
+        return artifactFile;
+    }
+
+    private File createFile(String repositoryId, String path, String contents)
+            throws IOException
+    {
+        File file = new File(STORAGE_BASEDIR, repositoryId + "/" + path);
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), contents.getBytes());
+
+        return file;
+    }
+
+}
@@ -0,0 +1,352 @@
+package org.carlspring.strongbox.storage.checksum;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the expiry and eviction of the cached checksums, as well as the outcomes of concurrent deployments,
+ * in the manner of a jcstress test: the actors race on the same artifact and an arbiter checks
+ * that only the acceptable outcomes are observed.
+ *
+ * @author mtodorov
+ */
+public class ChecksumCacheManagerConcurrencyTest
+{
+
+    private static final String ARTIFACT_PATH = "storage0/releases/org/carlspring/strongbox/checksums/1.0/checksums-1.0.jar";
+
+    private static final String MD5 = "MD5";
+
+    private static final String SHA1 = "SHA-1";
+
+
+    @Test
+    public void testExpiry()
+    {
+        ChecksumCacheManager manager = createManager(3000L, 1000L, 100);
+
+        RecordingListener listener = new RecordingListener();
+        manager.addListener(listener);
+
+        manager.addArtifactChecksum(ARTIFACT_PATH, MD5, "md5");
+        manager.addArtifactChecksum(ARTIFACT_PATH + ".pom", MD5, "md5");
+
+        manager.removeExpiredChecksums();
+        manager.removeExpiredChecksums();
+
+        // Accessing the checksums keeps them for another lifetime
+        assertEquals("Incorrect checksum!", "md5", manager.getArtifactChecksum(ARTIFACT_PATH, MD5));
+
+        assertEquals("Expired the checksums too early!", 1, manager.removeExpiredChecksums());
+        assertTrue("Failed to report the expired checksums!", listener.getExpired().containsKey(ARTIFACT_PATH + ".pom"));
+        assertEquals("Incorrect unclaimed checksums!", "md5", listener.getExpired().get(ARTIFACT_PATH + ".pom").get(MD5));
+        assertTrue("Expired the accessed checksums!", manager.containsArtifactPath(ARTIFACT_PATH));
+
+        assertEquals("Expired the accessed checksums too early!", 0, manager.removeExpiredChecksums());
+        assertEquals("Failed to expire the accessed checksums!", 1, manager.removeExpiredChecksums());
+        assertEquals("Incorrect number of expired artifacts!", 2, manager.getExpiredCount());
+        assertEquals("Incorrect size!", 0, manager.getSize());
+    }
+
+    @Test
+    public void testClaimedChecksumsAreNotReported()
+    {
+        ChecksumCacheManager manager = createManager(1000L, 1000L, 100);
+
+        RecordingListener listener = new RecordingListener();
+        manager.addListener(listener);
+
+        manager.addArtifactChecksum(ARTIFACT_PATH, MD5, "md5");
+        manager.addArtifactChecksum(ARTIFACT_PATH, SHA1, "sha1");
+
+        manager.removeArtifactChecksum(ARTIFACT_PATH, MD5);
+
+        assertTrue("Removed the artifact, before all of its checksums were claimed!",
+                   manager.containsArtifactPath(ARTIFACT_PATH));
+
+        manager.removeArtifactChecksum(ARTIFACT_PATH, SHA1);
+
+        assertFalse("Failed to remove the artifact, once all of its checksums were claimed!",
+                    manager.containsArtifactPath(ARTIFACT_PATH));
+
+        manager.removeExpiredChecksums();
+        manager.removeExpiredChecksums();
+
+        assertTrue("Reported claimed checksums!", listener.getExpired().isEmpty());
+    }
+
+    @Test
+    public void testEviction()
+    {
+        ChecksumCacheManager manager = createManager(60000L, 1000L, 2);
+
+        RecordingListener listener = new RecordingListener();
+        manager.addListener(listener);
+
+        for (int i = 0; i < 3; i++)
+        {
+            manager.addArtifactChecksum(ARTIFACT_PATH + "." + i, MD5, "md5");
+        }
+
+        assertEquals("Incorrect size!", 2, manager.getSize());
+        assertEquals("Incorrect number of evicted artifacts!", 1, manager.getEvictedCount());
+        assertTrue("Failed to evict the oldest checksums!", listener.getExpired().containsKey(ARTIFACT_PATH + ".0"));
+    }
+
+    @Test
+    public void testEvictionOfAccessedChecksums()
+    {
+        ChecksumCacheManager manager = createManager(60000L, 1000L, 2);
+
+        RecordingListener listener = new RecordingListener();
+        manager.addListener(listener);
+
+        manager.addArtifactChecksum(ARTIFACT_PATH + ".0", MD5, "md5");
+        manager.addArtifactChecksum(ARTIFACT_PATH + ".1", MD5, "md5");
+
+        manager.removeExpiredChecksums();
+
+        // The first artifact was scheduled first, but has been accessed since
+        assertEquals("Incorrect checksum!", "md5", manager.getArtifactChecksum(ARTIFACT_PATH + ".0", MD5));
+
+        manager.addArtifactChecksum(ARTIFACT_PATH + ".2", MD5, "md5");
+
+        assertEquals("Incorrect size!", 2, manager.getSize());
+        assertTrue("Evicted the accessed checksums!", manager.containsArtifactPath(ARTIFACT_PATH + ".0"));
+        assertTrue("Failed to evict the checksums closest to expiring!",
+                   listener.getExpired().containsKey(ARTIFACT_PATH + ".1"));
+    }
+
+    /**
+     * Actor 1 adds the MD5 and actor 2 the SHA-1 checksum of the same artifact, then each of them claims
+     * its checksum, while the timer wheel keeps turning. The acceptable outcomes are: both checksums
+     * are found after the adds and the artifact is gone after the claims.
+     */
+    @Test
+    public void testConcurrentDeploys()
+            throws InterruptedException
+    {
+        final int iterations = 2000;
+
+        // The checksums never expire during the test, but the expirer keeps draining and rescheduling them
+        final ChecksumCacheManager manager = createManager(10000L, 1L, iterations * 2);
+
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final AtomicInteger lostChecksums = new AtomicInteger();
+        final AtomicInteger leftoverArtifacts = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicBoolean done = new AtomicBoolean();
+
+        Thread actor1 = new Thread(new Actor(manager, barrier, iterations, MD5, failure)
+        {
+            @Override
+            void arbitrate(String artifactPath)
+            {
+                if (manager.getArtifactChecksum(artifactPath, MD5) == null ||
+                    manager.getArtifactChecksum(artifactPath, SHA1) == null)
+                {
+                    lostChecksums.incrementAndGet();
+                }
+            }
+
+            @Override
+            void arbitrateClaim(String artifactPath)
+            {
+                if (manager.containsArtifactPath(artifactPath))
+                {
+                    leftoverArtifacts.incrementAndGet();
+                }
+            }
+        });
+        Thread actor2 = new Thread(new Actor(manager, barrier, iterations, SHA1, failure));
+
+        Thread expirer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (int tick = 0; tick < 5000 && !done.get(); tick++)
+                {
+                    manager.removeExpiredChecksums();
+                    Thread.yield();
+                }
+            }
+        });
+
+        expirer.start();
+        actor1.start();
+        actor2.start();
+
+        actor1.join();
+        actor2.join();
+        done.set(true);
+        expirer.join();
+
+        assertNull("The actors have failed: " + failure.get(), failure.get());
+        assertEquals("Lost checksums which were added concurrently!", 0, lostChecksums.get());
+        assertEquals("Left artifacts behind, after all of their checksums were claimed!", 0, leftoverArtifacts.get());
+        assertEquals("Incorrect size!", 0, manager.getSize());
+        assertEquals("Expired checksums too early!", 0, manager.getExpiredCount());
+    }
+
+    @Test
+    public void testConcurrentEviction()
+            throws InterruptedException
+    {
+        final int threads = 8;
+        final int artifactsPerThread = 1000;
+        final int maxSize = 100;
+
+        final ChecksumCacheManager manager = createManager(60000L, 1000L, maxSize);
+
+        RecordingListener listener = new RecordingListener();
+        manager.addListener(listener);
+
+        List<Thread> deployers = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+        {
+            final int thread = i;
+
+            deployers.add(new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < artifactsPerThread; j++)
+                    {
+                        manager.addArtifactChecksum(ARTIFACT_PATH + "." + thread + "." + j, MD5, "md5");
+                    }
+                }
+            }));
+        }
+
+        for (Thread deployer : deployers)
+        {
+            deployer.start();
+        }
+
+        for (Thread deployer : deployers)
+        {
+            deployer.join();
+        }
+
+        assertTrue("Exceeded the maximum size (" + manager.getSize() + ")!", manager.getSize() <= maxSize);
+        assertEquals("Lost artifacts which were neither cached, nor evicted!",
+                     threads * artifactsPerThread, manager.getSize() + manager.getEvictedCount());
+        assertEquals("Failed to report all the evicted checksums!", manager.getEvictedCount(), listener.getExpired().size());
+    }
+
+    private static ChecksumCacheManager createManager(long lifetime,
+                                                      long checkInterval,
+                                                      int maxSize)
+    {
+        ChecksumCacheManager manager = new ChecksumCacheManager();
+        manager.setCachedChecksumLifetime(lifetime);
+        manager.setCachedChecksumExpiredCheckInterval(checkInterval);
+        manager.setMaxSize(maxSize);
+
+        return manager;
+    }
+
+    private static class Actor
+            implements Runnable
+    {
+
+        private final ChecksumCacheManager manager;
+
+        private final CyclicBarrier barrier;
+
+        private final int iterations;
+
+        private final String algorithm;
+
+        private final AtomicReference<Throwable> failure;
+
+
+        Actor(ChecksumCacheManager manager,
+              CyclicBarrier barrier,
+              int iterations,
+              String algorithm,
+              AtomicReference<Throwable> failure)
+        {
+            this.manager = manager;
+            this.barrier = barrier;
+            this.iterations = iterations;
+            this.algorithm = algorithm;
+            this.failure = failure;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                for (int i = 0; i < iterations; i++)
+                {
+                    final String artifactPath = ARTIFACT_PATH + "." + i;
+
+                    barrier.await();
+                    manager.addArtifactChecksum(artifactPath, algorithm, algorithm.toLowerCase());
+                    barrier.await();
+
+                    arbitrate(artifactPath);
+
+                    barrier.await();
+                    manager.removeArtifactChecksum(artifactPath, algorithm);
+                    barrier.await();
+
+                    arbitrateClaim(artifactPath);
+                }
+            }
+            catch (InterruptedException | BrokenBarrierException | RuntimeException e)
+            {
+                failure.compareAndSet(null, e);
+                barrier.reset();
+            }
+        }
+
+        void arbitrate(String artifactPath)
+        {
+        }
+
+        void arbitrateClaim(String artifactPath)
+        {
+        }
+
+    }
+
+    private static class RecordingListener
+            implements ChecksumExpirationListener
+    {
+
+        private final Map<String, Map<String, String>> expired = new ConcurrentHashMap<>();
+
+
+        @Override
+        public void checksumsExpired(String artifactBasePath,
+                                     Map<String, String> unclaimedChecksums)
+        {
+            expired.put(artifactBasePath, unclaimedChecksums);
+        }
+
+        public Map<String, Map<String, String>> getExpired()
+        {
+            return expired;
+        }
+
+    }
+
+}
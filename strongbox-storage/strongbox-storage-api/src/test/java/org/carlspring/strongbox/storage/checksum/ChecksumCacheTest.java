@@ -0,0 +1,219 @@
+package org.carlspring.strongbox.storage.checksum;
+
+import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mtodorov
+ */
+public class ChecksumCacheTest
+{
+
+    private static final File BASEDIR = new File("target/test-resources/checksum-cache/storage0/releases");
+
+    private static final String MD5 = EncryptionAlgorithmsEnum.MD5.getAlgorithm();
+
+    private static final String SHA1 = EncryptionAlgorithmsEnum.SHA1.getAlgorithm();
+
+    private static final String PATH = "org/carlspring/strongbox/checksum-cache/1.0/checksum-cache-1.0.jar";
+
+    private ChecksumCache cache;
+
+    private File artifactFile;
+
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        cache = new ChecksumCache();
+
+        artifactFile = new File(BASEDIR, PATH);
+        if (!artifactFile.getParentFile().exists())
+        {
+            //noinspection ResultOfMethodCallIgnored
+            artifactFile.getParentFile().mkdirs();
+        }
+
+        writeFile(artifactFile, "This is a test.");
+        writeFile(new File(artifactFile.getPath() + ".md5"), "120ea8a25e5d487bf68b5f7096440019");
+        writeFile(new File(artifactFile.getPath() + ".sha1"),
+                  "afa6c8b3a2fae95785dc7d9685a57835d703ac88  checksum-cache-1.0.jar");
+    }
+
+    @Test
+    public void testLazyLoading()
+            throws IOException
+    {
+        Map<String, String> checksums = cache.getChecksums("storage0", "releases", PATH, artifactFile);
+
+        assertEquals("Failed to load the MD5 checksum!", "120ea8a25e5d487bf68b5f7096440019", checksums.get(MD5));
+        assertEquals("Failed to load the SHA-1 checksum!",
+                     "afa6c8b3a2fae95785dc7d9685a57835d703ac88",
+                     checksums.get(SHA1));
+        assertEquals("Incorrect number of misses!", 1, cache.getMisses());
+        assertEquals("Incorrect number of hits!", 0, cache.getHits());
+
+        // Change the checksum file; the cached checksum should still be served
+        writeFile(new File(artifactFile.getPath() + ".md5"), "00000000000000000000000000000000");
+
+        assertEquals("Failed to serve the cached checksum!",
+                     "120ea8a25e5d487bf68b5f7096440019",
+                     cache.getChecksum("storage0", "releases", PATH, artifactFile, MD5));
+        assertEquals("Incorrect number of misses!", 1, cache.getMisses());
+        assertEquals("Incorrect number of hits!", 1, cache.getHits());
+    }
+
+    @Test
+    public void testMissingChecksumFiles()
+            throws IOException
+    {
+        final String path = PATH.replace(".jar", ".pom");
+
+        File pomFile = new File(BASEDIR, path);
+        writeFile(pomFile, "<project/>");
+
+        assertTrue("Failed to return an empty map!",
+                   cache.getChecksums("storage0", "releases", path, pomFile).isEmpty());
+        assertNull("Failed to return an empty map!",
+                   cache.getChecksum("storage0", "releases", path, pomFile, SHA1));
+        assertEquals("Failed to cache the missing checksums!", 1, cache.getHits());
+    }
+
+    @Test
+    public void testReloadingOfModifiedArtifacts()
+            throws IOException
+    {
+        cache.getChecksums("storage0", "releases", PATH, artifactFile);
+
+        writeFile(artifactFile, "This is another test.");
+        writeFile(new File(artifactFile.getPath() + ".md5"), "00000000000000000000000000000000");
+
+        assertEquals("Failed to reload the checksums of a modified artifact!",
+                     "00000000000000000000000000000000",
+                     cache.getChecksum("storage0", "releases", PATH, artifactFile, MD5));
+        assertEquals("Incorrect number of misses!", 2, cache.getMisses());
+    }
+
+    @Test
+    public void testAddingAndUpdatingChecksums()
+            throws IOException
+    {
+        Map<String, String> checksums = new LinkedHashMap<>();
+        checksums.put(MD5, "11111111111111111111111111111111");
+        checksums.put(SHA1, "1111111111111111111111111111111111111111");
+
+        cache.addChecksums("storage0", "releases", PATH, checksums, artifactFile);
+
+        assertEquals("Failed to serve the added checksum!",
+                     "11111111111111111111111111111111",
+                     cache.getChecksum("storage0", "releases", PATH, artifactFile, MD5));
+
+        cache.updateChecksum("storage0", "releases", PATH, SHA1, "2222222222222222222222222222222222222222");
+
+        assertEquals("Failed to update the checksum!",
+                     "2222222222222222222222222222222222222222",
+                     cache.getChecksum("storage0", "releases", PATH, artifactFile, SHA1));
+        assertEquals("Incorrect number of misses!", 0, cache.getMisses());
+    }
+
+    @Test
+    public void testReloadingOfModifiedStoredArtifacts()
+            throws IOException
+    {
+        Map<String, String> checksums = new LinkedHashMap<>();
+        checksums.put(MD5, "11111111111111111111111111111111");
+
+        cache.addChecksums("storage0", "releases", PATH, checksums, artifactFile);
+
+        // As if the file (for example, the metadata) had been rewritten without going through the cache
+        writeFile(artifactFile, "This is another test.");
+        writeFile(new File(artifactFile.getPath() + ".md5"), "00000000000000000000000000000000");
+
+        assertEquals("Served the checksum of the file as it was stored!",
+                     "00000000000000000000000000000000",
+                     cache.getChecksum("storage0", "releases", PATH, artifactFile, MD5));
+    }
+
+    @Test
+    public void testInvalidation()
+            throws IOException
+    {
+        Map<String, String> checksums = new LinkedHashMap<>();
+        checksums.put(MD5, "11111111111111111111111111111111");
+
+        cache.addChecksums("storage0", "releases", PATH, checksums, artifactFile);
+        cache.addChecksums("storage0", "snapshots", PATH, checksums, artifactFile);
+
+        // Invalidate the parent directory
+        cache.invalidate("storage0", "releases", "org/carlspring/strongbox/checksum-cache");
+
+        assertEquals("Failed to invalidate the checksums!", 1, cache.getSize());
+        assertEquals("Failed to reload the checksums!",
+                     "120ea8a25e5d487bf68b5f7096440019",
+                     cache.getChecksum("storage0", "releases", PATH, artifactFile, MD5));
+
+        // Paths which merely start with the same prefix should not be invalidated
+        cache.invalidate("storage0", "snapshots", PATH.substring(0, PATH.length() - 4));
+
+        assertEquals("Invalidated the wrong checksums!", 2, cache.getSize());
+    }
+
+    @Test
+    public void testInvalidationOfSiblingDirectories()
+    {
+        Map<String, String> checksums = new LinkedHashMap<>();
+        checksums.put(MD5, "11111111111111111111111111111111");
+
+        cache.addChecksums("storage0", "releases", PATH, checksums, artifactFile);
+        cache.addChecksums("storage0", "releases", PATH.replace("checksum-cache/", "checksum-cache-plugin/"),
+                           checksums, artifactFile);
+        cache.addChecksums("storage0", "releases", PATH.replace("checksum-cache/", "checksum-cache.plugin/"),
+                           checksums, artifactFile);
+
+        cache.invalidate("storage0", "releases", "org/carlspring/strongbox/checksum-cache");
+
+        assertEquals("Invalidated the checksums of the sibling directories!", 2, cache.getSize());
+
+        cache.invalidate("storage0", "releases", "org/carlspring/strongbox");
+
+        assertEquals("Failed to invalidate the checksums!", 0, cache.getSize());
+    }
+
+    @Test
+    public void testEviction()
+    {
+        cache.setMaxSize(10);
+
+        Map<String, String> checksums = new LinkedHashMap<>();
+        checksums.put(MD5, "11111111111111111111111111111111");
+
+        for (int i = 0; i < 100; i++)
+        {
+            cache.addChecksums("storage0", "releases", PATH + "." + i, checksums, artifactFile);
+        }
+
+        assertEquals("Failed to bound the size of the cache!", 10, cache.getSize());
+    }
+
+    private void writeFile(File file, String contents)
+            throws IOException
+    {
+        FileOutputStream fos = new FileOutputStream(file);
+        fos.write(contents.getBytes());
+        fos.flush();
+        fos.close();
+    }
+
+}
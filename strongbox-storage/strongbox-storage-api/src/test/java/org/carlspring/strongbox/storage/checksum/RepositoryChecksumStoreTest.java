@@ -0,0 +1,187 @@
+package org.carlspring.strongbox.storage.checksum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mtodorov
+ */
+public class RepositoryChecksumStoreTest
+{
+
+    private static final File REPOSITORY_BASEDIR = new File("target/strongbox-checksums/releases");
+
+    private static final File LOG_FILE = new File(REPOSITORY_BASEDIR, ".checksums/checksums.log");
+
+    private static final String MD5 = "d41d8cd98f00b204e9800998ecf8427e";
+
+    private static final String SHA1 = "da39a3ee5e6b4b0d3255bfef95601890afd80709";
+
+    private RepositoryChecksumStore store;
+
+
+    @Before
+    public void setUp()
+            throws IOException
+    {
+        FileUtils.deleteDirectory(REPOSITORY_BASEDIR);
+
+        store = open(RepositoryChecksumStore.DEFAULT_SEGMENT_SIZE);
+    }
+
+    @After
+    public void tearDown()
+    {
+        store.close();
+    }
+
+    @Test
+    public void testPutAndGet()
+            throws IOException
+    {
+        store.put(new ChecksumRecord("org/foo/foo/1.0/foo-1.0.jar", MD5, SHA1, 1024, 1000L));
+        store.put(new ChecksumRecord("org/foo/foo/1.0/foo-1.0.pom", MD5, null, 512, 2000L));
+
+        ChecksumRecord record = store.get("org/foo/foo/1.0/foo-1.0.jar");
+
+        assertNotNull("Failed to look up the checksums!", record);
+        assertEquals("Incorrect MD5!", MD5, record.getMd5());
+        assertEquals("Incorrect SHA-1!", SHA1, record.getSha1());
+        assertEquals("Incorrect size!", 1024, record.getSize());
+        assertEquals("Incorrect modification time!", 1000L, record.getLastModified());
+        assertTrue("Incorrect validity!", record.isValidFor(1024, 1000L));
+        assertFalse("Incorrect validity!", record.isValidFor(1024, 1001L));
+
+        record = store.get("org/foo/foo/1.0/foo-1.0.pom");
+
+        assertNotNull("Failed to look up the checksums!", record);
+        assertNull("Incorrect SHA-1!", record.getSha1());
+        assertEquals("Incorrect number of checksums!", 1, record.getChecksums().size());
+
+        assertNull("Found checksums of a path which was never stored!", store.get("org/foo/foo/1.0/foo-1.0.war"));
+    }
+
+    @Test
+    public void testReplaceAndRemove()
+            throws IOException
+    {
+        final String path = "org/foo/foo/1.0/foo-1.0.jar";
+
+        store.put(new ChecksumRecord(path, MD5, SHA1, 1024, 1000L));
+        store.put(new ChecksumRecord(path, MD5, SHA1, 2048, 3000L));
+
+        assertEquals("Incorrect size!", 2048, store.get(path).getSize());
+        assertEquals("Incorrect number of artifacts!", 1, store.getSize());
+
+        assertTrue("Failed to remove the checksums!", store.remove(path));
+        assertFalse("Removed the checksums twice!", store.remove(path));
+        assertNull("Failed to remove the checksums!", store.get(path));
+        assertEquals("Incorrect number of artifacts!", 0, store.getSize());
+
+        store.put(new ChecksumRecord("org/foo/foo/1.0/foo-1.0.pom", MD5, SHA1, 512, 1000L));
+        store.put(new ChecksumRecord("org/foo/foo/1.1/foo-1.1.pom", MD5, SHA1, 512, 1000L));
+        store.put(new ChecksumRecord("org/foo/foo-bar/1.0/foo-bar-1.0.pom", MD5, SHA1, 512, 1000L));
+
+        assertEquals("Incorrect number of removed paths!", 2, store.removeDirectory("org/foo/foo"));
+        assertNotNull("Removed the checksums of another directory!", store.get("org/foo/foo-bar/1.0/foo-bar-1.0.pom"));
+    }
+
+    @Test
+    public void testReopen()
+            throws IOException
+    {
+        // A small segment size, so that the records span several segments
+        store.close();
+        store = open(512);
+
+        for (int i = 0; i < 1000; i++)
+        {
+            store.put(new ChecksumRecord("org/foo/foo/" + i + "/foo-" + i + ".jar", MD5, SHA1, i, i));
+        }
+        for (int i = 0; i < 1000; i += 2)
+        {
+            store.remove("org/foo/foo/" + i + "/foo-" + i + ".jar");
+        }
+
+        store.close();
+        store = open(512);
+
+        assertEquals("Incorrect number of artifacts after reopening the store!", 500, store.getSize());
+
+        for (int i = 0; i < 1000; i++)
+        {
+            final ChecksumRecord record = store.get("org/foo/foo/" + i + "/foo-" + i + ".jar");
+            if (i % 2 == 0)
+            {
+                assertNull("Found removed checksums after reopening the store!", record);
+            }
+            else
+            {
+                assertNotNull("Failed to look up the checksums after reopening the store!", record);
+                assertEquals("Incorrect size!", i, record.getSize());
+                assertEquals("Incorrect SHA-1!", SHA1, record.getSha1());
+            }
+        }
+    }
+
+    @Test
+    public void testRebuild()
+            throws IOException
+    {
+        final File artifactFile = new File(REPOSITORY_BASEDIR, "org/foo/foo/1.0/foo-1.0.jar");
+        Files.write(artifactFile.toPath(), new byte[0]);
+        Files.write(new File(artifactFile.getPath() + ".md5").toPath(), MD5.getBytes());
+        Files.write(new File(artifactFile.getPath() + ".sha1").toPath(), (SHA1 + "  foo-1.0.jar").getBytes());
+
+        // No checksum files
+        Files.write(new File(REPOSITORY_BASEDIR, "org/foo/foo/1.0/foo-1.0.pom").toPath(), new byte[0]);
+
+        store.put(new ChecksumRecord("org/foo/foo/0.9/foo-0.9.jar", MD5, SHA1, 0, 0));
+
+        final ChecksumStore checksumStore = new ChecksumStore();
+        checksumStore.setRebuildThreads(4);
+
+        final List<ChecksumRecord> records = checksumStore.scan(REPOSITORY_BASEDIR);
+
+        assertEquals("Incorrect number of scanned artifacts!", 1, records.size());
+
+        store.replaceAll(records);
+
+        final ChecksumRecord record = store.get("org/foo/foo/1.0/foo-1.0.jar");
+
+        assertNotNull("Failed to rebuild the checksums!", record);
+        assertEquals("Incorrect MD5!", MD5, record.getMd5());
+        assertEquals("Incorrect SHA-1!", SHA1, record.getSha1());
+        assertTrue("Incorrect validity!", record.isValidFor(artifactFile.length(), artifactFile.lastModified()));
+        assertNull("Failed to drop the checksums of the missing artifact!", store.get("org/foo/foo/0.9/foo-0.9.jar"));
+    }
+
+    private RepositoryChecksumStore open(int segmentSize)
+            throws IOException
+    {
+        final File directory = new File(REPOSITORY_BASEDIR, "org/foo/foo/1.0");
+        if (!directory.exists())
+        {
+            //noinspection ResultOfMethodCallIgnored
+            directory.mkdirs();
+        }
+
+        final RepositoryChecksumStore checksumStore = new RepositoryChecksumStore(LOG_FILE, segmentSize, false);
+        checksumStore.open();
+
+        return checksumStore;
+    }
+
+}
@@ -0,0 +1,220 @@
+package org.carlspring.strongbox.storage.integrity;
+
+import org.carlspring.strongbox.configuration.Configuration;
+import org.carlspring.strongbox.configuration.ConfigurationManager;
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.repository.Repository;
+import org.carlspring.strongbox.util.MessageDigestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mtodorov
+ */
+public class IntegrityScrubberTest
+{
+
+    private static final File STORAGE_BASEDIR = new File("target/strongbox-scrubber/storage0");
+
+    private static final File REPOSITORY_BASEDIR = new File(STORAGE_BASEDIR, "releases");
+
+    // The checksums of "foo"
+    private static final String MD5 = "acbd18db4cc2f85cedef654fccc4a4d8";
+
+    private static final String SHA1 = "0beec7b5ea3f0fdbc95d0dd47f3c5bc275da8a33";
+
+    private IntegrityScrubber scrubber;
+
+
+    @Before
+    public void setUp()
+            throws IOException
+    {
+        FileUtils.deleteDirectory(STORAGE_BASEDIR);
+
+        Storage storage = new Storage("storage0", STORAGE_BASEDIR.getAbsolutePath());
+        Repository repository = new Repository("releases");
+        repository.setBasedir(REPOSITORY_BASEDIR.getAbsolutePath());
+        storage.addOrUpdateRepository(repository);
+
+        Configuration configuration = new Configuration();
+        configuration.addStorage(storage);
+
+        ConfigurationManager configurationManager = new ConfigurationManager();
+        //noinspection unchecked
+        configurationManager.setConfiguration(configuration);
+
+        scrubber = new IntegrityScrubber();
+        scrubber.setConfigurationManager(configurationManager);
+        scrubber.setMinimumAge(0);
+    }
+
+    @Test
+    public void testScrubbing()
+            throws IOException
+    {
+        final File validFile = createArtifact("org/foo/foo/1.0/foo-1.0.jar", MD5, SHA1);
+        final File corruptFile = createArtifact("org/foo/foo/1.1/foo-1.1.jar", MD5, "0000000000000000000000000000000000000000");
+        final File legacyFile = createArtifact("org/foo/foo/1.2/foo-1.2.jar", null, null);
+
+        scrubber.setQuarantineEnabled(true);
+        scrubber.setRepairEnabled(true);
+
+        final ScrubStatus status = scrubber.scrub("storage0", "releases");
+
+        assertNotNull("Failed to scrub the repository!", status);
+        assertFalse("The scrub is still running!", status.isRunning());
+        assertEquals("Incorrect number of verified artifacts!", 3, status.getScannedFiles());
+        assertEquals("Incorrect number of mismatches!", 1, status.getMismatches());
+        assertEquals("Incorrect number of regenerated checksum files!", 2, status.getRegeneratedChecksums());
+
+        assertTrue("Quarantined a valid artifact!", validFile.exists());
+        assertFalse("Failed to quarantine the corrupt artifact!", corruptFile.exists());
+        assertTrue("Failed to quarantine the corrupt artifact!",
+                   new File(REPOSITORY_BASEDIR, ".quarantine/org/foo/foo/1.1/foo-1.1.jar").exists());
+        assertTrue("Failed to report the corrupt artifact!",
+                   scrubber.getMismatchReport("storage0", "releases").contains("org/foo/foo/1.1/foo-1.1.jar"));
+
+        assertEquals("Incorrect regenerated checksum!",
+                     SHA1,
+                     MessageDigestUtils.readChecksumFile(legacyFile.getPath() + ".sha1").trim());
+    }
+
+    @Test
+    public void testReportingOnly()
+            throws IOException
+    {
+        final File corruptFile = createArtifact("org/foo/foo/1.1/foo-1.1.jar", MD5, "0000000000000000000000000000000000000000");
+        final File legacyFile = createArtifact("org/foo/foo/1.2/foo-1.2.jar", null, null);
+
+        final ScrubStatus status = scrubber.scrub("storage0", "releases");
+
+        assertEquals("Incorrect number of mismatches!", 1, status.getMismatches());
+        assertEquals("Regenerated checksum files without being asked to!", 0, status.getRegeneratedChecksums());
+
+        assertTrue("Quarantined the corrupt artifact without being asked to!", corruptFile.exists());
+        assertFalse("Regenerated a checksum file without being asked to!",
+                    new File(legacyFile.getPath() + ".sha1").exists());
+        assertTrue("Failed to report the corrupt artifact!",
+                   scrubber.getMismatchReport("storage0", "releases").contains("org/foo/foo/1.1/foo-1.1.jar"));
+    }
+
+    @Test
+    public void testSpreadingFirstScrubsAfterStart()
+            throws IOException
+    {
+        createArtifact("org/foo/foo/1.0/foo-1.0.jar", MD5, SHA1);
+
+        // The scrubs are checked for once a minute, so the monitor won't scrub anything itself
+        scrubber.startMonitor();
+        scrubber.stopMonitor();
+
+        // storage0:releases is due around half an hour after the start
+        scrubber.setStartupSpread(60 * 60000L);
+        scrubber.scrubDueRepositories();
+
+        assertFalse("Scrubbed the repository right after the start!",
+                    scrubber.getStatuses().containsKey("storage0:releases"));
+
+        scrubber.setStartupSpread(0);
+        scrubber.scrubDueRepositories();
+
+        assertTrue("Failed to scrub the repository, which has never been scrubbed!",
+                   scrubber.getStatuses().containsKey("storage0:releases"));
+    }
+
+    @Test
+    public void testResuming()
+            throws IOException
+    {
+        createArtifact("org/foo/bar/1.0/bar-1.0.jar", MD5, SHA1);
+        createArtifact("org/foo/foo/1.0/foo-1.0.jar", MD5, SHA1);
+        createArtifact("org/foo/foo-bar/1.0/foo-bar-1.0.jar", MD5, SHA1);
+
+        // As if the scrub had been interrupted after verifying the first artifact
+        final File checkpointFile = new File(REPOSITORY_BASEDIR, ".scrub/checkpoint.properties");
+        //noinspection ResultOfMethodCallIgnored
+        checkpointFile.getParentFile().mkdirs();
+        Files.write(checkpointFile.toPath(), "path=org/foo/bar/1.0/bar-1.0.jar\n".getBytes());
+
+        ScrubStatus status = scrubber.scrub("storage0", "releases");
+
+        assertEquals("Failed to resume the scrub after the checkpoint!", 2, status.getScannedFiles());
+
+        final Properties checkpoint = new Properties();
+        try (InputStream is = Files.newInputStream(checkpointFile.toPath()))
+        {
+            checkpoint.load(is);
+        }
+
+        assertFalse("Failed to clear the checkpoint of the completed scrub!", checkpoint.containsKey("path"));
+        assertTrue("Failed to record the completion of the scrub!", checkpoint.containsKey("completed"));
+
+        status = scrubber.scrub("storage0", "releases");
+
+        assertEquals("Failed to scrub the whole repository after the completed scrub!", 3, status.getScannedFiles());
+    }
+
+    @Test
+    public void testSkippingStorageFiles()
+            throws IOException
+    {
+        final File pomFile = createArtifact("org/foo/foo/1.0/foo-1.0.pom", MD5, SHA1);
+        createArtifact("org/foo/foo/1.0/foo-1.0-bin.tar.gz", MD5, SHA1);
+
+        // The compressed sibling of the POM and the temporary file of a write which is in progress
+        Files.write(new File(pomFile.getPath() + ".gz").toPath(), "bar".getBytes());
+        Files.write(new File(pomFile.getParentFile(), "foo-1.0.jar.1234567890.tmp").toPath(), "bar".getBytes());
+
+        final ScrubStatus status = scrubber.scrub("storage0", "releases");
+
+        assertEquals("Incorrect number of verified artifacts!", 2, status.getScannedFiles());
+        assertEquals("Incorrect number of mismatches!", 0, status.getMismatches());
+        assertEquals("Incorrect number of regenerated checksum files!", 0, status.getRegeneratedChecksums());
+    }
+
+    @Test
+    public void testPathOrder()
+    {
+        assertTrue("Incorrect order!", IntegrityScrubber.comparePaths("org/foo/bar", "org/foo-bar") < 0);
+        assertTrue("Incorrect order!", IntegrityScrubber.comparePaths("org/foo", "org/foo/bar") < 0);
+        assertTrue("Incorrect order!", IntegrityScrubber.comparePaths("org/foo/baz", "org/foo/bar/1.0") > 0);
+        assertEquals("Incorrect order!", 0, IntegrityScrubber.comparePaths("org/foo", "org/foo"));
+    }
+
+    private File createArtifact(String path,
+                                String md5,
+                                String sha1)
+            throws IOException
+    {
+        final File artifactFile = new File(REPOSITORY_BASEDIR, path);
+        //noinspection ResultOfMethodCallIgnored
+        artifactFile.getParentFile().mkdirs();
+
+        Files.write(artifactFile.toPath(), "foo".getBytes());
+
+        if (md5 != null)
+        {
+            Files.write(new File(artifactFile.getPath() + ".md5").toPath(), md5.getBytes());
+        }
+        if (sha1 != null)
+        {
+            Files.write(new File(artifactFile.getPath() + ".sha1").toPath(), sha1.getBytes());
+        }
+
+        return artifactFile;
+    }
+
+}
@@ -0,0 +1,269 @@
+package org.carlspring.strongbox.storage.resolvers;
+
+import org.carlspring.strongbox.configuration.Configuration;
+import org.carlspring.strongbox.configuration.ConfigurationManager;
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.repository.Repository;
+import org.carlspring.strongbox.storage.repository.RepositoryTypeEnum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mtodorov
+ */
+public class GroupMemberIndexTest
+{
+
+    private static final File STORAGE_BASEDIR = new File("target/strongbox-group-index/storage0");
+
+    private GroupMemberIndex index;
+
+
+    @Before
+    public void setUp()
+            throws IOException
+    {
+        FileUtils.deleteDirectory(STORAGE_BASEDIR);
+
+        Storage storage = new Storage("storage0", STORAGE_BASEDIR.getAbsolutePath());
+        storage.addOrUpdateRepository(createRepository("releases"));
+        storage.addOrUpdateRepository(createRepository("snapshots"));
+
+        Repository groupRepository = createRepository("group-releases");
+        groupRepository.setType(RepositoryTypeEnum.GROUP.getType());
+        groupRepository.setGroupRepositories(new LinkedHashSet<>(Arrays.asList("releases", "storage0:snapshots")));
+        storage.addOrUpdateRepository(groupRepository);
+
+        Configuration configuration = new Configuration();
+        configuration.addStorage(storage);
+
+        ConfigurationManager configurationManager = new ConfigurationManager();
+        //noinspection unchecked
+        configurationManager.setConfiguration(configuration);
+
+        index = new GroupMemberIndex();
+        index.setConfigurationManager(configurationManager);
+    }
+
+    @Test
+    public void testLookups()
+            throws IOException
+    {
+        createFile("releases", "org/foo/foo/1.0/foo-1.0.jar");
+        createFile("snapshots", "com/bar/bar/1.0-SNAPSHOT/bar-1.0-SNAPSHOT.jar");
+        createFile("releases", ".trash/org/baz/baz/1.0/baz-1.0.jar");
+        age(STORAGE_BASEDIR);
+
+        assertTrue("Skipped a repository which hasn't been scanned!",
+                   index.mayContain("storage0", "releases", "com/bar/bar/1.0-SNAPSHOT/bar-1.0-SNAPSHOT.jar"));
+
+        index.scan();
+
+        assertTrue("Failed to scan the member repository!", index.isIndexed("storage0", "releases"));
+        assertTrue("Failed to scan the member repository!", index.isIndexed("storage0", "snapshots"));
+        assertFalse("Scanned the group repository!", index.isIndexed("storage0", "group-releases"));
+
+        assertTrue("Skipped a repository containing the path!",
+                   index.mayContain("storage0", "releases", "org/foo/foo/1.0/foo-1.0.jar"));
+        assertTrue("Skipped a repository containing the path!",
+                   index.mayContain("storage0", "releases", "org/foo/foo/1.1/foo-1.1.jar"));
+        assertTrue("Skipped a repository containing the metadata!",
+                   index.mayContain("storage0", "releases", "org/foo/maven-metadata.xml"));
+        assertFalse("Failed to skip a repository which doesn't contain the path!",
+                    index.mayContain("storage0", "releases", "com/bar/bar/1.0-SNAPSHOT/bar-1.0-SNAPSHOT.jar"));
+        assertFalse("Failed to skip a repository which doesn't contain the path!",
+                    index.mayContain("storage0", "snapshots", "org/foo/foo/1.0/foo-1.0.jar"));
+        assertFalse("Indexed the trash!",
+                    index.mayContain("storage0", "releases", "org/baz/baz/1.0/baz-1.0.jar"));
+
+        // Paths which can't be looked up in the index
+        assertTrue("Skipped a file at the root of the repository!",
+                   index.mayContain("storage0", "snapshots", "archetype-catalog.xml"));
+        assertTrue("Skipped a path with relative elements!",
+                   index.mayContain("storage0", "snapshots", "com/bar/../../org/foo/foo/1.0/foo-1.0.jar"));
+        assertTrue("Skipped a hidden path!",
+                   index.mayContain("storage0", "snapshots", ".index/nexus-maven-repository-index.gz"));
+
+        assertEquals("Incorrect number of skipped lookups!", 3, index.getSkippedLookups());
+    }
+
+    @Test
+    public void testFilesCreatedAfterScanning()
+            throws IOException
+    {
+        createFile("releases", "org/foo/foo/1.0/foo-1.0.jar");
+        age(STORAGE_BASEDIR);
+
+        index.scan("storage0", "releases");
+
+        assertFalse("Failed to skip a repository which doesn't contain the path!",
+                    index.mayContain("storage0", "releases", "org/bar/bar/1.0/bar-1.0.jar"));
+
+        // As if the files had been copied into the repository directly
+        createFile("releases", "org/bar/bar/1.0/bar-1.0.jar");
+        createFile("releases", "com/baz/baz/1.0/baz-1.0.jar");
+
+        assertTrue("Skipped a repository containing a file which was created after it had been scanned!",
+                   index.mayContain("storage0", "releases", "org/bar/bar/1.0/bar-1.0.jar"));
+        assertTrue("Skipped a repository containing a file which was created after it had been scanned!",
+                   index.mayContain("storage0", "releases", "com/baz/baz/1.0/baz-1.0.jar"));
+    }
+
+    @Test
+    public void testRefreshingInTheBackground()
+            throws IOException, InterruptedException
+    {
+        createFile("releases", "org/foo/foo/1.0/foo-1.0.jar");
+        age(STORAGE_BASEDIR);
+
+        index.scan("storage0", "releases");
+        index.startMonitor();
+        try
+        {
+            createFile("releases", "com/bar/bar/1.0/bar-1.0.jar");
+            age(STORAGE_BASEDIR);
+
+            // The modified directory is listed in the background, meanwhile the repository may contain anything
+            assertTrue("Skipped a repository, the modified directory of which hasn't been listed yet!",
+                       index.mayContain("storage0", "releases", "com/qux/qux/1.0/qux-1.0.jar"));
+
+            final long timeout = System.currentTimeMillis() + 10000L;
+            while (index.mayContain("storage0", "releases", "com/qux/qux/1.0/qux-1.0.jar") &&
+                   System.currentTimeMillis() < timeout)
+            {
+                Thread.sleep(50L);
+            }
+
+            assertFalse("Failed to list the modified directory again!",
+                        index.mayContain("storage0", "releases", "com/qux/qux/1.0/qux-1.0.jar"));
+            assertTrue("Skipped a repository containing a file which was created after it had been scanned!",
+                       index.mayContain("storage0", "releases", "com/bar/bar/1.0/bar-1.0.jar"));
+        }
+        finally
+        {
+            index.stopMonitor();
+        }
+    }
+
+    @Test
+    public void testRecentlyModifiedDirectories()
+            throws IOException
+    {
+        createFile("releases", "org/foo/foo/1.0/foo-1.0.jar");
+
+        index.scan("storage0", "releases");
+
+        // A directory could be created without changing the modification time of the repository
+        assertTrue("Relied on the modification time of a recently modified directory!",
+                   index.mayContain("storage0", "releases", "com/bar/bar/1.0/bar-1.0.jar"));
+    }
+
+    @Test
+    public void testAdding()
+            throws IOException
+    {
+        createFile("releases", "org/foo/foo/1.0/foo-1.0.jar");
+        age(STORAGE_BASEDIR);
+
+        index.scan("storage0", "releases");
+
+        final File basedir = new File(STORAGE_BASEDIR, "releases");
+        final FileTime lastModified = Files.getLastModifiedTime(basedir.toPath());
+
+        createFile("releases", "com/bar/bar/1.0/bar-1.0.jar");
+
+        // As if the file system hadn't changed the modification time, so that only adding the file makes it visible
+        Files.setLastModifiedTime(basedir.toPath(), lastModified);
+
+        assertFalse("Found a file which hasn't been added!",
+                    index.mayContain("storage0", "releases", "com/bar/bar/1.0/bar-1.0.jar"));
+
+        index.add("storage0", "releases", "com/bar/bar/1.0/bar-1.0.jar");
+
+        assertTrue("Failed to add the file!", index.mayContain("storage0", "releases", "com/bar/bar/1.0/bar-1.0.jar"));
+
+        // As if a directory had been copied
+        createFile("releases", "net/baz/baz/1.0/baz-1.0.jar");
+        createFile("releases", "net/baz/qux/1.0/qux-1.0.jar");
+
+        index.add("storage0", "releases", "net/baz");
+
+        assertTrue("Failed to add the directory!", index.mayContain("storage0", "releases", "net/baz/baz/1.0/baz-1.0.jar"));
+        assertTrue("Failed to add the directory!", index.mayContain("storage0", "releases", "net/baz/qux/1.0/qux-1.0.jar"));
+
+        // The repository should be assumed to contain everything, until it has been scanned again
+        index.invalidate("storage0", "releases");
+
+        assertTrue("Failed to invalidate the repository!",
+                   index.mayContain("storage0", "releases", "io/quux/quux/1.0/quux-1.0.jar"));
+    }
+
+    @Test
+    public void testDirectories()
+    {
+        assertEquals("Incorrect directory!", "org/foo/bar", index.getDirectory("org/foo/bar/1.0/bar-1.0.jar"));
+        assertEquals("Incorrect directory!", "org/foo/bar", index.getDirectory("/org/foo/bar/1.0/bar-1.0.jar"));
+        assertEquals("Incorrect directory!", "org/foo", index.getDirectory("org/foo/maven-metadata.xml"));
+        assertEquals("Incorrect directory!", "junit", index.getDirectory("junit/maven-metadata.xml"));
+
+        assertNull("Incorrect directory!", index.getDirectory("maven-metadata.xml"));
+        assertNull("Incorrect directory!", index.getDirectory("org//foo/maven-metadata.xml"));
+        assertNull("Incorrect directory!", index.getDirectory("org/./foo/maven-metadata.xml"));
+        assertNull("Incorrect directory!", index.getDirectory("org/foo/bar/baz/../../../qux/1.0/qux-1.0.jar"));
+    }
+
+    private Repository createRepository(String repositoryId)
+    {
+        Repository repository = new Repository(repositoryId);
+        repository.setBasedir(new File(STORAGE_BASEDIR, repositoryId).getAbsolutePath());
+
+        return repository;
+    }
+
+    /**
+     * Makes the directories look as if they hadn't been modified recently, so that their modification times
+     * can be relied on.
+     */
+    private void age(File directory)
+            throws IOException
+    {
+        final File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                if (file.isDirectory())
+                {
+                    age(file);
+                }
+            }
+        }
+
+        Files.setLastModifiedTime(directory.toPath(), FileTime.fromMillis(System.currentTimeMillis() - 60000L));
+    }
+
+    private void createFile(String repositoryId,
+                            String path)
+            throws IOException
+    {
+        final File file = new File(new File(STORAGE_BASEDIR, repositoryId), path);
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+
+        Files.write(file.toPath(), "foo".getBytes());
+    }
+
+}
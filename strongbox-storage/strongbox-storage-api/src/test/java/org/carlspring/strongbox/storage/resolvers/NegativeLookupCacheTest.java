@@ -0,0 +1,112 @@
+package org.carlspring.strongbox.storage.resolvers;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mtodorov
+ */
+public class NegativeLookupCacheTest
+{
+
+    private static final String PATH = "org/carlspring/strongbox/negative-lookup/1.0/negative-lookup-1.0-sources.jar";
+
+    private NegativeLookupCache cache;
+
+
+    @Before
+    public void setUp()
+    {
+        cache = new NegativeLookupCache();
+    }
+
+    @Test
+    public void testMisses()
+    {
+        assertFalse("Unexpected miss!", cache.isKnownMiss("storage0", "releases", PATH));
+
+        cache.addMiss("storage0", "releases", PATH, cache.getGeneration());
+
+        assertTrue("Failed to remember the miss!", cache.isKnownMiss("storage0", "releases", PATH));
+        assertFalse("Remembered the miss for the wrong repository!",
+                    cache.isKnownMiss("storage0", "snapshots", PATH));
+
+        assertEquals("Incorrect number of hits!", 1, cache.getHitCount());
+        assertEquals("Incorrect number of misses!", 2, cache.getMissCount());
+    }
+
+    @Test
+    public void testInvalidation()
+    {
+        cache.addMiss("storage0", "releases", PATH, cache.getGeneration());
+        cache.addMiss("storage0", "public", PATH, cache.getGeneration());
+        cache.addMiss("storage0", "releases", PATH + ".sha1", cache.getGeneration());
+
+        // Storing the path in one repository should make it visible in all of them (including the groups)
+        cache.invalidate(PATH);
+
+        assertFalse("Failed to invalidate the miss!", cache.isKnownMiss("storage0", "releases", PATH));
+        assertFalse("Failed to invalidate the miss in the group!", cache.isKnownMiss("storage0", "public", PATH));
+        assertFalse("Failed to invalidate the miss of the checksum!",
+                    cache.isKnownMiss("storage0", "releases", PATH + ".sha1"));
+    }
+
+    @Test
+    public void testDirectoryInvalidation()
+    {
+        cache.addMiss("storage0", "releases", PATH, cache.getGeneration());
+        cache.addMiss("storage0", "releases", "org/carlspring/strongbox/negative-lookup-foo/maven-metadata.xml",
+                      cache.getGeneration());
+
+        cache.invalidateDirectory("org/carlspring/strongbox/negative-lookup");
+
+        assertFalse("Failed to invalidate the miss!", cache.isKnownMiss("storage0", "releases", PATH));
+        assertTrue("Invalidated the wrong miss!",
+                   cache.isKnownMiss("storage0", "releases",
+                                     "org/carlspring/strongbox/negative-lookup-foo/maven-metadata.xml"));
+    }
+
+    @Test
+    public void testMissFromBeforeInvalidation()
+    {
+        final long generation = cache.getGeneration();
+
+        // The path is stored, while it's being looked up
+        cache.invalidate(PATH);
+
+        cache.addMiss("storage0", "releases", PATH, generation);
+
+        assertFalse("Recorded a miss from before the invalidation!", cache.isKnownMiss("storage0", "releases", PATH));
+    }
+
+    @Test
+    public void testExpiration()
+            throws InterruptedException
+    {
+        cache.setTimeToLive(50L);
+        cache.addMiss("storage0", "releases", PATH, cache.getGeneration());
+
+        assertTrue("Failed to remember the miss!", cache.isKnownMiss("storage0", "releases", PATH));
+
+        Thread.sleep(100L);
+
+        assertFalse("Failed to expire the miss!", cache.isKnownMiss("storage0", "releases", PATH));
+    }
+
+    @Test
+    public void testEviction()
+    {
+        cache.setMaxSize(10);
+
+        for (int i = 0; i < 100; i++)
+        {
+            cache.addMiss("storage0", "releases", PATH + "." + i, cache.getGeneration());
+        }
+
+        assertEquals("Failed to bound the size of the cache!", 10, cache.getSize());
+    }
+
+}
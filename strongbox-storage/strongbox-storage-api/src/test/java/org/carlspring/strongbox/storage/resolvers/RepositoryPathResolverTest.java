@@ -0,0 +1,84 @@
+package org.carlspring.strongbox.storage.resolvers;
+
+import org.carlspring.strongbox.storage.repository.Repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mtodorov
+ */
+public class RepositoryPathResolverTest
+{
+
+    private static final File REPOSITORY_BASEDIR = new File("target/test-resources/path-resolver/storage0/releases");
+
+    private RepositoryPathResolver resolver;
+
+    private Repository repository;
+
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        if (!REPOSITORY_BASEDIR.exists())
+        {
+            //noinspection ResultOfMethodCallIgnored
+            REPOSITORY_BASEDIR.mkdirs();
+        }
+
+        repository = new Repository("releases");
+        repository.setBasedir(REPOSITORY_BASEDIR.getPath());
+
+        resolver = new RepositoryPathResolver();
+    }
+
+    @Test
+    public void testResolvePath()
+            throws IOException
+    {
+        final Path basedir = REPOSITORY_BASEDIR.getCanonicalFile().toPath();
+
+        assertEquals("Failed to resolve path!",
+                     basedir.resolve("org/foo/bar/1.0/bar-1.0.jar"),
+                     resolver.resolve(repository, "org/foo/bar/1.0/bar-1.0.jar"));
+        assertEquals("Failed to normalize path!",
+                     basedir.resolve("org/foo/bar/1.0/bar-1.0.jar"),
+                     resolver.resolve(repository, "org/./foo/baz/../bar/1.0//bar-1.0.jar"));
+        assertEquals("Failed to resolve absolute path relative to the basedir!",
+                     basedir.resolve("org/foo/bar/1.0/bar-1.0.jar"),
+                     resolver.resolve(repository, "/org/foo/bar/1.0/bar-1.0.jar"));
+    }
+
+    @Test
+    public void testRejectPathTraversal()
+            throws IOException
+    {
+        assertRejected("../snapshots/org/foo/bar/1.0/bar-1.0.jar");
+        assertRejected("org/foo/../../../../../etc/passwd");
+        assertRejected("..");
+    }
+
+    private void assertRejected(String path)
+            throws IOException
+    {
+        try
+        {
+            resolver.resolve(repository, path);
+
+            fail("Failed to reject path " + path + "!");
+        }
+        catch (ArtifactResolutionException e)
+        {
+            // This is expected
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package org.carlspring.strongbox.storage.routing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares matching the paths against each routing rule via String.matches() (which compiles the pattern
+ * every time) with the {@link RoutingRuleMatcher}, for a rule set of 1000 rules.
+ *
+ * The benchmark is only executed, if the strongbox.benchmark system property is set:
+ *
+ *     mvn test -Dtest=RoutingRuleMatcherBenchmark -Dstrongbox.benchmark=true [-Dstrongbox.benchmark.rules=1000]
+ *
+ * @author mtodorov
+ */
+public class RoutingRuleMatcherBenchmark
+{
+
+    private static final int RULES = Integer.getInteger("strongbox.benchmark.rules", 1000);
+
+    private static final int PATHS = 10000;
+
+    private static final int ITERATIONS = 5;
+
+    private final List<RoutingRule> rules = new ArrayList<>();
+
+    private final List<String> paths = new ArrayList<>();
+
+
+    @Before
+    public void setUp()
+    {
+        Assume.assumeTrue(Boolean.getBoolean("strongbox.benchmark"));
+
+        final Random random = new Random(0);
+
+        // Rules of the usual forms: by groupId, by artifactId, by version and by packaging
+        for (int i = 0; i < RULES; i++)
+        {
+            final String pattern;
+            switch (i % 4)
+            {
+                case 0:
+                    pattern = "org/group" + i + "/.*";
+                    break;
+                case 1:
+                    pattern = ".*/artifact" + i + "/.*";
+                    break;
+                case 2:
+                    pattern = ".*(com|org)/group" + i + "/.*-SNAPSHOT/.*";
+                    break;
+                default:
+                    pattern = ".*/artifact" + i + "/[0-9.]+/.*\\.war";
+                    break;
+            }
+
+            rules.add(new RoutingRule(pattern, new LinkedHashSet<>(Collections.singletonList("releases"))));
+        }
+
+        for (int i = 0; i < PATHS; i++)
+        {
+            final int group = random.nextInt(RULES * 2);
+            final int artifact = random.nextInt(RULES * 2);
+
+            paths.add("org/group" + group + "/artifact" + artifact + "/1." + i % 10 + "/artifact" + artifact +
+                      "-1." + i % 10 + (i % 3 == 0 ? ".war" : ".jar"));
+        }
+    }
+
+    @Test
+    public void testMatchingThroughput()
+    {
+        final RoutingRuleMatcher matcher = new RoutingRuleMatcher(rules);
+
+        // Warm up
+        final int expectedMatches = matchEachRule();
+        final int matches = matchAllRules(matcher);
+
+        assertEquals("The matcher doesn't match the same rules!", expectedMatches, matches);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            matchEachRule();
+        }
+        report("String.matches()", System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            matchAllRules(matcher);
+        }
+        report("RoutingRuleMatcher", System.nanoTime() - start);
+    }
+
+    private int matchEachRule()
+    {
+        int matches = 0;
+        for (String path : paths)
+        {
+            for (RoutingRule rule : rules)
+            {
+                if (path.matches(rule.getPattern()))
+                {
+                    matches++;
+                }
+            }
+        }
+
+        return matches;
+    }
+
+    private int matchAllRules(RoutingRuleMatcher matcher)
+    {
+        int matches = 0;
+        for (String path : paths)
+        {
+            matches += matcher.getMatchingRules(path).size();
+        }
+
+        return matches;
+    }
+
+    private void report(String name, long nanos)
+    {
+        final double microsPerPath = nanos / 1000d / (PATHS * ITERATIONS);
+
+        System.out.println(String.format("%-20s %5d rules %12.2f us/path %12.0f paths/s",
+                                         name,
+                                         RULES,
+                                         microsPerPath,
+                                         1000000d / microsPerPath));
+    }
+
+}
@@ -0,0 +1,146 @@
+package org.carlspring.strongbox.storage.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mtodorov
+ */
+public class RoutingRuleMatcherTest
+{
+
+    private static final String[] PATTERNS = { ".*(com|org)/artifacts.in.releases.*",
+                                               ".*/com/foo/.*",
+                                               "org/carlspring/strongbox/.+\\.jar",
+                                               ".*-SNAPSHOT/.*",
+                                               "com/ab?c/.*",
+                                               "com/a{2,3}/.*",
+                                               "com/[a-z]+/bar/.*",
+                                               "org/apache/.*|org/codehaus/.*",
+                                               "(?i).*/FOO/.*",
+                                               ".*",
+                                               ".*\\x2Fcom\\x2Ffoo\\x2F.*",
+                                               ".*/org/\\u0041pache/.*",
+                                               ".*/\\0143om/foo/.*",
+                                               "(com)/\\1/.*",
+                                               "(?<g>com)/\\k<g>/.*",
+                                               ".*/\\p{Lower}+/foo/.*",
+                                               ".*\\d\\.\\d/foo-\\d\\.\\d\\.jar",
+                                               "[unterminated" };
+
+    private static final String[] PATHS = { "com/artifacts/in/releases/foo/1.0/foo-1.0.jar",
+                                            "org/artifacts.in.releases/bar/1.0/bar-1.0.jar",
+                                            "net/com/foo/1.0/foo-1.0.pom",
+                                            "org/carlspring/strongbox/strongbox-commons/1.0/strongbox-commons-1.0.jar",
+                                            "org/carlspring/strongbox/strongbox-commons/1.0/strongbox-commons-1.0.pom",
+                                            "org/foo/bar/1.0-SNAPSHOT/bar-1.0-20160101.000000-1.jar",
+                                            "com/ac/1.0/ac-1.0.jar",
+                                            "com/abc/1.0/abc-1.0.jar",
+                                            "com/aaa/1.0/aaa-1.0.jar",
+                                            "com/a/1.0/a-1.0.jar",
+                                            "com/xyz/bar/1.0/bar-1.0.jar",
+                                            "org/apache/maven/maven-core/3.0/maven-core-3.0.jar",
+                                            "org/codehaus/plexus/plexus-utils/3.0/plexus-utils-3.0.jar",
+                                            "net/foo/bar/1.0/bar-1.0.jar",
+                                            "net/com/foo/bar.jar",
+                                            "org/apache/foo/1.0/foo-1.0.jar",
+                                            "com/com/foo/1.0/foo-1.0.jar",
+                                            "foo/1.0/foo-1.0.jar",
+                                            "" };
+
+
+    @Test
+    public void testMatchingAgainstAllRules()
+    {
+        final List<RoutingRule> rules = new ArrayList<>();
+        for (String pattern : PATTERNS)
+        {
+            rules.add(new RoutingRule(pattern, new LinkedHashSet<>(Collections.singletonList("releases"))));
+        }
+
+        final RoutingRuleMatcher matcher = new RoutingRuleMatcher(rules);
+
+        for (String path : PATHS)
+        {
+            final List<RoutingRule> expectedRules = new ArrayList<>();
+            for (RoutingRule rule : rules)
+            {
+                if (!rule.getPattern().startsWith("[") && path.matches(rule.getPattern()))
+                {
+                    expectedRules.add(rule);
+                }
+            }
+
+            assertEquals("Incorrect rules matched for '" + path + "'!", expectedRules, matcher.getMatchingRules(path));
+        }
+    }
+
+    @Test
+    public void testRequiredLiterals()
+    {
+        assertEquals("Incorrect literal!", "/artifacts", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[0]));
+        assertEquals("Incorrect literal!", "/com/foo/", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[1]));
+        assertEquals("Incorrect literal!", "org/carlspring/strongbox/", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[2]));
+        assertEquals("Incorrect literal!", "-SNAPSHOT/", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[3]));
+        assertEquals("Incorrect literal!", "com/a", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[4]));
+        assertEquals("Incorrect literal!", "com/", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[5]));
+        assertNull("Found a literal in alternatives!", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[7]));
+        assertNull("Found a literal in a case-insensitive pattern!", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[8]));
+        assertEquals("Found a literal in a pattern without any!", "", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[9]));
+
+        // The digits and names of escapes are not literals
+        assertNull("Found a literal in a hexadecimal escape!", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[10]));
+        assertNull("Found a literal in a unicode escape!", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[11]));
+        assertNull("Found a literal in an octal escape!", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[12]));
+        assertNull("Found a literal in a back reference!", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[13]));
+        assertNull("Found a literal in a named back reference!", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[14]));
+        assertNull("Found a literal in a character property!", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[15]));
+        assertEquals("Incorrect literal!", "/foo-", RoutingRuleMatcher.getRequiredLiteral(PATTERNS[16]));
+    }
+
+    @Test
+    public void testRecompilingChangedRules()
+    {
+        final RoutingRule rule = new RoutingRule(".*/com/foo/.*", new LinkedHashSet<>(Arrays.asList("releases")));
+
+        final RuleSet ruleSet = new RuleSet();
+        ruleSet.getRoutingRules().add(rule);
+
+        final RoutingRuleMatcher matcher = ruleSet.getMatcher();
+
+        assertSame("Recompiled the unchanged rules!", matcher, ruleSet.getMatcher());
+        assertTrue("Failed to reject the path!", matcher.rejects("releases", "net/com/foo/1.0/foo-1.0.jar"));
+        assertFalse("Rejected the path for another repository!", matcher.rejects("snapshots", "net/com/foo/1.0/foo-1.0.jar"));
+
+        rule.setPattern(".*/com/bar/.*");
+
+        assertSame("Recompiled the rules on a lookup!", matcher, ruleSet.getMatcher());
+
+        ruleSet.invalidateMatcher();
+
+        assertNotSame("Failed to recompile the changed rules!", matcher, ruleSet.getMatcher());
+        assertTrue("Failed to recompile the changed rules!",
+                   ruleSet.getMatcher().rejects("releases", "net/com/bar/1.0/bar-1.0.jar"));
+
+        ruleSet.getRoutingRules().add(new RoutingRule(".*/com/baz/.*", new LinkedHashSet<>(Arrays.asList("releases"))));
+        ruleSet.invalidateMatcher();
+
+        assertEquals("Failed to recompile the added rules!", 2, ruleSet.getMatcher().getSize());
+
+        ruleSet.setRoutingRules(new ArrayList<>(Collections.singletonList(rule)));
+
+        assertEquals("Failed to recompile the replaced rules!", 1, ruleSet.getMatcher().getSize());
+    }
+
+}
@@ -0,0 +1,139 @@
+package org.carlspring.strongbox.storage.upload;
+
+import org.carlspring.strongbox.io.ArtifactFile;
+import org.carlspring.strongbox.io.DigestEngine;
+import org.carlspring.strongbox.storage.repository.Repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mtodorov
+ */
+public class UploadSessionManagerTest
+{
+
+    private static final String PATH = "org/carlspring/strongbox/upload-test/1.0/upload-test-1.0.jar";
+
+    private Repository repository;
+
+
+    @Before
+    public void setUp()
+            throws IOException
+    {
+        FileUtils.deleteDirectory(new File("target/strongbox-upload-sessions"));
+
+        repository = new Repository("releases");
+        repository.setBasedir(new File("target/strongbox-upload-sessions/releases").getAbsolutePath());
+    }
+
+    @Test
+    public void testAddAndRemoveSession()
+            throws NoSuchAlgorithmException
+    {
+        UploadSessionManager manager = new UploadSessionManager();
+
+        UploadSession session = createSession();
+        assertNull("Failed to add the session!", manager.addSession(session));
+        assertSame("Failed to keep the existing session!", session, manager.addSession(createSession()));
+        assertSame("Incorrect session!", session, manager.getSession("storage0", "releases", PATH));
+
+        manager.removeSession(session);
+
+        assertTrue("Failed to close the session!", session.isClosed());
+        assertNull("Failed to remove the session!", manager.getSession("storage0", "releases", PATH));
+    }
+
+    @Test
+    public void testRemoveExpiredSessions()
+            throws NoSuchAlgorithmException, IOException
+    {
+        UploadSessionManager manager = new UploadSessionManager();
+        manager.setSessionLifetime(60000L);
+
+        UploadSession session = createSession();
+        session.getArtifactFile().createParents();
+
+        File temporaryFile = session.getArtifactFile().getTemporaryFile();
+        Files.write(temporaryFile.toPath(), "This is a partial upload".getBytes());
+
+        manager.addSession(session);
+        manager.removeExpiredSessions();
+
+        assertEquals("Removed an active session!", 1, manager.getSize());
+        assertTrue("Removed the temporary file of an active session!", temporaryFile.exists());
+
+        session.setLastAccessed(System.currentTimeMillis() - 120000L);
+        manager.removeExpiredSessions();
+
+        assertEquals("Failed to remove the expired session!", 0, manager.getSize());
+        assertTrue("Failed to close the expired session!", session.isClosed());
+        assertFalse("Failed to delete the temporary file of the expired session!", temporaryFile.exists());
+    }
+
+    @Test
+    public void testLoadSessions()
+            throws NoSuchAlgorithmException, IOException
+    {
+        UploadSessionManager manager = new UploadSessionManager();
+
+        UploadSession session = createSession();
+        session.getArtifactFile().createParents();
+        session.setLength(10);
+        session.setTotalLength(100);
+
+        File temporaryFile = session.getArtifactFile().getTemporaryFile();
+        Files.write(temporaryFile.toPath(), "0123456789".getBytes());
+
+        manager.addSession(session);
+        manager.saveSession(session);
+
+        // The next chunk was being written, when the server was stopped
+        Files.write(temporaryFile.toPath(), "0123456789abc".getBytes());
+
+        UploadSessionManager restartedManager = new UploadSessionManager();
+
+        assertEquals("Incorrect number of loaded sessions!", 1, restartedManager.loadSessions("storage0", repository));
+
+        UploadSession loadedSession = restartedManager.getSession("storage0", "releases", PATH);
+
+        assertNotNull("Failed to load the session!", loadedSession);
+        assertEquals("Incorrect length!", 10, loadedSession.getLength());
+        assertEquals("Incorrect total length!", 100, loadedSession.getTotalLength());
+        assertNull("The digests should be recalculated!", loadedSession.getDigestEngine());
+        assertEquals("Failed to truncate the partially written chunk!", 10, temporaryFile.length());
+        assertEquals("Incorrect temporary file!",
+                     temporaryFile.getAbsoluteFile(),
+                     loadedSession.getArtifactFile().getTemporaryFile().getAbsoluteFile());
+
+        restartedManager.discardSession(loadedSession);
+
+        assertFalse("Failed to delete the temporary file!", temporaryFile.exists());
+        assertFalse("Failed to delete the session file!",
+                    UploadSessionManager.getSessionFile(session.getArtifactFile()).exists());
+    }
+
+    private UploadSession createSession()
+            throws NoSuchAlgorithmException
+    {
+        return new UploadSession("storage0",
+                                 "releases",
+                                 PATH,
+                                 new ArtifactFile(repository, PATH, true),
+                                 new DigestEngine(new String[]{ "MD5", "SHA-1" }));
+    }
+
+}
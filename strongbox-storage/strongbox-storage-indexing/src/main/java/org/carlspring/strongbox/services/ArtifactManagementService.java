@@ -1,9 +1,14 @@
 package org.carlspring.strongbox.services;
 
+import org.carlspring.strongbox.io.ArchiveEntryInputStream;
 import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.resolvers.ArchiveStorageException;
+import org.carlspring.strongbox.storage.upload.UploadOffsetMismatchException;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 
 /**
  * @author mtodorov
@@ -17,11 +22,61 @@ public interface ArtifactManagementService extends ConfigurationService
                InputStream is)
             throws IOException;
 
+    /**
+     * Stores all the files of the archive, which is laid out like the repository, one after another.
+     * The stored artifacts are queued for indexing at once, after all of them have been stored.
+     *
+     * @return The paths of the stored files.
+     * @throws ArchiveStorageException If a file couldn't be stored. The files before it remain stored
+     *                                 (and are queued for indexing); the exception lists their paths.
+     */
+    List<String> storeArchive(String storageId,
+                              String repositoryId,
+                              ArchiveEntryInputStream archive)
+            throws IOException;
+
+    /**
+     * Appends a chunk to the resumable upload of the file. The upload is started by the chunk at offset 0
+     * and the file is stored, once all of it has been received. Each chunk is validated like a regular upload.
+     *
+     * A chunk which couldn't be received completely is discarded, so that it can be sent again.
+     *
+     * @param offset        The offset of the chunk in the file.
+     * @param length        The length of the chunk.
+     * @param totalLength   The length of the whole file, or -1, if it's not known yet.
+     * @return The number of bytes of the file, which have been received so far.
+     * @throws UploadOffsetMismatchException If the chunk doesn't start where the received part of the file ends.
+     */
+    long storeChunk(String storageId,
+                    String repositoryId,
+                    String path,
+                    InputStream is,
+                    long offset,
+                    long length,
+                    long totalLength)
+            throws IOException;
+
+    /**
+     * @return The number of bytes of the file, which have been received by its resumable upload so far,
+     *         or 0, if there is no such upload in progress.
+     */
+    long getUploadedLength(String storageId,
+                           String repositoryId,
+                           String path);
+
     InputStream resolve(String storageId,
                         String repositoryId,
                         String path)
             throws IOException;
 
+    /**
+     * Resolves the file of the artifact, without opening it.
+     */
+    File resolveFile(String storageId,
+                     String repositoryId,
+                     String path)
+            throws IOException;
+
     void delete(String storageId,
                 String repositoryId,
                 String artifactPath,
@@ -40,6 +95,13 @@ public interface ArtifactManagementService extends ConfigurationService
               String destRepositoryId)
             throws IOException;
 
+    void move(String srcStorageId,
+              String srcRepositoryId,
+              String path,
+              String destStorageId,
+              String destRepositoryId)
+            throws IOException;
+
     void deleteTrash(String storageId, String repositoryId)
             throws IOException;
 
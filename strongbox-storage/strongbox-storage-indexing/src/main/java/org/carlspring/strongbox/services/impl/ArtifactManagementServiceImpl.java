@@ -1,10 +1,15 @@
 package org.carlspring.strongbox.services.impl;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.maven.artifact.Artifact;
 import org.carlspring.maven.commons.util.ArtifactUtils;
 import org.carlspring.strongbox.configuration.Configuration;
 import org.carlspring.strongbox.configuration.ConfigurationManager;
+import org.carlspring.strongbox.io.ArchiveEntryInputStream;
+import org.carlspring.strongbox.io.ArtifactFile;
+import org.carlspring.strongbox.io.ArtifactFileOutputStream;
+import org.carlspring.strongbox.io.ByteBufferPool;
+import org.carlspring.strongbox.io.DigestEngine;
+import org.carlspring.strongbox.io.FileTreeCopier;
 import org.carlspring.strongbox.io.MultipleDigestInputStream;
 import org.carlspring.strongbox.resource.ResourceCloser;
 import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
@@ -12,17 +17,28 @@ import org.carlspring.strongbox.services.ArtifactManagementService;
 import org.carlspring.strongbox.services.ArtifactResolutionService;
 import org.carlspring.strongbox.services.VersionValidatorService;
 import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.blob.BlobStore;
+import org.carlspring.strongbox.storage.checksum.ChecksumCache;
 import org.carlspring.strongbox.storage.checksum.ChecksumCacheManager;
+import org.carlspring.strongbox.storage.indexing.IndexingQueue;
 import org.carlspring.strongbox.storage.indexing.RepositoryIndexManager;
 import org.carlspring.strongbox.storage.indexing.RepositoryIndexer;
 import org.carlspring.strongbox.storage.repository.Repository;
+import org.carlspring.strongbox.storage.repository.RepositoryDurabilityEnum;
+import org.carlspring.strongbox.storage.resolvers.ArchiveStorageException;
 import org.carlspring.strongbox.storage.resolvers.ArtifactResolutionException;
 import org.carlspring.strongbox.storage.resolvers.ArtifactStorageException;
+import org.carlspring.strongbox.storage.resolvers.GroupMemberIndex;
 import org.carlspring.strongbox.storage.resolvers.LocationResolver;
+import org.carlspring.strongbox.storage.resolvers.NegativeLookupCache;
+import org.carlspring.strongbox.storage.upload.UploadOffsetMismatchException;
+import org.carlspring.strongbox.storage.upload.UploadSession;
+import org.carlspring.strongbox.storage.upload.UploadSessionManager;
 import org.carlspring.strongbox.storage.validation.resource.ArtifactOperationsValidator;
 import org.carlspring.strongbox.storage.validation.version.VersionValidationException;
 import org.carlspring.strongbox.storage.validation.version.VersionValidator;
 import org.carlspring.strongbox.util.ArtifactFileUtils;
+import org.carlspring.strongbox.util.GzipFileUtils;
 import org.carlspring.strongbox.util.MessageDigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,8 +46,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -54,15 +81,39 @@ public class ArtifactManagementServiceImpl
     @Autowired
     private ChecksumCacheManager checksumCacheManager;
 
+    @Autowired
+    private ChecksumCache checksumCache;
+
+    @Autowired
+    private NegativeLookupCache negativeLookupCache;
+
+    @Autowired
+    private GroupMemberIndex groupMemberIndex;
+
     @Autowired
     private ConfigurationManager configurationManager;
 
+    @Autowired
+    private ByteBufferPool uploadBufferPool;
+
     @Autowired
     private RepositoryIndexManager repositoryIndexManager;
 
+    @Autowired
+    private IndexingQueue indexingQueue;
+
     @Autowired
     private ArtifactOperationsValidator artifactOperationsValidator;
 
+    @Autowired
+    private UploadSessionManager uploadSessionManager;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private FileTreeCopier fileTreeCopier;
+
 
     @Override
     public void store(String storageId,
@@ -71,17 +122,71 @@ public class ArtifactManagementServiceImpl
                       InputStream is)
             throws IOException
     {
-        performRepositoryAcceptanceValidation(storageId, repositoryId, path);
+        store(storageId, repositoryId, path, is, null);
+    }
+
+    @Override
+    public List<String> storeArchive(String storageId,
+                                     String repositoryId,
+                                     ArchiveEntryInputStream archive)
+            throws IOException
+    {
+        final List<String> paths = new ArrayList<>();
+        final List<String> artifactsToIndex = new ArrayList<>();
 
-        boolean fileIsChecksum = ArtifactUtils.isChecksum(path);
-        MultipleDigestInputStream mdis = null;
         try
         {
-            mdis = new MultipleDigestInputStream(is);
+            String path;
+            while ((path = archive.getNextEntry()) != null)
+            {
+                try
+                {
+                    // Each file is validated, before anything is written, just like a single upload
+                    store(storageId, repositoryId, path, archive, artifactsToIndex);
+                }
+                catch (IOException e)
+                {
+                    // The caller has to rebuild the metadata of the files which have been stored so far
+                    throw new ArchiveStorageException("Failed to store " + path + ", after storing " + paths.size() +
+                                                      " file(s) of the archive: " + e.getMessage(),
+                                                      path,
+                                                      paths,
+                                                      e);
+                }
+
+                paths.add(path);
+            }
         }
-        catch (NoSuchAlgorithmException e)
+        finally
         {
-            throw new ArtifactStorageException();
+            // The artifacts which have been stored are indexed even if the rest of the archive couldn't be
+            indexingQueue.add(storageId, repositoryId, artifactsToIndex);
+        }
+
+        return paths;
+    }
+
+    /**
+     * @param artifactsToIndex  The paths of the artifacts to queue for indexing later on,
+     *                          or null, if the stored artifact should be queued right away.
+     */
+    private void store(String storageId,
+                       String repositoryId,
+                       String path,
+                       InputStream is,
+                       List<String> artifactsToIndex)
+            throws IOException
+    {
+        performRepositoryAcceptanceValidation(storageId, repositoryId, path);
+
+        final Storage storage = getStorage(storageId);
+        final Repository repository = storage.getRepository(repositoryId);
+
+        boolean fileIsChecksum = ArtifactFileUtils.isChecksum(path);
+        DigestEngine digestEngine = null;
+        if (!fileIsChecksum)
+        {
+            digestEngine = createDigestEngine(repository);
         }
 
         // If this is not a checksum file, store the file.
@@ -90,39 +195,83 @@ public class ArtifactManagementServiceImpl
         if (fileIsChecksum)
         {
             baos = new ByteArrayOutputStream();
+
+            if (verifyGeneratedChecksum(repository, path, is, baos))
+            {
+                // The server's checksum file is authoritative and is not overwritten
+                return;
+            }
         }
 
+        Map<String, String> checksums = null;
+
+        // The contents of the file which is being overwritten may no longer be needed afterwards
+        final File previousBlob = !fileIsChecksum ? getLastReferencedBlob(storage, repository, path) : null;
+
         OutputStream os = null;
+        boolean stored = false;
         try
         {
             os = artifactResolutionService.getOutputStream(storageId, repositoryId, path);
 
-            int readLength;
-            byte[] bytes = new byte[4096];
-
-            while ((readLength = mdis.read(bytes, 0, bytes.length)) != -1)
+            if (fileIsChecksum)
             {
-                if (fileIsChecksum)
+                if (baos.size() == 0)
                 {
                     // Buffer the checksum for later validation
-                    baos.write(bytes, 0, readLength);
-                    baos.flush();
+                    copy(is, baos);
                 }
 
-                // Write the artifact
-                os.write(bytes, 0, readLength);
-                os.flush();
+                os.write(baos.toByteArray());
+            }
+            else
+            {
+                // Write the artifact in large chunks, instead of writing and flushing every few kilobytes,
+                // while its digests are being calculated in parallel
+                uploadBufferPool.transfer(is, getChannel(os), digestEngine);
+            }
+
+            os.flush();
+
+            if (!fileIsChecksum)
+            {
+                checksums = digestEngine.getHexDigests();
+            }
+
+            if (checksums != null && isDeduplicated(storage, path, os))
+            {
+                // The temporary file is discarded, if the streamed digest matches an existing blob
+                ((ArtifactFileOutputStream) os).setMoveOnClose(false);
+                os.close();
+
+                blobStore.store(storage, ((ArtifactFileOutputStream) os).getArtifactFile(),
+                                checksums.get(EncryptionAlgorithmsEnum.SHA1.getAlgorithm()));
+                stored = true;
+
+                removeIfUnreferenced(previousBlob);
+            }
+            else
+            {
+                // The file is only moved to its final location, once it's closed
+                os.close();
+                stored = true;
+
+                if (checksums != null)
+                {
+                    linkToBlob(storage, repository, path, checksums, previousBlob);
+                }
             }
 
-            final String artifactPath = storageId + "/" + repositoryId + "/" + path;
-            if (!fileIsChecksum && os != null)
+            if (checksums != null)
             {
-                addChecksumsToCacheManager(mdis, artifactPath);
-                addArtifactToIndex(storageId, repositoryId, path);
+                addStoredArtifact(repository, storageId, repositoryId, path, checksums, artifactsToIndex);
             }
             else
             {
+                final String artifactPath = storageId + "/" + repositoryId + "/" + path;
+
                 validateUploadedChecksumAgainstCache(baos, artifactPath);
+                updateChecksumInChecksumCache(baos, storageId, repositoryId, path);
             }
         }
         catch (ArtifactResolutionException e)
@@ -135,27 +284,626 @@ public class ArtifactManagementServiceImpl
         }
         finally
         {
-            ResourceCloser.close(os, logger);
+            if (!stored && os instanceof ArtifactFileOutputStream)
+            {
+                // Never replace the file with a partially uploaded one
+                abort((ArtifactFileOutputStream) os);
+            }
+            else
+            {
+                ResourceCloser.close(os, logger);
+            }
+
+            if (stored)
+            {
+                // Before the misses are invalidated, so that the group repositories don't skip the repository
+                groupMemberIndex.add(storageId, repositoryId, path);
+            }
+
+            negativeLookupCache.invalidate(path);
+        }
+
+        if (checksums != null)
+        {
+            writeGeneratedChecksums(repository, storageId, repositoryId, path, checksums);
         }
+
+        compress(storageId, repositoryId, path);
     }
 
-    private void addArtifactToIndex(String storageId, String repositoryId, String path)
+    @Override
+    public long storeChunk(String storageId,
+                           String repositoryId,
+                           String path,
+                           InputStream is,
+                           long offset,
+                           long length,
+                           long totalLength)
             throws IOException
     {
-        if (ArtifactFileUtils.isArtifactFile(path))
+        performRepositoryAcceptanceValidation(storageId, repositoryId, path);
+
+        if (ArtifactFileUtils.isChecksum(path))
         {
-            final RepositoryIndexer indexer = repositoryIndexManager.getRepositoryIndex(storageId + ":" + repositoryId);
-            if (indexer != null)
+            throw new ArtifactStorageException("Checksum files cannot be uploaded in chunks!");
+        }
+
+        final Repository repository = getStorage(storageId).getRepository(repositoryId);
+
+        UploadSession session = uploadSessionManager.getSession(storageId, repositoryId, path);
+        if (session == null)
+        {
+            if (offset != 0)
             {
-                final Artifact artifact = ArtifactUtils.convertPathToArtifact(path);
-                final Storage storage = getStorage(storageId);
-                final File storageBasedir = new File(storage.getBasedir());
-                final File artifactFile = new File(new File(storageBasedir, repositoryId), path).getCanonicalFile();
+                throw new UploadOffsetMismatchException("There is no upload of " + path + " in progress!", 0);
+            }
 
-                if (!artifactFile.getName().endsWith(".pom"))
+            session = new UploadSession(storageId,
+                                        repositoryId,
+                                        path,
+                                        new ArtifactFile(repository, path, true),
+                                        createDigestEngine(repository));
+
+            final UploadSession existingSession = uploadSessionManager.addSession(session);
+            if (existingSession != null)
+            {
+                session = existingSession;
+            }
+        }
+
+        synchronized (session)
+        {
+            if (session.isClosed())
+            {
+                throw new ArtifactStorageException("The upload of " + path + " has already been completed, or discarded!");
+            }
+
+            if (offset != session.getLength())
+            {
+                throw new UploadOffsetMismatchException("The chunk starts at " + offset + ", but " +
+                                                        session.getLength() + " bytes of " + path +
+                                                        " have been received so far!",
+                                                        session.getLength());
+            }
+
+            if (totalLength != -1)
+            {
+                if ((session.getTotalLength() != -1 && session.getTotalLength() != totalLength) ||
+                    offset + length > totalLength)
                 {
-                    indexer.addArtifactToIndex(repositoryId, artifactFile, artifact);
+                    throw new ArtifactStorageException("Invalid length " + totalLength + " of " + path + "!");
                 }
+
+                session.setTotalLength(totalLength);
+            }
+
+            session.touch();
+
+            if (session.getDigestEngine() == null)
+            {
+                // The session has been resumed after a restart
+                session.setDigestEngine(calculateDigests(repository, session));
+            }
+
+            appendChunk(session, is, length);
+
+            if (session.isComplete())
+            {
+                storeUploadedFile(repository, session);
+            }
+            else
+            {
+                uploadSessionManager.saveSession(session);
+            }
+
+            return session.getLength();
+        }
+    }
+
+    @Override
+    public long getUploadedLength(String storageId,
+                                  String repositoryId,
+                                  String path)
+    {
+        final UploadSession session = uploadSessionManager.getSession(storageId, repositoryId, path);
+        if (session == null)
+        {
+            return 0;
+        }
+
+        synchronized (session)
+        {
+            return session.isClosed() ? 0 : session.getLength();
+        }
+    }
+
+    /**
+     * Recalculates the digests of the part of the file which has been received so far from its temporary file.
+     */
+    private DigestEngine calculateDigests(Repository repository,
+                                          UploadSession session)
+            throws IOException
+    {
+        final DigestEngine digestEngine = createDigestEngine(repository);
+
+        FileChannel channel = null;
+        try
+        {
+            channel = FileChannel.open(session.getArtifactFile().getTemporaryFile().toPath(), StandardOpenOption.READ);
+
+            final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+            long position = 0L;
+            while (position < session.getLength())
+            {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), session.getLength() - position));
+
+                final int n = channel.read(buffer, position);
+                if (n <= 0)
+                {
+                    throw new ArtifactStorageException("Only " + position + " of the " + session.getLength() +
+                                                       " received bytes of " + session.getPath() + " are left!");
+                }
+
+                buffer.flip();
+                digestEngine.update(buffer);
+
+                // The buffer is reused for the next read
+                digestEngine.await();
+
+                position += n;
+            }
+        }
+        finally
+        {
+            ResourceCloser.close(channel, logger);
+        }
+
+        return digestEngine;
+    }
+
+    /**
+     * Appends the chunk to the temporary file of the upload. If the chunk can't be received completely,
+     * the temporary file and the digests are rolled back to where the chunk started.
+     */
+    private void appendChunk(UploadSession session,
+                             InputStream is,
+                             long length)
+            throws IOException
+    {
+        final ArtifactFile artifactFile = session.getArtifactFile();
+        artifactFile.createParents();
+
+        // The digests are cheap to copy, unlike recalculating them from the temporary file
+        final Map<String, MessageDigest> digests = cloneDigests(session.getDigestEngine());
+
+        FileChannel channel = null;
+        try
+        {
+            channel = FileChannel.open(artifactFile.getTemporaryFile().toPath(),
+                                       StandardOpenOption.CREATE,
+                                       StandardOpenOption.WRITE);
+            channel.position(session.getLength());
+
+            final long transferred = uploadBufferPool.transfer(is, channel, session.getDigestEngine());
+            if (transferred != length)
+            {
+                throw new ArtifactStorageException("Received " + transferred + " bytes instead of " + length +
+                                                   " bytes of " + session.getPath() + "!");
+            }
+
+            session.setLength(session.getLength() + transferred);
+            session.touch();
+
+            if (session.isComplete() && artifactFile.getDurability() != RepositoryDurabilityEnum.NONE)
+            {
+                channel.force(false);
+            }
+        }
+        catch (IOException e)
+        {
+            session.setDigestEngine(new DigestEngine(digests));
+
+            if (channel != null)
+            {
+                try
+                {
+                    channel.truncate(session.getLength());
+                }
+                catch (IOException e1)
+                {
+                    logger.error("Failed to roll back the upload of " + session.getPath() + ".", e1);
+
+                    ResourceCloser.close(channel, logger);
+                    uploadSessionManager.discardSession(session);
+                }
+            }
+
+            throw e;
+        }
+        finally
+        {
+            ResourceCloser.close(channel, logger);
+        }
+    }
+
+    /**
+     * Moves the completely received file to its location and updates everything a regular upload does.
+     */
+    private void storeUploadedFile(Repository repository,
+                                   UploadSession session)
+            throws IOException
+    {
+        final String storageId = session.getStorageId();
+        final String repositoryId = session.getRepositoryId();
+        final String path = session.getPath();
+
+        final Storage storage = getStorage(storageId);
+        final File previousBlob = getLastReferencedBlob(storage, repository, path);
+        final Map<String, String> checksums = session.getDigestEngine().getHexDigests();
+
+        try
+        {
+            if (storage.isDeduplicationEnabled() && ArtifactFileUtils.isArtifactFile(path))
+            {
+                // The temporary file is discarded, if the digest of the received chunks matches an existing blob
+                blobStore.store(storage,
+                                session.getArtifactFile(),
+                                checksums.get(EncryptionAlgorithmsEnum.SHA1.getAlgorithm()));
+            }
+            else
+            {
+                session.getArtifactFile().moveTempFileToOriginalDestination();
+            }
+        }
+        catch (IOException e)
+        {
+            uploadSessionManager.discardSession(session);
+
+            throw new ArtifactStorageException(e.getMessage(), e);
+        }
+
+        uploadSessionManager.removeSession(session);
+        groupMemberIndex.add(storageId, repositoryId, path);
+        negativeLookupCache.invalidate(path);
+
+        removeIfUnreferenced(previousBlob);
+        addStoredArtifact(repository, storageId, repositoryId, path, checksums, null);
+        writeGeneratedChecksums(repository, storageId, repositoryId, path, checksums);
+        compress(storageId, repositoryId, path);
+    }
+
+    private File getLastReferencedBlob(Storage storage,
+                                       Repository repository,
+                                       String path)
+            throws ArtifactStorageException
+    {
+        if (!storage.isDeduplicationEnabled() || !ArtifactFileUtils.isArtifactFile(path))
+        {
+            return null;
+        }
+
+        final File file = new File(repository.getBasedir(), path);
+
+        try
+        {
+            if (!file.isFile() || BlobStore.getLinkCount(file) != 2)
+            {
+                return null;
+            }
+
+            // The recorded checksum saves reading the whole file
+            final String sha1 = checksumCache.getChecksum(storage.getId(),
+                                                          repository.getId(),
+                                                          path,
+                                                          file,
+                                                          EncryptionAlgorithmsEnum.SHA1.getAlgorithm());
+
+            return blobStore.getLastReferencedBlob(storage, file, sha1);
+        }
+        catch (IOException e)
+        {
+            throw new ArtifactStorageException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns true, if the artifact which is being written to the stream is stored as a link to a blob.
+     */
+    private boolean isDeduplicated(Storage storage, String path, OutputStream os)
+    {
+        return storage.isDeduplicationEnabled() &&
+               ArtifactFileUtils.isArtifactFile(path) &&
+               os instanceof ArtifactFileOutputStream &&
+               ((ArtifactFileOutputStream) os).getArtifactFile().isTemporaryMode() &&
+               ((ArtifactFileOutputStream) os).isMoveOnClose();
+    }
+
+    /**
+     * Replaces the stored artifact with a link to the blob with the same contents, if the storage
+     * has deduplication enabled, and removes the blob of the overwritten artifact, if it's no longer referenced.
+     */
+    private void linkToBlob(Storage storage,
+                            Repository repository,
+                            String path,
+                            Map<String, String> checksums,
+                            File previousBlob)
+            throws ArtifactStorageException
+    {
+        if (!storage.isDeduplicationEnabled() || !ArtifactFileUtils.isArtifactFile(path))
+        {
+            return;
+        }
+
+        blobStore.link(storage,
+                       new File(repository.getBasedir(), path),
+                       checksums.get(EncryptionAlgorithmsEnum.SHA1.getAlgorithm()));
+
+        removeIfUnreferenced(previousBlob);
+    }
+
+    /**
+     * Removes the blob of the overwritten artifact, if it's no longer referenced.
+     */
+    private void removeIfUnreferenced(File previousBlob)
+            throws ArtifactStorageException
+    {
+        try
+        {
+            blobStore.removeIfUnreferenced(previousBlob);
+        }
+        catch (IOException e)
+        {
+            throw new ArtifactStorageException(e.getMessage(), e);
+        }
+    }
+
+    private Map<String, MessageDigest> cloneDigests(DigestEngine digestEngine)
+            throws ArtifactStorageException
+    {
+        final Map<String, MessageDigest> digests = new LinkedHashMap<>();
+        for (Map.Entry<String, MessageDigest> entry : digestEngine.getDigests().entrySet())
+        {
+            try
+            {
+                digests.put(entry.getKey(), (MessageDigest) entry.getValue().clone());
+            }
+            catch (CloneNotSupportedException e)
+            {
+                throw new ArtifactStorageException(e.getMessage(), e);
+            }
+        }
+
+        return digests;
+    }
+
+    /**
+     * Caches the checksums of the stored artifact and queues it for indexing.
+     */
+    private void addStoredArtifact(Repository repository,
+                                   String storageId,
+                                   String repositoryId,
+                                   String path,
+                                   Map<String, String> checksums,
+                                   List<String> artifactsToIndex)
+    {
+        if (!repository.isChecksumGenerationEnabled())
+        {
+            // The uploaded checksum files are validated against these
+            addChecksumsToCacheManager(checksums, storageId + "/" + repositoryId + "/" + path);
+        }
+
+        addChecksumsToChecksumCache(checksums, storageId, repositoryId, path, new File(repository.getBasedir(), path));
+        addArtifactToIndex(storageId, repositoryId, path, artifactsToIndex);
+    }
+
+    private DigestEngine createDigestEngine(Repository repository)
+            throws ArtifactStorageException
+    {
+        try
+        {
+            return new DigestEngine(getDigestAlgorithms(repository));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new ArtifactStorageException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the digests to calculate for the artifacts uploaded to the repository.
+     * MD5 and SHA-1 are always calculated, as the clients deploy their checksum files.
+     */
+    private String[] getDigestAlgorithms(Repository repository)
+    {
+        Set<String> algorithms = new LinkedHashSet<>(Arrays.asList(MultipleDigestInputStream.DEFAULT_ALGORITHMS));
+        for (String algorithm : repository.getDigestAlgorithms())
+        {
+            try
+            {
+                EncryptionAlgorithmsEnum.fromAlgorithm(algorithm);
+
+                algorithms.add(algorithm);
+            }
+            catch (IOException e)
+            {
+                logger.warn("Unsupported digest algorithm " + algorithm + " for repository " + repository.getId() + ".");
+            }
+        }
+
+        return algorithms.toArray(new String[algorithms.size()]);
+    }
+
+    /**
+     * Writes the checksum files for the additional digests of the repository (such as SHA-256 and SHA-512),
+     * which the clients don't deploy themselves. If the repository has checksum generation enabled,
+     * the MD5 and SHA-1 checksum files are also written, as soon as the artifact has been stored.
+     */
+    private void writeGeneratedChecksums(Repository repository,
+                                         String storageId,
+                                         String repositoryId,
+                                         String path,
+                                         Map<String, String> checksums)
+            throws IOException
+    {
+        Set<String> algorithms = new LinkedHashSet<>();
+        if (repository.isChecksumGenerationEnabled())
+        {
+            algorithms.addAll(Arrays.asList(MultipleDigestInputStream.DEFAULT_ALGORITHMS));
+        }
+
+        algorithms.addAll(repository.getDigestAlgorithms());
+
+        if (algorithms.isEmpty())
+        {
+            return;
+        }
+
+        final File artifactFile = resolveFile(storageId, repositoryId, path);
+        if (artifactFile == null)
+        {
+            return;
+        }
+
+        for (String algorithm : algorithms)
+        {
+            final String checksum = checksums.get(algorithm);
+            if (checksum != null)
+            {
+                final String extension = EncryptionAlgorithmsEnum.fromAlgorithm(algorithm).getExtension();
+
+                MessageDigestUtils.writeChecksum(artifactFile, extension, checksum);
+
+                negativeLookupCache.invalidate(path + extension);
+            }
+        }
+    }
+
+    /**
+     * Compares the uploaded checksum against the checksum file which the server generated for the artifact.
+     * The uploaded checksum is buffered, so that it can still be stored, if there is no generated checksum file.
+     *
+     * @return True, if the uploaded checksum matches the generated one, in which case the checksum file
+     *         doesn't need to be written.
+     * @throws ArtifactStorageException If the uploaded checksum doesn't match the generated one.
+     */
+    private boolean verifyGeneratedChecksum(Repository repository,
+                                            String path,
+                                            InputStream is,
+                                            ByteArrayOutputStream baos)
+            throws IOException
+    {
+        if (!repository.isChecksumGenerationEnabled())
+        {
+            return false;
+        }
+
+        final File checksumFile = new File(repository.getBasedir(), path);
+        if (!checksumFile.isFile())
+        {
+            // The artifact was deployed before checksum generation was enabled
+            return false;
+        }
+
+        copy(is, baos);
+
+        final String storedChecksum = MessageDigestUtils.readChecksumFile(checksumFile.getAbsolutePath());
+        final String uploadedChecksum = baos.toString().trim();
+
+        // The checksum file may also contain the name of the file after the checksum
+        if (storedChecksum == null || uploadedChecksum.isEmpty() ||
+            !storedChecksum.trim().split("\\s+")[0].equalsIgnoreCase(uploadedChecksum.split("\\s+")[0]))
+        {
+            throw new ArtifactStorageException("The uploaded checksum " + path +
+                                               " does not match the checksum of the stored artifact!");
+        }
+
+        logger.debug("The received checksum matches the generated one: " + path);
+
+        return true;
+    }
+
+    private void abort(ArtifactFileOutputStream os)
+    {
+        try
+        {
+            os.abort();
+
+            if (os.getArtifactFile().isTemporaryMode())
+            {
+                // The stream may have been closed already, before the file could be stored
+                os.getArtifactFile().deleteTemporaryFile();
+            }
+        }
+        catch (IOException e)
+        {
+            logger.error("Failed to discard the partially uploaded " + os.getArtifactFile().getAbsolutePath() + "!", e);
+        }
+    }
+
+    private WritableByteChannel getChannel(OutputStream os)
+    {
+        if (os instanceof FileOutputStream)
+        {
+            // Write straight to the file, without copying the buffer through the heap
+            return ((FileOutputStream) os).getChannel();
+        }
+
+        return Channels.newChannel(os);
+    }
+
+    private void copy(InputStream is, ByteArrayOutputStream baos)
+            throws IOException
+    {
+        byte[] bytes = new byte[1024];
+        int len;
+        while ((len = is.read(bytes)) != -1)
+        {
+            baos.write(bytes, 0, len);
+        }
+    }
+
+    /**
+     * Creates the compressed sibling of the stored POM (or metadata) file, which is served
+     * to the clients accepting the gzip encoding. Binary archives are never compressed.
+     */
+    private void compress(String storageId, String repositoryId, String path)
+    {
+        if (!GzipFileUtils.isCompressible(path) || ArtifactFileUtils.isChecksum(path))
+        {
+            return;
+        }
+
+        try
+        {
+            final File file = resolveFile(storageId, repositoryId, path);
+            if (file != null)
+            {
+                GzipFileUtils.compress(file);
+            }
+        }
+        catch (IOException e)
+        {
+            // The compressed file is regenerated upon request, if it's stale
+            logger.warn("Failed to compress " + storageId + "/" + repositoryId + "/" + path + "!", e);
+        }
+    }
+
+    private void addArtifactToIndex(String storageId,
+                                    String repositoryId,
+                                    String path,
+                                    List<String> artifactsToIndex)
+    {
+        if (ArtifactFileUtils.isArtifactFile(path) && !path.endsWith(".pom"))
+        {
+            if (artifactsToIndex != null)
+            {
+                artifactsToIndex.add(path);
+            }
+            else
+            {
+                indexingQueue.add(storageId, repositoryId, path);
             }
         }
     }
@@ -179,6 +927,15 @@ public class ArtifactManagementServiceImpl
         }
     }
 
+    @Override
+    public File resolveFile(String storageId,
+                            String repositoryId,
+                            String path)
+            throws IOException
+    {
+        return artifactResolutionService.getFile(storageId, repositoryId, path);
+    }
+
     private boolean performRepositoryAcceptanceValidation(String storageId,
                                                           String repositoryId,
                                                           String path)
@@ -190,7 +947,7 @@ public class ArtifactManagementServiceImpl
         final Repository repository = storage.getRepository(repositoryId);
 
         if (!path.contains("/maven-metadata.") &&
-            !ArtifactUtils.isMetadata(path) && !ArtifactUtils.isChecksum(path))
+            !ArtifactUtils.isMetadata(path) && !ArtifactFileUtils.isChecksum(path))
         {
             try
             {
@@ -232,8 +989,32 @@ public class ArtifactManagementServiceImpl
         {
             LocationResolver resolver = getResolvers().get(repository.getImplementation());
 
+            final File artifactFile = new File(repository.getBasedir(), artifactPath);
+            final boolean isDirectory = artifactFile.isDirectory();
+
+            // Only the blobs of the deleted files may no longer be needed afterwards
+            final Set<File> blobs = isDirectory ?
+                                    blobStore.getReferencedBlobs(storage, artifactFile) :
+                                    Collections.<File>emptySet();
+            final File blob = !isDirectory ? getLastReferencedBlob(storage, repository, artifactPath) : null;
+
             resolver.delete(storageId, repositoryId, artifactPath, force);
 
+            blobStore.removeIfUnreferenced(blobs);
+            blobStore.removeIfUnreferenced(blob);
+
+            if (isDirectory)
+            {
+                checksumCache.invalidateDirectory(storageId, repositoryId, artifactPath);
+            }
+            else
+            {
+                invalidateChecksumCache(storageId, repositoryId, artifactPath);
+            }
+
+            // Don't add the artifact to the index, if it hasn't been indexed yet
+            indexingQueue.remove(storageId, repositoryId, artifactPath);
+
             final RepositoryIndexer indexer = repositoryIndexManager.getRepositoryIndex(storageId + ":" + repositoryId);
             if (indexer != null)
             {
@@ -271,6 +1052,28 @@ public class ArtifactManagementServiceImpl
                      String destStorageId,
                      String destRepositoryId)
             throws IOException
+    {
+        transfer(srcStorageId, srcRepositoryId, path, destStorageId, destRepositoryId, false);
+    }
+
+    @Override
+    public void move(String srcStorageId,
+                     String srcRepositoryId,
+                     String path,
+                     String destStorageId,
+                     String destRepositoryId)
+            throws IOException
+    {
+        transfer(srcStorageId, srcRepositoryId, path, destStorageId, destRepositoryId, true);
+    }
+
+    private void transfer(String srcStorageId,
+                          String srcRepositoryId,
+                          String path,
+                          String destStorageId,
+                          String destRepositoryId,
+                          boolean move)
+            throws IOException
     {
         artifactOperationsValidator.validate(srcStorageId, srcRepositoryId, path);
 
@@ -280,21 +1083,123 @@ public class ArtifactManagementServiceImpl
         final Storage destStorage = getStorage(destStorageId);
         final Repository destRepository = destStorage.getRepository(destRepositoryId);
 
-        File srcFile = new File(srcRepository.getBasedir(), path);
-        File destFile = new File(destRepository.getBasedir(), path);
+        if (move)
+        {
+            artifactOperationsValidator.checkAllowsDeletion(srcRepository);
+        }
+
+        final boolean isDirectory = new File(srcRepository.getBasedir(), path).isDirectory();
+
+        // The contents of the files which are being overwritten may no longer be needed afterwards
+        final File previousBlob = !isDirectory ? getLastReferencedBlob(destStorage, destRepository, path) : null;
+        final File srcBlob = move && !isDirectory ? getLastReferencedBlob(srcStorage, srcRepository, path) : null;
+
+        final Set<File> previousBlobs = isDirectory ?
+                                        blobStore.getReferencedBlobs(destStorage,
+                                                                     new File(destRepository.getBasedir(), path)) :
+                                        Collections.<File>emptySet();
+        final Set<File> srcBlobs = move && isDirectory && srcStorage != destStorage ?
+                                   blobStore.getReferencedBlobs(srcStorage, new File(srcRepository.getBasedir(), path)) :
+                                   Collections.<File>emptySet();
 
-        if (srcFile.isDirectory())
+        final List<String> paths;
+        boolean transferred = false;
+        try
+        {
+            // Within a file system, the files are linked, or renamed, so they keep sharing the blobs
+            // of a storage with deduplication enabled
+            paths = move ?
+                    fileTreeCopier.move(new File(srcRepository.getBasedir()), new File(destRepository.getBasedir()), path) :
+                    fileTreeCopier.copy(new File(srcRepository.getBasedir()), new File(destRepository.getBasedir()), path);
+
+            transferred = true;
+        }
+        catch (IOException e)
+        {
+            throw new ArtifactStorageException(e.getMessage(), e);
+        }
+        finally
         {
-            FileUtils.copyDirectoryToDirectory(srcFile, destFile.getParentFile());
+            // Before the misses are invalidated, so that the group repositories don't skip the repository
+            if (transferred)
+            {
+                groupMemberIndex.add(destStorageId, destRepositoryId, path);
+            }
+            else
+            {
+                // Some of the files may have been transferred nonetheless, so the repository mustn't be skipped
+                // for any path, until it has been scanned again
+                groupMemberIndex.invalidate(destStorageId, destRepositoryId);
+            }
 
-            // TODO: SB-377: Sort out the logic for artifact directory paths
-            // TODO: SB-377: addArtifactToIndex(destStorageId, destRepositoryId, path);
+            if (isDirectory)
+            {
+                negativeLookupCache.invalidateDirectory(path);
+            }
+            else
+            {
+                negativeLookupCache.invalidate(path);
+            }
+        }
+
+        // The overwritten checksums are invalidated once for the whole transferred directory, not for each file;
+        // only the records of the transferred files are removed, as the other files below it haven't changed
+        if (isDirectory)
+        {
+            checksumCache.invalidate(destStorageId, destRepositoryId, path);
+            checksumCache.removeRecords(destStorageId, destRepositoryId, paths);
         }
         else
         {
-            FileUtils.copyFile(srcFile, destFile);
-            addArtifactToIndex(destStorageId, destRepositoryId, path);
+            invalidateChecksumCache(destStorageId, destRepositoryId, path);
         }
+
+        final List<String> artifactsToIndex = new ArrayList<>();
+        for (String artifactPath : paths)
+        {
+            addArtifactToIndex(destStorageId, destRepositoryId, artifactPath, artifactsToIndex);
+        }
+
+        // The recorded checksums are carried over, once the overwritten ones have been invalidated
+        // and before the ones of the source are invalidated
+        for (String artifactPath : paths)
+        {
+            if (!ArtifactFileUtils.isChecksum(artifactPath))
+            {
+                checksumCache.copyChecksums(srcStorageId,
+                                            srcRepositoryId,
+                                            destStorageId,
+                                            destRepositoryId,
+                                            artifactPath,
+                                            new File(destRepository.getBasedir(), artifactPath));
+            }
+
+            if (move)
+            {
+                indexingQueue.remove(srcStorageId, srcRepositoryId, artifactPath);
+            }
+        }
+
+        if (move)
+        {
+            // Nothing is left below the moved directory
+            if (isDirectory)
+            {
+                checksumCache.invalidateDirectory(srcStorageId, srcRepositoryId, path);
+            }
+            else
+            {
+                invalidateChecksumCache(srcStorageId, srcRepositoryId, path);
+            }
+        }
+
+        // All the copied artifacts are added to the index in one go
+        indexingQueue.add(destStorageId, destRepositoryId, artifactsToIndex);
+
+        blobStore.removeIfUnreferenced(previousBlobs);
+        blobStore.removeIfUnreferenced(srcBlobs);
+        blobStore.removeIfUnreferenced(previousBlob);
+        blobStore.removeIfUnreferenced(srcBlob);
     }
 
     private void validateUploadedChecksumAgainstCache(ByteArrayOutputStream baos,
@@ -339,6 +1244,13 @@ public class ArtifactManagementServiceImpl
         String checksum = baos.toString();
         String cachedChecksum = checksumCacheManager.getArtifactChecksum(artifactBasePath, algorithm);
 
+        if (cachedChecksum == null)
+        {
+            // The checksum was uploaded before the artifact (or the artifact was uploaded a long time ago)
+            logger.debug("There is no cached " + algorithm + " checksum for " + artifactBasePath + ".");
+            return false;
+        }
+
         if (cachedChecksum.equals(checksum))
         {
             logger.debug("The received " + algorithm + " checksum matches cached one! " + checksum);
@@ -351,19 +1263,71 @@ public class ArtifactManagementServiceImpl
         }
     }
 
-    private void addChecksumsToCacheManager(MultipleDigestInputStream mdis,
+    private void addChecksumsToCacheManager(Map<String, String> checksums,
                                             String artifactPath)
     {
-        MessageDigest md5Digest = mdis.getMessageDigest(EncryptionAlgorithmsEnum.MD5.getAlgorithm());
-        MessageDigest sha1Digest = mdis.getMessageDigest(EncryptionAlgorithmsEnum.SHA1.getAlgorithm());
-
-        String md5 = MessageDigestUtils.convertToHexadecimalString(md5Digest);
-        String sha1 = MessageDigestUtils.convertToHexadecimalString(sha1Digest);
+        String md5 = checksums.get(EncryptionAlgorithmsEnum.MD5.getAlgorithm());
+        String sha1 = checksums.get(EncryptionAlgorithmsEnum.SHA1.getAlgorithm());
 
         checksumCacheManager.addArtifactChecksum(artifactPath, EncryptionAlgorithmsEnum.MD5.getAlgorithm(), md5);
         checksumCacheManager.addArtifactChecksum(artifactPath, EncryptionAlgorithmsEnum.SHA1.getAlgorithm(), sha1);
     }
 
+    private void addChecksumsToChecksumCache(Map<String, String> checksums,
+                                             String storageId,
+                                             String repositoryId,
+                                             String path,
+                                             File artifactFile)
+    {
+        // The artifact is being overwritten, so the previous checksums (if any) no longer apply
+        checksumCache.addChecksums(storageId, repositoryId, path, checksums, artifactFile);
+    }
+
+    private void updateChecksumInChecksumCache(ByteArrayOutputStream baos,
+                                               String storageId,
+                                               String repositoryId,
+                                               String path)
+    {
+        final String artifactBasePath = path.substring(0, path.lastIndexOf('.'));
+        final String checksumExtension = path.substring(path.lastIndexOf('.'));
+
+        for (EncryptionAlgorithmsEnum algorithm : EncryptionAlgorithmsEnum.values())
+        {
+            if (algorithm.getExtension().equalsIgnoreCase(checksumExtension))
+            {
+                final String checksum = baos.toString().trim();
+                if (!checksum.isEmpty())
+                {
+                    // The checksum file may also contain the name of the file after the checksum
+                    checksumCache.updateChecksum(storageId,
+                                                 repositoryId,
+                                                 artifactBasePath,
+                                                 algorithm.getAlgorithm(),
+                                                 checksum.split("\\s+")[0]);
+                }
+                else
+                {
+                    checksumCache.invalidate(storageId, repositoryId, artifactBasePath);
+                }
+
+                return;
+            }
+        }
+    }
+
+    private void invalidateChecksumCache(String storageId,
+                                         String repositoryId,
+                                         String path)
+    {
+        checksumCache.invalidate(storageId, repositoryId, path);
+
+        if (ArtifactFileUtils.isChecksum(path))
+        {
+            // The checksums of the artifact are cached along with the artifact itself
+            checksumCache.invalidate(storageId, repositoryId, path.substring(0, path.lastIndexOf('.')));
+        }
+    }
+
     private Map<String, LocationResolver> getResolvers()
     {
         return artifactResolutionService.getResolvers();
@@ -384,8 +1348,13 @@ public class ArtifactManagementServiceImpl
 
             artifactOperationsValidator.checkAllowsDeletion(repository);
 
+            // Only the blobs of the files in the trash may no longer be needed afterwards
+            final Set<File> blobs = blobStore.getReferencedBlobs(storage, repository.getTrashDir());
+
             LocationResolver resolver = getResolvers().get(repository.getImplementation());
             resolver.deleteTrash(storageId, repositoryId);
+
+            blobStore.removeIfUnreferenced(blobs);
         }
         catch (IOException e)
         {
@@ -400,10 +1369,22 @@ public class ArtifactManagementServiceImpl
     {
         try
         {
+            // Only the blobs of the files in the trash may no longer be needed afterwards
+            final Set<File> blobs = new LinkedHashSet<>();
+            for (Storage storage : getConfiguration().getStorages().values())
+            {
+                for (Repository repository : storage.getRepositories().values())
+                {
+                    blobs.addAll(blobStore.getReferencedBlobs(storage, repository.getTrashDir()));
+                }
+            }
+
             for (LocationResolver resolver : getResolvers().values())
             {
                 resolver.deleteTrash();
             }
+
+            blobStore.removeIfUnreferenced(blobs);
         }
         catch (IOException e)
         {
@@ -428,6 +1409,12 @@ public class ArtifactManagementServiceImpl
 
             resolver.undelete(storageId, repositoryId, artifactPath);
 
+            invalidateChecksumCache(storageId, repositoryId, artifactPath);
+
+            // The path may be a directory
+            groupMemberIndex.add(storageId, repositoryId, artifactPath);
+            negativeLookupCache.invalidateDirectory(artifactPath);
+
             /*
             // TODO: This will need further fixing:
             final RepositoryIndexer indexer = repositoryIndexManager.getRepositoryIndex(storageId + ":" + repositoryId);
@@ -462,6 +1449,9 @@ public class ArtifactManagementServiceImpl
             {
                 LocationResolver resolver = getResolvers().get(repository.getImplementation());
                 resolver.undeleteTrash(storageId, repositoryId);
+
+                groupMemberIndex.add(storageId, repositoryId, "");
+                negativeLookupCache.clear();
             }
         }
         catch (IOException e)
@@ -480,6 +1470,9 @@ public class ArtifactManagementServiceImpl
             {
                 resolver.undeleteTrash();
             }
+
+            groupMemberIndex.update();
+            negativeLookupCache.clear();
         }
         catch (IOException e)
         {
@@ -8,6 +8,7 @@ import org.carlspring.strongbox.services.ConfigurationManagementService;
 import org.carlspring.strongbox.storage.Storage;
 import org.carlspring.strongbox.storage.repository.Repository;
 import org.carlspring.strongbox.storage.repository.RepositoryTypeEnum;
+import org.carlspring.strongbox.storage.resolvers.GroupMemberIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +35,9 @@ public class ConfigurationManagementServiceImpl implements ConfigurationManageme
     @Autowired
     private ConfigurationResourceResolver configurationResourceResolver;
 
+    @Autowired
+    private GroupMemberIndex groupMemberIndex;
+
 
     @Override
     public void setConfiguration(Configuration configuration)
@@ -43,6 +47,8 @@ public class ConfigurationManagementServiceImpl implements ConfigurationManageme
         configurationManager.setConfiguration(configuration);
         configurationManager.store();
         configurationManager.setRepositoryStorageRelationships();
+
+        groupMemberIndex.clear();
     }
 
     @Override
@@ -138,6 +144,9 @@ public class ConfigurationManagementServiceImpl implements ConfigurationManageme
     {
         configurationManager.getConfiguration().getStorage(storageId).addOrUpdateRepository(repository);
         configurationManager.store();
+
+        // The basedir, or the members of the repository may have changed
+        groupMemberIndex.invalidate(storageId, repository.getId());
     }
 
     @Override
@@ -0,0 +1,1070 @@
+package org.carlspring.strongbox.storage.indexing;
+
+import org.apache.maven.artifact.Artifact;
+import org.carlspring.maven.commons.util.ArtifactUtils;
+import org.carlspring.strongbox.configuration.ConfigurationManager;
+import org.carlspring.strongbox.resource.ConfigurationResourceResolver;
+import org.carlspring.strongbox.resource.ResourceCloser;
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.repository.Repository;
+import org.carlspring.strongbox.storage.repository.RepositoryDurabilityEnum;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adds the stored artifacts to the indexes of their repositories in the background, so that the uploads
+ * don't have to wait for the artifacts to be scanned and the index to be committed.
+ *
+ * The artifacts are indexed in batches (one commit per batch) per repository and an artifact which is stored
+ * again, before it has been indexed, is only indexed once. The queued artifacts are appended to a journal,
+ * which is replayed on startup, so that the artifacts which haven't been indexed before a restart are
+ * indexed afterwards. The journal is forced to the disk along with the artifacts of the repositories,
+ * the durability of which isn't "none". The entries are appended under the lock of the queue, but the journal
+ * is forced outside of it and a single force covers the entries of all the uploads which are waiting for one
+ * (group commit). Once all the queued artifacts have been indexed, the journal is truncated.
+ *
+ * A batch which fails to be indexed is queued again and the repository is retried with an exponential
+ * backoff. Once a repository has failed too many times in a row, the artifacts of the batch are indexed
+ * one by one and the ones which still fail are moved to a dead letter file (in the format of the journal),
+ * instead of being retried forever.
+ *
+ * The queue can be paused (the artifacts are still queued, but not indexed) and drained (all the queued
+ * artifacts are indexed right away, even if the queue has been paused).
+ *
+ * The queue can be disabled via the strongbox.indexing.async system property, in which case the artifacts
+ * are indexed right away. The size of the batches and the location of the journal can be set via
+ * the strongbox.indexing.batch.size and strongbox.indexing.journal system properties. The number of attempts,
+ * the delay before the first retry and the location of the dead letter file can be set via
+ * the strongbox.indexing.retry.attempts, strongbox.indexing.retry.delay and strongbox.indexing.dead.letters
+ * system properties.
+ *
+ * @author mtodorov
+ */
+@Component
+public class IndexingQueue
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexingQueue.class);
+
+    private static final long MAX_RETRY_DELAY = 5 * 60 * 1000L;
+
+    private boolean asynchronous = Boolean.parseBoolean(System.getProperty("strongbox.indexing.async", "true"));
+
+    private int batchSize = Integer.getInteger("strongbox.indexing.batch.size", 1000);
+
+    private File journalFile = new File(System.getProperty("strongbox.indexing.journal",
+                                                           ConfigurationResourceResolver.getVaultDirectory() +
+                                                           "/indexing-queue.journal"));
+
+    private int maxAttempts = Integer.getInteger("strongbox.indexing.retry.attempts", 5);
+
+    /**
+     * The delay (in milliseconds) before the first retry, which is doubled with each further attempt.
+     */
+    private long retryDelay = Long.getLong("strongbox.indexing.retry.delay", 1000L);
+
+    private File deadLetterFile = new File(System.getProperty("strongbox.indexing.dead.letters",
+                                                              ConfigurationResourceResolver.getVaultDirectory() +
+                                                              "/indexing-queue.failed"));
+
+    @Autowired
+    private RepositoryIndexManager repositoryIndexManager;
+
+    @Autowired
+    private ConfigurationManager configurationManager;
+
+    /**
+     * Key:     storageId:repositoryId
+     * Value:   Key: path, Value: The time at which the path was queued.
+     */
+    private final Map<String, Map<String, Long>> pending = new LinkedHashMap<>();
+
+    /**
+     * Key:     storageId:repositoryId
+     * Value:   The failed attempts of the repository, which is waiting to be retried.
+     */
+    private final Map<String, Retry> retries = new HashMap<>();
+
+    /**
+     * The number of queued paths.
+     */
+    private int depth;
+
+    /**
+     * The number of entries in the journal, including the ones which have already been indexed.
+     */
+    private int journalEntries;
+
+    private FileOutputStream journalStream;
+
+    private Writer journal;
+
+    /**
+     * The sequence number of the last entries which have been appended to the journal.
+     */
+    private long journalSequence;
+
+    /**
+     * The sequence number of the last entries which have been forced to the disk.
+     */
+    private final AtomicLong syncedSequence = new AtomicLong();
+
+    /**
+     * Only one thread forces the journal at a time; the ones waiting for it are covered by its force.
+     */
+    private final Object syncLock = new Object();
+
+    private boolean paused;
+
+    private boolean running;
+
+    /**
+     * Only one batch is indexed at a time, either by the worker, or by a drain.
+     */
+    private final Object indexingLock = new Object();
+
+    private Thread worker;
+
+    private final AtomicLong queuedCount = new AtomicLong();
+
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    private final AtomicLong indexedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final AtomicLong deadLetterCount = new AtomicLong();
+
+
+    public IndexingQueue()
+    {
+    }
+
+    @PostConstruct
+    public synchronized void initialize()
+    {
+        if (!asynchronous)
+        {
+            return;
+        }
+
+        loadJournal();
+
+        running = true;
+
+        worker = new Thread(new Worker(), "strongbox-indexing-queue");
+        worker.setDaemon(true);
+        worker.start();
+
+        logger.debug("Initialized the indexing queue with " + depth + " queued artifacts.");
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        synchronized (this)
+        {
+            running = false;
+            notifyAll();
+        }
+
+        if (worker != null)
+        {
+            try
+            {
+                // The batch which is being indexed is completed, the rest is indexed after the restart
+                worker.join(60000L);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this)
+        {
+            ResourceCloser.close(journal, logger);
+            journal = null;
+            journalStream = null;
+        }
+    }
+
+    /**
+     * Queues the artifact to be added to the index of the repository.
+     */
+    public void add(String storageId,
+                    String repositoryId,
+                    String path)
+    {
+        add(storageId, repositoryId, Collections.singletonList(path));
+    }
+
+    /**
+     * Queues the artifacts to be added to the index of the repository. If the queue is disabled,
+     * the artifacts are added to the index right away, with a single commit.
+     */
+    public void add(String storageId,
+                    String repositoryId,
+                    Collection<String> paths)
+    {
+        if (paths.isEmpty() || repositoryIndexManager.getRepositoryIndex(getKey(storageId, repositoryId)) == null)
+        {
+            return;
+        }
+
+        if (!asynchronous)
+        {
+            index(getKey(storageId, repositoryId), paths);
+
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+
+        long sequence = 0;
+        synchronized (this)
+        {
+            Map<String, Long> repositoryPaths = pending.get(getKey(storageId, repositoryId));
+            if (repositoryPaths == null)
+            {
+                repositoryPaths = new LinkedHashMap<>();
+                pending.put(getKey(storageId, repositoryId), repositoryPaths);
+            }
+
+            boolean added = false;
+            for (String path : paths)
+            {
+                if (repositoryPaths.containsKey(path))
+                {
+                    coalescedCount.incrementAndGet();
+                    continue;
+                }
+
+                repositoryPaths.put(path, now);
+                depth++;
+                queuedCount.incrementAndGet();
+
+                appendToJournal(now, storageId, repositoryId, path);
+                added = true;
+            }
+
+            if (added)
+            {
+                sequence = flushJournal(storageId, repositoryId);
+                notifyAll();
+            }
+        }
+
+        if (sequence > 0)
+        {
+            syncJournal(sequence);
+        }
+    }
+
+    /**
+     * Removes the artifact from the queue, if it hasn't been indexed yet (such as, when it has been deleted).
+     */
+    public synchronized void remove(String storageId,
+                                    String repositoryId,
+                                    String path)
+    {
+        final Map<String, Long> repositoryPaths = pending.get(getKey(storageId, repositoryId));
+        if (repositoryPaths != null && repositoryPaths.remove(path) != null)
+        {
+            depth--;
+
+            if (repositoryPaths.isEmpty())
+            {
+                pending.remove(getKey(storageId, repositoryId));
+                retries.remove(getKey(storageId, repositoryId));
+            }
+        }
+    }
+
+    /**
+     * Indexes all the queued artifacts on the calling thread, even if the queue has been paused.
+     * The artifacts of the repositories which are waiting to be retried are left in the queue.
+     *
+     * @return The number of artifacts which were taken off the queue (including the ones which failed).
+     */
+    public int drain()
+    {
+        int count = 0;
+
+        int batch;
+        while ((batch = indexNextBatch()) > 0)
+        {
+            count += batch;
+        }
+
+        return count;
+    }
+
+    public synchronized void pause()
+    {
+        paused = true;
+    }
+
+    public synchronized void resume()
+    {
+        paused = false;
+        notifyAll();
+    }
+
+    public synchronized boolean isPaused()
+    {
+        return paused;
+    }
+
+    /**
+     * Returns the number of artifacts which are waiting to be indexed.
+     */
+    public synchronized int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Returns for how long (in milliseconds) the oldest queued artifact has been waiting to be indexed.
+     */
+    public synchronized long getLag()
+    {
+        long oldest = Long.MAX_VALUE;
+        for (Map<String, Long> repositoryPaths : pending.values())
+        {
+            // The paths of each repository are in the order in which they were queued
+            if (!repositoryPaths.isEmpty())
+            {
+                oldest = Math.min(oldest, repositoryPaths.values().iterator().next());
+            }
+        }
+
+        return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+    }
+
+    /**
+     * Returns the number of artifacts which have been queued.
+     */
+    public long getQueuedCount()
+    {
+        return queuedCount.get();
+    }
+
+    /**
+     * Returns the number of artifacts which were already queued, when they were queued again.
+     */
+    public long getCoalescedCount()
+    {
+        return coalescedCount.get();
+    }
+
+    public long getIndexedCount()
+    {
+        return indexedCount.get();
+    }
+
+    /**
+     * Returns the number of artifacts, the indexing of which has failed (once for each attempt).
+     */
+    public long getFailedCount()
+    {
+        return failedCount.get();
+    }
+
+    /**
+     * Returns the number of artifacts which have been moved to the dead letter file.
+     */
+    public long getDeadLetterCount()
+    {
+        return deadLetterCount.get();
+    }
+
+    /**
+     * Takes the next batch of artifacts (of a single repository, which isn't waiting to be retried)
+     * off the queue and adds them to the index.
+     *
+     * @return The number of artifacts which were taken off the queue.
+     */
+    private int indexNextBatch()
+    {
+        synchronized (indexingLock)
+        {
+            final String key;
+            final Map<String, Long> batch = new LinkedHashMap<>();
+
+            synchronized (this)
+            {
+                key = getNextKey(System.currentTimeMillis());
+                if (key == null)
+                {
+                    return 0;
+                }
+
+                final Map<String, Long> repositoryPaths = pending.remove(key);
+                final Iterator<Map.Entry<String, Long>> iterator = repositoryPaths.entrySet().iterator();
+                while (iterator.hasNext() && batch.size() < batchSize)
+                {
+                    final Map.Entry<String, Long> entry = iterator.next();
+
+                    batch.put(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                }
+
+                if (!repositoryPaths.isEmpty())
+                {
+                    // The other repositories are next
+                    pending.put(key, repositoryPaths);
+                }
+
+                depth -= batch.size();
+            }
+
+            if (index(key, batch.keySet()))
+            {
+                synchronized (this)
+                {
+                    retries.remove(key);
+                }
+            }
+            else if (!retry(key, batch))
+            {
+                // Don't let a single bad artifact hold back (or take down) the rest of the batch
+                final Map<String, Long> failed = new LinkedHashMap<>();
+                for (Map.Entry<String, Long> entry : batch.entrySet())
+                {
+                    if (batch.size() == 1 || !index(key, Collections.singletonList(entry.getKey())))
+                    {
+                        failed.put(entry.getKey(), entry.getValue());
+                    }
+                }
+
+                appendToDeadLetters(key, failed);
+            }
+
+            synchronized (this)
+            {
+                // The batch is only removed from the journal, once it has been indexed (or given up on)
+                compactJournal();
+            }
+
+            return batch.size();
+        }
+    }
+
+    /**
+     * Returns the first repository with queued artifacts, which isn't waiting to be retried, or null.
+     */
+    private String getNextKey(long now)
+    {
+        for (String key : pending.keySet())
+        {
+            final Retry retry = retries.get(key);
+            if (retry == null || retry.nextAttempt <= now)
+            {
+                return key;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the time (in milliseconds) until the next batch can be indexed, or Long.MAX_VALUE,
+     * if nothing is queued.
+     */
+    private long getTimeUntilNextBatch(long now)
+    {
+        long time = Long.MAX_VALUE;
+        for (String key : pending.keySet())
+        {
+            final Retry retry = retries.get(key);
+            if (retry == null)
+            {
+                return 0;
+            }
+
+            time = Math.min(time, Math.max(retry.nextAttempt - now, 0));
+        }
+
+        return time;
+    }
+
+    /**
+     * Queues the failed batch again (ahead of the artifacts of the repository which have been queued since)
+     * and schedules the repository to be retried after a backoff.
+     *
+     * @return False, if the repository has already been attempted too many times, in which case the batch
+     *         isn't queued again.
+     */
+    private synchronized boolean retry(String key,
+                                       Map<String, Long> batch)
+    {
+        Retry retry = retries.get(key);
+        if (retry == null)
+        {
+            retry = new Retry();
+            retries.put(key, retry);
+        }
+
+        retry.attempts++;
+        if (retry.attempts >= maxAttempts)
+        {
+            logger.error("Giving up on indexing " + batch.size() + " artifacts of " + key + " after " +
+                         retry.attempts + " attempts.");
+
+            retries.remove(key);
+
+            return false;
+        }
+
+        final Map<String, Long> repositoryPaths = new LinkedHashMap<>(batch);
+        depth += batch.size();
+
+        final Map<String, Long> queued = pending.remove(key);
+        if (queued != null)
+        {
+            for (Map.Entry<String, Long> entry : queued.entrySet())
+            {
+                if (repositoryPaths.containsKey(entry.getKey()))
+                {
+                    depth--;
+                }
+                else
+                {
+                    repositoryPaths.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        pending.put(key, repositoryPaths);
+
+        final long delay = Math.min(retryDelay << Math.min(retry.attempts - 1, 30), MAX_RETRY_DELAY);
+        retry.nextAttempt = System.currentTimeMillis() + delay;
+
+        logger.warn("Retrying to index " + batch.size() + " artifacts of " + key + " in " + delay + " ms.");
+
+        return true;
+    }
+
+    /**
+     * @return False, if the artifacts failed to be indexed.
+     */
+    private boolean index(String key, Collection<String> paths)
+    {
+        final String storageId = key.substring(0, key.indexOf(':'));
+        final String repositoryId = key.substring(key.indexOf(':') + 1);
+
+        final RepositoryIndexer indexer = repositoryIndexManager.getRepositoryIndex(key);
+        final Storage storage = configurationManager.getConfiguration().getStorage(storageId);
+        if (indexer == null || storage == null)
+        {
+            // The repository (or its index) has been removed
+            return true;
+        }
+
+        try
+        {
+            final File repositoryBasedir = new File(new File(storage.getBasedir()), repositoryId);
+
+            final Map<File, Artifact> artifacts = new LinkedHashMap<>();
+            for (String path : paths)
+            {
+                final File artifactFile = new File(repositoryBasedir, path).getCanonicalFile();
+
+                // The artifact may have been deleted in the meantime
+                if (artifactFile.exists())
+                {
+                    artifacts.put(artifactFile, ArtifactUtils.convertPathToArtifact(path));
+                }
+            }
+
+            indexer.addArtifactsToIndex(repositoryId, artifacts);
+
+            indexedCount.addAndGet(artifacts.size());
+
+            return true;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            failedCount.addAndGet(paths.size());
+
+            logger.error("Failed to index " + paths.size() + " artifacts of " + key + "!", e);
+
+            return false;
+        }
+    }
+
+    private void loadJournal()
+    {
+        if (journalFile.exists())
+        {
+            BufferedReader reader = null;
+            try
+            {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile),
+                                                                  StandardCharsets.UTF_8));
+
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    final String[] fields = line.split("\t");
+                    if (fields.length != 4)
+                    {
+                        // The last entry may have only been written partially
+                        continue;
+                    }
+
+                    Map<String, Long> repositoryPaths = pending.get(getKey(fields[1], fields[2]));
+                    if (repositoryPaths == null)
+                    {
+                        repositoryPaths = new LinkedHashMap<>();
+                        pending.put(getKey(fields[1], fields[2]), repositoryPaths);
+                    }
+
+                    if (!repositoryPaths.containsKey(fields[3]))
+                    {
+                        repositoryPaths.put(fields[3], Long.parseLong(fields[0]));
+                        depth++;
+                    }
+                }
+            }
+            catch (IOException | NumberFormatException e)
+            {
+                logger.error("Failed to load the indexing queue journal " + journalFile.getAbsolutePath() + "!", e);
+            }
+            finally
+            {
+                ResourceCloser.close(reader, logger);
+            }
+        }
+
+        rewriteJournal();
+    }
+
+    private void appendToJournal(long time, String storageId, String repositoryId, String path)
+    {
+        if (journal == null)
+        {
+            return;
+        }
+
+        try
+        {
+            journal.write(time + "\t" + storageId + "\t" + repositoryId + "\t" + path + "\n");
+            journalEntries++;
+        }
+        catch (IOException e)
+        {
+            logger.error("Failed to write to the indexing queue journal " + journalFile.getAbsolutePath() + "!", e);
+        }
+    }
+
+    /**
+     * Writes the appended entries to the journal file.
+     *
+     * @return The sequence number of the entries, which has to be passed to {@link #syncJournal(long)},
+     *         or 0, if the durability of the repository doesn't require them to be forced to the disk.
+     */
+    private long flushJournal(String storageId, String repositoryId)
+    {
+        if (journal == null)
+        {
+            return 0;
+        }
+
+        try
+        {
+            journal.flush();
+            journalSequence++;
+
+            final Storage storage = configurationManager.getConfiguration().getStorage(storageId);
+            final Repository repository = storage != null ? storage.getRepository(repositoryId) : null;
+            if (repository != null &&
+                RepositoryDurabilityEnum.fromDurability(repository.getDurability()) != RepositoryDurabilityEnum.NONE)
+            {
+                return journalSequence;
+            }
+        }
+        catch (IOException e)
+        {
+            logger.error("Failed to write to the indexing queue journal " + journalFile.getAbsolutePath() + "!", e);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Forces the journal to the disk, unless the entries with the sequence number have already been forced
+     * along with the entries of another thread. This is called without holding the lock of the queue, so that
+     * the entries of the other uploads can be appended in the meantime and forced all at once.
+     */
+    private void syncJournal(long sequence)
+    {
+        synchronized (syncLock)
+        {
+            if (syncedSequence.get() >= sequence)
+            {
+                return;
+            }
+
+            final long target;
+            final FileChannel channel;
+            synchronized (this)
+            {
+                if (journalStream == null)
+                {
+                    return;
+                }
+
+                target = journalSequence;
+                channel = journalStream.getChannel();
+            }
+
+            try
+            {
+                channel.force(false);
+
+                setSyncedSequence(target);
+            }
+            catch (ClosedChannelException e)
+            {
+                // The journal has been rewritten (and forced) in the meantime
+                if (syncedSequence.get() < sequence)
+                {
+                    logger.error("Failed to force the indexing queue journal " + journalFile.getAbsolutePath() +
+                                 " to the disk!", e);
+                }
+            }
+            catch (IOException e)
+            {
+                logger.error("Failed to force the indexing queue journal " + journalFile.getAbsolutePath() +
+                             " to the disk!", e);
+            }
+        }
+    }
+
+    private void setSyncedSequence(long sequence)
+    {
+        long synced;
+        while ((synced = syncedSequence.get()) < sequence && !syncedSequence.compareAndSet(synced, sequence))
+        {
+            // Retry, as the journal has been rewritten in the meantime
+        }
+    }
+
+    /**
+     * Appends the artifacts, which couldn't be indexed, to the dead letter file, so that they can be looked into
+     * (and queued again) by hand.
+     */
+    private void appendToDeadLetters(String key,
+                                     Map<String, Long> paths)
+    {
+        if (paths.isEmpty())
+        {
+            return;
+        }
+
+        final String storageId = key.substring(0, key.indexOf(':'));
+        final String repositoryId = key.substring(key.indexOf(':') + 1);
+
+        Writer writer = null;
+        try
+        {
+            if (!deadLetterFile.getParentFile().exists())
+            {
+                //noinspection ResultOfMethodCallIgnored
+                deadLetterFile.getParentFile().mkdirs();
+            }
+
+            writer = new OutputStreamWriter(new FileOutputStream(deadLetterFile, true), StandardCharsets.UTF_8);
+
+            for (Map.Entry<String, Long> path : paths.entrySet())
+            {
+                writer.write(path.getValue() + "\t" + storageId + "\t" + repositoryId + "\t" +
+                             path.getKey() + "\n");
+            }
+
+            writer.flush();
+
+            deadLetterCount.addAndGet(paths.size());
+
+            logger.error("Moved " + paths.size() + " artifacts of " + key + ", which failed to be indexed, to " +
+                         deadLetterFile.getAbsolutePath() + ".");
+        }
+        catch (IOException e)
+        {
+            logger.error("Failed to write the artifacts of " + key + " to the dead letter file " +
+                         deadLetterFile.getAbsolutePath() + "!", e);
+        }
+        finally
+        {
+            ResourceCloser.close(writer, logger);
+        }
+    }
+
+    /**
+     * Removes the indexed artifacts from the journal, once they make up most of it. Once nothing is queued,
+     * the journal is simply truncated.
+     */
+    private void compactJournal()
+    {
+        if (depth == 0 && journalEntries > 0 && journal != null)
+        {
+            truncateJournal();
+        }
+        else if (journalEntries > 2 * depth + batchSize)
+        {
+            rewriteJournal();
+        }
+    }
+
+    /**
+     * Empties the journal in place, without rewriting it. It isn't forced, as replaying the entries
+     * of the artifacts, which have already been indexed, merely indexes them again.
+     */
+    private void truncateJournal()
+    {
+        try
+        {
+            journal.flush();
+            journalStream.getChannel().truncate(0);
+
+            journalEntries = 0;
+        }
+        catch (IOException e)
+        {
+            logger.error("Failed to truncate the indexing queue journal " + journalFile.getAbsolutePath() + "!", e);
+
+            rewriteJournal();
+        }
+    }
+
+    /**
+     * Replaces the journal with the one containing only the queued artifacts.
+     */
+    private void rewriteJournal()
+    {
+        ResourceCloser.close(journal, logger);
+        journal = null;
+        journalStream = null;
+
+        try
+        {
+            if (!journalFile.getParentFile().exists())
+            {
+                //noinspection ResultOfMethodCallIgnored
+                journalFile.getParentFile().mkdirs();
+            }
+
+            final File temporaryFile = new File(journalFile.getAbsolutePath() + ".tmp");
+
+            FileOutputStream fos = null;
+            Writer writer = null;
+            try
+            {
+                fos = new FileOutputStream(temporaryFile);
+                writer = new OutputStreamWriter(fos, StandardCharsets.UTF_8);
+
+                for (Map.Entry<String, Map<String, Long>> entry : pending.entrySet())
+                {
+                    final String key = entry.getKey();
+                    final String storageId = key.substring(0, key.indexOf(':'));
+                    final String repositoryId = key.substring(key.indexOf(':') + 1);
+
+                    for (Map.Entry<String, Long> path : entry.getValue().entrySet())
+                    {
+                        writer.write(path.getValue() + "\t" + storageId + "\t" + repositoryId + "\t" +
+                                     path.getKey() + "\n");
+                    }
+                }
+
+                // The queued entries, which have been forced to the old journal, have to be on the disk
+                // before it is replaced
+                writer.flush();
+                fos.getChannel().force(false);
+            }
+            finally
+            {
+                ResourceCloser.close(writer != null ? writer : fos, logger);
+            }
+
+            Files.move(temporaryFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+
+            journalEntries = depth;
+            setSyncedSequence(journalSequence);
+
+            journalStream = new FileOutputStream(journalFile, true);
+            journal = new OutputStreamWriter(journalStream, StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            logger.error("Failed to write the indexing queue journal " + journalFile.getAbsolutePath() + "!", e);
+        }
+    }
+
+    private static String getKey(String storageId, String repositoryId)
+    {
+        return storageId + ":" + repositoryId;
+    }
+
+    public boolean isAsynchronous()
+    {
+        return asynchronous;
+    }
+
+    public void setAsynchronous(boolean asynchronous)
+    {
+        this.asynchronous = asynchronous;
+    }
+
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize)
+    {
+        this.batchSize = batchSize;
+    }
+
+    public File getJournalFile()
+    {
+        return journalFile;
+    }
+
+    public void setJournalFile(File journalFile)
+    {
+        this.journalFile = journalFile;
+    }
+
+    public int getMaxAttempts()
+    {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts)
+    {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getRetryDelay()
+    {
+        return retryDelay;
+    }
+
+    public void setRetryDelay(long retryDelay)
+    {
+        this.retryDelay = retryDelay;
+    }
+
+    public File getDeadLetterFile()
+    {
+        return deadLetterFile;
+    }
+
+    public void setDeadLetterFile(File deadLetterFile)
+    {
+        this.deadLetterFile = deadLetterFile;
+    }
+
+    public RepositoryIndexManager getRepositoryIndexManager()
+    {
+        return repositoryIndexManager;
+    }
+
+    public void setRepositoryIndexManager(RepositoryIndexManager repositoryIndexManager)
+    {
+        this.repositoryIndexManager = repositoryIndexManager;
+    }
+
+    public ConfigurationManager getConfigurationManager()
+    {
+        return configurationManager;
+    }
+
+    public void setConfigurationManager(ConfigurationManager configurationManager)
+    {
+        this.configurationManager = configurationManager;
+    }
+
+    private static class Retry
+    {
+
+        private int attempts;
+
+        private long nextAttempt;
+
+    }
+
+    private class Worker
+            implements Runnable
+    {
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                synchronized (IndexingQueue.this)
+                {
+                    while (running)
+                    {
+                        // Wait for artifacts to be queued, or for the next repository to be retried
+                        final long delay = paused ?
+                                           Long.MAX_VALUE :
+                                           getTimeUntilNextBatch(System.currentTimeMillis());
+                        if (delay <= 0)
+                        {
+                            break;
+                        }
+
+                        try
+                        {
+                            IndexingQueue.this.wait(delay == Long.MAX_VALUE ? 0L : delay);
+                        }
+                        catch (InterruptedException e)
+                        {
+                            return;
+                        }
+                    }
+
+                    if (!running)
+                    {
+                        return;
+                    }
+                }
+
+                indexNextBatch();
+            }
+        }
+
+    }
+
+}
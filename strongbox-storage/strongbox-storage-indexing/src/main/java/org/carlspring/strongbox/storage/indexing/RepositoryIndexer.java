@@ -271,6 +271,38 @@ public class RepositoryIndexer
                                    File artifactFile,
                                    Artifact artifact)
             throws IOException
+    {
+        getIndexer().addArtifactsToIndex(asList(createArtifactContext(repositoryId, artifactFile, artifact)),
+                                         indexingContext);
+    }
+
+    /**
+     * Adds the artifacts to the index with a single commit.
+     *
+     * @param artifacts Key:     artifact file
+     *                  Value:   artifact
+     */
+    public void addArtifactsToIndex(String repositoryId,
+                                    Map<File, Artifact> artifacts)
+            throws IOException
+    {
+        if (artifacts.isEmpty())
+        {
+            return;
+        }
+
+        final List<ArtifactContext> artifactContexts = new ArrayList<>(artifacts.size());
+        for (Map.Entry<File, Artifact> entry : artifacts.entrySet())
+        {
+            artifactContexts.add(createArtifactContext(repositoryId, entry.getKey(), entry.getValue()));
+        }
+
+        getIndexer().addArtifactsToIndex(artifactContexts, indexingContext);
+    }
+
+    private ArtifactContext createArtifactContext(String repositoryId,
+                                                  File artifactFile,
+                                                  Artifact artifact)
     {
         String extension = artifactFile.getName().substring(artifactFile.getName().lastIndexOf(".") + 1,
                                                             artifactFile.getName().length());
@@ -298,12 +330,11 @@ public class RepositoryIndexer
         // TODO: Improve this to support timestamped SNAPSHOT-s:
         File metadataFile = new File(artifactFile.getParentFile().getParentFile(), "maven-metadata.xml");
 
-        getIndexer().addArtifactsToIndex(asList(new ArtifactContext(pomFile.exists()? pomFile : null,
-                                                                    artifactFile,
-                                                                    metadataFile.exists() ? metadataFile : null,
-                                                                    artifactInfo,
-                                                                    artifactInfo.calculateGav())),
-                                         indexingContext);
+        return new ArtifactContext(pomFile.exists()? pomFile : null,
+                                   artifactFile,
+                                   metadataFile.exists() ? metadataFile : null,
+                                   artifactInfo,
+                                   artifactInfo.calculateGav());
     }
 
     private class ReindexArtifactScanningListener
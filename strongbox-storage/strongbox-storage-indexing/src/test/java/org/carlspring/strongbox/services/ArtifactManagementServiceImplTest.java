@@ -2,10 +2,16 @@ package org.carlspring.strongbox.services;
 
 import org.apache.maven.artifact.Artifact;
 import org.carlspring.maven.commons.util.ArtifactUtils;
+import org.carlspring.strongbox.io.ZipEntryInputStream;
 import org.carlspring.strongbox.resource.ConfigurationResourceResolver;
 import org.carlspring.strongbox.resource.ResourceCloser;
+import org.carlspring.strongbox.storage.resolvers.ArchiveStorageException;
 import org.carlspring.strongbox.storage.resolvers.ArtifactStorageException;
+import org.carlspring.strongbox.storage.upload.UploadOffsetMismatchException;
+import org.carlspring.strongbox.storage.upload.UploadSession;
+import org.carlspring.strongbox.storage.upload.UploadSessionManager;
 import org.carlspring.strongbox.testing.TestCaseWithArtifactGeneration;
+import org.carlspring.strongbox.util.MessageDigestUtils;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.junit.Before;
 import org.junit.Test;
@@ -14,11 +20,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.Assert.*;
 
@@ -41,6 +54,9 @@ public class ArtifactManagementServiceImplTest
     @Autowired
     private ArtifactManagementService artifactManagementService;
 
+    @Autowired
+    private UploadSessionManager uploadSessionManager;
+
     private static boolean INITIALIZED = false;
 
 
@@ -273,6 +289,260 @@ public class ArtifactManagementServiceImplTest
         }
     }
 
+    @Test
+    public void testDeploymentToRepositoryWithChecksumGeneration()
+            throws NoSuchAlgorithmException,
+                   XmlPullParserException,
+                   IOException
+    {
+        String repositoryId = "releases-with-checksum-generation";
+        String gavtc = "org.carlspring.strongbox:strongbox-utils:8.4:jar";
+
+        Artifact artifact = ArtifactUtils.getArtifactFromGAVTC(gavtc);
+        String artifactPath = ArtifactUtils.convertArtifactToPath(artifact);
+
+        File repositoryDir = new File(STORAGE_BASEDIR, repositoryId);
+        InputStream is = generateArtifactInputStream(repositoryDir.getAbsolutePath(), repositoryId, gavtc, true);
+        try
+        {
+            artifactManagementService.store("storage0", repositoryId, artifactPath, is);
+        }
+        finally
+        {
+            ResourceCloser.close(is, null);
+        }
+
+        // The checksums generated along with the uploaded artifact
+        File generatedArtifactFile = new File(repositoryDir, repositoryId + "/.temp/" + artifactPath);
+        String md5 = MessageDigestUtils.readChecksumFile(generatedArtifactFile.getAbsolutePath() + ".md5");
+        String sha1 = MessageDigestUtils.readChecksumFile(generatedArtifactFile.getAbsolutePath() + ".sha1");
+
+        File artifactFile = new File(repositoryDir, artifactPath);
+        File sha1File = new File(artifactFile.getAbsolutePath() + ".sha1");
+
+        assertEquals("Failed to generate the MD5 checksum file!",
+                     md5,
+                     MessageDigestUtils.readChecksumFile(artifactFile.getAbsolutePath() + ".md5"));
+        assertEquals("Failed to generate the SHA-1 checksum file!",
+                     sha1,
+                     MessageDigestUtils.readChecksumFile(sha1File.getAbsolutePath()));
+
+        // The client's checksum is only verified, the generated checksum file is kept as it is
+        artifactManagementService.store("storage0",
+                                        repositoryId,
+                                        artifactPath + ".sha1",
+                                        new ByteArrayInputStream((sha1.toUpperCase() + "  " +
+                                                                  artifactFile.getName()).getBytes()));
+
+        assertEquals("Failed to keep the generated SHA-1 checksum file!",
+                     sha1,
+                     MessageDigestUtils.readChecksumFile(sha1File.getAbsolutePath()));
+
+        //noinspection EmptyCatchBlock
+        try
+        {
+            artifactManagementService.store("storage0",
+                                            repositoryId,
+                                            artifactPath + ".md5",
+                                            new ByteArrayInputStream("0123456789abcdef0123456789abcdef".getBytes()));
+
+            fail("Failed to reject a checksum which doesn't match the generated one.");
+        }
+        catch (ArtifactStorageException e)
+        {
+            // This is the expected correct behavior
+        }
+
+        assertEquals("Failed to keep the generated MD5 checksum file!",
+                     md5,
+                     MessageDigestUtils.readChecksumFile(artifactFile.getAbsolutePath() + ".md5"));
+    }
+
+    @Test
+    public void testStoreArchive()
+            throws NoSuchAlgorithmException,
+                   XmlPullParserException,
+                   IOException
+    {
+        File archiveBasedir = new File("target/strongbox-archive");
+        Artifact artifact = generateArtifact(archiveBasedir.getAbsolutePath(),
+                                             "org.carlspring.strongbox.archive:strongbox-archive:1.0:jar");
+
+        String artifactPath = ArtifactUtils.convertArtifactToPath(artifact);
+        String pomPath = artifactPath.substring(0, artifactPath.lastIndexOf('.')) + ".pom";
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(baos);
+        try
+        {
+            for (String path : new String[]{ artifactPath, artifactPath + ".sha1", pomPath })
+            {
+                zos.putNextEntry(new ZipEntry(path));
+                zos.write(Files.readAllBytes(new File(archiveBasedir, path).toPath()));
+                zos.closeEntry();
+            }
+        }
+        finally
+        {
+            ResourceCloser.close(zos, null);
+        }
+
+        List<String> paths = artifactManagementService.storeArchive("storage0",
+                                                                    "releases",
+                                                                    new ZipEntryInputStream(new ByteArrayInputStream(baos.toByteArray())));
+
+        assertEquals("Incorrect number of stored files!", 3, paths.size());
+        assertTrue("Failed to store the artifact!", new File(REPOSITORY_BASEDIR, artifactPath).exists());
+        assertTrue("Failed to store the checksum!", new File(REPOSITORY_BASEDIR, artifactPath + ".sha1").exists());
+        assertTrue("Failed to store the POM!", new File(REPOSITORY_BASEDIR, pomPath).exists());
+    }
+
+    @Test
+    public void testStoreArchiveWithInvalidEntry()
+            throws NoSuchAlgorithmException,
+                   XmlPullParserException,
+                   IOException
+    {
+        File archiveBasedir = new File("target/strongbox-archive");
+        Artifact artifact = generateArtifact(archiveBasedir.getAbsolutePath(),
+                                             "org.carlspring.strongbox.archive:strongbox-invalid-archive:1.0:jar");
+
+        String artifactPath = ArtifactUtils.convertArtifactToPath(artifact);
+        String pomPath = artifactPath.substring(0, artifactPath.lastIndexOf('.')) + ".pom";
+
+        // Snapshots can't be deployed to a release repository
+        String snapshotPath = "org/carlspring/strongbox/archive/strongbox-invalid-archive/1.1-SNAPSHOT/" +
+                              "strongbox-invalid-archive-1.1-SNAPSHOT.jar";
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(baos);
+        try
+        {
+            zos.putNextEntry(new ZipEntry(artifactPath));
+            zos.write(Files.readAllBytes(new File(archiveBasedir, artifactPath).toPath()));
+            zos.closeEntry();
+
+            zos.putNextEntry(new ZipEntry(snapshotPath));
+            zos.write(Files.readAllBytes(new File(archiveBasedir, artifactPath).toPath()));
+            zos.closeEntry();
+
+            zos.putNextEntry(new ZipEntry(pomPath));
+            zos.write(Files.readAllBytes(new File(archiveBasedir, pomPath).toPath()));
+            zos.closeEntry();
+        }
+        finally
+        {
+            ResourceCloser.close(zos, null);
+        }
+
+        try
+        {
+            artifactManagementService.storeArchive("storage0",
+                                                   "releases",
+                                                   new ZipEntryInputStream(new ByteArrayInputStream(baos.toByteArray())));
+
+            fail("Failed to reject an archive with an invalid entry.");
+        }
+        catch (ArchiveStorageException e)
+        {
+            assertEquals("Incorrect failed path!", snapshotPath, e.getPath());
+            assertEquals("Incorrect number of stored files!", 1, e.getStoredPaths().size());
+            assertEquals("Incorrect stored file!", artifactPath, e.getStoredPaths().get(0));
+        }
+
+        assertTrue("Failed to store the entry before the invalid one!", new File(REPOSITORY_BASEDIR, artifactPath).exists());
+        assertFalse("Stored the invalid entry!", new File(REPOSITORY_BASEDIR, snapshotPath).exists());
+        assertFalse("Stored the entry after the invalid one!", new File(REPOSITORY_BASEDIR, pomPath).exists());
+    }
+
+    @Test
+    public void testChunkedUpload()
+            throws NoSuchAlgorithmException,
+                   XmlPullParserException,
+                   IOException
+    {
+        File uploadBasedir = new File("target/strongbox-chunked-upload");
+        Artifact artifact = generateArtifact(uploadBasedir.getAbsolutePath(),
+                                             "org.carlspring.strongbox.upload:strongbox-chunked:1.0:jar");
+
+        String artifactPath = ArtifactUtils.convertArtifactToPath(artifact);
+        byte[] bytes = Files.readAllBytes(new File(uploadBasedir, artifactPath).toPath());
+        int half = bytes.length / 2;
+
+        assertEquals("Incorrect number of received bytes!",
+                     half,
+                     artifactManagementService.storeChunk("storage0",
+                                                          "releases",
+                                                          artifactPath,
+                                                          new ByteArrayInputStream(bytes, 0, half),
+                                                          0,
+                                                          half,
+                                                          bytes.length));
+
+        // The connection drops in the middle of the second chunk
+        try
+        {
+            artifactManagementService.storeChunk("storage0",
+                                                 "releases",
+                                                 artifactPath,
+                                                 new SequenceInputStream(new ByteArrayInputStream(bytes, half, 10),
+                                                                         new BrokenInputStream()),
+                                                 half,
+                                                 bytes.length - half,
+                                                 bytes.length);
+
+            fail("Failed to reject an incomplete chunk.");
+        }
+        catch (IOException e)
+        {
+            // This is the expected correct behavior
+        }
+
+        assertEquals("Failed to roll back the incomplete chunk!",
+                     half,
+                     artifactManagementService.getUploadedLength("storage0", "releases", artifactPath));
+
+        try
+        {
+            artifactManagementService.storeChunk("storage0",
+                                                 "releases",
+                                                 artifactPath,
+                                                 new ByteArrayInputStream(bytes, half + 10, bytes.length - half - 10),
+                                                 half + 10,
+                                                 bytes.length - half - 10,
+                                                 bytes.length);
+
+            fail("Failed to reject a chunk with the wrong offset.");
+        }
+        catch (UploadOffsetMismatchException e)
+        {
+            assertEquals("Incorrect number of received bytes!", half, e.getLength());
+        }
+
+        artifactManagementService.storeChunk("storage0",
+                                             "releases",
+                                             artifactPath,
+                                             new ByteArrayInputStream(bytes, half, bytes.length - half),
+                                             half,
+                                             bytes.length - half,
+                                             bytes.length);
+
+        File artifactFile = new File(REPOSITORY_BASEDIR, artifactPath);
+
+        assertTrue("Failed to store the uploaded file!", artifactFile.exists());
+        assertArrayEquals("Incorrect contents of the uploaded file!", bytes, Files.readAllBytes(artifactFile.toPath()));
+        assertEquals("Failed to close the upload!",
+                     0,
+                     artifactManagementService.getUploadedLength("storage0", "releases", artifactPath));
+
+        // The checksum calculated from the chunks is validated, just like after a regular upload
+        String sha1 = MessageDigestUtils.readChecksumFile(new File(uploadBasedir, artifactPath + ".sha1").getAbsolutePath());
+        artifactManagementService.store("storage0",
+                                        "releases",
+                                        artifactPath + ".sha1",
+                                        new ByteArrayInputStream(sha1.getBytes()));
+    }
+
     @Test
     public void testArtifactResolutionFromGroup()
             throws IOException, NoSuchAlgorithmException
@@ -314,4 +584,69 @@ public class ArtifactManagementServiceImplTest
                    new File(repositoryDir, artifactPath2).exists());
     }
 
+    private static class BrokenInputStream
+            extends InputStream
+    {
+
+        @Override
+        public int read()
+                throws IOException
+        {
+            throw new IOException("Connection reset");
+        }
+
+    }
+
+    @Test
+    public void testResumeChunkedUploadAfterRestart()
+            throws NoSuchAlgorithmException,
+                   XmlPullParserException,
+                   IOException
+    {
+        File uploadBasedir = new File("target/strongbox-chunked-upload");
+        Artifact artifact = generateArtifact(uploadBasedir.getAbsolutePath(),
+                                             "org.carlspring.strongbox.upload:strongbox-resumed:1.0:jar");
+
+        String artifactPath = ArtifactUtils.convertArtifactToPath(artifact);
+        byte[] bytes = Files.readAllBytes(new File(uploadBasedir, artifactPath).toPath());
+        int half = bytes.length / 2;
+
+        artifactManagementService.storeChunk("storage0",
+                                             "releases",
+                                             artifactPath,
+                                             new ByteArrayInputStream(bytes, 0, half),
+                                             0,
+                                             half,
+                                             bytes.length);
+
+        UploadSession session = uploadSessionManager.getSession("storage0", "releases", artifactPath);
+
+        assertTrue("Failed to save the session!",
+                   UploadSessionManager.getSessionFile(session.getArtifactFile()).exists());
+
+        // As if the session had been loaded after a restart, without its digests
+        session.setDigestEngine(null);
+
+        artifactManagementService.storeChunk("storage0",
+                                             "releases",
+                                             artifactPath,
+                                             new ByteArrayInputStream(bytes, half, bytes.length - half),
+                                             half,
+                                             bytes.length - half,
+                                             bytes.length);
+
+        File artifactFile = new File(REPOSITORY_BASEDIR, artifactPath);
+
+        assertArrayEquals("Incorrect contents of the uploaded file!", bytes, Files.readAllBytes(artifactFile.toPath()));
+        assertFalse("Failed to remove the session file!",
+                    UploadSessionManager.getSessionFile(session.getArtifactFile()).exists());
+
+        // The digests recalculated from the temporary file are validated, just like after a regular upload
+        String sha1 = MessageDigestUtils.readChecksumFile(new File(uploadBasedir, artifactPath + ".sha1").getAbsolutePath());
+        artifactManagementService.store("storage0",
+                                        "releases",
+                                        artifactPath + ".sha1",
+                                        new ByteArrayInputStream(sha1.getBytes()));
+    }
+
 }
@@ -0,0 +1,358 @@
+package org.carlspring.strongbox.storage.indexing;
+
+import org.apache.maven.artifact.Artifact;
+import org.carlspring.strongbox.configuration.Configuration;
+import org.carlspring.strongbox.configuration.ConfigurationManager;
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.repository.Repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mtodorov
+ */
+public class IndexingQueueTest
+{
+
+    private static final File STORAGE_BASEDIR = new File("target/strongbox-indexing-queue/storage0");
+
+    private static final File JOURNAL_FILE = new File("target/strongbox-indexing-queue/indexing-queue.journal");
+
+    private static final File DEAD_LETTER_FILE = new File("target/strongbox-indexing-queue/indexing-queue.failed");
+
+    private static final String PATH_1 = "org/carlspring/strongbox/queued/1.0/queued-1.0.jar";
+
+    private static final String PATH_2 = "org/carlspring/strongbox/queued/1.1/queued-1.1.jar";
+
+    private RecordingRepositoryIndexer indexer;
+
+    private IndexingQueue queue;
+
+
+    @Before
+    public void setUp()
+            throws IOException
+    {
+        for (String path : new String[]{ PATH_1, PATH_2 })
+        {
+            File file = new File(STORAGE_BASEDIR, "releases/" + path);
+            //noinspection ResultOfMethodCallIgnored
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), "jar".getBytes());
+        }
+
+        Files.deleteIfExists(JOURNAL_FILE.toPath());
+        Files.deleteIfExists(DEAD_LETTER_FILE.toPath());
+
+        indexer = new RecordingRepositoryIndexer();
+        queue = createQueue();
+    }
+
+    @After
+    public void tearDown()
+    {
+        queue.shutdown();
+    }
+
+    @Test
+    public void testCoalescing()
+    {
+        queue.pause();
+
+        queue.add("storage0", "releases", PATH_1);
+        queue.add("storage0", "releases", Arrays.asList(PATH_1, PATH_2));
+
+        assertEquals("Incorrect depth!", 2, queue.getDepth());
+        assertEquals("Incorrect number of coalesced artifacts!", 1, queue.getCoalescedCount());
+        assertTrue("Failed to index the artifacts in the background!", indexer.getBatches().isEmpty());
+
+        assertEquals("Incorrect number of drained artifacts!", 2, queue.drain());
+        assertEquals("Failed to index the artifacts in a single batch!", 1, indexer.getBatches().size());
+        assertEquals("Incorrect batch!", 2, indexer.getBatches().get(0).size());
+        assertEquals("Incorrect depth!", 0, queue.getDepth());
+        assertEquals("Incorrect lag!", 0, queue.getLag());
+    }
+
+    @Test
+    public void testRemove()
+    {
+        queue.pause();
+
+        queue.add("storage0", "releases", Arrays.asList(PATH_1, PATH_2));
+        queue.remove("storage0", "releases", PATH_1);
+
+        assertEquals("Incorrect number of drained artifacts!", 1, queue.drain());
+        assertEquals("Failed to remove the artifact from the queue!", 1, indexer.getBatches().get(0).size());
+    }
+
+    @Test
+    public void testJournalReplay()
+    {
+        queue.pause();
+
+        queue.add("storage0", "releases", Arrays.asList(PATH_1, PATH_2));
+        queue.shutdown();
+
+        // The artifacts which weren't indexed before the restart are queued again
+        queue = createQueue();
+        queue.pause();
+
+        assertEquals("Failed to replay the journal!", 2, queue.getDepth());
+        assertEquals("Incorrect number of drained artifacts!", 2, queue.drain());
+
+        queue.shutdown();
+
+        queue = createQueue();
+
+        assertEquals("Failed to remove the indexed artifacts from the journal!", 0, queue.getDepth());
+    }
+
+    @Test
+    public void testJournalTruncation()
+            throws IOException
+    {
+        queue.pause();
+
+        queue.add("storage0", "releases", Arrays.asList(PATH_1, PATH_2));
+
+        assertEquals("Failed to journal the artifacts!", 2, Files.readAllLines(JOURNAL_FILE.toPath()).size());
+
+        final Object fileKey = Files.readAttributes(JOURNAL_FILE.toPath(), BasicFileAttributes.class).fileKey();
+
+        assertEquals("Incorrect number of drained artifacts!", 2, queue.drain());
+        assertEquals("Failed to truncate the journal!", 0, JOURNAL_FILE.length());
+        assertEquals("Rewrote the journal instead of truncating it!",
+                     fileKey,
+                     Files.readAttributes(JOURNAL_FILE.toPath(), BasicFileAttributes.class).fileKey());
+
+        queue.add("storage0", "releases", PATH_1);
+
+        assertEquals("Failed to journal the artifact after the truncation!",
+                     1,
+                     Files.readAllLines(JOURNAL_FILE.toPath()).size());
+    }
+
+    @Test
+    public void testConcurrentJournaling()
+            throws InterruptedException, IOException
+    {
+        queue.pause();
+
+        final int threads = 8;
+        final int paths = 50;
+
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++)
+        {
+            final int thread = i;
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for (int j = 0; j < paths; j++)
+                        {
+                            queue.add("storage0", "releases", "org/carlspring/strongbox/queued/" + thread + "/" + j +
+                                                              "/queued.jar");
+                        }
+                    }
+                    finally
+                    {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        assertTrue("Failed to queue the artifacts in time!", latch.await(30, TimeUnit.SECONDS));
+        assertEquals("Incorrect depth!", threads * paths, queue.getDepth());
+        assertEquals("Failed to journal all the artifacts!",
+                     threads * paths,
+                     Files.readAllLines(JOURNAL_FILE.toPath()).size());
+
+        queue.shutdown();
+
+        queue = createQueue();
+        queue.pause();
+
+        assertEquals("Failed to replay the journal!", threads * paths, queue.getDepth());
+    }
+
+    @Test
+    public void testBackgroundIndexing()
+            throws InterruptedException
+    {
+        queue.add("storage0", "releases", PATH_1);
+
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (queue.getIndexedCount() == 0 && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10L);
+        }
+
+        assertEquals("Failed to index the artifact in the background!", 1, queue.getIndexedCount());
+    }
+
+    @Test
+    public void testRetryingFailedBatches()
+            throws InterruptedException
+    {
+        queue.pause();
+        queue.setRetryDelay(200L);
+
+        indexer.setFailures(1);
+
+        queue.add("storage0", "releases", Arrays.asList(PATH_1, PATH_2));
+
+        assertEquals("Incorrect number of drained artifacts!", 2, queue.drain());
+        assertEquals("Incorrect number of failed artifacts!", 2, queue.getFailedCount());
+        assertEquals("Failed to queue the failed artifacts again!", 2, queue.getDepth());
+
+        // The repository is backing off
+        assertEquals("Retried the failed artifacts right away!", 0, queue.drain());
+
+        Thread.sleep(300L);
+
+        assertEquals("Incorrect number of drained artifacts!", 2, queue.drain());
+        assertEquals("Failed to retry the artifacts!", 1, indexer.getBatches().size());
+        assertEquals("Incorrect batch!", 2, indexer.getBatches().get(0).size());
+        assertEquals("Incorrect depth!", 0, queue.getDepth());
+        assertEquals("Moved the artifacts to the dead letter file!", 0, queue.getDeadLetterCount());
+    }
+
+    @Test
+    public void testDeadLetters()
+            throws IOException
+    {
+        queue.pause();
+        queue.setMaxAttempts(2);
+        queue.setRetryDelay(0L);
+
+        indexer.addFailingFileName(new File(PATH_1).getName());
+
+        queue.add("storage0", "releases", Arrays.asList(PATH_1, PATH_2));
+
+        // Two attempts of the batch, after which the artifacts are attempted one by one
+        assertEquals("Incorrect number of drained artifacts!", 4, queue.drain());
+        assertEquals("Incorrect depth!", 0, queue.getDepth());
+
+        assertEquals("Failed to index the rest of the batch!", 1, indexer.getBatches().size());
+        assertEquals("Failed to index the rest of the batch!",
+                     new File(PATH_2).getName(),
+                     indexer.getBatches().get(0).keySet().iterator().next().getName());
+
+        assertEquals("Incorrect number of dead letters!", 1, queue.getDeadLetterCount());
+
+        final List<String> deadLetters = Files.readAllLines(DEAD_LETTER_FILE.toPath());
+        assertEquals("Incorrect number of dead letters!", 1, deadLetters.size());
+        assertTrue("Incorrect dead letter!", deadLetters.get(0).endsWith("\tstorage0\treleases\t" + PATH_1));
+
+        queue.shutdown();
+
+        queue = createQueue();
+
+        assertEquals("Failed to remove the dead letters from the journal!", 0, queue.getDepth());
+    }
+
+    private IndexingQueue createQueue()
+    {
+        Storage storage = new Storage("storage0", STORAGE_BASEDIR.getAbsolutePath());
+        Repository repository = new Repository("releases");
+        repository.setBasedir(new File(STORAGE_BASEDIR, "releases").getAbsolutePath());
+        storage.addOrUpdateRepository(repository);
+
+        Configuration configuration = new Configuration();
+        configuration.addStorage(storage);
+
+        ConfigurationManager configurationManager = new ConfigurationManager();
+        //noinspection unchecked
+        configurationManager.setConfiguration(configuration);
+
+        RepositoryIndexManager repositoryIndexManager = new RepositoryIndexManager();
+        repositoryIndexManager.addRepositoryIndex("storage0:releases", indexer);
+
+        IndexingQueue indexingQueue = new IndexingQueue();
+        indexingQueue.setAsynchronous(true);
+        indexingQueue.setJournalFile(JOURNAL_FILE);
+        indexingQueue.setDeadLetterFile(DEAD_LETTER_FILE);
+        indexingQueue.setConfigurationManager(configurationManager);
+        indexingQueue.setRepositoryIndexManager(repositoryIndexManager);
+        indexingQueue.initialize();
+
+        return indexingQueue;
+    }
+
+    private static class RecordingRepositoryIndexer
+            extends RepositoryIndexer
+    {
+
+        private final List<Map<File, Artifact>> batches = new ArrayList<>();
+
+        private final Set<String> failingFileNames = new HashSet<>();
+
+        /**
+         * The number of the following batches which should fail.
+         */
+        private int failures;
+
+
+        @Override
+        public synchronized void addArtifactsToIndex(String repositoryId,
+                                                     Map<File, Artifact> artifacts)
+                throws IOException
+        {
+            if (failures > 0)
+            {
+                failures--;
+
+                throw new IOException("Failed to index the artifacts.");
+            }
+
+            for (File artifactFile : artifacts.keySet())
+            {
+                if (failingFileNames.contains(artifactFile.getName()))
+                {
+                    throw new IOException("Failed to index " + artifactFile.getName() + ".");
+                }
+            }
+
+            batches.add(artifacts);
+        }
+
+        public synchronized void setFailures(int failures)
+        {
+            this.failures = failures;
+        }
+
+        public synchronized void addFailingFileName(String fileName)
+        {
+            failingFileNames.add(fileName);
+        }
+
+        public synchronized List<Map<File, Artifact>> getBatches()
+        {
+            return new ArrayList<>(batches);
+        }
+
+    }
+
+}
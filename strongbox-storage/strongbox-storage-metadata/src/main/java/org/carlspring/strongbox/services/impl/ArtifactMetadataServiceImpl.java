@@ -133,6 +133,7 @@ public class ArtifactMetadataServiceImpl
         addVersion(metadata, version);
 
         metadataManager.storeMetadata(artifactBasePath, version, metadata, metadataType);
+        metadataManager.invalidateCaches(repository, artifactBasePath);
     }
 
     @Override
@@ -188,6 +189,7 @@ public class ArtifactMetadataServiceImpl
                                       snapshot,
                                       snapshotMetadata,
                                       MetadataType.SNAPSHOT_VERSION_LEVEL);
+        metadataManager.invalidateCaches(repository, artifactBasePath);
     }
 
     @Override
@@ -249,6 +251,7 @@ public class ArtifactMetadataServiceImpl
         versioning.removeVersion(version);
 
         metadataManager.storeMetadata(artifactBasePath, version, metadata, metadataType);
+        metadataManager.invalidateCaches(repository, artifactBasePath);
     }
 
     @Override
@@ -300,6 +303,7 @@ public class ArtifactMetadataServiceImpl
                                       snapshot,
                                       snapshotMetadata,
                                       MetadataType.SNAPSHOT_VERSION_LEVEL);
+        metadataManager.invalidateCaches(repository, artifactBasePath);
     }
 
     @Override
@@ -9,12 +9,16 @@ import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Writer;
 import org.carlspring.maven.commons.util.ArtifactUtils;
 import org.carlspring.strongbox.io.MultipleDigestOutputStream;
 import org.carlspring.strongbox.resource.ResourceCloser;
+import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
 import org.carlspring.strongbox.services.BasicRepositoryService;
+import org.carlspring.strongbox.storage.checksum.ChecksumCache;
 import org.carlspring.strongbox.storage.metadata.comparators.SnapshotVersionComparator;
 import org.carlspring.strongbox.storage.metadata.comparators.VersionComparator;
 import org.carlspring.strongbox.storage.metadata.versions.MetadataVersion;
 import org.carlspring.strongbox.storage.repository.Repository;
 import org.carlspring.strongbox.storage.repository.RepositoryPolicyEnum;
+import org.carlspring.strongbox.storage.resolvers.NegativeLookupCache;
+import org.carlspring.strongbox.util.GzipFileUtils;
 import org.codehaus.plexus.util.WriterFactory;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.slf4j.Logger;
@@ -23,8 +27,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
 import java.util.List;
@@ -44,6 +50,12 @@ public class MetadataManager
     @Autowired
     private BasicRepositoryService basicRepositoryService;
 
+    @Autowired
+    private NegativeLookupCache negativeLookupCache;
+
+    @Autowired
+    private ChecksumCache checksumCache;
+
 
     public MetadataManager()
     {
@@ -137,25 +149,41 @@ public class MetadataManager
     {
         File metadataFile = MetadataHelper.getMetadataFile(metadataBasePath, version, metadataType);
 
-        OutputStream os = null;
+        MultipleDigestOutputStream os = null;
         Writer writer = null;
 
         try
         {
             lock.lock();
 
-            if (metadataFile.exists())
+            // The metadata is written to a temporary file, which then atomically replaces the metadata file,
+            // so that the clients never see missing, or partially written metadata
+            final File tempFile = File.createTempFile("." + metadataFile.getName() + ".",
+                                                      ".tmp",
+                                                      metadataFile.getParentFile());
+            try
             {
-                metadataFile.delete();
-            }
+                os = new MultipleDigestOutputStream(metadataFile.toPath(),
+                                                    new FileOutputStream(tempFile),
+                                                    MultipleDigestOutputStream.DEFAULT_ALGORITHMS,
+                                                    false);
 
-            os = new MultipleDigestOutputStream(metadataFile, new FileOutputStream(metadataFile));
+                writer = WriterFactory.newXmlWriter(os);
+                MetadataXpp3Writer mappingWriter = new MetadataXpp3Writer();
+                mappingWriter.write(writer, metadata);
 
-            writer = WriterFactory.newXmlWriter(os);
-            MetadataXpp3Writer mappingWriter = new MetadataXpp3Writer();
-            mappingWriter.write(writer, metadata);
+                writer.close();
 
-            os.flush();
+                Files.move(tempFile.toPath(), metadataFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+
+                // The checksums are only replaced, once the metadata they're for has been replaced
+                os.writeChecksums();
+            }
+            finally
+            {
+                Files.deleteIfExists(tempFile.toPath());
+            }
         }
         finally
         {
@@ -164,6 +192,33 @@ public class MetadataManager
             ResourceCloser.close(writer, logger);
             ResourceCloser.close(os, logger);
         }
+
+        compressMetadata(metadataFile);
+    }
+
+    /**
+     * Creates the compressed sibling of the metadata file (and its checksums), which is served
+     * to the clients accepting the gzip encoding.
+     */
+    private void compressMetadata(File metadataFile)
+    {
+        try
+        {
+            GzipFileUtils.compress(metadataFile);
+            for (EncryptionAlgorithmsEnum algorithm : EncryptionAlgorithmsEnum.values())
+            {
+                final File checksumFile = new File(metadataFile.getPath() + algorithm.getExtension());
+                if (checksumFile.isFile())
+                {
+                    GzipFileUtils.compress(checksumFile);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            // The compressed file is regenerated upon request, if it's stale
+            logger.warn("Failed to compress " + metadataFile.getAbsolutePath() + "!", e);
+        }
     }
 
     /**
@@ -271,7 +326,11 @@ public class MetadataManager
             if (!request.getPlugins().isEmpty())
             {
                 generateMavenPluginMetadata(request, artifact);
+
+                invalidateCaches(repository, request.getArtifactBasePath().getParent());
             }
+
+            invalidateCaches(repository, request.getArtifactBasePath());
         }
         else
         {
@@ -373,6 +432,8 @@ public class MetadataManager
                 }
 
                 storeMetadata(artifactBasePath, artifact.getVersion(), metadata, MetadataType.ARTIFACT_ROOT_LEVEL);
+
+                invalidateCaches(repository, artifactBasePath);
             }
             catch (FileNotFoundException e)
             {
@@ -387,4 +448,37 @@ public class MetadataManager
         }
     }
 
+    /**
+     * The metadata is written directly to the file system, so the misses and the cached checksums
+     * of the metadata files (and any other files below the base path) have to be invalidated
+     * for it to become visible.
+     */
+    public void invalidateCaches(Repository repository, Path metadataBasePath)
+    {
+        final Path basedir = Paths.get(repository.getBasedir()).toAbsolutePath().normalize();
+        final Path basePath = metadataBasePath.toAbsolutePath().normalize();
+
+        if (basePath.startsWith(basedir) && !basePath.equals(basedir))
+        {
+            final String path = basedir.relativize(basePath).toString().replace(File.separatorChar, '/');
+
+            negativeLookupCache.invalidateDirectory(path);
+
+            if (repository.getStorage() != null)
+            {
+                checksumCache.invalidate(repository.getStorage().getId(), repository.getId(), path);
+            }
+            else
+            {
+                checksumCache.clear();
+            }
+        }
+        else
+        {
+            // It's not clear which paths have changed, so forget all the misses and the cached checksums
+            negativeLookupCache.clear();
+            checksumCache.clear();
+        }
+    }
+
 }
@@ -1,13 +1,30 @@
 package org.carlspring.strongbox.rest;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -15,27 +32,47 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.repository.metadata.Metadata;
 import org.carlspring.maven.commons.util.ArtifactUtils;
 import org.carlspring.strongbox.configuration.ConfigurationManager;
 import org.carlspring.strongbox.http.range.ByteRange;
 import org.carlspring.strongbox.http.range.ByteRangeHeaderParser;
+import org.carlspring.strongbox.http.range.ContentRange;
+import org.carlspring.strongbox.io.ArchiveEntryInputStream;
 import org.carlspring.strongbox.io.ArtifactInputStream;
+import org.carlspring.strongbox.io.FileChannelStreamingOutput;
+import org.carlspring.strongbox.io.MultipleDigestInputStream;
+import org.carlspring.strongbox.io.MultipartByteRangesStreamingOutput;
+import org.carlspring.strongbox.io.TarEntryInputStream;
+import org.carlspring.strongbox.io.ZipEntryInputStream;
+import org.carlspring.strongbox.resource.ResourceCloser;
+import org.carlspring.strongbox.security.encryption.EncryptionAlgorithmsEnum;
 import org.carlspring.strongbox.security.jaas.authentication.AuthenticationException;
 import org.carlspring.strongbox.services.ArtifactManagementService;
+import org.carlspring.strongbox.services.ArtifactMetadataService;
 import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.checksum.ChecksumCache;
 import org.carlspring.strongbox.storage.metadata.MetadataManager;
 import org.carlspring.strongbox.storage.metadata.MetadataType;
 import org.carlspring.strongbox.storage.repository.Repository;
+import org.carlspring.strongbox.storage.resolvers.ArchiveStorageException;
 import org.carlspring.strongbox.storage.resolvers.ArtifactResolutionException;
 import org.carlspring.strongbox.storage.resolvers.ArtifactStorageException;
-import org.carlspring.strongbox.util.MessageDigestUtils;
+import org.carlspring.strongbox.storage.upload.UploadOffsetMismatchException;
+import org.carlspring.strongbox.util.ArtifactFileUtils;
+import org.carlspring.strongbox.util.GzipFileUtils;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,15 +90,41 @@ public class ArtifactRestlet
 
     private static final Logger logger = LoggerFactory.getLogger(ArtifactRestlet.class);
 
+    /**
+     * How long (in seconds) the clients should wait, before retrying a download which was rejected.
+     */
+    private static final int DOWNLOAD_RETRY_AFTER_SECONDS = 5;
+
+    private static final int UPLOAD_RETRY_AFTER_SECONDS = 5;
+
+    /**
+     * The Content-Range header of a chunk of a resumable upload ("bytes 0-1048575/4294967296", or
+     * "bytes 0-1048575/*", if the length of the file isn't known yet), or of a query of how much
+     * of the file has been received so far ("bytes *&#47;4294967296").
+     */
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes (\\*|(\\d+)-(\\d+))/(\\*|\\d+)");
+
     @Autowired
     private ArtifactManagementService artifactManagementService;
     
     @Autowired
     private MetadataManager metadataManager;
+
+    @Autowired
+    private ArtifactMetadataService artifactMetadataService;
     
     @Autowired
     private ConfigurationManager configurationManager;
 
+    @Autowired
+    private ChecksumCache checksumCache;
+
+    @Autowired
+    private DownloadExecutor downloadExecutor;
+
+    @Autowired
+    private UploadAdmissionController uploadAdmissionController;
+
     @PUT
     @Path("{storageId}/{repositoryId}/{path:.*}")
     public Response upload(@PathParam("storageId") String storageId,
@@ -76,8 +139,25 @@ public class ArtifactRestlet
     {
         handleAuthentication(storageId, repositoryId, path, headers, request);
 
+        final UploadAdmissionController.Admission admission;
         try
         {
+            // Nothing is read from the request, until the upload has been admitted
+            admission = admitUpload(storageId, repositoryId);
+        }
+        catch (RejectedExecutionException e)
+        {
+            return getUploadRejectedResponse();
+        }
+
+        try
+        {
+            final String contentRange = headers.getHeaderString("Content-Range");
+            if (contentRange != null)
+            {
+                return uploadChunk(storageId, repositoryId, path, contentRange, is);
+            }
+
             artifactManagementService.store(storageId, repositoryId, path, is);
 
             return Response.ok().build();
@@ -90,15 +170,289 @@ public class ArtifactRestlet
             // return Response.status(Response.Status.FORBIDDEN).entity("Access denied!").build();
             return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
         }
+        finally
+        {
+            admission.release();
+        }
+    }
+
+    private UploadAdmissionController.Admission admitUpload(String storageId,
+                                                            String repositoryId)
+            throws RejectedExecutionException
+    {
+        final Storage storage = configurationManager.getConfiguration().getStorage(storageId);
+        final Repository repository = storage != null ? storage.getRepository(repositoryId) : null;
+        if (repository == null)
+        {
+            // The upload is rejected by the validation
+            return new UploadAdmissionController.Admission(Collections.<UploadLimiter>emptyList());
+        }
+
+        return uploadAdmissionController.admit(storage, repository);
+    }
+
+    private Response getUploadRejectedResponse()
+    {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                       .header("Retry-After", UPLOAD_RETRY_AFTER_SECONDS)
+                       .entity("Too many uploads in progress, please retry later.")
+                       .build();
+    }
+
+    /**
+     * Receives a chunk of a resumable upload. The chunks have to be sent in order, starting from the beginning
+     * of the file. Until the last chunk has been received, the response is 202 (Accepted) and its Range header
+     * specifies how much of the file has been received. If a chunk doesn't start where the received part ends,
+     * such as after the connection dropped, the response is 416 (Requested Range Not Satisfiable) and
+     * the client should resume from the end of the range in the Range header (if any).
+     */
+    private Response uploadChunk(String storageId,
+                                 String repositoryId,
+                                 String path,
+                                 String contentRange,
+                                 InputStream is)
+    {
+        final Matcher matcher = CONTENT_RANGE_PATTERN.matcher(contentRange.trim());
+        if (!matcher.matches())
+        {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid Content-Range header!").build();
+        }
+
+        final long totalLength = "*".equals(matcher.group(4)) ? -1 : Long.parseLong(matcher.group(4));
+        if ("*".equals(matcher.group(1)))
+        {
+            return getUploadResponse(artifactManagementService.getUploadedLength(storageId, repositoryId, path),
+                                     totalLength);
+        }
+
+        final long start = Long.parseLong(matcher.group(2));
+        final long end = Long.parseLong(matcher.group(3));
+        if (end < start)
+        {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid Content-Range header!").build();
+        }
+
+        try
+        {
+            final long length = artifactManagementService.storeChunk(storageId,
+                                                                     repositoryId,
+                                                                     path,
+                                                                     is,
+                                                                     start,
+                                                                     end - start + 1,
+                                                                     totalLength);
+
+            return getUploadResponse(length, totalLength);
+        }
+        catch (UploadOffsetMismatchException e)
+        {
+            logger.debug(e.getMessage());
+
+            Response.ResponseBuilder response = Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                                                        .entity(e.getMessage());
+            if (e.getLength() > 0)
+            {
+                response.header("Range", "bytes=0-" + (e.getLength() - 1));
+            }
+
+            return response.build();
+        }
+        catch (IOException e)
+        {
+            logger.error(e.getMessage(), e);
+
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+    }
+
+    private Response getUploadResponse(long length, long totalLength)
+    {
+        if (totalLength != -1 && length == totalLength)
+        {
+            return Response.ok().build();
+        }
+
+        Response.ResponseBuilder response = Response.status(Response.Status.ACCEPTED);
+        if (length > 0)
+        {
+            response.header("Range", "bytes=0-" + (length - 1));
+        }
+
+        return response.build();
+    }
+
+    /**
+     * Deploys all the files of a zip, or a (gzipped) tar archive, which is laid out like the repository,
+     * such as all the artifacts, POM-s and checksums of a multi-module release.
+     *
+     * The files are streamed from the archive to the repository one by one. The artifacts are indexed
+     * and the metadata of their artifact directories is rebuilt only once, after all of them have been stored.
+     *
+     * If a file can't be stored, the files before it remain deployed: their metadata is rebuilt all the same
+     * and they are listed after the error message of the response (400).
+     *
+     * @return The paths of the deployed files (one per line).
+     */
+    @POST
+    @Path("deploy/{storageId}/{repositoryId}")
+    @Consumes({ "application/zip", "application/x-tar", "application/gzip", "application/x-gzip" })
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response deployArchive(@PathParam("storageId") String storageId,
+                                  @PathParam("repositoryId") String repositoryId,
+                                  @Context HttpHeaders headers,
+                                  @Context HttpServletRequest request,
+                                  InputStream is)
+            throws IOException,
+                   AuthenticationException
+    {
+        handleAuthentication(storageId, repositoryId, "", headers, request);
+
+        final UploadAdmissionController.Admission admission;
+        try
+        {
+            admission = admitUpload(storageId, repositoryId);
+        }
+        catch (RejectedExecutionException e)
+        {
+            return getUploadRejectedResponse();
+        }
+
+        try
+        {
+            return deployArchive(storageId, repositoryId, headers.getMediaType(), is);
+        }
+        finally
+        {
+            admission.release();
+        }
+    }
+
+    private Response deployArchive(String storageId,
+                                   String repositoryId,
+                                   MediaType mediaType,
+                                   InputStream is)
+            throws IOException
+    {
+        ArchiveEntryInputStream archive;
+        if (mediaType != null && "zip".equals(mediaType.getSubtype()))
+        {
+            archive = new ZipEntryInputStream(is);
+        }
+        else if (mediaType != null && mediaType.getSubtype().endsWith("gzip"))
+        {
+            archive = new TarEntryInputStream(new GZIPInputStream(is));
+        }
+        else
+        {
+            archive = new TarEntryInputStream(is);
+        }
+
+        final List<String> paths;
+        try
+        {
+            paths = artifactManagementService.storeArchive(storageId, repositoryId, archive);
+        }
+        catch (ArchiveStorageException e)
+        {
+            logger.error(e.getMessage(), e);
+
+            // The files before the one which failed have been stored, so their metadata has to be rebuilt as well
+            final Response response = rebuildMetadata(storageId, repositoryId, e.getStoredPaths());
+            if (response != null)
+            {
+                return response;
+            }
+
+            final StringBuilder entity = new StringBuilder(e.getMessage()).append('\n');
+            if (!e.getStoredPaths().isEmpty())
+            {
+                entity.append("The following files have been stored:\n");
+                appendPaths(entity, e.getStoredPaths());
+            }
+
+            return Response.status(Response.Status.BAD_REQUEST).entity(entity.toString()).build();
+        }
+        catch (IOException e)
+        {
+            logger.error(e.getMessage(), e);
+
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+
+        final Response response = rebuildMetadata(storageId, repositoryId, paths);
+        if (response != null)
+        {
+            return response;
+        }
+
+        return Response.ok(appendPaths(new StringBuilder(), paths).toString()).build();
+    }
+
+    /**
+     * Rebuilds the metadata of the artifact directories of the stored files.
+     *
+     * @return The error response, or null, if the metadata has been rebuilt.
+     */
+    private Response rebuildMetadata(String storageId,
+                                     String repositoryId,
+                                     List<String> paths)
+    {
+        try
+        {
+            for (String basePath : getArtifactBasePaths(paths))
+            {
+                artifactMetadataService.rebuildMetadata(storageId, repositoryId, basePath);
+            }
+
+            return null;
+        }
+        catch (IOException | XmlPullParserException | NoSuchAlgorithmException e)
+        {
+            logger.error(e.getMessage(), e);
+
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(e.getMessage()).build();
+        }
+    }
+
+    private static StringBuilder appendPaths(StringBuilder entity, List<String> paths)
+    {
+        for (String path : paths)
+        {
+            entity.append(path).append('\n');
+        }
+
+        return entity;
+    }
+
+    /**
+     * Returns the (groupId/artifactId) directories of the artifacts at the specified paths.
+     */
+    private Set<String> getArtifactBasePaths(List<String> paths)
+    {
+        Set<String> basePaths = new LinkedHashSet<>();
+        for (String path : paths)
+        {
+            if (ArtifactFileUtils.isArtifactFile(path))
+            {
+                final Artifact artifact = ArtifactUtils.convertPathToArtifact(path);
+
+                basePaths.add(artifact.getGroupId().replace('.', '/') + "/" + artifact.getArtifactId());
+            }
+        }
+
+        return basePaths;
     }
 
     @GET
     @Path("{storageId}/{repositoryId}/{path:.*}")
-    public Response download(@PathParam("storageId") String storageId,
-                             @PathParam("repositoryId") String repositoryId,
-                             @PathParam("path") String path,
-                             @Context HttpServletRequest request,
-                             @Context HttpHeaders headers)
+    public void download(@PathParam("storageId") final String storageId,
+                         @PathParam("repositoryId") final String repositoryId,
+                         @PathParam("path") final String path,
+                         @Context HttpServletRequest request,
+                         @Context HttpServletResponse servletResponse,
+                         @Context HttpHeaders headers,
+                         @Context final Request requestContext,
+                         @Suspended final AsyncResponse asyncResponse)
             throws IOException,
                    InstantiationException,
                    IllegalAccessException,
@@ -109,6 +463,80 @@ public class ArtifactRestlet
 
         logger.debug(" repository = " + repositoryId + ", path = " + path);
 
+        final String range = headers.getRequestHeaders().getFirst("Range");
+        final boolean acceptsGzip = acceptsGzip(headers.getRequestHeader("Accept-Encoding"));
+
+        // The artifact is looked up and opened right away, so that only the writing of large bodies is left
+        final Response response = download(storageId, repositoryId, path, range, acceptsGzip, requestContext);
+
+        setContainerOutput(response, servletResponse);
+
+        try
+        {
+            // Release the container's thread, unless the response can be sent right away
+            downloadExecutor.resume(asyncResponse, response);
+        }
+        catch (RejectedExecutionException e)
+        {
+            logger.warn("Too many downloads in progress, rejecting " + storageId + "/" + repositoryId + "/" + path + ".");
+
+            closeEntity(response);
+
+            asyncResponse.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                                         .header("Retry-After", DOWNLOAD_RETRY_AFTER_SECONDS)
+                                         .build());
+        }
+    }
+
+    /**
+     * Lets the file of the response be sent straight to the container's stream, instead of being copied
+     * to the stream which Jersey wraps it with.
+     */
+    private void setContainerOutput(Response response,
+                                    final HttpServletResponse servletResponse)
+    {
+        if (response.getEntity() instanceof FileChannelStreamingOutput)
+        {
+            ((FileChannelStreamingOutput) response.getEntity()).setContainerOutput(
+                    new FileChannelStreamingOutput.ContainerOutput()
+                    {
+                        @Override
+                        public boolean isCommitted()
+                        {
+                            return servletResponse.isCommitted();
+                        }
+
+                        @Override
+                        public OutputStream getOutputStream()
+                                throws IOException
+                        {
+                            return servletResponse.getOutputStream();
+                        }
+                    });
+        }
+    }
+
+    private void closeEntity(Response response)
+    {
+        final Object entity = response.getEntity();
+        if (entity instanceof FileChannelStreamingOutput)
+        {
+            ResourceCloser.close(((FileChannelStreamingOutput) entity).getArtifactInputStream(), logger);
+        }
+        else if (entity instanceof Closeable)
+        {
+            ResourceCloser.close((Closeable) entity, logger);
+        }
+    }
+
+    private Response download(String storageId,
+                              String repositoryId,
+                              String path,
+                              String range,
+                              boolean acceptsGzip,
+                              Request requestContext)
+            throws IOException
+    {
         Storage storage = artifactManagementService.getConfiguration().getStorage(storageId);
         Repository repository = storage.getRepository(repositoryId);
         if (!repository.isInService())
@@ -118,18 +546,61 @@ public class ArtifactRestlet
 
         Response.ResponseBuilder responseBuilder;
 
-        InputStream is;
+        Map<String, String> checksums;
+        EntityTag entityTag;
+        Date lastModified;
+
+        // Malformed ranges are ignored, in which case the whole artifact is served
+        final List<ByteRange> ranges = getRanges(range);
+
         try
         {
-            if (isRangedRequest(headers))
+            // Check whether the client already has this artifact, before opening it
+            final File artifactFile = artifactManagementService.resolveFile(storageId, repositoryId, path);
+
+            checksums = getChecksums(storageId, repositoryId, path, artifactFile);
+            entityTag = getEntityTag(checksums);
+            lastModified = getLastModified(artifactFile);
+
+            // Ranges always refer to the identity encoding
+            final File compressedFile = acceptsGzip && ranges == null ?
+                                        getCompressedFile(path, artifactFile) : null;
+            if (compressedFile != null && entityTag != null)
+            {
+                // Each encoding is a different representation and needs its own strong entity tag
+                entityTag = new EntityTag(entityTag.getValue() + "-gzip");
+            }
+
+            Response.ResponseBuilder preconditionsResponseBuilder = entityTag != null ?
+                                                                    requestContext.evaluatePreconditions(lastModified,
+                                                                                                         entityTag) :
+                                                                    requestContext.evaluatePreconditions(lastModified);
+            if (preconditionsResponseBuilder != null)
+            {
+                logger.debug("Preconditions not met for " + path + ", not sending the artifact.");
+
+                setVaryHeader(path, preconditionsResponseBuilder);
+
+                return preconditionsResponseBuilder.tag(entityTag).lastModified(lastModified).build();
+            }
+
+            if (ranges != null)
+            {
+                // The media type of the response depends on the number of ranges
+                responseBuilder = handlePartialDownload(artifactFile, path, ranges);
+            }
+            else if (compressedFile != null)
             {
-                responseBuilder = handlePartialDownload(storageId, repositoryId, path, headers);
+                responseBuilder = prepareResponseBuilderForCompressedDownload(compressedFile);
+
+                setMediaTypeHeader(path, responseBuilder);
             }
             else
             {
-                is = artifactManagementService.resolve(storageId, repositoryId, path);
+                // Open the file which has already been resolved, instead of resolving the path again
+                responseBuilder = prepareResponseBuilderForFullDownload(openArtifact(artifactFile));
 
-                responseBuilder = Response.ok(is);
+                setMediaTypeHeader(path, responseBuilder);
             }
         }
         catch (ArtifactResolutionException e)
@@ -137,213 +608,340 @@ public class ArtifactRestlet
             return Response.status(Response.Status.NOT_FOUND).build();
         }
 
-        setMediaTypeHeader(path, responseBuilder);
-
+        responseBuilder.tag(entityTag);
+        responseBuilder.lastModified(lastModified);
         responseBuilder.header("Accept-Ranges", "bytes");
 
-        setHeadersForChecksums(storageId, repositoryId, path, responseBuilder);
+        setVaryHeader(path, responseBuilder);
+
+        if (repository.isChecksumHeadersEnabled())
+        {
+            setHeadersForChecksums(checksums, responseBuilder);
+        }
 
         return responseBuilder.build();
     }
 
-    private Response.ResponseBuilder handlePartialDownload(String storageId,
-                                                           String repositoryId,
-                                                           String path,
-                                                           HttpHeaders headers)
+    /**
+     * Returns the checksums of the artifact from the checksum cache, which only reads
+     * the checksum files, if they're not cached yet.
+     */
+    private Map<String, String> getChecksums(String storageId,
+                                             String repositoryId,
+                                             String path,
+                                             File artifactFile)
             throws IOException
     {
-        ByteRangeHeaderParser parser = new ByteRangeHeaderParser(headers.getRequestHeaders().getFirst("Range"));
-        List<ByteRange> ranges = parser.getRanges();
+        if (ArtifactFileUtils.isChecksum(path) || artifactFile.isDirectory())
+        {
+            // Checksum files and directories don't have checksums of their own
+            return Collections.emptyMap();
+        }
+
+        return checksumCache.getChecksums(storageId, repositoryId, path, artifactFile);
+    }
+
+    /**
+     * Returns a strong entity tag based on the SHA-1 checksum of the artifact,
+     * or null, if the artifact doesn't have one.
+     */
+    private EntityTag getEntityTag(Map<String, String> checksums)
+    {
+        final String checksum = checksums.get(EncryptionAlgorithmsEnum.SHA1.getAlgorithm());
+
+        return checksum != null ? new EntityTag(checksum) : null;
+    }
+
+    private Date getLastModified(File artifactFile)
+    {
+        // HTTP dates only have a precision of seconds
+        return new Date(artifactFile.lastModified() / 1000 * 1000);
+    }
 
-        if (ranges.size() == 1)
+    private Response.ResponseBuilder prepareResponseBuilderForFullDownload(InputStream is)
+    {
+        if (!(is instanceof ArtifactInputStream))
         {
-            logger.debug("Received request for a partial download with a single range.");
+            return Response.ok(is);
+        }
+
+        ArtifactInputStream ais = (ArtifactInputStream) is;
 
-            return handlePartialDownloadWithSingleRange(storageId, repositoryId, path, ranges.get(0));
+        Response.ResponseBuilder responseBuilder;
+        if (ais.getFileChannel() != null)
+        {
+            // This is a plain file, so stream it from its FileChannel with a known length
+            responseBuilder = Response.ok(new FileChannelStreamingOutput(ais));
+            responseBuilder.header("Content-Length", ais.getLength());
         }
         else
         {
-            logger.debug("Received request for a partial download with multiple ranges.");
-
-            return handlePartialDownloadWithMultipleRanges(storageId, repositoryId, path, ranges);
+            responseBuilder = Response.ok(ais);
+            if (ais.getLength() > 0)
+            {
+                responseBuilder.header("Content-Length", ais.getLength());
+            }
         }
+
+        return responseBuilder;
     }
 
-    private Response.ResponseBuilder handlePartialDownloadWithSingleRange(String storageId,
-                                                                          String repositoryId,
-                                                                          String path,
-                                                                          ByteRange byteRange)
-            throws IOException
+    /**
+     * Returns the precompressed sibling of the artifact, (re)generating it, if it's stale,
+     * or null, if the artifact doesn't have one (binary archives are never compressed).
+     */
+    private File getCompressedFile(String path, File artifactFile)
     {
-        ArtifactInputStream ais = (ArtifactInputStream) artifactManagementService.resolve(storageId, repositoryId, path);
-        if (byteRange.getOffset() < ais.getLength())
+        if (!GzipFileUtils.isCompressible(path) || !artifactFile.isFile())
         {
-            // TODO: If OK: Return: 206 Partial Content
-            // TODO:     Set headers:
-            // TODO:         Accept-Ranges: bytes
-            // TODO:         Content-Length: 64656927
-            // TODO:         Content-Range: bytes 100-64656926/64656927
-            // TODO:         Content-Type: application/jar
-            // TODO:         Pragma: no-cache
-
-            ais.setCurrentByteRange(byteRange);
-            //noinspection ResultOfMethodCallIgnored
-            ais.skip(byteRange.getOffset());
-
-            Response.ResponseBuilder responseBuilder = prepareResponseBuilderForPartialRequest(ais);
-            responseBuilder.header("Content-Length", calculatePartialRangeLength(byteRange, ais.getLength()));
-            responseBuilder.status(Response.Status.PARTIAL_CONTENT);
+            return null;
+        }
 
-            return responseBuilder;
+        try
+        {
+            return GzipFileUtils.getUpToDateCompressedFile(artifactFile);
         }
-        else
+        catch (IOException e)
         {
-            // TODO: Else: If the byte-range-set is unsatisfiable, the server SHOULD return
-            // TODO:       a response with a status of 416 (Requested range not satisfiable).
+            // Serve the identity encoding instead
+            logger.warn("Failed to compress " + artifactFile.getAbsolutePath() + "!", e);
 
-            return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE);
+            return null;
         }
     }
 
-    private Response.ResponseBuilder handlePartialDownloadWithMultipleRanges(String storageId,
-                                                                             String repositoryId,
-                                                                             String path,
-                                                                             List<ByteRange> byteRanges)
+    private Response.ResponseBuilder prepareResponseBuilderForCompressedDownload(File compressedFile)
             throws IOException
     {
-        // TODO: To be handled as part of SB-367.
+        final ArtifactInputStream ais = openArtifact(compressedFile);
 
-        ArtifactInputStream ais = (ArtifactInputStream) artifactManagementService.resolve(storageId, repositoryId, path);
-        // TODO: This is not the right check
-        if (ais.getCurrentByteRange().getOffset() >= ais.getLength())
-        {
-            // TODO: If OK: Return: 206 Partial Content
-            // TODO:     For each range:
-            // TODO:         Set headers:
-            // TODO:             Content-Type: application/jar
-            // TODO:             Content-Length: 64656927
-            // TODO:             Accept-Ranges: bytes
-            // TODO:             Content-Range: bytes 100-64656926/64656927
-            // TODO:             Pragma: no-cache
+        Response.ResponseBuilder responseBuilder = Response.ok(new FileChannelStreamingOutput(ais));
+        responseBuilder.header("Content-Length", ais.getLength());
+        responseBuilder.header("Content-Encoding", "gzip");
 
-            Response.ResponseBuilder responseBuilder = prepareResponseBuilderForPartialRequest(ais);
+        return responseBuilder;
+    }
 
-            // TODO: Add multipart content here
+    /**
+     * Opens an already resolved file for reading with its file channel.
+     */
+    private ArtifactInputStream openArtifact(File file)
+            throws IOException
+    {
+        final FileChannel fileChannel;
+        try
+        {
+            fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        catch (NoSuchFileException e)
+        {
+            // It has been removed since it was resolved
+            throw new ArtifactResolutionException("Artifact " + file.getName() + " not found.", e);
+        }
 
-            return responseBuilder;
+        ArtifactInputStream ais;
+        try
+        {
+            ais = new ArtifactInputStream(Channels.newInputStream(fileChannel), MultipleDigestInputStream.NO_ALGORITHMS);
+            ais.setLength(fileChannel.size());
+            ais.setFileChannel(fileChannel);
         }
-        else
+        catch (NoSuchAlgorithmException e)
         {
-            // TODO: Else: If the byte-range-set is unsatisfiable, the server SHOULD return
-            // TODO:       a response with a status of 416 (Requested range not satisfiable).
+            ResourceCloser.close(fileChannel, logger);
 
-            return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE);
+            throw new IOException(e.getMessage(), e);
         }
+
+        return ais;
     }
 
-    private long calculatePartialRangeLength(ByteRange byteRange, long length)
+    private Response.ResponseBuilder handlePartialDownload(File artifactFile,
+                                                           String path,
+                                                           List<ByteRange> ranges)
+            throws IOException
     {
-        if (byteRange.getLimit() > 0 && byteRange.getOffset() > 0)
+        ArtifactInputStream ais = openArtifact(artifactFile);
+
+        // Sort and merge the ranges, so that each byte is only served once and the file is only read forward
+        List<ContentRange> contentRanges = ContentRange.merge(ranges, ais.getLength());
+        if (contentRanges.isEmpty())
         {
-            logger.debug("Partial content byteRange.getOffset: " + byteRange.getOffset());
-            logger.debug("Partial content byteRange.getLimit: " + byteRange.getLimit());
-            logger.debug("Partial content length: " + (byteRange.getLimit() - byteRange.getOffset()));
+            ResourceCloser.close(ais, logger);
 
-            return byteRange.getLimit() - byteRange.getOffset();
+            return prepareResponseBuilderForUnsatisfiableRange(ais.getLength());
         }
-        else if (length > 0 && byteRange.getOffset() > 0 && byteRange.getLimit() == 0)
+        else if (contentRanges.size() == 1)
         {
-            logger.debug("Partial content length: " + (length - byteRange.getOffset()));
+            logger.debug("Received request for a partial download with a single range.");
 
-            return length - byteRange.getOffset();
+            return handlePartialDownloadWithSingleRange(ais, path, contentRanges.get(0));
         }
         else
         {
-            return -1;
+            logger.debug("Received request for a partial download with multiple ranges.");
+
+            return handlePartialDownloadWithMultipleRanges(ais, path, contentRanges);
         }
     }
 
-    private Response.ResponseBuilder prepareResponseBuilderForPartialRequest(ArtifactInputStream ais)
+    private Response.ResponseBuilder handlePartialDownloadWithSingleRange(ArtifactInputStream ais,
+                                                                          String path,
+                                                                          ContentRange contentRange)
     {
-        Response.ResponseBuilder responseBuilder = Response.ok(ais).status(Response.Status.PARTIAL_CONTENT);
-        responseBuilder.header("Accept-Ranges", "bytes");
-        // responseBuilder.header("Content-Length", ais.getLength());
-        responseBuilder.header("Content-Range", "bytes " + ais.getCurrentByteRange().getOffset() + "-" + (ais.getLength() - 1) + "/" + ais.getLength());
-        responseBuilder.header("Content-Type", ais.getLength());
+        logger.debug("Serving " + contentRange + " for " + path);
+
+        // Only the requested bytes are read, starting from the requested position
+        Response.ResponseBuilder responseBuilder = Response.status(Response.Status.PARTIAL_CONTENT)
+                                                           .entity(new FileChannelStreamingOutput(ais,
+                                                                                                  contentRange.getFirstBytePosition(),
+                                                                                                  contentRange.getLength()));
+        responseBuilder.header("Content-Range", contentRange.toString());
+        responseBuilder.header("Content-Length", contentRange.getLength());
         responseBuilder.header("Pragma", "no-cache");
 
+        setMediaTypeHeader(path, responseBuilder);
+
+        return responseBuilder;
+    }
+
+    private Response.ResponseBuilder handlePartialDownloadWithMultipleRanges(ArtifactInputStream ais,
+                                                                             String path,
+                                                                             List<ContentRange> contentRanges)
+    {
+        logger.debug("Serving " + contentRanges.size() + " ranges for " + path);
+
+        // Each part is streamed from the file channel right after its headers
+        MultipartByteRangesStreamingOutput output = new MultipartByteRangesStreamingOutput(ais,
+                                                                                           contentRanges,
+                                                                                           getMediaType(path));
+
+        Response.ResponseBuilder responseBuilder = Response.status(Response.Status.PARTIAL_CONTENT).entity(output);
+        responseBuilder.type(output.getMediaType());
+        responseBuilder.header("Content-Length", output.getContentLength());
+        responseBuilder.header("Pragma", "no-cache");
+
+        return responseBuilder;
+    }
+
+    private Response.ResponseBuilder prepareResponseBuilderForUnsatisfiableRange(long length)
+    {
+        Response.ResponseBuilder responseBuilder = Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE);
+        responseBuilder.header("Content-Range", "bytes */" + length);
+
         return responseBuilder;
     }
 
     private void setMediaTypeHeader(String path, Response.ResponseBuilder responseBuilder)
+    {
+        responseBuilder.type(getMediaType(path));
+    }
+
+    private String getMediaType(String path)
     {
         // TODO: This is far from optimal and will need to have a content type approach at some point:
-        if (ArtifactUtils.isChecksum(path))
+        if (ArtifactFileUtils.isChecksum(path))
         {
-            responseBuilder.type(MediaType.TEXT_PLAIN);
+            return MediaType.TEXT_PLAIN;
         }
         else if (ArtifactUtils.isMetadata(path))
         {
-            responseBuilder.type(MediaType.APPLICATION_XML);
+            return MediaType.APPLICATION_XML;
         }
         else
         {
-            responseBuilder.type(MediaType.APPLICATION_OCTET_STREAM);
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    private void setVaryHeader(String path, Response.ResponseBuilder responseBuilder)
+    {
+        if (GzipFileUtils.isCompressible(path))
+        {
+            // Caches must not serve the compressed representation to the clients which don't accept it
+            responseBuilder.header("Vary", "Accept-Encoding");
         }
     }
 
-    private boolean isRangedRequest(HttpHeaders headers)
+    /**
+     * Returns true, if the Accept-Encoding headers of the request allow the gzip encoding.
+     */
+    private boolean acceptsGzip(List<String> acceptEncodingHeaders)
     {
-        if (headers == null)
+        if (acceptEncodingHeaders == null)
         {
             return false;
         }
 
-        String contentRange = headers.getRequestHeaders() != null &&
-                              headers.getRequestHeaders().getFirst("Range") != null ?
-                              headers.getRequestHeaders().getFirst("Range") : null;
+        for (String acceptEncodingHeader : acceptEncodingHeaders)
+        {
+            for (String coding : acceptEncodingHeader.split(","))
+            {
+                final String[] parameters = coding.split(";");
+                final String name = parameters[0].trim();
+                if (!name.equalsIgnoreCase("gzip") && !name.equalsIgnoreCase("x-gzip"))
+                {
+                    continue;
+                }
 
-        return contentRange != null &&
-               !contentRange.equals("0/*") && !contentRange.equals("0-") && !contentRange.equals("0");
+                // An encoding with a quality value of zero is not acceptable
+                for (int i = 1; i < parameters.length; i++)
+                {
+                    final String parameter = parameters[i].trim();
+                    if (parameter.startsWith("q=") && parameter.substring(2).trim().matches("0(\\.0*)?"))
+                    {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+        }
+
+        return false;
     }
 
-    private void setHeadersForChecksums(String storageId,
-                                        String repositoryId,
-                                        String path,
-                                        Response.ResponseBuilder responseBuilder)
-            throws IOException
+    private boolean isRangedRequest(String range)
     {
-        Storage storage = artifactManagementService.getConfiguration().getStorage(storageId);
-        Repository repository = storage.getRepository(repositoryId);
-        if (!repository.isChecksumHeadersEnabled())
+        return range != null && !range.equals("0/*") && !range.equals("0-") && !range.equals("0");
+    }
+
+    /**
+     * Returns the ranges of the "Range" header, or null, if the whole artifact should be served.
+     * A malformed "Range" header is ignored, as permitted by RFC 7233.
+     */
+    private List<ByteRange> getRanges(String range)
+    {
+        if (!isRangedRequest(range))
         {
-            return;
+            return null;
         }
 
-        InputStream isMd5;
-        //noinspection EmptyCatchBlock
         try
         {
-            isMd5 = artifactManagementService.resolve(storageId, repositoryId, path + ".md5");
-            responseBuilder.header("Checksum-MD5", MessageDigestUtils.readChecksumFile(isMd5));
+            return new ByteRangeHeaderParser(range).getRanges();
         }
-        catch (IOException e)
+        catch (IllegalArgumentException e)
         {
-            // This can occur if there is no checksum
-            logger.warn("There is no MD5 checksum for "  + storageId + "/" + repositoryId + "/" + path);
+            logger.debug("Ignoring the invalid Range header '" + range + "': " + e.getMessage());
+
+            return null;
         }
+    }
 
-        InputStream isSha1;
-        //noinspection EmptyCatchBlock
-        try
+    private void setHeadersForChecksums(Map<String, String> checksums,
+                                        Response.ResponseBuilder responseBuilder)
+    {
+        final String md5 = checksums.get(EncryptionAlgorithmsEnum.MD5.getAlgorithm());
+        if (md5 != null)
         {
-            isSha1 = artifactManagementService.resolve(storageId, repositoryId, path + ".sha1");
-            responseBuilder.header("Checksum-SHA1", MessageDigestUtils.readChecksumFile(isSha1));
+            responseBuilder.header("Checksum-MD5", md5);
         }
-        catch (IOException e)
+
+        final String sha1 = checksums.get(EncryptionAlgorithmsEnum.SHA1.getAlgorithm());
+        if (sha1 != null)
         {
-            // This can occur if there is no checksum
-            logger.warn("There is no SHA1 checksum for "  + storageId + "/" + repositoryId + "/" + path);
+            responseBuilder.header("Checksum-SHA1", sha1);
         }
     }
 
@@ -366,48 +964,86 @@ public class ArtifactRestlet
         }
         catch (ArtifactStorageException e)
         {
-            if (artifactManagementService.getStorage(srcStorageId) == null)
-            {
-                return Response.status(Response.Status.NOT_FOUND)
-                               .entity("The source storageId does not exist!")
-                               .build();
-            }
-            else if (artifactManagementService.getStorage(destStorageId) == null)
-            {
-                return Response.status(Response.Status.NOT_FOUND)
-                               .entity("The destination storageId does not exist!")
-                               .build();
-            }
-            else if (artifactManagementService.getStorage(srcStorageId).getRepository(srcRepositoryId) == null)
-            {
-                return Response.status(Response.Status.NOT_FOUND)
-                               .entity("The source repositoryId does not exist!")
-                               .build();
-            }
-            else if (artifactManagementService.getStorage(destStorageId).getRepository(destRepositoryId) == null)
-            {
-                return Response.status(Response.Status.NOT_FOUND)
-                               .entity("The destination repositoryId does not exist!")
-                               .build();
-            }
-            else if (artifactManagementService.getStorage(srcStorageId) != null &&
-                     artifactManagementService.getStorage(srcStorageId).getRepository(srcRepositoryId) != null &&
-                     !new File(artifactManagementService.getStorage(srcStorageId)
-                                                        .getRepository(srcRepositoryId).getBasedir(), path).exists())
-            {
-                return Response.status(Response.Status.NOT_FOUND)
-                               .entity("The source path does not exist!")
-                               .build();
-            }
+            return getTransferErrorResponse(e, path, srcStorageId, srcRepositoryId, destStorageId, destRepositoryId);
+        }
 
-            return Response.status(Response.Status.BAD_REQUEST)
-                           .entity(e.getMessage())
-                           .build();
+        return Response.ok().build();
+    }
+
+    /**
+     * Moves a file, or a directory to another repository. Within a file system, the files are just renamed.
+     */
+    @POST
+    @Path("move/{path:.*}")
+    public Response move(@PathParam("path") String path,
+                         @QueryParam("srcStorageId") String srcStorageId,
+                         @QueryParam("srcRepositoryId") String srcRepositoryId,
+                         @QueryParam("destStorageId") String destStorageId,
+                         @QueryParam("destRepositoryId") String destRepositoryId)
+            throws IOException
+    {
+        logger.debug("Moving " + path +
+                     " from " + srcStorageId + ":" + srcRepositoryId +
+                     " to " + destStorageId + ":" + destRepositoryId + "...");
+
+        try
+        {
+            artifactManagementService.move(srcStorageId, srcRepositoryId, path, destStorageId, destRepositoryId);
+        }
+        catch (ArtifactStorageException e)
+        {
+            return getTransferErrorResponse(e, path, srcStorageId, srcRepositoryId, destStorageId, destRepositoryId);
         }
 
         return Response.ok().build();
     }
 
+    private Response getTransferErrorResponse(ArtifactStorageException e,
+                                              String path,
+                                              String srcStorageId,
+                                              String srcRepositoryId,
+                                              String destStorageId,
+                                              String destRepositoryId)
+    {
+        if (artifactManagementService.getStorage(srcStorageId) == null)
+        {
+            return Response.status(Response.Status.NOT_FOUND)
+                           .entity("The source storageId does not exist!")
+                           .build();
+        }
+        else if (artifactManagementService.getStorage(destStorageId) == null)
+        {
+            return Response.status(Response.Status.NOT_FOUND)
+                           .entity("The destination storageId does not exist!")
+                           .build();
+        }
+        else if (artifactManagementService.getStorage(srcStorageId).getRepository(srcRepositoryId) == null)
+        {
+            return Response.status(Response.Status.NOT_FOUND)
+                           .entity("The source repositoryId does not exist!")
+                           .build();
+        }
+        else if (artifactManagementService.getStorage(destStorageId).getRepository(destRepositoryId) == null)
+        {
+            return Response.status(Response.Status.NOT_FOUND)
+                           .entity("The destination repositoryId does not exist!")
+                           .build();
+        }
+        else if (artifactManagementService.getStorage(srcStorageId) != null &&
+                 artifactManagementService.getStorage(srcStorageId).getRepository(srcRepositoryId) != null &&
+                 !new File(artifactManagementService.getStorage(srcStorageId)
+                                                    .getRepository(srcRepositoryId).getBasedir(), path).exists())
+        {
+            return Response.status(Response.Status.NOT_FOUND)
+                           .entity("The source path does not exist!")
+                           .build();
+        }
+
+        return Response.status(Response.Status.BAD_REQUEST)
+                       .entity(e.getMessage())
+                       .build();
+    }
+
     @DELETE
     @Path("{storageId}/{repositoryId}/{path:.*}")
     public Response delete(@PathParam("storageId") String storageId,
@@ -477,6 +1113,7 @@ public class ArtifactRestlet
                     {
                         metadata.getVersioning().getVersions().remove(version);
                         metadataManager.storeMetadata(path, null, metadata, MetadataType.ARTIFACT_ROOT_LEVEL);
+                        metadataManager.invalidateCaches(repository, path);
                     }
                 }
             }
@@ -0,0 +1,96 @@
+package org.carlspring.strongbox.rest;
+
+import org.carlspring.strongbox.configuration.ConfigurationManager;
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.checksum.ChecksumStore;
+import org.carlspring.strongbox.storage.checksum.RepositoryChecksumStore;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports on, and rebuilds the checksum stores of the repositories.
+ *
+ * @author Martin Todorov
+ */
+@Component
+@Path("/checksums")
+public class ChecksumStoreRestlet
+        extends BaseRestlet
+{
+
+    @Autowired
+    private ConfigurationManager configurationManager;
+
+    @Autowired
+    private ChecksumStore checksumStore;
+
+
+    /**
+     * Returns the number of recorded artifacts and the number of records in the log (one "name=value" pair per line).
+     */
+    @GET
+    @Path("{storageId}/{repositoryId}")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getReport(@PathParam("storageId") String storageId,
+                              @PathParam("repositoryId") String repositoryId)
+    {
+        if (!repositoryExists(storageId, repositoryId))
+        {
+            return Response.status(Response.Status.NOT_FOUND)
+                           .entity("The specified storageId or repositoryId does not exist!")
+                           .build();
+        }
+
+        final RepositoryChecksumStore store = checksumStore.getStore(storageId, repositoryId);
+        if (store == null)
+        {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                           .entity("The checksum store could not be opened.")
+                           .build();
+        }
+
+        return Response.ok("artifacts=" + store.getSize() + '\n' +
+                           "records=" + store.getTotalRecords() + '\n').build();
+    }
+
+    /**
+     * Replaces the recorded checksums of the repository with the ones in the checksum files of its artifacts.
+     *
+     * @return The number of recorded artifacts.
+     */
+    @POST
+    @Path("{storageId}/{repositoryId}/rebuild")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response rebuild(@PathParam("storageId") String storageId,
+                            @PathParam("repositoryId") String repositoryId)
+            throws IOException
+    {
+        if (!repositoryExists(storageId, repositoryId))
+        {
+            return Response.status(Response.Status.NOT_FOUND)
+                           .entity("The specified storageId or repositoryId does not exist!")
+                           .build();
+        }
+
+        return Response.ok(String.valueOf(checksumStore.rebuild(storageId, repositoryId))).build();
+    }
+
+    private boolean repositoryExists(String storageId,
+                                     String repositoryId)
+    {
+        final Storage storage = configurationManager.getConfiguration().getStorage(storageId);
+
+        return storage != null && storage.getRepository(repositoryId) != null;
+    }
+
+}
@@ -0,0 +1,83 @@
+package org.carlspring.strongbox.rest;
+
+import org.carlspring.strongbox.configuration.ConfigurationManager;
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.blob.BlobStore;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports on, and cleans up the blobs of the storages with deduplication enabled.
+ *
+ * @author Martin Todorov
+ */
+@Component
+@Path("/deduplication")
+public class DeduplicationRestlet
+        extends BaseRestlet
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(DeduplicationRestlet.class);
+
+    @Autowired
+    private ConfigurationManager configurationManager;
+
+    @Autowired
+    private BlobStore blobStore;
+
+
+    /**
+     * Returns how much space the deduplication saves in the storage (one "name=value" pair per line).
+     */
+    @GET
+    @Path("{storageId}")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getReport(@PathParam("storageId") String storageId)
+            throws IOException
+    {
+        final Storage storage = configurationManager.getConfiguration().getStorage(storageId);
+        if (storage == null)
+        {
+            return Response.status(Response.Status.NOT_FOUND).entity("The specified storageId does not exist!").build();
+        }
+
+        return Response.ok(blobStore.getReport(storage).toString()).build();
+    }
+
+    /**
+     * Removes the blobs which are no longer referenced by any artifacts.
+     *
+     * @return The number of removed blobs.
+     */
+    @POST
+    @Path("{storageId}/cleanup")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response removeUnreferencedBlobs(@PathParam("storageId") String storageId)
+            throws IOException
+    {
+        final Storage storage = configurationManager.getConfiguration().getStorage(storageId);
+        if (storage == null)
+        {
+            return Response.status(Response.Status.NOT_FOUND).entity("The specified storageId does not exist!").build();
+        }
+
+        final int count = blobStore.removeUnreferencedBlobs(storage);
+
+        logger.info("Removed " + count + " unreferenced blobs from storage " + storageId + ".");
+
+        return Response.ok(String.valueOf(count)).build();
+    }
+
+}
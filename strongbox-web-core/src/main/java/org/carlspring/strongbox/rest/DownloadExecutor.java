@@ -0,0 +1,200 @@
+package org.carlspring.strongbox.rest;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * A bounded pool of threads, which the large downloads are offloaded to, so that the container's threads
+ * are released as soon as a download has been accepted and remain available for the other requests
+ * (such as the uploads and the metadata lookups).
+ *
+ * The downloads are still written with blocking I/O (the servlet API which the server is built against
+ * has no non-blocking writes), so each download occupies one of the download threads until its client
+ * has received all of it. Slow clients can therefore tie up the whole pool, but never more threads
+ * than the pool size, no matter how many clients are downloading: the downloads which can't be started
+ * right away are queued and, once the queue is full, rejected (with 503 Service Unavailable).
+ * Only the responses with large bodies are handed to the pool: the ones without a body (such as 304 Not Modified)
+ * and the ones with a body which fits into the socket's buffers are sent right away by the container's thread,
+ * so that they are never queued behind the slow clients of large artifacts.
+ *
+ * The pool size, queue size and the largest body which is sent right away can be set via
+ * the strongbox.download.threads, strongbox.download.queue.size and strongbox.download.inline.length
+ * system properties.
+ *
+ * @author mtodorov
+ */
+@Component
+public class DownloadExecutor
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadExecutor.class);
+
+    private int poolSize = Integer.getInteger("strongbox.download.threads", 64);
+
+    private int queueSize = Integer.getInteger("strongbox.download.queue.size", 1024);
+
+    private long inlineLength = Long.getLong("strongbox.download.inline.length", 64 * 1024L);
+
+    private ThreadPoolExecutor executor;
+
+
+    public DownloadExecutor()
+    {
+    }
+
+    @PostConstruct
+    public void initialize()
+    {
+        executor = new ThreadPoolExecutor(poolSize,
+                                          poolSize,
+                                          60L,
+                                          TimeUnit.SECONDS,
+                                          new ArrayBlockingQueue<Runnable>(queueSize),
+                                          new DownloadThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+
+        logger.debug("Initialized the download executor with " + poolSize + " threads" +
+                     " and a queue of " + queueSize + " downloads.");
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Schedules the download.
+     *
+     * @throws RejectedExecutionException   If there are too many downloads already.
+     */
+    public void execute(Runnable download)
+            throws RejectedExecutionException
+    {
+        executor.execute(download);
+    }
+
+    /**
+     * Sends the response to the client: right away, if it has no body, or a small one,
+     * otherwise from one of the download threads.
+     *
+     * @throws RejectedExecutionException   If there are too many downloads already.
+     */
+    public void resume(final AsyncResponse asyncResponse, final Response response)
+            throws RejectedExecutionException
+    {
+        if (isSentInline(response))
+        {
+            asyncResponse.resume(response);
+
+            return;
+        }
+
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                asyncResponse.resume(response);
+            }
+        });
+    }
+
+    /**
+     * Returns true, if the response has no body, or one which is short enough to be written
+     * without holding up the calling thread.
+     */
+    public boolean isSentInline(Response response)
+    {
+        if (response.getEntity() == null)
+        {
+            return true;
+        }
+
+        // Response.getLength() can't handle the lengths of artifacts larger than 2 GB
+        final String contentLength = response.getHeaderString(HttpHeaders.CONTENT_LENGTH);
+
+        return contentLength != null && Long.parseLong(contentLength) <= inlineLength;
+    }
+
+    public int getPoolSize()
+    {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize)
+    {
+        this.poolSize = poolSize;
+    }
+
+    public int getQueueSize()
+    {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize)
+    {
+        this.queueSize = queueSize;
+    }
+
+    public long getInlineLength()
+    {
+        return inlineLength;
+    }
+
+    public void setInlineLength(long inlineLength)
+    {
+        this.inlineLength = inlineLength;
+    }
+
+    /**
+     * Returns the number of downloads which are being streamed.
+     */
+    public int getActiveCount()
+    {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Returns the largest number of threads which have ever been used at the same time.
+     */
+    public int getLargestPoolSize()
+    {
+        return executor.getLargestPoolSize();
+    }
+
+    private static class DownloadThreadFactory
+            implements ThreadFactory
+    {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "strongbox-download-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+
+    }
+
+}
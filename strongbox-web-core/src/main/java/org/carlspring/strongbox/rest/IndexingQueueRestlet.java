@@ -0,0 +1,95 @@
+package org.carlspring.strongbox.rest;
+
+import org.carlspring.strongbox.storage.indexing.IndexingQueue;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Manages the queue of the artifacts which are waiting to be added to the indexes.
+ *
+ * @author Martin Todorov
+ */
+@Component
+@Path("/indexing/queue")
+public class IndexingQueueRestlet
+        extends BaseRestlet
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexingQueueRestlet.class);
+
+    @Autowired
+    private IndexingQueue indexingQueue;
+
+
+    /**
+     * Returns the metrics of the queue (one "name=value" pair per line), such as the number of queued
+     * artifacts ("depth") and for how long (in milliseconds) the oldest of them has been waiting ("lag").
+     */
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getStatus()
+    {
+        StringBuilder status = new StringBuilder();
+        status.append("asynchronous=").append(indexingQueue.isAsynchronous()).append('\n');
+        status.append("paused=").append(indexingQueue.isPaused()).append('\n');
+        status.append("depth=").append(indexingQueue.getDepth()).append('\n');
+        status.append("lag=").append(indexingQueue.getLag()).append('\n');
+        status.append("queued=").append(indexingQueue.getQueuedCount()).append('\n');
+        status.append("coalesced=").append(indexingQueue.getCoalescedCount()).append('\n');
+        status.append("indexed=").append(indexingQueue.getIndexedCount()).append('\n');
+        status.append("failed=").append(indexingQueue.getFailedCount()).append('\n');
+        status.append("deadLetters=").append(indexingQueue.getDeadLetterCount()).append('\n');
+
+        return Response.ok(status.toString()).build();
+    }
+
+    /**
+     * Indexes all the queued artifacts, before responding.
+     *
+     * @return The number of artifacts which were taken off the queue.
+     */
+    @POST
+    @Path("drain")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response drain()
+    {
+        final int count = indexingQueue.drain();
+
+        logger.debug("Drained " + count + " artifacts from the indexing queue.");
+
+        return Response.ok(String.valueOf(count)).build();
+    }
+
+    @POST
+    @Path("pause")
+    public Response pause()
+    {
+        indexingQueue.pause();
+
+        logger.info("Paused the indexing queue.");
+
+        return Response.ok().build();
+    }
+
+    @POST
+    @Path("resume")
+    public Response resume()
+    {
+        indexingQueue.resume();
+
+        logger.info("Resumed the indexing queue.");
+
+        return Response.ok().build();
+    }
+
+}
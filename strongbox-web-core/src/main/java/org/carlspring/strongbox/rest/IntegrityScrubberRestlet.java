@@ -0,0 +1,93 @@
+package org.carlspring.strongbox.rest;
+
+import org.carlspring.strongbox.storage.integrity.IntegrityScrubber;
+import org.carlspring.strongbox.storage.integrity.ScrubStatus;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the progress of the integrity scrubber and schedules repositories to be scrubbed.
+ *
+ * @author Martin Todorov
+ */
+@Component
+@Path("/scrubber")
+public class IntegrityScrubberRestlet
+        extends BaseRestlet
+{
+
+    @Autowired
+    private IntegrityScrubber integrityScrubber;
+
+
+    /**
+     * Returns the progress and the throughput (in bytes per second) of the current, or last scrub of each repository
+     * (one "storageId:repositoryId.name=value" pair per line).
+     */
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getStatus()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("rate=").append(integrityScrubber.getRate()).append('\n');
+        sb.append("threads=").append(integrityScrubber.getThreads()).append('\n');
+
+        for (ScrubStatus status : integrityScrubber.getStatuses().values())
+        {
+            sb.append(status.toString());
+        }
+
+        return Response.ok(sb.toString()).build();
+    }
+
+    /**
+     * Returns the artifacts of the repository which didn't match their checksum files (one per line).
+     */
+    @GET
+    @Path("{storageId}/{repositoryId}/mismatches")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getMismatches(@PathParam("storageId") String storageId,
+                                  @PathParam("repositoryId") String repositoryId)
+            throws IOException
+    {
+        final String report = integrityScrubber.getMismatchReport(storageId, repositoryId);
+        if (report == null)
+        {
+            return Response.status(Response.Status.NOT_FOUND)
+                           .entity("The specified storageId or repositoryId does not exist!")
+                           .build();
+        }
+
+        return Response.ok(report).build();
+    }
+
+    /**
+     * Schedules the repository to be scrubbed right away.
+     */
+    @POST
+    @Path("{storageId}/{repositoryId}")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response scrub(@PathParam("storageId") String storageId,
+                          @PathParam("repositoryId") String repositoryId)
+    {
+        if (!integrityScrubber.requestScrub(storageId, repositoryId))
+        {
+            return Response.status(Response.Status.NOT_FOUND)
+                           .entity("The specified storageId or repositoryId does not exist, or has no artifacts!")
+                           .build();
+        }
+
+        return Response.status(Response.Status.ACCEPTED).entity("The repository has been scheduled to be scrubbed.").build();
+    }
+
+}
@@ -0,0 +1,309 @@
+package org.carlspring.strongbox.rest;
+
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.repository.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits the number of uploads which are written at the same time, per repository and per storage, so that
+ * a burst of deployments can't saturate the disks and starve the downloads.
+ *
+ * An upload which exceeds the limits waits for its turn, unless the queue is full, or it has waited for too long,
+ * in which case it's rejected, so that the client can retry later on.
+ *
+ * A waiting upload blocks one of the container's threads (the servlet API which the server is built against
+ * can't suspend a request), so the queues are bounded by the size of the container's thread pool, which is set
+ * via the strongbox.http.threads system property (defaults to 200, as in Jetty). No more than a quarter
+ * of the threads wait for uploads at once, across all the repositories and storages, so the rest remain
+ * available for the downloads and the other requests; the default queue sizes are derived from it as well.
+ *
+ * The limits can be set for each repository and storage (via their max-concurrent-uploads and
+ * max-queued-uploads attributes). The defaults, as well as the longest time to wait, can be set via the
+ * strongbox.upload.repository.concurrency, strongbox.upload.repository.queue.size,
+ * strongbox.upload.storage.concurrency, strongbox.upload.storage.queue.size and strongbox.upload.queue.timeout
+ * system properties.
+ *
+ * @author mtodorov
+ */
+@Component
+public class UploadAdmissionController
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadAdmissionController.class);
+
+    /**
+     * The size of the container's thread pool.
+     */
+    private int containerThreads = Integer.getInteger("strongbox.http.threads", 200);
+
+    private int repositoryConcurrency = Integer.getInteger("strongbox.upload.repository.concurrency", 16);
+
+    private int repositoryQueueSize = Integer.getInteger("strongbox.upload.repository.queue.size",
+                                                         getMaxWaitingUploads(containerThreads) / 2);
+
+    private int storageConcurrency = Integer.getInteger("strongbox.upload.storage.concurrency", 64);
+
+    private int storageQueueSize = Integer.getInteger("strongbox.upload.storage.queue.size",
+                                                      getMaxWaitingUploads(containerThreads));
+
+    /**
+     * The container threads which the waiting uploads may take up, across all the repositories and storages.
+     */
+    private Semaphore waitingUploads = new Semaphore(getMaxWaitingUploads(containerThreads));
+
+    /**
+     * The longest time (in milliseconds) an upload waits for its turn.
+     */
+    private long queueTimeout = Long.getLong("strongbox.upload.queue.timeout", 10000L);
+
+    private ConcurrentMap<String, UploadLimiter> limiters = new ConcurrentHashMap<>();
+
+
+    public UploadAdmissionController()
+    {
+    }
+
+    /**
+     * Waits for the upload's turn. The returned admission has to be released, once the upload is complete.
+     *
+     * @throws RejectedExecutionException   If there are too many uploads already.
+     */
+    public Admission admit(Storage storage,
+                           Repository repository)
+            throws RejectedExecutionException
+    {
+        final List<UploadLimiter> acquired = new ArrayList<>(2);
+        final long deadline = System.currentTimeMillis() + queueTimeout;
+
+        try
+        {
+            // The repository's limiter is always taken first, so the limits of the storage are only
+            // taken up by the uploads which have already been admitted to their repositories
+            final UploadLimiter[] uploadLimiters = new UploadLimiter[]{ getRepositoryLimiter(storage, repository),
+                                                                        getStorageLimiter(storage) };
+            for (UploadLimiter limiter : uploadLimiters)
+            {
+                if (limiter == null)
+                {
+                    continue;
+                }
+
+                if (!limiter.acquire(Math.max(0, deadline - System.currentTimeMillis())))
+                {
+                    logger.warn("Too many uploads in progress for " + limiter.getName() + ", rejecting an upload to " +
+                                storage.getId() + ":" + repository.getId() + ".");
+
+                    throw new RejectedExecutionException("Too many uploads in progress for " + limiter.getName() + ".");
+                }
+
+                acquired.add(limiter);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+
+            release(acquired);
+
+            throw new RejectedExecutionException(e);
+        }
+        catch (RejectedExecutionException e)
+        {
+            release(acquired);
+
+            throw e;
+        }
+
+        return new Admission(acquired);
+    }
+
+    private UploadLimiter getRepositoryLimiter(Storage storage,
+                                               Repository repository)
+    {
+        return getLimiter(storage.getId() + ":" + repository.getId(),
+                          getLimit(repository.getMaxConcurrentUploads(), repositoryConcurrency),
+                          getLimit(repository.getMaxQueuedUploads(), repositoryQueueSize));
+    }
+
+    private UploadLimiter getStorageLimiter(Storage storage)
+    {
+        return getLimiter(storage.getId(),
+                          getLimit(storage.getMaxConcurrentUploads(), storageConcurrency),
+                          getLimit(storage.getMaxQueuedUploads(), storageQueueSize));
+    }
+
+    /**
+     * Returns the limiter with the specified limits, replacing the existing one, if the limits have been changed.
+     *
+     * @return The limiter, or null, if the uploads are not limited.
+     */
+    private UploadLimiter getLimiter(String name,
+                                     int maxConcurrentUploads,
+                                     int maxQueuedUploads)
+    {
+        if (maxConcurrentUploads <= 0)
+        {
+            limiters.remove(name);
+
+            return null;
+        }
+
+        UploadLimiter limiter = limiters.get(name);
+        while (limiter == null || !limiter.hasLimits(maxConcurrentUploads, maxQueuedUploads))
+        {
+            final UploadLimiter newLimiter = new UploadLimiter(name,
+                                                               maxConcurrentUploads,
+                                                               maxQueuedUploads,
+                                                               waitingUploads);
+
+            // The uploads which have been admitted by the old limiter release it, once they are complete
+            final boolean replaced = limiter == null ?
+                                     limiters.putIfAbsent(name, newLimiter) == null :
+                                     limiters.replace(name, limiter, newLimiter);
+
+            limiter = replaced ? newLimiter : limiters.get(name);
+        }
+
+        return limiter;
+    }
+
+    private static int getLimit(int limit, int defaultLimit)
+    {
+        return limit != 0 ? limit : defaultLimit;
+    }
+
+    private static int getMaxWaitingUploads(int containerThreads)
+    {
+        return Math.max(1, containerThreads / 4);
+    }
+
+    private static void release(List<UploadLimiter> acquired)
+    {
+        for (UploadLimiter limiter : acquired)
+        {
+            limiter.release();
+        }
+    }
+
+    /**
+     * Returns the limiters of the repositories and storages, which have received uploads, by name.
+     */
+    public Map<String, UploadLimiter> getLimiters()
+    {
+        return new TreeMap<>(limiters);
+    }
+
+    public int getContainerThreads()
+    {
+        return containerThreads;
+    }
+
+    /**
+     * Sets the size of the container's thread pool, which bounds the number of waiting uploads.
+     * This only applies to the limiters which are created afterwards.
+     */
+    public void setContainerThreads(int containerThreads)
+    {
+        this.containerThreads = containerThreads;
+        this.waitingUploads = new Semaphore(getMaxWaitingUploads(containerThreads));
+    }
+
+    /**
+     * Returns the number of uploads which may still wait for their turn, across all the repositories and storages.
+     */
+    public int getAvailableWaitingUploads()
+    {
+        return waitingUploads.availablePermits();
+    }
+
+    public int getRepositoryConcurrency()
+    {
+        return repositoryConcurrency;
+    }
+
+    public void setRepositoryConcurrency(int repositoryConcurrency)
+    {
+        this.repositoryConcurrency = repositoryConcurrency;
+    }
+
+    public int getRepositoryQueueSize()
+    {
+        return repositoryQueueSize;
+    }
+
+    public void setRepositoryQueueSize(int repositoryQueueSize)
+    {
+        this.repositoryQueueSize = repositoryQueueSize;
+    }
+
+    public int getStorageConcurrency()
+    {
+        return storageConcurrency;
+    }
+
+    public void setStorageConcurrency(int storageConcurrency)
+    {
+        this.storageConcurrency = storageConcurrency;
+    }
+
+    public int getStorageQueueSize()
+    {
+        return storageQueueSize;
+    }
+
+    public void setStorageQueueSize(int storageQueueSize)
+    {
+        this.storageQueueSize = storageQueueSize;
+    }
+
+    public long getQueueTimeout()
+    {
+        return queueTimeout;
+    }
+
+    public void setQueueTimeout(long queueTimeout)
+    {
+        this.queueTimeout = queueTimeout;
+    }
+
+    /**
+     * The limits which an admitted upload holds, until it's complete.
+     */
+    public static class Admission
+    {
+
+        private final List<UploadLimiter> limiters;
+
+        private boolean released;
+
+
+        Admission(List<UploadLimiter> limiters)
+        {
+            this.limiters = limiters;
+        }
+
+        public synchronized void release()
+        {
+            if (!released)
+            {
+                released = true;
+
+                UploadAdmissionController.release(limiters);
+            }
+        }
+
+    }
+
+}
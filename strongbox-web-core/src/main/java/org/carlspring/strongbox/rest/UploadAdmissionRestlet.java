@@ -0,0 +1,46 @@
+package org.carlspring.strongbox.rest;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports on the admission of the uploads to the repositories and storages.
+ *
+ * @author Martin Todorov
+ */
+@Component
+@Path("/uploads/admission")
+public class UploadAdmissionRestlet
+        extends BaseRestlet
+{
+
+    @Autowired
+    private UploadAdmissionController uploadAdmissionController;
+
+
+    /**
+     * Returns the metrics of the limiters of the repositories ("storageId:repositoryId") and the storages
+     * ("storageId") which have received uploads (one "name.metric=value" pair per line), such as the number of
+     * uploads being written ("active") and waiting ("queued"), the number of rejected uploads ("rejected")
+     * and how long (in milliseconds) the admitted uploads have waited ("averageWaitTime", "maxWaitTime").
+     */
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getStatus()
+    {
+        StringBuilder status = new StringBuilder();
+        for (UploadLimiter limiter : uploadAdmissionController.getLimiters().values())
+        {
+            status.append(limiter.toString());
+        }
+
+        return Response.ok(status.toString()).build();
+    }
+
+}
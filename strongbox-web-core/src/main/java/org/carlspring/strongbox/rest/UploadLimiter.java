@@ -0,0 +1,230 @@
+package org.carlspring.strongbox.rest;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of uploads to a repository, or a storage, which are written at the same time.
+ *
+ * The uploads which can't be started right away wait in line (first come, first served), as long as
+ * there are no more than the maximum number of queued uploads already waiting; the rest are rejected
+ * right away, instead of waiting for longer and longer. As each waiting upload holds on to one of the container's
+ * threads, the limiters may also share a bound on the uploads waiting for any of them.
+ *
+ * @author mtodorov
+ */
+public class UploadLimiter
+{
+
+    private final String name;
+
+    private final int maxConcurrentUploads;
+
+    private final int maxQueuedUploads;
+
+    private final Semaphore permits;
+
+    /**
+     * The uploads which may wait for any of the limiters sharing it, or null, if only this limiter's queue applies.
+     */
+    private final Semaphore waitingUploads;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicLong admittedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private final AtomicLong timedOutCount = new AtomicLong();
+
+    private final AtomicLong totalWaitTime = new AtomicLong();
+
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+
+    public UploadLimiter(String name,
+                         int maxConcurrentUploads,
+                         int maxQueuedUploads)
+    {
+        this(name, maxConcurrentUploads, maxQueuedUploads, null);
+    }
+
+    public UploadLimiter(String name,
+                         int maxConcurrentUploads,
+                         int maxQueuedUploads,
+                         Semaphore waitingUploads)
+    {
+        this.name = name;
+        this.maxConcurrentUploads = maxConcurrentUploads;
+        this.maxQueuedUploads = maxQueuedUploads;
+        this.permits = new Semaphore(maxConcurrentUploads, true);
+        this.waitingUploads = waitingUploads;
+    }
+
+    /**
+     * Waits for the upload's turn.
+     *
+     * @return False, if the upload was rejected, because too many uploads are waiting already,
+     *         or it didn't get its turn in time.
+     */
+    public boolean acquire(long timeout)
+            throws InterruptedException
+    {
+        // Unlike tryAcquire(), this doesn't jump the queue
+        if (permits.tryAcquire(0, TimeUnit.MILLISECONDS))
+        {
+            admittedCount.incrementAndGet();
+
+            return true;
+        }
+
+        if (queued.incrementAndGet() > maxQueuedUploads)
+        {
+            queued.decrementAndGet();
+            rejectedCount.incrementAndGet();
+
+            return false;
+        }
+
+        if (waitingUploads != null && !waitingUploads.tryAcquire())
+        {
+            queued.decrementAndGet();
+            rejectedCount.incrementAndGet();
+
+            return false;
+        }
+
+        final long start = System.nanoTime();
+        try
+        {
+            if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS))
+            {
+                timedOutCount.incrementAndGet();
+                rejectedCount.incrementAndGet();
+
+                return false;
+            }
+
+            admittedCount.incrementAndGet();
+            recordWaitTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+            return true;
+        }
+        finally
+        {
+            if (waitingUploads != null)
+            {
+                waitingUploads.release();
+            }
+
+            queued.decrementAndGet();
+        }
+    }
+
+    public void release()
+    {
+        permits.release();
+    }
+
+    private void recordWaitTime(long waitTime)
+    {
+        totalWaitTime.addAndGet(waitTime);
+
+        long max;
+        do
+        {
+            max = maxWaitTime.get();
+        }
+        while (waitTime > max && !maxWaitTime.compareAndSet(max, waitTime));
+    }
+
+    public boolean hasLimits(int maxConcurrentUploads,
+                             int maxQueuedUploads)
+    {
+        return this.maxConcurrentUploads == maxConcurrentUploads && this.maxQueuedUploads == maxQueuedUploads;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getMaxConcurrentUploads()
+    {
+        return maxConcurrentUploads;
+    }
+
+    public int getMaxQueuedUploads()
+    {
+        return maxQueuedUploads;
+    }
+
+    /**
+     * Returns the number of uploads which are being written.
+     */
+    public int getActive()
+    {
+        return maxConcurrentUploads - permits.availablePermits();
+    }
+
+    /**
+     * Returns the number of uploads waiting for their turn.
+     */
+    public int getQueued()
+    {
+        return queued.get();
+    }
+
+    public long getAdmittedCount()
+    {
+        return admittedCount.get();
+    }
+
+    public long getRejectedCount()
+    {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Returns the number of the rejected uploads, which had waited in the queue for too long.
+     */
+    public long getTimedOutCount()
+    {
+        return timedOutCount.get();
+    }
+
+    /**
+     * Returns the average time (in milliseconds) which the admitted uploads have waited for their turn.
+     */
+    public long getAverageWaitTime()
+    {
+        final long admitted = admittedCount.get();
+
+        return admitted > 0 ? totalWaitTime.get() / admitted : 0;
+    }
+
+    /**
+     * Returns the longest time (in milliseconds) which an admitted upload has waited for its turn.
+     */
+    public long getMaxWaitTime()
+    {
+        return maxWaitTime.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + ".maxConcurrentUploads=" + maxConcurrentUploads + '\n' +
+               name + ".maxQueuedUploads=" + maxQueuedUploads + '\n' +
+               name + ".active=" + getActive() + '\n' +
+               name + ".queued=" + getQueued() + '\n' +
+               name + ".admitted=" + getAdmittedCount() + '\n' +
+               name + ".rejected=" + getRejectedCount() + '\n' +
+               name + ".timedOut=" + getTimedOutCount() + '\n' +
+               name + ".averageWaitTime=" + getAverageWaitTime() + '\n' +
+               name + ".maxWaitTime=" + getMaxWaitTime() + '\n';
+    }
+
+}
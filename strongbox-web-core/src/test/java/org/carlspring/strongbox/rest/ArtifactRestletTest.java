@@ -1,7 +1,10 @@
 package org.carlspring.strongbox.rest;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
@@ -9,7 +12,21 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.repository.metadata.Metadata;
@@ -173,6 +190,208 @@ public class ArtifactRestletTest
         output.close();
     }
 
+    @Test
+    public void testConditionalFetch()
+            throws Exception
+    {
+        String artifactPath = "/storages/storage0/releases/org/carlspring/strongbox/partial/partial-foo/3.2/partial-foo-3.2.jar";
+
+        String sha1 = MessageDigestUtils.readChecksumFile(client.getResource(artifactPath + ".sha1"));
+
+        Response response = client.getResourceWithResponse(artifactPath, new MultivaluedHashMap<String, Object>());
+        String entityTag = response.getHeaderString("ETag");
+        String lastModified = response.getHeaderString("Last-Modified");
+        response.close();
+
+        assertEquals("Failed to return the SHA-1 checksum as the ETag!", "\"" + sha1 + "\"", entityTag);
+        assertNotNull("Failed to return the Last-Modified header!", lastModified);
+
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        headers.putSingle("If-None-Match", entityTag);
+
+        response = client.getResourceWithResponse(artifactPath, headers);
+        response.close();
+
+        assertEquals("Failed to handle If-None-Match!", 304, response.getStatus());
+
+        headers = new MultivaluedHashMap<>();
+        headers.putSingle("If-Modified-Since", lastModified);
+
+        response = client.getResourceWithResponse(artifactPath, headers);
+        response.close();
+
+        assertEquals("Failed to handle If-Modified-Since!", 304, response.getStatus());
+
+        headers = new MultivaluedHashMap<>();
+        headers.putSingle("If-None-Match", "\"foo\"");
+
+        response = client.getResourceWithResponse(artifactPath, headers);
+        response.close();
+
+        assertEquals("Failed to send a modified artifact!", 200, response.getStatus());
+    }
+
+    @Test
+    public void testDownloadsWithSlowClients()
+            throws Exception
+    {
+        // More clients than there are download threads (see strongbox.download.threads in the pom.xml)
+        final int clients = 32;
+
+        final String path = "org/carlspring/strongbox/slow/slow-foo/1.0/slow-foo-1.0.jar";
+        final String artifactPath = "/storages/storage0/releases/" + path;
+
+        // Create a large enough file, so that the downloads take a while for slow clients
+        final File file = new File(REPOSITORY_BASEDIR_RELEASES, path);
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+
+        final byte[] contents = new byte[1024 * 1024];
+        new Random().nextBytes(contents);
+
+        try (FileOutputStream fos = new FileOutputStream(file))
+        {
+            fos.write(contents);
+        }
+
+        final MessageDigest md5 = MessageDigest.getInstance(EncryptionAlgorithmsEnum.MD5.getAlgorithm());
+        md5.update(contents);
+
+        final String expectedChecksum = MessageDigestUtils.convertToHexadecimalString(md5);
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try
+        {
+            List<Future<String>> downloads = new ArrayList<>();
+            for (int i = 0; i < clients; i++)
+            {
+                downloads.add(executor.submit(new Callable<String>()
+                {
+                    @Override
+                    public String call()
+                            throws Exception
+                    {
+                        return downloadSlowly(artifactPath);
+                    }
+                }));
+            }
+
+            // The slow clients shouldn't be holding up the rest of the requests
+            assertTrue("Failed to serve a request, while the slow clients were downloading!",
+                       client.pathExists("/storages/storage0/releases/org/carlspring/strongbox/partial/partial-foo/3.1/partial-foo-3.1.jar"));
+            assertFalse("Queued a small download behind the slow clients!", downloads.get(clients - 1).isDone());
+
+            for (Future<String> download : downloads)
+            {
+                assertEquals("Failed to download the artifact correctly!",
+                             expectedChecksum,
+                             download.get(120, TimeUnit.SECONDS));
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private String downloadSlowly(String artifactPath)
+            throws Exception
+    {
+        RestClient slowClient = new RestClient();
+        InputStream is = null;
+        try
+        {
+            is = slowClient.getResource(artifactPath);
+
+            MessageDigest digest = MessageDigest.getInstance(EncryptionAlgorithmsEnum.MD5.getAlgorithm());
+
+            byte[] bytes = new byte[8192];
+            int len;
+            while ((len = is.read(bytes)) != -1)
+            {
+                digest.update(bytes, 0, len);
+
+                // Simulate a client which is slow to read
+                Thread.sleep(5);
+            }
+
+            return MessageDigestUtils.convertToHexadecimalString(digest);
+        }
+        finally
+        {
+            if (is != null)
+            {
+                is.close();
+            }
+
+            slowClient.close();
+        }
+    }
+
+    @Test
+    public void testCompressedDownload()
+            throws Exception
+    {
+        final String path = "org/carlspring/strongbox/gzip/gzip-foo/1.0/gzip-foo-1.0.pom";
+        final String artifactPath = "/storages/storage0/releases/" + path;
+
+        StringBuilder pom = new StringBuilder("<project><modelVersion>4.0.0</modelVersion><dependencies>");
+        for (int i = 0; i < 50; i++)
+        {
+            pom.append("<dependency><groupId>org.carlspring.strongbox.gzip</groupId>")
+               .append("<artifactId>gzip-bar-").append(i).append("</artifactId>")
+               .append("<version>1.0</version></dependency>");
+        }
+        pom.append("</dependencies></project>");
+
+        final byte[] contents = pom.toString().getBytes();
+
+        final File file = new File(REPOSITORY_BASEDIR_RELEASES, path);
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+
+        try (FileOutputStream fos = new FileOutputStream(file))
+        {
+            fos.write(contents);
+        }
+
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        headers.add("Accept-Encoding", "gzip, deflate");
+
+        Response response = client.getResourceWithResponse(artifactPath, headers);
+
+        assertEquals("Failed to serve the compressed file!", 200, response.getStatus());
+        assertEquals("Incorrect encoding!", "gzip", response.getHeaderString("Content-Encoding"));
+        assertEquals("Incorrect Vary header!", "Accept-Encoding", response.getHeaderString("Vary"));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (InputStream is = new GZIPInputStream(response.readEntity(InputStream.class)))
+        {
+            byte[] bytes = new byte[4096];
+            int len;
+            while ((len = is.read(bytes)) != -1)
+            {
+                baos.write(bytes, 0, len);
+            }
+        }
+
+        assertArrayEquals("Incorrect decompressed contents!", contents, baos.toByteArray());
+
+        // Clients which don't accept gzip should get the identity encoding
+        response = client.getResourceWithResponse(artifactPath, new MultivaluedHashMap<String, Object>());
+
+        assertEquals("Failed to serve the file!", 200, response.getStatus());
+        assertNull("Served the compressed file to a client which doesn't accept it!",
+                   response.getHeaderString("Content-Encoding"));
+
+        // Binary archives must never be compressed
+        response = client.getResourceWithResponse("/storages/storage0/releases/org/carlspring/strongbox/partial/partial-foo/3.1/partial-foo-3.1.jar",
+                                                  headers);
+
+        assertEquals("Failed to serve the artifact!", 200, response.getStatus());
+        assertNull("Compressed a binary archive!", response.getHeaderString("Content-Encoding"));
+    }
+
     @Test
     public void testCopyArtifactFile()
             throws Exception
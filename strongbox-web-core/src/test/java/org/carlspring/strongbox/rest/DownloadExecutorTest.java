@@ -0,0 +1,304 @@
+package org.carlspring.strongbox.rest;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mtodorov
+ */
+public class DownloadExecutorTest
+{
+
+    private static final int POOL_SIZE = 8;
+
+    private static final int QUEUE_SIZE = 256;
+
+    private DownloadExecutor downloadExecutor;
+
+
+    @Before
+    public void setUp()
+    {
+        downloadExecutor = new DownloadExecutor();
+        downloadExecutor.setPoolSize(POOL_SIZE);
+        downloadExecutor.setQueueSize(QUEUE_SIZE);
+        downloadExecutor.initialize();
+    }
+
+    @After
+    public void tearDown()
+    {
+        downloadExecutor.shutdown();
+    }
+
+    @Test
+    public void testThreadCountWithManySlowDownloads()
+            throws InterruptedException
+    {
+        final int downloads = 200;
+        final CountDownLatch latch = new CountDownLatch(downloads);
+
+        for (int i = 0; i < downloads; i++)
+        {
+            downloadExecutor.execute(new SlowDownload(latch, 10));
+        }
+
+        assertTrue("Failed to complete the downloads!", latch.await(60, TimeUnit.SECONDS));
+        assertTrue("Used more threads than the size of the pool (" + downloadExecutor.getLargestPoolSize() + ")!",
+                   downloadExecutor.getLargestPoolSize() <= POOL_SIZE);
+    }
+
+    @Test
+    public void testRejectionWhenQueueIsFull()
+            throws InterruptedException
+    {
+        final CountDownLatch block = new CountDownLatch(1);
+
+        // Occupy all the threads and fill up the queue
+        for (int i = 0; i < POOL_SIZE + QUEUE_SIZE; i++)
+        {
+            downloadExecutor.execute(new BlockedDownload(block));
+        }
+
+        try
+        {
+            downloadExecutor.execute(new BlockedDownload(block));
+
+            fail("Failed to reject a download, when all the threads are busy and the queue is full!");
+        }
+        catch (RejectedExecutionException e)
+        {
+            // This is expected
+        }
+        finally
+        {
+            block.countDown();
+        }
+    }
+
+    @Test
+    public void testSmallResponsesWhileAllThreadsAreBusy()
+    {
+        final CountDownLatch block = new CountDownLatch(1);
+
+        // More clients of large artifacts than there are threads, so that all the threads are busy and the queue is full
+        for (int i = 0; i < POOL_SIZE + QUEUE_SIZE; i++)
+        {
+            downloadExecutor.execute(new BlockedDownload(block));
+        }
+
+        try
+        {
+            for (int i = 0; i < POOL_SIZE * 4; i++)
+            {
+                RecordingAsyncResponse notModified = new RecordingAsyncResponse();
+                downloadExecutor.resume(notModified, Response.notModified().build());
+
+                assertNotNull("Failed to send a response without a body right away!", notModified.getResponse());
+
+                RecordingAsyncResponse smallArtifact = new RecordingAsyncResponse();
+                downloadExecutor.resume(smallArtifact, Response.ok("foo").header("Content-Length", 3).build());
+
+                assertNotNull("Failed to send a small response right away!", smallArtifact.getResponse());
+                assertEquals("Incorrect status!", 200, ((Response) smallArtifact.getResponse()).getStatus());
+            }
+
+            try
+            {
+                downloadExecutor.resume(new RecordingAsyncResponse(),
+                                        Response.ok("foo")
+                                                .header("Content-Length", downloadExecutor.getInlineLength() + 1)
+                                                .build());
+
+                fail("Failed to reject a large download, when all the threads are busy and the queue is full!");
+            }
+            catch (RejectedExecutionException e)
+            {
+                // This is expected
+            }
+        }
+        finally
+        {
+            block.countDown();
+        }
+    }
+
+    private static class SlowDownload
+            implements Runnable
+    {
+
+        private final CountDownLatch latch;
+
+        private final long millis;
+
+
+        SlowDownload(CountDownLatch latch, long millis)
+        {
+            this.latch = latch;
+            this.millis = millis;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                // Simulate a client which is slow to read
+                Thread.sleep(millis);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                latch.countDown();
+            }
+        }
+
+    }
+
+    private static class BlockedDownload
+            implements Runnable
+    {
+
+        private final CountDownLatch block;
+
+
+        BlockedDownload(CountDownLatch block)
+        {
+            this.block = block;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                block.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+    private static class RecordingAsyncResponse
+            implements AsyncResponse
+    {
+
+        private volatile Object response;
+
+
+        @Override
+        public boolean resume(Object response)
+        {
+            this.response = response;
+
+            return true;
+        }
+
+        @Override
+        public boolean resume(Throwable response)
+        {
+            this.response = response;
+
+            return true;
+        }
+
+        @Override
+        public boolean cancel()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean cancel(int retryAfter)
+        {
+            return false;
+        }
+
+        @Override
+        public boolean cancel(Date retryAfter)
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isSuspended()
+        {
+            return response == null;
+        }
+
+        @Override
+        public boolean isCancelled()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isDone()
+        {
+            return response != null;
+        }
+
+        @Override
+        public boolean setTimeout(long time, TimeUnit unit)
+        {
+            return false;
+        }
+
+        @Override
+        public void setTimeoutHandler(TimeoutHandler handler)
+        {
+        }
+
+        @Override
+        public Collection<Class<?>> register(Class<?> callback)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<Class<?>> register(Object callback)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public Object getResponse()
+        {
+            return response;
+        }
+
+    }
+
+}
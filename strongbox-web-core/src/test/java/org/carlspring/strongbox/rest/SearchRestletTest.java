@@ -48,6 +48,9 @@ public class SearchRestletTest
             artifactDeployer.generateAndDeployArtifact(artifact2, classifiers, "storage0", "releases", "jar");
             artifactDeployer.generateAndDeployArtifact(artifact3, classifiers, "storage0", "releases", "jar");
 
+            // The artifacts are indexed in the background
+            client.drainIndexingQueue();
+
             INITIALIZED = true;
         }
     }
@@ -0,0 +1,202 @@
+package org.carlspring.strongbox.rest;
+
+import org.carlspring.strongbox.storage.Storage;
+import org.carlspring.strongbox.storage.repository.Repository;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mtodorov
+ */
+public class UploadAdmissionControllerTest
+{
+
+    private Storage storage;
+
+    private Repository repository;
+
+    private UploadAdmissionController controller;
+
+
+    @Before
+    public void setUp()
+    {
+        storage = new Storage("storage0", "target/storages/storage0");
+        storage.setMaxConcurrentUploads(4);
+
+        repository = new Repository("releases");
+        repository.setMaxConcurrentUploads(2);
+        repository.setMaxQueuedUploads(1);
+        storage.addOrUpdateRepository(repository);
+
+        controller = new UploadAdmissionController();
+        controller.setQueueTimeout(10000L);
+    }
+
+    @Test
+    public void testRejectionWhenQueueIsFull()
+            throws InterruptedException
+    {
+        UploadAdmissionController.Admission admission1 = controller.admit(storage, repository);
+        UploadAdmissionController.Admission admission2 = controller.admit(storage, repository);
+
+        // Waits in the queue, until one of the uploads is complete
+        final CountDownLatch admitted = new CountDownLatch(1);
+        final AtomicReference<UploadAdmissionController.Admission> queuedAdmission = new AtomicReference<>();
+
+        Thread queuedUpload = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                queuedAdmission.set(controller.admit(storage, repository));
+                admitted.countDown();
+            }
+        });
+        queuedUpload.start();
+
+        UploadLimiter limiter = controller.getLimiters().get("storage0:releases");
+
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (limiter.getQueued() == 0 && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10L);
+        }
+
+        assertEquals("Failed to queue the upload!", 1, limiter.getQueued());
+
+        try
+        {
+            controller.admit(storage, repository);
+
+            fail("Failed to reject an upload, when the queue is full!");
+        }
+        catch (RejectedExecutionException e)
+        {
+            // This is expected
+        }
+
+        admission1.release();
+
+        assertTrue("Failed to admit the queued upload!", admitted.await(10, TimeUnit.SECONDS));
+        assertNotNull("Failed to admit the queued upload!", queuedAdmission.get());
+
+        admission2.release();
+        queuedAdmission.get().release();
+
+        assertEquals("Incorrect number of admitted uploads!", 3, limiter.getAdmittedCount());
+        assertEquals("Incorrect number of rejected uploads!", 1, limiter.getRejectedCount());
+        assertEquals("Failed to release the uploads!", 0, limiter.getActive());
+        assertEquals("Failed to release the uploads of the storage!",
+                     0, controller.getLimiters().get("storage0").getActive());
+    }
+
+    @Test
+    public void testQueueTimeout()
+    {
+        controller.setQueueTimeout(50L);
+
+        controller.admit(storage, repository);
+        controller.admit(storage, repository);
+
+        try
+        {
+            controller.admit(storage, repository);
+
+            fail("Failed to reject an upload, which has waited for too long!");
+        }
+        catch (RejectedExecutionException e)
+        {
+            // This is expected
+        }
+
+        UploadLimiter limiter = controller.getLimiters().get("storage0:releases");
+
+        assertEquals("Incorrect number of timed out uploads!", 1, limiter.getTimedOutCount());
+        assertEquals("Failed to release the storage, after the upload was rejected!",
+                     2, controller.getLimiters().get("storage0").getActive());
+    }
+
+    @Test
+    public void testWaitingUploadsAreBoundedByContainerThreads()
+            throws InterruptedException
+    {
+        // A quarter of the container's threads may wait for uploads
+        controller.setContainerThreads(4);
+        repository.setMaxQueuedUploads(10);
+
+        controller.admit(storage, repository);
+        controller.admit(storage, repository);
+
+        Thread queuedUpload = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    controller.admit(storage, repository);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    // This is expected, once the test is over
+                }
+            }
+        });
+        queuedUpload.start();
+
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (controller.getAvailableWaitingUploads() > 0 && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10L);
+        }
+
+        assertEquals("Failed to queue the upload!", 0, controller.getAvailableWaitingUploads());
+
+        try
+        {
+            controller.admit(storage, repository);
+
+            fail("Failed to reject an upload, when the container's threads are taken up by the waiting uploads!");
+        }
+        catch (RejectedExecutionException e)
+        {
+            // This is expected
+        }
+
+        UploadLimiter limiter = controller.getLimiters().get("storage0:releases");
+
+        assertEquals("Incorrect number of queued uploads!", 1, limiter.getQueued());
+        assertEquals("Incorrect number of rejected uploads!", 1, limiter.getRejectedCount());
+
+        queuedUpload.interrupt();
+        queuedUpload.join(10000L);
+
+        assertEquals("Failed to release the waiting upload!", 1, controller.getAvailableWaitingUploads());
+    }
+
+    @Test
+    public void testUnlimitedUploads()
+    {
+        repository.setMaxConcurrentUploads(-1);
+        storage.setMaxConcurrentUploads(-1);
+
+        for (int i = 0; i < 100; i++)
+        {
+            controller.admit(storage, repository);
+        }
+
+        assertTrue("Limited the uploads!", controller.getLimiters().isEmpty());
+    }
+
+}